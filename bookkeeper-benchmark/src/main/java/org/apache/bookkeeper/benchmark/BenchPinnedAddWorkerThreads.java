@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.BookieResources;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.bookie.LedgerStorage;
+import org.apache.bookkeeper.bookie.UncleanShutdownDetectionImpl;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.discover.BookieServiceInfo;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.meta.LedgerManagerFactory;
+import org.apache.bookkeeper.meta.MetadataBookieDriver;
+import org.apache.bookkeeper.meta.NullMetadataBookieDriver;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookieClientImpl;
+import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookieServer;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark comparing the end-to-end add latency of a bookie with and without its add worker
+ * threads pinned to CPU cores.
+ *
+ * <p>For both settings, a bookie is started in process with its journal and ledger
+ * directories in the given directory, and entries are added to a set of ledgers with a bounded
+ * number of adds in flight.
+ */
+public class BenchPinnedAddWorkerThreads {
+    static final Logger LOG = LoggerFactory.getLogger(BenchPinnedAddWorkerThreads.class);
+
+    private static final byte[] MASTER_KEY = new byte[20];
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption("dir", true, "Directory of the bookie journal and ledgers (default a temporary directory)");
+        options.addOption("port", true, "Port of the bookie (default 3181)");
+        options.addOption("size", true, "Size of the entries, in bytes (default 1024)");
+        options.addOption("ledgers", true, "Number of ledgers written concurrently (default 64)");
+        options.addOption("outstanding", true, "Max number of adds in flight (default 1000)");
+        options.addOption("warmupCount", true, "Number of entries in warmup phase (default 100000)");
+        options.addOption("count", true, "Number of entries in latency phase (default 50000)");
+        options.addOption("ioThreads", true, "Number of bookie I/O threads (default number of cores)");
+        options.addOption("addThreads", true, "Number of bookie add worker threads (default 1)");
+        options.addOption("journalSync", false, "Sync the journal to disk on each group commit");
+        options.addOption("pinned", true, "Only run with the add worker threads pinned (true) or unpinned (false),"
+                + " to measure each setting in its own JVM (default both, in the same JVM)");
+        options.addOption("help", false, "This message");
+
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("help")) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("BenchPinnedAddWorkerThreads <options>", options);
+            System.exit(-1);
+        }
+
+        int port = Integer.parseInt(cmd.getOptionValue("port", "3181"));
+        int size = Integer.parseInt(cmd.getOptionValue("size", "1024"));
+        int numLedgers = Integer.parseInt(cmd.getOptionValue("ledgers", "64"));
+        int outstanding = Integer.parseInt(cmd.getOptionValue("outstanding", "1000"));
+        int warmupCount = Integer.parseInt(cmd.getOptionValue("warmupCount", "100000"));
+        int count = Integer.parseInt(cmd.getOptionValue("count", "50000"));
+        int ioThreads = Integer.parseInt(cmd.getOptionValue("ioThreads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int addThreads = Integer.parseInt(cmd.getOptionValue("addThreads", "1"));
+
+        boolean[] settings = cmd.hasOption("pinned")
+                ? new boolean[] { Boolean.parseBoolean(cmd.getOptionValue("pinned")) }
+                : new boolean[] { false, true };
+        for (boolean pinned : settings) {
+            File dir = cmd.hasOption("dir")
+                    ? new File(cmd.getOptionValue("dir"), pinned ? "pinned" : "unpinned")
+                    : IOUtils.createTempDir("bench-pinned-add-workers", ".dir");
+            FileUtils.deleteDirectory(dir);
+
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setMetadataServiceUri(null);
+            conf.setBookiePort(port);
+            conf.setAdvertisedAddress("127.0.0.1");
+            conf.setAllowLoopback(true);
+            conf.setJournalDirName(new File(dir, "journal").getPath());
+            conf.setLedgerDirNames(new String[] { new File(dir, "ledgers").getPath() });
+            conf.setJournalSyncData(cmd.hasOption("journalSync"));
+            conf.setServerNumIOThreads(ioThreads);
+            conf.setNumAddWorkerThreads(addThreads);
+            conf.setPinAddWorkerThreadsToCpuCores(pinned);
+
+            LOG.info("Benchmarking adds with the add worker threads {}", pinned ? "pinned" : "unpinned");
+            long[] latencies = run(conf, size, numLedgers, outstanding, warmupCount, count);
+            Arrays.sort(latencies);
+            LOG.info("Add worker threads {}: add latency avg {} us, p50 {} us, p99 {} us, p99.9 {} us,"
+                    + " max {} us",
+                    pinned ? "pinned" : "unpinned",
+                    TimeUnit.NANOSECONDS.toMicros(Arrays.stream(latencies).sum() / latencies.length),
+                    TimeUnit.NANOSECONDS.toMicros(percentile(latencies, 50)),
+                    TimeUnit.NANOSECONDS.toMicros(percentile(latencies, 99)),
+                    TimeUnit.NANOSECONDS.toMicros(percentile(latencies, 99.9)),
+                    TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length - 1]));
+
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        int idx = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(idx, sortedLatencies.length - 1))];
+    }
+
+    private static long[] run(ServerConfiguration conf, int size, int numLedgers, int outstanding,
+                              int warmupCount, int count) throws Exception {
+        ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+        MetadataBookieDriver metadataDriver = new NullMetadataBookieDriver();
+        LedgerManagerFactory lmFactory = metadataDriver.getLedgerManagerFactory();
+        LedgerManager ledgerManager = lmFactory.newLedgerManager();
+        DiskChecker diskChecker = BookieResources.createDiskChecker(conf);
+        LedgerDirsManager ledgerDirsManager = BookieResources.createLedgerDirsManager(
+                conf, diskChecker, NullStatsLogger.INSTANCE);
+        LedgerDirsManager indexDirsManager = BookieResources.createIndexDirsManager(
+                conf, diskChecker, NullStatsLogger.INSTANCE, ledgerDirsManager);
+        LedgerStorage storage = BookieResources.createLedgerStorage(
+                conf, ledgerManager, ledgerDirsManager, indexDirsManager, NullStatsLogger.INSTANCE, allocator);
+        Bookie bookie = new BookieImpl(conf, metadataDriver.createRegistrationManager(), storage, diskChecker,
+                ledgerDirsManager, indexDirsManager, NullStatsLogger.INSTANCE, allocator,
+                BookieServiceInfo.NO_INFO);
+        BookieServer server = new BookieServer(conf, bookie, NullStatsLogger.INSTANCE, allocator,
+                new UncleanShutdownDetectionImpl(ledgerDirsManager));
+        server.start();
+
+        EventLoopGroup eventLoop = new NioEventLoopGroup(1, new DefaultThreadFactory("bench-client-io"));
+        OrderedExecutor executor = OrderedExecutor.newBuilder()
+                .name("BenchPinnedAddWorkersClientScheduler")
+                .numThreads(1)
+                .build();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("BookKeeperClientScheduler"));
+        BookieClient bc = new BookieClientImpl(new ClientConfiguration(), eventLoop, allocator, executor, scheduler,
+                NullStatsLogger.INSTANCE, BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+        try {
+            BookieId bookieId = server.getBookieId();
+            addEntries(bc, bookieId, size, numLedgers, outstanding, warmupCount, null);
+            long[] latencies = new long[count];
+            addEntries(bc, bookieId, size, numLedgers, outstanding, count, latencies);
+            return latencies;
+        } finally {
+            bc.close();
+            scheduler.shutdown();
+            executor.shutdown();
+            eventLoop.shutdownGracefully();
+            server.shutdown();
+            ledgerManager.close();
+            lmFactory.close();
+            metadataDriver.close();
+        }
+    }
+
+    private static final AtomicInteger NEXT_LEDGER_ID = new AtomicInteger(1);
+
+    private static void addEntries(BookieClient bc, BookieId bookieId, int size, int numLedgers,
+                                   int outstanding, int count, long[] latencies) throws InterruptedException {
+        long firstLedgerId = NEXT_LEDGER_ID.getAndAdd(numLedgers);
+        Semaphore inFlight = new Semaphore(outstanding);
+        AtomicInteger failures = new AtomicInteger(0);
+        for (int i = 0; i < count; i++) {
+            long ledgerId = firstLedgerId + i % numLedgers;
+            long entryId = i / numLedgers;
+            ByteBuf toSend = Unpooled.buffer(size);
+            toSend.writeLong(ledgerId);
+            toSend.writeLong(entryId);
+            toSend.writerIndex(toSend.capacity());
+
+            inFlight.acquire();
+            final int idx = i;
+            final long startNanos = System.nanoTime();
+            bc.addEntry(bookieId, ledgerId, MASTER_KEY, entryId, ByteBufList.get(toSend),
+                    (rc, lid, eid, addr, ctx) -> {
+                        if (rc != 0) {
+                            failures.incrementAndGet();
+                        }
+                        if (latencies != null) {
+                            latencies[idx] = System.nanoTime() - startNanos;
+                        }
+                        inFlight.release();
+                    }, null, BookieProtocol.FLAG_NONE, false, WriteFlag.NONE);
+        }
+        inFlight.acquire(outstanding);
+        if (failures.get() > 0) {
+            LOG.error("{} adds failed", failures.get());
+        }
+    }
+}
@@ -20,13 +20,78 @@ package org.apache.bookkeeper.common.util;
 
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Executor/Thread related utils.
  */
+@Slf4j
 public class ExecutorUtils {
 
+    // virtual threads are only available on JDK 21+, so they are created by reflection
+    private static final Method THREAD_OF_VIRTUAL;
+    private static final Method THREAD_BUILDER_NAME;
+    private static final Method THREAD_BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        THREAD_OF_VIRTUAL = ofVirtual;
+        THREAD_BUILDER_NAME = builderName;
+        THREAD_BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    /**
+     * Whether virtual threads are supported by the current JVM.
+     *
+     * @return true on JDK 21+
+     */
+    public static boolean isVirtualThreadSupported() {
+        return THREAD_OF_VIRTUAL != null;
+    }
+
+    /**
+     * Get an executor which starts a new virtual thread for each task.
+     *
+     * <p>A virtual thread is pinned to its carrier thread while it blocks in a {@code synchronized}
+     * block, which includes the synchronous calls of the ZooKeeper client. The tasks should rather
+     * block with the {@link java.util.concurrent} primitives.
+     *
+     * @param namePrefix prefix of the names of the threads, followed by a counter.
+     * @return an {@link ExecutorService}, or null if virtual threads are not supported.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        if (!isVirtualThreadSupported()) {
+            log.warn("Virtual threads are not supported by this JVM, {} uses platform threads", namePrefix);
+            return null;
+        }
+        try {
+            Object builder = THREAD_BUILDER_NAME.invoke(THREAD_OF_VIRTUAL.invoke(null), namePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) THREAD_BUILDER_FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Failed to create virtual thread executor {}, using platform threads", namePrefix, e);
+            return null;
+        }
+    }
+
     /**
      * Get a {@link ThreadFactory} suitable for use in the current environment.
      *
@@ -32,7 +32,9 @@ import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -73,6 +75,8 @@ public class OrderedExecutor implements ExecutorService {
     final long warnTimeMicroSec;
     final int maxTasksInQueue;
     final boolean enableBusyWait;
+    // tasks submitted without ordering key, run by any thread, null if work stealing is disabled
+    final UnorderedTaskQueue unorderedTasks;
     // we only want thread-scoped metrics on the server-side where it can be explicitly enabled
     final boolean enableThreadScopedMetrics;
 
@@ -93,7 +97,7 @@ public class OrderedExecutor implements ExecutorService {
             return new OrderedExecutor(name, numThreads, threadFactory, statsLogger,
                                            traceTaskExecution, preserveMdcForTaskExecution,
                                            warnTimeMicroSec, maxTasksInQueue, enableBusyWait,
-                                           enableThreadScopedMetrics);
+                                           enableThreadScopedMetrics, enableWorkStealing);
         }
     }
 
@@ -111,6 +115,7 @@ public class OrderedExecutor implements ExecutorService {
         protected int maxTasksInQueue = NO_TASK_LIMIT;
         protected boolean enableBusyWait = false;
         protected boolean enableThreadScopedMetrics = false;
+        protected boolean enableWorkStealing = false;
 
         public AbstractBuilder<T> name(String name) {
             this.name = name;
@@ -162,6 +167,16 @@ public class OrderedExecutor implements ExecutorService {
             return this;
         }
 
+        /**
+         * Run the tasks submitted without ordering key on the first idle thread, instead of a
+         * random thread which could be busy with ordered tasks. Not supported by
+         * {@link OrderedScheduler}.
+         */
+        public AbstractBuilder<T> enableWorkStealing(boolean enableWorkStealing) {
+            this.enableWorkStealing = enableWorkStealing;
+            return this;
+        }
+
         @SuppressWarnings("unchecked")
         public T build() {
             if (null == threadFactory) {
@@ -177,7 +192,8 @@ public class OrderedExecutor implements ExecutorService {
                 warnTimeMicroSec,
                 maxTasksInQueue,
                 enableBusyWait,
-                enableThreadScopedMetrics);
+                enableThreadScopedMetrics,
+                enableWorkStealing);
         }
     }
 
@@ -287,9 +303,9 @@ public class OrderedExecutor implements ExecutorService {
 
     protected ExecutorService createSingleThreadExecutor(ThreadFactory factory) {
         if (maxTasksInQueue > 0) {
-            return new SingleThreadExecutor(factory, maxTasksInQueue, true);
+            return new SingleThreadExecutor(factory, maxTasksInQueue, true, unorderedTasks);
         } else {
-            return new SingleThreadExecutor(factory);
+            return new SingleThreadExecutor(factory, 0, false, unorderedTasks);
         }
     }
 
@@ -377,9 +393,27 @@ public class OrderedExecutor implements ExecutorService {
                                 StatsLogger statsLogger, boolean traceTaskExecution,
                                 boolean preserveMdcForTaskExecution, long warnTimeMicroSec, int maxTasksInQueue,
                                 boolean enableBusyWait, boolean enableThreadScopedMetrics) {
+        this(baseName, numThreads, threadFactory, statsLogger, traceTaskExecution, preserveMdcForTaskExecution,
+                warnTimeMicroSec, maxTasksInQueue, enableBusyWait, enableThreadScopedMetrics, false);
+    }
+
+    /**
+     * Constructs Safe executor.
+     *
+     * @param enableWorkStealing
+     *            - run the tasks submitted without ordering key on the first idle thread
+     */
+    protected OrderedExecutor(String baseName, int numThreads, ThreadFactory threadFactory,
+                                StatsLogger statsLogger, boolean traceTaskExecution,
+                                boolean preserveMdcForTaskExecution, long warnTimeMicroSec, int maxTasksInQueue,
+                                boolean enableBusyWait, boolean enableThreadScopedMetrics,
+                                boolean enableWorkStealing) {
         checkArgument(numThreads > 0);
         checkArgument(!StringUtils.isBlank(baseName));
 
+        this.unorderedTasks = enableWorkStealing
+                ? new UnorderedTaskQueue(maxTasksInQueue > 0 ? maxTasksInQueue * numThreads : NO_TASK_LIMIT)
+                : null;
         this.maxTasksInQueue = maxTasksInQueue;
         this.warnTimeMicroSec = warnTimeMicroSec;
         this.enableBusyWait = enableBusyWait;
@@ -494,6 +528,20 @@ public class OrderedExecutor implements ExecutorService {
             }
         });
 
+        if (unorderedTasks != null) {
+            statsLogger.registerGauge(String.format("%s-unordered-queue", name), new Gauge<Number>() {
+                @Override
+                public Number getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Number getSample() {
+                    return unorderedTasks.size();
+                }
+            });
+        }
+
         if (enableThreadScopedMetrics) {
             this.taskExecutionStats = statsLogger.scope(name).getThreadScopedOpStatsLogger("task_execution");
             this.taskPendingStats = statsLogger.scope(name).getThreadScopedOpStatsLogger("task_queued");
@@ -630,6 +678,11 @@ public class OrderedExecutor implements ExecutorService {
      */
     @Override
     public <T> Future<T> submit(Callable<T> task) {
+        if (unorderedTasks != null) {
+            FutureTask<T> future = new FutureTask<>(timedCallable(task));
+            unorderedTasks.execute(future);
+            return future;
+        }
         return chooseThread().submit(task);
     }
 
@@ -638,6 +691,9 @@ public class OrderedExecutor implements ExecutorService {
      */
     @Override
     public <T> Future<T> submit(Runnable task, T result) {
+        if (unorderedTasks != null) {
+            return submit(Executors.callable(task, result));
+        }
         return chooseThread().submit(task, result);
     }
 
@@ -646,6 +702,9 @@ public class OrderedExecutor implements ExecutorService {
      */
     @Override
     public Future<?> submit(Runnable task) {
+        if (unorderedTasks != null) {
+            return submit(task, null);
+        }
         return chooseThread().submit(task);
     }
 
@@ -692,6 +751,10 @@ public class OrderedExecutor implements ExecutorService {
      */
     @Override
     public void execute(Runnable command) {
+        if (unorderedTasks != null) {
+            unorderedTasks.execute(timedRunnable(command));
+            return;
+        }
         chooseThread().execute(command);
     }
 
@@ -701,6 +764,9 @@ public class OrderedExecutor implements ExecutorService {
      */
     @Override
     public void shutdown() {
+        if (unorderedTasks != null) {
+            unorderedTasks.shutdown();
+        }
         for (int i = 0; i < threads.length; i++) {
             threads[i].shutdown();
         }
@@ -712,6 +778,16 @@ public class OrderedExecutor implements ExecutorService {
     @Override
     public List<Runnable> shutdownNow() {
         List<Runnable> runnables = new ArrayList<Runnable>();
+        if (unorderedTasks != null) {
+            unorderedTasks.shutdown();
+            for (Runnable task : unorderedTasks.drain()) {
+                if (task instanceof Future) {
+                    // don't leave the callers of submit() waiting for a task which will never run
+                    ((Future<?>) task).cancel(false);
+                }
+                runnables.add(task);
+            }
+        }
         for (ExecutorService executor : threads) {
             runnables.addAll(executor.shutdownNow());
         }
@@ -29,6 +29,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.LongAdder;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -44,15 +45,24 @@ import org.apache.bookkeeper.stats.StatsLogger;
  */
 @Slf4j
 public class SingleThreadExecutor extends AbstractExecutorService implements ExecutorService, Runnable {
+    // queued to wake up an idle thread when an unordered task is submitted, never run
+    private static final Runnable WAKEUP = () -> {};
+
     private final BlockingQueue<Runnable> queue;
     private final Thread runner;
 
     private final boolean rejectExecution;
 
+    // tasks shared with the other threads of an ordered executor, if work stealing is enabled
+    private final UnorderedTaskQueue unorderedTasks;
+    private final AtomicBoolean idle = new AtomicBoolean(false);
+    private final AtomicBoolean registeredIdle = new AtomicBoolean(false);
+
     private final LongAdder tasksCount = new LongAdder();
     private final LongAdder tasksCompleted = new LongAdder();
     private final LongAdder tasksRejected = new LongAdder();
     private final LongAdder tasksFailed = new LongAdder();
+    private final LongAdder tasksStolen = new LongAdder();
 
     enum State {
         Running,
@@ -68,9 +78,14 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
         this(tf, 0, false);
     }
 
+    public SingleThreadExecutor(ThreadFactory tf, int maxQueueCapacity, boolean rejectExecution) {
+        this(tf, maxQueueCapacity, rejectExecution, null);
+    }
+
     @SneakyThrows
     @SuppressFBWarnings(value = {"SC_START_IN_CTOR"})
-    public SingleThreadExecutor(ThreadFactory tf, int maxQueueCapacity, boolean rejectExecution) {
+    SingleThreadExecutor(ThreadFactory tf, int maxQueueCapacity, boolean rejectExecution,
+                         UnorderedTaskQueue unorderedTasks) {
         if (rejectExecution && maxQueueCapacity == 0) {
             throw new IllegalArgumentException("Executor cannot reject new items if the queue is unbound");
         }
@@ -83,6 +98,7 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
         this.runner = tf.newThread(this);
         this.state = State.Running;
         this.rejectExecution = rejectExecution;
+        this.unorderedTasks = unorderedTasks;
         this.startLatch = new CountDownLatch(1);
         this.runner.start();
 
@@ -109,10 +125,37 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
                         }
                     }
                     localTasks.clear();
-                } else {
+                    // Don't let the unordered tasks wait until this thread is idle
+                    if (unorderedTasks != null && !safeRunStolenTask(unorderedTasks.poll())) {
+                        return;
+                    }
+                } else if (unorderedTasks == null) {
                     if (!safeRunTask(queue.take())) {
                         return;
                     }
+                } else {
+                    Runnable stolenTask = unorderedTasks.poll();
+                    if (stolenTask == null) {
+                        // Register as idle, then check again for an unordered task submitted meanwhile,
+                        // since it would not have woken up this thread
+                        idle.set(true);
+                        if (registeredIdle.compareAndSet(false, true)) {
+                            unorderedTasks.registerIdleThread(this);
+                        }
+                        stolenTask = unorderedTasks.poll();
+                        if (stolenTask == null) {
+                            Runnable task = queue.take();
+                            idle.set(false);
+                            if (!safeRunTask(task)) {
+                                return;
+                            }
+                            continue;
+                        }
+                        idle.set(false);
+                    }
+                    if (!safeRunStolenTask(stolenTask)) {
+                        return;
+                    }
                 }
             }
 
@@ -121,6 +164,12 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
             for (int i = 0; i < n; i++) {
                 safeRunTask(localTasks.get(i));
             }
+            if (unorderedTasks != null) {
+                Runnable stolenTask;
+                while ((stolenTask = unorderedTasks.poll()) != null) {
+                    safeRunStolenTask(stolenTask);
+                }
+            }
         } catch (InterruptedException ie) {
             // Exit loop when interrupted
             Thread.currentThread().interrupt();
@@ -132,7 +181,18 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
         }
     }
 
+    private boolean safeRunStolenTask(Runnable r) {
+        if (r == null) {
+            return true;
+        }
+        tasksStolen.increment();
+        return safeRunTask(r);
+    }
+
     private boolean safeRunTask(Runnable r) {
+        if (r == WAKEUP) {
+            return true;
+        }
         try {
             r.run();
             tasksCompleted.increment();
@@ -163,6 +223,7 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
         this.runner.interrupt();
         List<Runnable> remainingTasks = new ArrayList<>();
         queue.drainTo(remainingTasks);
+        remainingTasks.removeIf(task -> task == WAKEUP);
         return remainingTasks;
     }
 
@@ -182,8 +243,23 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
         return runner.isAlive();
     }
 
+    /**
+     * Wake up the thread if it is waiting for tasks, so that it runs the unordered tasks.
+     *
+     * @return whether the thread was idle
+     */
+    boolean wakeUpIfIdle() {
+        registeredIdle.set(false);
+        if (idle.compareAndSet(true, false)) {
+            queue.offer(WAKEUP);
+            return true;
+        }
+        return false;
+    }
+
     public long getQueuedTasksCount() {
-        return Math.max(0, getSubmittedTasksCount() - getCompletedTasksCount());
+        // the unordered tasks stolen from the other threads were not submitted to this one
+        return Math.max(0, getSubmittedTasksCount() - getCompletedTasksCount() + getStolenTasksCount());
     }
 
     public long getSubmittedTasksCount() {
@@ -202,6 +278,10 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
         return tasksFailed.sum();
     }
 
+    public long getStolenTasksCount() {
+        return tasksStolen.sum();
+    }
+
     @Override
     public void execute(Runnable r) {
         if (state != State.Running) {
@@ -287,6 +367,20 @@ public class SingleThreadExecutor extends AbstractExecutorService implements Exe
                         return getFailedTasksCount();
                     }
                 });
+        if (unorderedTasks != null) {
+            statsLogger.scopeLabel("thread", runner.getName())
+                    .registerGauge("thread_executor_tasks_stolen", new Gauge<Number>() {
+                        @Override
+                        public Number getDefaultValue() {
+                            return 0;
+                        }
+
+                        @Override
+                        public Number getSample() {
+                            return getStolenTasksCount();
+                        }
+                    });
+        }
     }
 
     private static class ExecutorRejectedException extends RejectedExecutionException {
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queue of the tasks submitted to an {@link OrderedExecutor} without ordering key, shared by all
+ * its threads.
+ *
+ * <p>Each thread runs these tasks when it has no ordered task left, and one of them between two
+ * batches of ordered tasks, so that an unordered task is stolen by the first idle thread instead
+ * of waiting behind the ordered tasks of a busy thread. The idle threads register themselves
+ * before waiting for their own queue, and a new unordered task wakes up one of them.
+ */
+class UnorderedTaskQueue {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final int maxSize;
+    private final Queue<SingleThreadExecutor> idleThreads = new ConcurrentLinkedQueue<>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param maxSize max number of queued tasks, or a non-positive value for no limit
+     */
+    UnorderedTaskQueue(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shutting down");
+        }
+        if (size.incrementAndGet() > maxSize && maxSize > 0) {
+            size.decrementAndGet();
+            throw new RejectedExecutionException("Executor queue is full");
+        }
+        tasks.offer(task);
+
+        SingleThreadExecutor thread;
+        while ((thread = idleThreads.poll()) != null) {
+            if (thread.wakeUpIfIdle()) {
+                return;
+            }
+        }
+    }
+
+    Runnable poll() {
+        Runnable task = tasks.poll();
+        if (task != null) {
+            size.decrementAndGet();
+        }
+        return task;
+    }
+
+    /**
+     * Remove all the queued tasks.
+     *
+     * @return the tasks which were queued
+     */
+    List<Runnable> drain() {
+        List<Runnable> drained = new ArrayList<>();
+        Runnable task;
+        while ((task = poll()) != null) {
+            drained.add(task);
+        }
+        return drained;
+    }
+
+    void registerIdleThread(SingleThreadExecutor thread) {
+        idleThreads.offer(thread);
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    void shutdown() {
+        shutdown = true;
+    }
+}
@@ -0,0 +1,48 @@
+package org.apache.bookkeeper.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ExecutorUtilsTest {
+
+    @Test
+    public void virtualThreadPerTaskExecutorTest() throws Exception {
+        ExecutorService executor = ExecutorUtils.newVirtualThreadPerTaskExecutor("test-");
+        if (!ExecutorUtils.isVirtualThreadSupported()) {
+            assertNull(executor);
+            return;
+        }
+        try {
+            // more blocked tasks than carrier threads still all run
+            int numTasks = 4 * Runtime.getRuntime().availableProcessors() + 1;
+            CountDownLatch started = new CountDownLatch(numTasks);
+            CountDownLatch release = new CountDownLatch(1);
+            List<Future<Thread>> threads = new ArrayList<>();
+            for (int i = 0; i < numTasks; i++) {
+                threads.add(executor.submit(() -> {
+                    started.countDown();
+                    release.await();
+                    return Thread.currentThread();
+                }));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            release.countDown();
+            Thread first = threads.get(0).get();
+            assertTrue(first.getName().startsWith("test-"));
+            assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(first));
+            assertNotEquals(first, threads.get(1).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.apache.bookkeeper.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.After;
+import org.junit.Test;
+
+public class OrderedExecutorWorkStealingTest {
+
+    private OrderedExecutor executor;
+
+    @After
+    public void tearDown() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private OrderedExecutor newExecutor(int numThreads, StatsLogger statsLogger, boolean traceTaskExecution) {
+        executor = OrderedExecutor.newBuilder()
+                .name("work-stealing-test")
+                .numThreads(numThreads)
+                .statsLogger(statsLogger)
+                .traceTaskExecution(traceTaskExecution)
+                .enableWorkStealing(true)
+                .build();
+        return executor;
+    }
+
+    /**
+     * Keep the thread owning an ordering key busy until the returned latch is released.
+     */
+    private CountDownLatch blockThread(long orderingKey) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.executeOrdered(orderingKey, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        return release;
+    }
+
+    @Test
+    public void idleThreadStealsUnorderedTasksTest() throws Exception {
+        newExecutor(2, NullStatsLogger.INSTANCE, false);
+        long busyThreadId = executor.getThreadID(0);
+        CountDownLatch release = blockThread(0);
+
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(() -> Thread.currentThread().getId()));
+        }
+        // the unordered tasks don't wait for the busy thread
+        for (Future<Long> future : futures) {
+            assertNotEquals(busyThreadId, (long) future.get(10, TimeUnit.SECONDS));
+        }
+        release.countDown();
+    }
+
+    @Test
+    public void idleThreadIsWokenUpTest() throws Exception {
+        newExecutor(4, NullStatsLogger.INSTANCE, false);
+        // let all the threads go idle, waiting for their own queue
+        Thread.sleep(100);
+        for (int i = 0; i < 1000; i++) {
+            CountDownLatch done = new CountDownLatch(1);
+            executor.execute(done::countDown);
+            assertTrue("the unordered task " + i + " is run by an idle thread", done.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void orderedTasksKeepTheirOrderTest() throws Exception {
+        newExecutor(4, NullStatsLogger.INSTANCE, false);
+        List<List<Integer>> executed = new ArrayList<>();
+        for (int key = 0; key < 8; key++) {
+            executed.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        List<Future<?>> unordered = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            for (int key = 0; key < 8; key++) {
+                List<Integer> keyExecuted = executed.get(key);
+                int task = i;
+                executor.executeOrdered(key, () -> keyExecuted.add(task));
+            }
+            unordered.add(executor.submit(() -> { }));
+        }
+        for (Future<?> future : unordered) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        CountDownLatch done = new CountDownLatch(8);
+        for (int key = 0; key < 8; key++) {
+            executor.executeOrdered(key, done::countDown);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> keyExecuted : executed) {
+            assertEquals(1000, keyExecuted.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, (int) keyExecuted.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void busyThreadRunsUnorderedTasksTest() throws Exception {
+        newExecutor(1, NullStatsLogger.INSTANCE, false);
+        CountDownLatch release = blockThread(0);
+        CountDownLatch orderedDone = new CountDownLatch(1);
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        // a batch of ordered tasks, queued before the unordered task
+        for (int i = 0; i < 10; i++) {
+            executor.executeOrdered(0, () -> executed.add("ordered"));
+        }
+        Future<?> unordered = executor.submit(() -> executed.add("unordered"));
+        executor.executeOrdered(0, () -> executed.add("ordered"));
+        executor.executeOrdered(0, orderedDone::countDown);
+        release.countDown();
+        unordered.get(10, TimeUnit.SECONDS);
+        assertTrue(orderedDone.await(10, TimeUnit.SECONDS));
+        assertTrue(executed.contains("unordered"));
+        assertEquals(12, executed.size());
+    }
+
+    @Test
+    public void shutdownNowReturnsUnorderedTasksTest() throws Exception {
+        newExecutor(1, NullStatsLogger.INSTANCE, false);
+        CountDownLatch release = blockThread(0);
+        Runnable queued = () -> { };
+        executor.execute(queued);
+        Future<?> future = executor.submit(() -> { });
+
+        List<Runnable> remaining = executor.shutdownNow();
+        assertEquals(2, remaining.size());
+        assertTrue(remaining.contains(queued));
+        // the callers waiting for the unordered tasks are released
+        assertTrue(future.isCancelled());
+        release.countDown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void unorderedTaskStatsTest() throws Exception {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        OpStatsLogger taskExecution = mock(OpStatsLogger.class);
+        OpStatsLogger taskQueued = mock(OpStatsLogger.class);
+        when(statsLogger.scope(anyString())).thenReturn(statsLogger);
+        when(statsLogger.scopeLabel(anyString(), anyString())).thenReturn(statsLogger);
+        when(statsLogger.getOpStatsLogger("task_execution")).thenReturn(taskExecution);
+        when(statsLogger.getOpStatsLogger("task_queued")).thenReturn(taskQueued);
+        newExecutor(2, statsLogger, true);
+
+        CountDownLatch release = blockThread(0);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit(() -> { }));
+        }
+        CountDownLatch executed = new CountDownLatch(1);
+        executor.execute(executed::countDown);
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(executed.await(10, TimeUnit.SECONDS));
+        release.countDown();
+
+        // the stolen tasks are timed like the ordered tasks
+        verify(taskQueued, atLeast(11)).registerSuccessfulEvent(anyLong(), any(TimeUnit.class));
+        verify(taskExecution, atLeast(11)).registerSuccessfulEvent(anyLong(), any(TimeUnit.class));
+    }
+}
@@ -39,6 +39,7 @@ public interface BookKeeperServerStats {
 
     // Stats
     String CHANNEL_WRITE = "CHANNEL_WRITE";
+    String RESPONSES_PER_FLUSH = "RESPONSES_PER_FLUSH";
 
     //
     // Server Operations
@@ -49,11 +50,14 @@ public interface BookKeeperServerStats {
     String ADD_ENTRY = "ADD_ENTRY";
     String WRITE_THREAD_QUEUED_LATENCY = "WRITE_THREAD_QUEUED_LATENCY";
     String ADD_ENTRY_REJECTED = "ADD_ENTRY_REJECTED";
+    String ADD_ENTRY_EXPIRED = "ADD_ENTRY_EXPIRED";
+    String REPLICATION_ADD_ENTRY_THROTTLED = "REPLICATION_ADD_ENTRY_THROTTLED";
     String FORCE_LEDGER_REQUEST = "FORCE_LEDGER_REQUEST";
     String FORCE_LEDGER = "FORCE_LEDGER";
     String READ_ENTRY_REQUEST = "READ_ENTRY_REQUEST";
     String READ_ENTRY = "READ_ENTRY";
     String READ_ENTRY_REJECTED = "READ_ENTRY_REJECTED";
+    String READ_ENTRY_EXPIRED = "READ_ENTRY_EXPIRED";
     String READ_ENTRY_SCHEDULING_DELAY = "READ_ENTRY_SCHEDULING_DELAY";
     String READ_ENTRY_FENCE_REQUEST = "READ_ENTRY_FENCE_REQUEST";
     String READ_ENTRY_FENCE_WAIT = "READ_ENTRY_FENCE_WAIT";
@@ -70,6 +74,17 @@ public interface BookKeeperServerStats {
     String GET_BOOKIE_INFO = "GET_BOOKIE_INFO";
     String GET_LIST_OF_ENTRIES_OF_LEDGER = "GET_LIST_OF_ENTRIES_OF_LEDGER";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST = "GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST";
+    String GET_LIST_OF_ENTRIES_OF_LEDGERS = "GET_LIST_OF_ENTRIES_OF_LEDGERS";
+    String GET_LIST_OF_ENTRIES_OF_LEDGERS_REQUEST = "GET_LIST_OF_ENTRIES_OF_LEDGERS_REQUEST";
+    String COPY_ENTRIES = "COPY_ENTRIES";
+    String COPY_ENTRIES_REQUEST = "COPY_ENTRIES_REQUEST";
+    String COPY_ENTRIES_BYTES = "COPY_ENTRIES_BYTES";
+
+    // Tenant Scheduling Stats
+    String TENANT_SCHEDULER_SCOPE = "tenant_scheduler";
+    String TENANT_QUEUE_DELAY = "TENANT_QUEUE_DELAY";
+    String TENANT_REQUESTS_QUEUED = "TENANT_REQUESTS_QUEUED";
+    String TENANT_REQUESTS_REJECTED = "TENANT_REQUESTS_REJECTED";
 
     // Ensemble Stats
     String WATCHER_SCOPE = "bookie_watcher";
@@ -90,6 +105,9 @@ public interface BookKeeperServerStats {
     String BOOKIE_ADD_ENTRY_BYTES = "BOOKIE_ADD_ENTRY_BYTES";
     String BOOKIE_READ_ENTRY_BYTES = "BOOKIE_READ_ENTRY_BYTES";
     String BOOKIE_GET_LIST_OF_ENTRIES_OF_LEDGER = "BOOKIE_GET_LIST_OF_ENTRIES_OF_LEDGER";
+    String BOOKIE_STARTUP_JOURNAL_REPLAY = "BOOKIE_STARTUP_JOURNAL_REPLAY";
+    String BOOKIE_STARTUP_FLUSH = "BOOKIE_STARTUP_FLUSH";
+    String BOOKIE_STARTUP_CONSISTENCY_CHECK = "BOOKIE_STARTUP_CONSISTENCY_CHECK";
 
     String ADD_ENTRY_IN_PROGRESS = "ADD_ENTRY_IN_PROGRESS";
     String ADD_ENTRY_BLOCKED = "ADD_ENTRY_BLOCKED";
@@ -45,6 +45,8 @@ public interface Bookie {
             throws IOException, BookieException, InterruptedException;
     void recoveryAddEntry(ByteBuf entry, WriteCallback cb, Object ctx, byte[] masterKey)
             throws IOException, BookieException, InterruptedException;
+    void recoveryAddEntry(ByteBuf entry, boolean highPriority, WriteCallback cb, Object ctx, byte[] masterKey)
+            throws IOException, BookieException, InterruptedException;
     void forceLedger(long ledgerId, WriteCallback cb, Object ctx);
     void setExplicitLac(ByteBuf entry, WriteCallback writeCallback, Object ctx, byte[] masterKey)
             throws IOException, InterruptedException, BookieException;
@@ -54,6 +56,10 @@ public interface Bookie {
     long getTotalDiskSpace() throws IOException;
     long getTotalFreeSpace() throws IOException;
 
+    // load reported to the clients, for the placement of new ledgers
+    int getJournalQueueLength();
+    boolean isDiskDegraded();
+
     // TODO: Shouldn't this be async?
     ByteBuf readEntry(long ledgerId, long entryId)
             throws IOException, NoLedgerException, BookieException;
@@ -33,6 +33,7 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
@@ -50,6 +51,9 @@ import java.util.Optional;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
@@ -316,6 +320,32 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
         return getLedgerDirsManager().getTotalFreeSpace(ledgerDirsManager.getAllLedgerDirs());
     }
 
+    @Override
+    public int getJournalQueueLength() {
+        int journalQueueLength = 0;
+        for (Journal journal : journals) {
+            journalQueueLength += journal.getJournalQueueLength();
+        }
+        return journalQueueLength;
+    }
+
+    /**
+     * A disk is degraded when a ledger directory is full, or used above the warn threshold.
+     */
+    @Override
+    public boolean isDiskDegraded() {
+        if (!ledgerDirsManager.getFullFilledLedgerDirs().isEmpty()) {
+            return true;
+        }
+        float warnThreshold = conf.getDiskUsageWarnThreshold();
+        for (Float diskUsage : ledgerDirsManager.getDiskUsages().values()) {
+            if (diskUsage >= warnThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static File getCurrentDirectory(File dir) {
         return new File(dir, BookKeeperConstants.CURRENT_DIR);
     }
@@ -595,13 +625,51 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
             }
         };
 
-        for (Journal journal : journals) {
-            replay(journal, scanner);
+        if (conf.getJournalParallelReplay() && journals.size() > 1) {
+            replayInParallel(scanner);
+        } else {
+            for (Journal journal : journals) {
+                replay(journal, scanner);
+            }
         }
         long elapsedTs = System.currentTimeMillis() - startTs;
         LOG.info("Finished replaying journal in {} ms.", elapsedTs);
     }
 
+    /**
+     * Replay all the journals concurrently, using one thread per journal directory.
+     *
+     * <p>All the entries of a ledger are written to the same journal, so the order of the
+     * entries within a ledger is preserved. The replayed entries are added concurrently to
+     * the ledger storage, which dispatches them to the ledger directory owning each ledger.
+     */
+    private void replayInParallel(JournalScanner scanner) throws IOException {
+        ExecutorService replayExecutor = Executors.newFixedThreadPool(journals.size(),
+                new DefaultThreadFactory("BookieJournalReplay"));
+        try {
+            List<Future<?>> replays = new ArrayList<>(journals.size());
+            for (Journal journal : journals) {
+                replays.add(replayExecutor.submit(() -> {
+                    replay(journal, scanner);
+                    return null;
+                }));
+            }
+            for (Future<?> replay : replays) {
+                replay.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying journals", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new IOException("Failed to replay journals", ee.getCause());
+        } finally {
+            replayExecutor.shutdownNow();
+        }
+    }
+
     /**
      * Replay journal files and updates journal's in-memory lastLogMark object.
      *
@@ -622,6 +690,7 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
             }
         }
 
+        JournalReplayIndex replayIndex = journal.loadReplayIndex();
         // TODO: When reading in the journal logs that need to be synced, we
         // should use BufferedChannels instead to minimize the amount of
         // system calls done.
@@ -631,12 +700,16 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
                 logPosition = markedLog.getLogFileOffset();
             }
             LOG.info("Replaying journal {} from position {}", id, logPosition);
-            long scanOffset = journal.scanJournal(id, logPosition, scanner);
+            long scanOffset = journal.scanJournal(id, logPosition, scanner, replayIndex);
             // Update LastLogMark after completely replaying journal
             // scanOffset will point to EOF position
             // After LedgerStorage flush, SyncThread should persist this to disk
             journal.setLastLogMark(id, scanOffset);
         }
+        if (replayIndex != null) {
+            LOG.info("Skipped {} entries already persisted in ledger storage while replaying journal {}",
+                    replayIndex.getSkippedEntries(), journal.getJournalDirectory());
+        }
     }
 
     @Override
@@ -651,21 +724,31 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
         dirsMonitor.start();
 
         // replay journals
+        long startNanos = MathUtils.nowInNano();
         try {
             readJournal();
+            bookieStats.getStartupJournalReplayStats().registerSuccessfulEvent(
+                    MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
         } catch (IOException | BookieException ioe) {
+            bookieStats.getStartupJournalReplayStats().registerFailedEvent(
+                    MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
             LOG.error("Exception while replaying journals, shutting down", ioe);
             shutdown(ExitCode.BOOKIE_EXCEPTION);
             return;
         }
 
         // Do a fully flush after journal replay
+        startNanos = MathUtils.nowInNano();
         try {
             syncThread.requestFlush().get();
+            bookieStats.getStartupFlushStats().registerSuccessfulEvent(
+                    MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
         } catch (InterruptedException e) {
             LOG.warn("Interrupting the fully flush after replaying journals : ", e);
             Thread.currentThread().interrupt();
         } catch (ExecutionException e) {
+            bookieStats.getStartupFlushStats().registerFailedEvent(
+                    MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
             LOG.error("Error on executing a fully flush after replaying journals.");
             shutdown(ExitCode.BOOKIE_EXCEPTION);
             return;
@@ -674,9 +757,14 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
         if (conf.isLocalConsistencyCheckOnStartup()) {
             LOG.info("Running local consistency check on startup prior to accepting IO.");
             List<LedgerStorage.DetectedInconsistency> errors = null;
+            startNanos = MathUtils.nowInNano();
             try {
                 errors = ledgerStorage.localConsistencyCheck(Optional.empty());
+                bookieStats.getStartupConsistencyCheckStats().registerSuccessfulEvent(
+                        MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
             } catch (IOException e) {
+                bookieStats.getStartupConsistencyCheckStats().registerFailedEvent(
+                        MathUtils.elapsedNanos(startNanos), TimeUnit.NANOSECONDS);
                 LOG.error("Got a fatal exception while checking store", e);
                 shutdown(ExitCode.BOOKIE_EXCEPTION);
                 return;
@@ -923,8 +1011,8 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
     /**
      * Add an entry to a ledger as specified by handle.
      */
-    private void addEntryInternal(LedgerDescriptor handle, ByteBuf entry,
-                                  boolean ackBeforeSync, WriteCallback cb, Object ctx, byte[] masterKey)
+    private void addEntryInternal(LedgerDescriptor handle, ByteBuf entry, boolean ackBeforeSync,
+                                  boolean highPriority, WriteCallback cb, Object ctx, byte[] masterKey)
             throws IOException, BookieException, InterruptedException {
         long ledgerId = handle.getLedgerId();
         long entryId = handle.addEntry(entry);
@@ -933,14 +1021,16 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
 
         // journal `addEntry` should happen after the entry is added to ledger storage.
         // otherwise the journal entry can potentially be rolled before the ledger is created in ledger storage.
-        if (masterKeyCache.get(ledgerId) == null) {
+        if (masterKeyCache.get(ledgerId) == null || highPriority) {
             // Force the load into masterKey cache
             byte[] oldValue = masterKeyCache.putIfAbsent(ledgerId, masterKey);
-            if (oldValue == null) {
-                ByteBuf masterKeyEntry = createMasterKeyEntry(ledgerId, masterKey);
+            // A high priority entry can be written to the journal before a master key entry
+            // still waiting in the journal queue, so it is always preceded by its own.
+            if (oldValue == null || highPriority) {
+                ByteBuf masterKeyEntry = createMasterKeyEntry(ledgerId, oldValue == null ? masterKey : oldValue);
                 try {
                     getJournal(ledgerId).logAddEntry(
-                            masterKeyEntry, false /* ackBeforeSync */, new NopWriteCallback(), null);
+                            masterKeyEntry, false /* ackBeforeSync */, highPriority, new NopWriteCallback(), null);
                 } finally {
                     ReferenceCountUtil.release(masterKeyEntry);
                 }
@@ -958,7 +1048,7 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
         if (LOG.isTraceEnabled()) {
             LOG.trace("Adding {}@{}", entryId, ledgerId);
         }
-        getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, cb, ctx);
+        getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, highPriority, cb, ctx);
     }
 
     /**
@@ -969,6 +1059,17 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
      */
     public void recoveryAddEntry(ByteBuf entry, WriteCallback cb, Object ctx, byte[] masterKey)
             throws IOException, BookieException, InterruptedException {
+        recoveryAddEntry(entry, false, cb, ctx, masterKey);
+    }
+
+    /**
+     * Add entry to a ledger, even if the ledger has previous been fenced. A high priority
+     * entry, added by a ledger recovery, is written to the journal ahead of the entries
+     * waiting in the journal queue.
+     */
+    public void recoveryAddEntry(ByteBuf entry, boolean highPriority, WriteCallback cb, Object ctx,
+                                 byte[] masterKey)
+            throws IOException, BookieException, InterruptedException {
         long requestNanos = MathUtils.nowInNano();
         boolean success = false;
         int entrySize = 0;
@@ -976,7 +1077,7 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
             LedgerDescriptor handle = getLedgerForEntry(entry, masterKey);
             synchronized (handle) {
                 entrySize = entry.readableBytes();
-                addEntryInternal(handle, entry, false /* ackBeforeSync */, cb, ctx, masterKey);
+                addEntryInternal(handle, entry, false /* ackBeforeSync */, highPriority, cb, ctx, masterKey);
             }
             success = true;
         } catch (NoWritableLedgerDirException e) {
@@ -1070,7 +1171,7 @@ public class BookieImpl extends BookieCriticalThread implements Bookie {
                             .create(BookieException.Code.LedgerFencedException);
                 }
                 entrySize = entry.readableBytes();
-                addEntryInternal(handle, entry, ackBeforeSync, cb, ctx, masterKey);
+                addEntryInternal(handle, entry, ackBeforeSync, false, cb, ctx, masterKey);
             }
             success = true;
         } catch (NoWritableLedgerDirException e) {
@@ -18,6 +18,7 @@
 package org.apache.bookkeeper.bookie;
 
 import java.io.IOException;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 
 /**
  * Interface to communicate checkpoint progress.
@@ -91,6 +92,18 @@ public interface CheckpointSource {
      */
     void checkpointComplete(Checkpoint checkpoint, boolean compact) throws IOException;
 
+    /**
+     * Tell checkpoint source that the ledger storage has persisted the given entries. All the
+     * entries of the given ledgers that were added before <code>checkpoint</code> are persisted,
+     * even though the checkpoint might not be completed yet.
+     *
+     * @param checkpoint
+     *          The checkpoint taken before the entries were flushed
+     * @param lastFlushedEntries
+     *          Map of ledger id to the highest entry id flushed for that ledger
+     */
+    default void entriesFlushed(Checkpoint checkpoint, ConcurrentLongLongHashMap lastFlushedEntries) {}
+
     CheckpointSource DEFAULT = new CheckpointSource() {
             @Override
             public Checkpoint newCheckpoint() {
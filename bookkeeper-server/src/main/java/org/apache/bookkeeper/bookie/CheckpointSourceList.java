@@ -24,9 +24,14 @@ import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.util.List;
+import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 
 /**
  * A {@code CheckpointSourceList} manages a list of {@link CheckpointSource}s.
+ *
+ * <p>The sources are the journals of the bookie, in the order used to dispatch the ledgers:
+ * the entries of a ledger are written to the source at index {@code ledgerId mod size}.
  */
 public class CheckpointSourceList implements CheckpointSource {
 
@@ -54,6 +59,18 @@ public class CheckpointSourceList implements CheckpointSource {
         checkpointList.checkpointComplete(compact);
     }
 
+    @Override
+    public void entriesFlushed(Checkpoint checkpoint, ConcurrentLongLongHashMap lastFlushedEntries) {
+        if (!(checkpoint instanceof CheckpointList)) {
+            return;
+        }
+
+        CheckpointList checkpointList = (CheckpointList) checkpoint;
+        if (checkpointList.source == this) {
+            checkpointList.entriesFlushed(lastFlushedEntries);
+        }
+    }
+
     private static class CheckpointList implements Checkpoint {
         private final CheckpointSourceList source;
         private final List<Checkpoint> checkpoints;
@@ -72,6 +89,27 @@ public class CheckpointSourceList implements CheckpointSource {
             }
         }
 
+        private void entriesFlushed(ConcurrentLongLongHashMap lastFlushedEntries) {
+            int numSources = source.checkpointSourcesList.size();
+            if (numSources == 1) {
+                source.checkpointSourcesList.get(0).entriesFlushed(checkpoints.get(0), lastFlushedEntries);
+                return;
+            }
+
+            // Each source only records the ledgers it holds the entries of
+            List<ConcurrentLongLongHashMap> ownedEntries = Lists.newArrayListWithCapacity(numSources);
+            for (int i = 0; i < numSources; i++) {
+                ownedEntries.add(ConcurrentLongLongHashMap.newBuilder().concurrencyLevel(1).build());
+            }
+            lastFlushedEntries.forEach((ledgerId, entryId) ->
+                    ownedEntries.get(MathUtils.signSafeMod(ledgerId, numSources)).put(ledgerId, entryId));
+            for (int i = 0; i < numSources; i++) {
+                if (!ownedEntries.get(i).isEmpty()) {
+                    source.checkpointSourcesList.get(i).entriesFlushed(checkpoints.get(i), ownedEntries.get(i));
+                }
+            }
+        }
+
         @Override
         public int hashCode() {
             return Objects.hashCode(source, checkpoints);
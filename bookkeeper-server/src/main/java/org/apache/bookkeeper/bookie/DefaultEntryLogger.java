@@ -322,6 +322,7 @@ public class DefaultEntryLogger implements EntryLogger {
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
         entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
+        this.mappedEntryLogs = conf.isEntryLogMmapReadEnabled() ? new MappedEntryLogs(this::findFile) : null;
         if (listener != null) {
             addListener(listener);
         }
@@ -419,6 +420,12 @@ public class DefaultEntryLogger implements EntryLogger {
      */
     private final ConcurrentMap<Long, FileChannel> logid2FileChannel = new ConcurrentHashMap<Long, FileChannel>();
 
+    /**
+     * Memory mappings of the sealed entry logs, used to read entries without copying them when
+     * entryLogMmapReadEnabled is set. Null if disabled.
+     */
+    private final MappedEntryLogs mappedEntryLogs;
+
     /**
      * Put the logId, bc pair in the map responsible for the current thread.
      * @param logId
@@ -529,6 +536,11 @@ public class DefaultEntryLogger implements EntryLogger {
         if (!entryLogFile.delete()) {
             LOG.warn("Could not delete entry log file {}", entryLogFile);
         }
+        if (mappedEntryLogs != null) {
+            // Drop the mapping once the file is gone, so that a concurrent read cannot map it again.
+            // The file is unmapped when the last entry read from it is released.
+            mappedEntryLogs.remove(entryLogId);
+        }
         return true;
     }
 
@@ -825,6 +837,12 @@ public class DefaultEntryLogger implements EntryLogger {
         long entryLogId = logIdForOffset(location);
         long pos = posForOffset(location);
 
+        if (mappedEntryLogs != null && recentlyCreatedEntryLogsStatus.isFlushedLogId(entryLogId)) {
+            ByteBuf data = readMappedEntry(ledgerId, entryId, entryLogId, pos, validateEntry);
+            if (data != null) {
+                return data;
+            }
+        }
 
         BufferedReadChannel fc = null;
         int entrySize = -1;
@@ -854,6 +872,50 @@ public class DefaultEntryLogger implements EntryLogger {
         return data;
     }
 
+    /**
+     * Read an entry from the memory mapping of a sealed entry log. The returned buffer is a slice
+     * of the mapping, which keeps the mapping alive until it is released.
+     *
+     * @return the entry, or null if the entry log cannot be mapped
+     */
+    private ByteBuf readMappedEntry(long ledgerId, long entryId, long entryLogId, long pos, boolean validateEntry)
+            throws IOException {
+        ByteBuf mapping;
+        try {
+            mapping = mappedEntryLogs.acquire(entryLogId);
+        } catch (FileNotFoundException e) {
+            throw new IOException("Bad entry read from log file id: " + entryLogId,
+                    new EntryLookupException.MissingLogFileException(ledgerId, entryId, entryLogId, pos));
+        }
+        if (mapping == null) {
+            return null;
+        }
+
+        try {
+            long entrySizePos = pos - 4;
+            if (entrySizePos < 0 || pos + MIN_SANE_ENTRY_SIZE > mapping.capacity()) {
+                throw new IOException("Bad entry read from log file id: " + entryLogId,
+                        new EntryLookupException.MissingEntryException(ledgerId, entryId, entryLogId, entrySizePos));
+            }
+            if (validateEntry) {
+                validateEntry(ledgerId, entryId, entryLogId, pos,
+                        mapping.slice((int) entrySizePos, 4 + MIN_SANE_ENTRY_SIZE));
+            }
+            int entrySize = mapping.getInt((int) entrySizePos);
+            if (entrySize < 0 || pos + entrySize > mapping.capacity()) {
+                throw new IOException("Bad entry read from log file id: " + entryLogId,
+                        new EntryLookupException("Short read for " + ledgerId + "@"
+                                + entryId + " in " + entryLogId + "@"
+                                + pos + "(" + (mapping.capacity() - pos) + "!=" + entrySize + ")"));
+            }
+            return mapping.retainedSlice((int) pos, entrySize);
+        } catch (EntryLookupException e) {
+            throw new IOException("Bad entry read from log file id: " + entryLogId, e);
+        } finally {
+            mapping.release();
+        }
+    }
+
     /**
      * Read the header of an entry log.
      */
@@ -1171,6 +1233,9 @@ public class DefaultEntryLogger implements EntryLogger {
             }
             // clear the mapping, so we don't need to go through the channels again in finally block in normal case.
             logid2FileChannel.clear();
+            if (mappedEntryLogs != null) {
+                mappedEntryLogs.close();
+            }
             entryLogManager.close();
             synchronized (compactionLogLock) {
                 if (compactionLogChannel != null) {
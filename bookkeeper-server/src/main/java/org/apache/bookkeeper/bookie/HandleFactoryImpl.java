@@ -23,18 +23,18 @@ package org.apache.bookkeeper.bookie;
 
 import java.io.IOException;
 import org.apache.bookkeeper.bookie.LedgerStorage.LedgerDeletionListener;
-import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.LockFreeLongHashMap;
 
 class HandleFactoryImpl implements HandleFactory, LedgerDeletionListener {
-    private final ConcurrentLongHashMap<LedgerDescriptor> ledgers;
-    private final ConcurrentLongHashMap<LedgerDescriptor> readOnlyLedgers;
+    private final LockFreeLongHashMap<LedgerDescriptor> ledgers;
+    private final LockFreeLongHashMap<LedgerDescriptor> readOnlyLedgers;
 
     final LedgerStorage ledgerStorage;
 
     HandleFactoryImpl(LedgerStorage ledgerStorage) {
         this.ledgerStorage = ledgerStorage;
-        this.ledgers = ConcurrentLongHashMap.<LedgerDescriptor>newBuilder().build();
-        this.readOnlyLedgers = ConcurrentLongHashMap.<LedgerDescriptor>newBuilder().build();
+        this.ledgers = LockFreeLongHashMap.<LedgerDescriptor>newBuilder().build();
+        this.readOnlyLedgers = LockFreeLongHashMap.<LedgerDescriptor>newBuilder().build();
 
         ledgerStorage.registerLedgerDeletionListener(this);
     }
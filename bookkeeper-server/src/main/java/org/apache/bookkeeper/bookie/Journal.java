@@ -41,6 +41,8 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.bookie.stats.JournalStats;
@@ -60,6 +62,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.ThreadRegistry;
 import org.apache.bookkeeper.util.IOUtils;
 import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -360,6 +363,9 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         }
     }
 
+    // queued to wake up the journal thread when a high priority entry is added, never written
+    private static final QueueEntry WAKEUP_ENTRY = new QueueEntry(null);
+
     /**
      * Token which represents the need to force a write to the Journal.
      */
@@ -612,6 +618,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     private final long journalPageCacheFlushIntervalMSec;
     // Whether reuse journal files, it will use maxBackupJournal as the journal file pool.
     private final boolean journalReuseFiles;
+    // Whether to keep a replay index of the entries already flushed by the ledger storage
+    private final boolean journalReplayIndexEnabled;
 
     // Should data be fsynced on disk before triggering the callback
     private final boolean syncData;
@@ -628,6 +636,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
     // journal entry queue to commit
     final BatchedBlockingQueue<QueueEntry> queue;
+    // entries written ahead of the entries waiting in the queue, e.g. for ledger recovery
+    final Queue<QueueEntry> highPriorityQueue = new ConcurrentLinkedQueue<>();
     final BatchedBlockingQueue<ForceWriteRequest> forceWriteRequests;
 
     volatile boolean running = true;
@@ -682,6 +692,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         this.journalAlignmentSize = conf.getJournalAlignmentSize();
         this.journalPageCacheFlushIntervalMSec = conf.getJournalPageCacheFlushIntervalMSec();
         this.journalReuseFiles = conf.getJournalReuseFiles();
+        this.journalReplayIndexEnabled = conf.getJournalReplayIndexEnabled();
         this.callbackTime = journalStatsLogger.getThreadScopedCounter("callback-time");
 
         this.journalTime = journalStatsLogger.getThreadScopedCounter("journal-thread-time");
@@ -785,9 +796,43 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     }
                 }
             }
+            if (journalReplayIndexEnabled) {
+                // replay index files before the marked journal are never used again
+                JournalReplayIndex.deleteIndexFilesBefore(journalDirectory, mark.getCurMark().getLogFileId());
+            }
         }
     }
 
+    /**
+     * Record in the replay index that the ledger storage persisted the given entries.
+     */
+    @Override
+    public void entriesFlushed(Checkpoint checkpoint, ConcurrentLongLongHashMap lastFlushedEntries) {
+        if (!journalReplayIndexEnabled || !(checkpoint instanceof LogMarkCheckpoint)) {
+            return;
+        }
+        LogMark mark = ((LogMarkCheckpoint) checkpoint).mark.getCurMark();
+        synchronized (this) {
+            try {
+                JournalReplayIndex.append(journalDirectory, mark, lastFlushedEntries);
+            } catch (IOException e) {
+                LOG.warn("Failed to update journal replay index at {}", mark, e);
+            }
+        }
+    }
+
+    /**
+     * Load the replay index for the journals to replay from the last log mark.
+     *
+     * @return the replay index, or null if the replay index is disabled
+     */
+    JournalReplayIndex loadReplayIndex() {
+        if (!journalReplayIndexEnabled) {
+            return null;
+        }
+        return JournalReplayIndex.load(journalDirectory, lastLogMark.getCurMark().getLogFileId());
+    }
+
     /**
      * Scan the journal.
      *
@@ -798,6 +843,21 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
      * @throws IOException
      */
     public long scanJournal(long journalId, long journalPos, JournalScanner scanner)
+        throws IOException {
+        return scanJournal(journalId, journalPos, scanner, null);
+    }
+
+    /**
+     * Scan the journal, skipping the entries that the replay index reports as persisted.
+     *
+     * @param journalId Journal Log Id
+     * @param journalPos Offset to start scanning
+     * @param scanner Scanner to handle entries
+     * @param replayIndex Replay index of the persisted entries, or null to scan all entries
+     * @return scanOffset - represents the byte till which journal was read
+     * @throws IOException
+     */
+    long scanJournal(long journalId, long journalPos, JournalScanner scanner, JournalReplayIndex replayIndex)
         throws IOException {
         JournalChannel recLog;
         if (journalPos <= 0) {
@@ -849,8 +909,25 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 if (recBuff.remaining() < len) {
                     recBuff = ByteBuffer.allocate(len);
                 }
+                if (replayIndex != null && !isPaddingRecord && len >= 16) {
+                    // peek ledger id and entry id to skip the entries already persisted
+                    recBuff.limit(16);
+                    if (fullRead(recLog, recBuff) != 16) {
+                        break;
+                    }
+                    long ledgerId = recBuff.getLong(0);
+                    long entryId = recBuff.getLong(8);
+                    if (replayIndex.isPersisted(journalId, offset, ledgerId, entryId)) {
+                        long nextOffset = recLog.fc.position() + len - 16;
+                        if (nextOffset > recLog.fc.size()) {
+                            break;
+                        }
+                        recLog.fc.position(nextOffset);
+                        continue;
+                    }
+                }
                 recBuff.limit(len);
-                if (fullRead(recLog, recBuff) != len) {
+                if (recBuff.position() + fullRead(recLog, recBuff) != len) {
                     // This seems scary, but it just means that this is where we
                     // left off writing
                     break;
@@ -871,15 +948,31 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
      */
     public void logAddEntry(ByteBuf entry, boolean ackBeforeSync, WriteCallback cb, Object ctx)
             throws InterruptedException {
+        logAddEntry(entry, ackBeforeSync, false, cb, ctx);
+    }
+
+    /**
+     * record an add entry operation in journal.
+     *
+     * <p>A high priority entry is written ahead of the entries waiting in the journal queue.
+     */
+    public void logAddEntry(ByteBuf entry, boolean ackBeforeSync, boolean highPriority, WriteCallback cb, Object ctx)
+            throws InterruptedException {
         long ledgerId = entry.getLong(entry.readerIndex() + 0);
         long entryId = entry.getLong(entry.readerIndex() + 8);
-        logAddEntry(ledgerId, entryId, entry, ackBeforeSync, cb, ctx);
+        logAddEntry(ledgerId, entryId, entry, ackBeforeSync, highPriority, cb, ctx);
     }
 
     @VisibleForTesting
     public void logAddEntry(long ledgerId, long entryId, ByteBuf entry,
                             boolean ackBeforeSync, WriteCallback cb, Object ctx)
             throws InterruptedException {
+        logAddEntry(ledgerId, entryId, entry, ackBeforeSync, false, cb, ctx);
+    }
+
+    private void logAddEntry(long ledgerId, long entryId, ByteBuf entry,
+                             boolean ackBeforeSync, boolean highPriority, WriteCallback cb, Object ctx)
+            throws InterruptedException {
         // Retain entry until it gets written to journal
         entry.retain();
 
@@ -887,10 +980,18 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
         memoryLimitController.reserveMemory(entry.readableBytes());
 
-        queue.put(QueueEntry.create(
+        QueueEntry qe = QueueEntry.create(
                 entry, ackBeforeSync, ledgerId, entryId, cb, ctx, MathUtils.nowInNano(),
                 journalStats.getJournalAddEntryStats(),
-                callbackTime));
+                callbackTime);
+        if (highPriority) {
+            highPriorityQueue.add(qe);
+            // wake up the journal thread if it is waiting for the queue. If the queue is full,
+            // the journal thread is not waiting for it.
+            queue.offer(WAKEUP_ENTRY);
+        } else {
+            queue.put(qe);
+        }
     }
 
     void forceLedger(long ledgerId, WriteCallback cb, Object ctx) {
@@ -909,7 +1010,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
      * @return length of journal entry queue.
      */
     public int getJournalQueueLength() {
-        return queue.size();
+        return queue.size() + highPriorityQueue.size();
     }
 
     /**
@@ -1002,17 +1103,19 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     // At this point the local queue will always be empty, otherwise we would have
                     // advanced to the next `qe` at the end of the loop
                     localQueueEntriesIdx = 0;
-                    if (numEntriesToFlush == 0) {
+                    localQueueEntriesLen = 0;
+                    if (numEntriesToFlush == 0 && highPriorityQueue.isEmpty()) {
                         // There are no entries pending. We can wait indefinitely until the next
                         // one is available
                         localQueueEntriesLen = queue.takeAll(localQueueEntries);
                     } else {
                         // There are already some entries pending. We must adjust
-                        // the waiting time to the remaining groupWait time
-                        long pollWaitTimeNanos = maxGroupWaitInNanos
-                                - MathUtils.elapsedNanos(toFlush.get(0).enqueueTime);
-                        if (flushWhenQueueEmpty || pollWaitTimeNanos < 0) {
-                            pollWaitTimeNanos = 0;
+                        // the waiting time to the remaining groupWait time, and not wait
+                        // at all if there are high priority entries to write
+                        long pollWaitTimeNanos = 0;
+                        if (numEntriesToFlush > 0 && !flushWhenQueueEmpty && highPriorityQueue.isEmpty()) {
+                            pollWaitTimeNanos = Math.max(0, maxGroupWaitInNanos
+                                    - MathUtils.elapsedNanos(toFlush.get(0).enqueueTime));
                         }
 
                         localQueueEntriesLen = queue.pollAll(localQueueEntries,
@@ -1021,9 +1124,15 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
                     dequeueStartTime = MathUtils.nowInNano();
 
-                    if (localQueueEntriesLen > 0) {
+                    qe = highPriorityQueue.poll();
+                    while (qe == null && localQueueEntriesIdx < localQueueEntriesLen) {
                         qe = localQueueEntries[localQueueEntriesIdx];
                         localQueueEntries[localQueueEntriesIdx++] = null;
+                        if (qe == WAKEUP_ENTRY) {
+                            qe = null;
+                        }
+                    }
+                    if (qe != null) {
                         journalStats.getJournalQueueSize().dec();
                         journalStats.getJournalQueueStats()
                                 .registerSuccessfulEvent(MathUtils.elapsedNanos(qe.enqueueTime), TimeUnit.NANOSECONDS);
@@ -1184,11 +1293,13 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 toFlush.add(qe);
                 numEntriesToFlush++;
 
-                if (localQueueEntriesIdx < localQueueEntriesLen) {
+                qe = highPriorityQueue.poll();
+                while (qe == null && localQueueEntriesIdx < localQueueEntriesLen) {
                     qe = localQueueEntries[localQueueEntriesIdx];
                     localQueueEntries[localQueueEntriesIdx++] = null;
-                } else {
-                    qe = null;
+                    if (qe == WAKEUP_ENTRY) {
+                        qe = null;
+                    }
                 }
             }
         } catch (IOException ioe) {
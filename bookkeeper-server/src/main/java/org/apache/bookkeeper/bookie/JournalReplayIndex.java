@@ -0,0 +1,250 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replay index kept next to the journal files.
+ *
+ * <p>Every time the ledger storage flushes entries after the last log mark, a record is appended
+ * to the index file of the journal file holding the flush checkpoint. The record contains the
+ * checkpoint position and the highest entry id flushed for each ledger. All the journal records
+ * of those ledgers located before the checkpoint position are persisted in the ledger storage,
+ * so they don't need to be added again when the journal is replayed.
+ *
+ * <p>Record layout: magic (int), checkpoint log id (long), checkpoint offset (long),
+ * number of ledgers (int), (ledger id, entry id) pairs (long, long), crc32 (int). A torn or
+ * corrupted record ends the parsing of the index file, which only means that fewer entries are
+ * skipped on replay.
+ */
+class JournalReplayIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalReplayIndex.class);
+
+    static final String INDEX_FILE_SUFFIX = ".txn.idx";
+
+    private static final int RECORD_MAGIC = 0x4A524958;
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 4;
+    private static final int RECORD_CHECKSUM_SIZE = 4;
+
+    /**
+     * Journal position up to which the entries of a ledger are persisted.
+     */
+    private static class PersistedRange {
+        long logId;
+        long offset;
+        long lastEntryId;
+
+        PersistedRange(long logId, long offset, long lastEntryId) {
+            this.logId = logId;
+            this.offset = offset;
+            this.lastEntryId = lastEntryId;
+        }
+
+        boolean covers(long logId, long offset, long entryId) {
+            if (entryId > lastEntryId) {
+                return false;
+            }
+            return logId < this.logId || (logId == this.logId && offset < this.offset);
+        }
+
+        void merge(long logId, long offset, long lastEntryId) {
+            if (logId > this.logId || (logId == this.logId && offset > this.offset)) {
+                this.logId = logId;
+                this.offset = offset;
+            }
+            this.lastEntryId = Math.max(this.lastEntryId, lastEntryId);
+        }
+    }
+
+    private final Map<Long, PersistedRange> persistedRanges = new HashMap<>();
+    private long skippedEntries = 0;
+
+    private JournalReplayIndex() {
+    }
+
+    static File getIndexFile(File journalDirectory, long logId) {
+        return new File(journalDirectory, Long.toHexString(logId) + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Append a record for a ledger storage flush to the index file of the checkpoint journal file.
+     *
+     * @param journalDirectory journal directory
+     * @param checkpoint journal position captured before the entries were flushed
+     * @param lastFlushedEntries map of ledger id to the highest entry id flushed for that ledger
+     */
+    static void append(File journalDirectory, LogMark checkpoint, ConcurrentLongLongHashMap lastFlushedEntries)
+            throws IOException {
+        long count = lastFlushedEntries.size();
+        if (count == 0) {
+            return;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(
+                (int) (RECORD_HEADER_SIZE + count * 16 + RECORD_CHECKSUM_SIZE));
+        record.putInt(RECORD_MAGIC);
+        record.putLong(checkpoint.getLogFileId());
+        record.putLong(checkpoint.getLogFileOffset());
+        record.putInt((int) count);
+        lastFlushedEntries.forEach((ledgerId, entryId) -> {
+            record.putLong(ledgerId);
+            record.putLong(entryId);
+        });
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+
+        try (FileOutputStream fos = new FileOutputStream(
+                getIndexFile(journalDirectory, checkpoint.getLogFileId()), true)) {
+            fos.write(record.array(), 0, record.position());
+        }
+    }
+
+    /**
+     * Load the index files of the journal files starting from the given log id.
+     *
+     * @param journalDirectory journal directory
+     * @param fromLogId id of the first journal file to be replayed
+     * @return the replay index
+     */
+    static JournalReplayIndex load(File journalDirectory, long fromLogId) {
+        JournalReplayIndex index = new JournalReplayIndex();
+        File[] indexFiles = journalDirectory.listFiles((dir, name) -> name.endsWith(INDEX_FILE_SUFFIX));
+        if (indexFiles == null) {
+            return index;
+        }
+
+        for (File indexFile : indexFiles) {
+            String name = indexFile.getName();
+            long logId;
+            try {
+                logId = Long.parseLong(name.substring(0, name.length() - INDEX_FILE_SUFFIX.length()), 16);
+            } catch (NumberFormatException nfe) {
+                LOG.warn("Ignoring unrecognized journal replay index file {}", indexFile);
+                continue;
+            }
+            if (logId < fromLogId) {
+                continue;
+            }
+
+            try {
+                index.loadFile(ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath())));
+            } catch (IOException ioe) {
+                LOG.warn("Failed to read journal replay index file {}", indexFile, ioe);
+            }
+        }
+
+        LOG.info("Loaded journal replay index of {} with {} ledgers", journalDirectory, index.persistedRanges.size());
+        return index;
+    }
+
+    private void loadFile(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE + RECORD_CHECKSUM_SIZE) {
+            int recordStart = buffer.position();
+            if (buffer.getInt() != RECORD_MAGIC) {
+                return;
+            }
+            long logId = buffer.getLong();
+            long offset = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() < count * 16L + RECORD_CHECKSUM_SIZE) {
+                return;
+            }
+
+            int recordLength = RECORD_HEADER_SIZE + count * 16;
+            crc.reset();
+            crc.update(buffer.array(), recordStart, recordLength);
+            int checksum = buffer.getInt(recordStart + recordLength);
+            if (checksum != (int) crc.getValue()) {
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                long ledgerId = buffer.getLong();
+                long entryId = buffer.getLong();
+                PersistedRange range = persistedRanges.get(ledgerId);
+                if (range == null) {
+                    persistedRanges.put(ledgerId, new PersistedRange(logId, offset, entryId));
+                } else {
+                    range.merge(logId, offset, entryId);
+                }
+            }
+            buffer.position(recordStart + recordLength + RECORD_CHECKSUM_SIZE);
+        }
+    }
+
+    /**
+     * Check whether the entry of the journal record at the given position is already persisted
+     * in the ledger storage. Special entries (negative entry ids) are never reported as persisted.
+     */
+    boolean isPersisted(long logId, long offset, long ledgerId, long entryId) {
+        if (entryId < 0) {
+            return false;
+        }
+        PersistedRange range = persistedRanges.get(ledgerId);
+        if (range != null && range.covers(logId, offset, entryId)) {
+            skippedEntries++;
+            return true;
+        }
+        return false;
+    }
+
+    long getSkippedEntries() {
+        return skippedEntries;
+    }
+
+    /**
+     * Delete the index files of the journal files older than the given log id.
+     */
+    static void deleteIndexFilesBefore(File journalDirectory, long logId) {
+        File[] indexFiles = journalDirectory.listFiles((dir, name) -> name.endsWith(INDEX_FILE_SUFFIX));
+        if (indexFiles == null) {
+            return;
+        }
+
+        for (File indexFile : indexFiles) {
+            String name = indexFile.getName();
+            try {
+                long id = Long.parseLong(name.substring(0, name.length() - INDEX_FILE_SUFFIX.length()), 16);
+                if (id < logId && !indexFile.delete()) {
+                    LOG.warn("Could not delete old journal replay index file {}", indexFile);
+                }
+            } catch (NumberFormatException nfe) {
+                // not an index file written by the journal
+            }
+        }
+    }
+}
@@ -339,6 +339,16 @@ public interface LedgerStorage {
         return Collections.emptyList();
     }
 
+    /**
+     * Get the fraction of the write cache holding entries not flushed yet, for the storages
+     * buffering the entries in memory.
+     *
+     * @return the usage of the write cache, between 0 and 1
+     */
+    default double getWriteCacheUsage() {
+        return 0;
+    }
+
     /**
      * Returns the primitive long iterator for entries of the ledger, stored in
      * this LedgerStorage. The returned iterator provide weakly consistent state
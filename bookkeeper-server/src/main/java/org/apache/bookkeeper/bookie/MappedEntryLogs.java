@@ -0,0 +1,175 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.internal.PlatformDependent;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memory mappings of sealed entry logs, used to read entries without copying them out of the
+ * page cache.
+ *
+ * <p>Each mapping is wrapped in a reference counted {@link ByteBuf}. This class holds one
+ * reference, and every entry read from the mapping is a retained slice of it, so the file is
+ * only unmapped once the entry log is removed and all the entries read from it are released.
+ *
+ * <p>The files are opened and mapped read-only, and the buffers handed out are read-only, so
+ * the entry logs can never be modified through a mapping.
+ */
+class MappedEntryLogs {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedEntryLogs.class);
+
+    /**
+     * Interface to locate the file of an entry log.
+     */
+    interface EntryLogFileLocator {
+        File findFile(long logId) throws IOException;
+    }
+
+    /**
+     * ByteBuf over the mapping of an entry log, unmapping the file when released.
+     *
+     * <p>Netty only wraps a read-only mapping into a buffer which does nothing when released, so
+     * the mapping is held as the single component of a composite buffer, which gets notified.
+     */
+    private static class MappedEntryLogBuf extends CompositeByteBuf {
+        private final long logId;
+        private final MappedByteBuffer mapping;
+
+        MappedEntryLogBuf(long logId, MappedByteBuffer mapping) {
+            super(UnpooledByteBufAllocator.DEFAULT, true, 1, Unpooled.wrappedBuffer(mapping));
+            this.logId = logId;
+            this.mapping = mapping;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            try {
+                PlatformDependent.freeDirectBuffer(mapping);
+            } catch (Throwable t) {
+                LOG.warn("Failed to unmap entry log {}", logId, t);
+            }
+        }
+    }
+
+    private final ConcurrentMap<Long, MappedEntryLogBuf> mappings = new ConcurrentHashMap<>();
+    // entry logs that cannot be mapped and are read through the buffered channels
+    private final Set<Long> unmappableLogIds = ConcurrentHashMap.newKeySet();
+    private final EntryLogFileLocator locator;
+
+    MappedEntryLogs(EntryLogFileLocator locator) {
+        this.locator = locator;
+    }
+
+    /**
+     * Get the mapping of an entry log, mapping the file if needed. The returned buffer is
+     * read-only, retained and must be released by the caller.
+     *
+     * @return the mapping, or null if the entry log is too large or cannot be mapped
+     */
+    ByteBuf acquire(long logId) throws IOException {
+        while (true) {
+            MappedEntryLogBuf buf = mappings.get(logId);
+            if (buf == null) {
+                if (unmappableLogIds.contains(logId)) {
+                    return null;
+                }
+                buf = map(logId);
+                if (buf == null) {
+                    return null;
+                }
+            }
+            try {
+                return buf.retain().asReadOnly();
+            } catch (IllegalReferenceCountException e) {
+                // the entry log was removed concurrently
+                mappings.remove(logId, buf);
+            }
+        }
+    }
+
+    private synchronized MappedEntryLogBuf map(long logId) throws IOException {
+        MappedEntryLogBuf buf = mappings.get(logId);
+        if (buf != null) {
+            return buf;
+        }
+
+        File file = locator.findFile(logId);
+        // The channel is opened without CREATE, so that an entry log deleted concurrently is not
+        // created again
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size > Integer.MAX_VALUE) {
+                unmappableLogIds.add(logId);
+                return null;
+            }
+            buf = new MappedEntryLogBuf(logId, fc.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(e.getMessage());
+        } catch (AccessDeniedException e) {
+            LOG.warn("Cannot map entry log {}, falling back to buffered reads: {}", logId, e.getMessage());
+            unmappableLogIds.add(logId);
+            return null;
+        }
+        mappings.put(logId, buf);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Mapped entry log {} ({} bytes)", logId, buf.capacity());
+        }
+        return buf;
+    }
+
+    /**
+     * Drop the mapping of an entry log. The file is unmapped once all the entries read from it
+     * are released.
+     */
+    synchronized void remove(long logId) {
+        unmappableLogIds.remove(logId);
+        MappedEntryLogBuf buf = mappings.remove(logId);
+        if (buf != null) {
+            buf.release();
+        }
+    }
+
+    synchronized void close() {
+        mappings.values().forEach(ByteBuf::release);
+        mappings.clear();
+    }
+}
@@ -28,6 +28,9 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_READ_ENT
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_READ_ENTRY_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_RECOVERY_ADD_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_STARTUP_CONSISTENCY_CHECK;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_STARTUP_FLUSH;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_STARTUP_JOURNAL_REPLAY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_LIST_OF_ENTRIES_OF_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_DIRS;
@@ -88,6 +91,19 @@ public class BookieStats {
     private final OpStatsLogger addBytesStats;
     @StatsDoc(name = BOOKIE_READ_ENTRY_BYTES, help = "bytes stats of ReadEntry on a bookie")
     private final OpStatsLogger readBytesStats;
+    // Bookie Startup Stats
+    @StatsDoc(name = BOOKIE_STARTUP_JOURNAL_REPLAY, help = "time spent replaying the journals on bookie startup")
+    private final OpStatsLogger startupJournalReplayStats;
+    @StatsDoc(
+        name = BOOKIE_STARTUP_FLUSH,
+        help = "time spent flushing the ledger storage after the journal replay on bookie startup"
+    )
+    private final OpStatsLogger startupFlushStats;
+    @StatsDoc(
+        name = BOOKIE_STARTUP_CONSISTENCY_CHECK,
+        help = "time spent on the local consistency check on bookie startup"
+    )
+    private final OpStatsLogger startupConsistencyCheckStats;
     @StatsDoc(name = JOURNAL_DIRS, help = "number of configured journal directories")
     private final Gauge<Integer> journalDirsGauge;
     @StatsDoc(name = JOURNAL_QUEUE_MAX_SIZE, help = "maximum length of a journal queue")
@@ -104,6 +120,9 @@ public class BookieStats {
         getListOfEntriesOfLedgerStats = statsLogger.getOpStatsLogger(BOOKIE_GET_LIST_OF_ENTRIES_OF_LEDGER);
         addBytesStats = statsLogger.getOpStatsLogger(BOOKIE_ADD_ENTRY_BYTES);
         readBytesStats = statsLogger.getOpStatsLogger(BOOKIE_READ_ENTRY_BYTES);
+        startupJournalReplayStats = statsLogger.getOpStatsLogger(BOOKIE_STARTUP_JOURNAL_REPLAY);
+        startupFlushStats = statsLogger.getOpStatsLogger(BOOKIE_STARTUP_FLUSH);
+        startupConsistencyCheckStats = statsLogger.getOpStatsLogger(BOOKIE_STARTUP_CONSISTENCY_CHECK);
         journalDirsGauge = new Gauge<Integer>() {
             @Override
             public Integer getDefaultValue() {
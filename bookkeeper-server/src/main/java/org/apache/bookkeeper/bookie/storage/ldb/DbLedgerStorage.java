@@ -39,10 +39,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
@@ -67,9 +73,11 @@ import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.slogger.slf4j.Slf4jSlogger;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
 import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
 import org.apache.commons.lang3.StringUtils;
 // CHECKSTYLE.ON: IllegalImport
 
@@ -94,6 +102,15 @@ public class DbLedgerStorage implements LedgerStorage {
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
 
+    static final String PARALLEL_DIRECTORIES_INITIALIZATION = "dbStorage_parallelDirectoriesInitialization";
+
+    static final String ENTRY_LOG_COMPRESSION_CODEC = "dbStorage_entryLogCompressionCodec";
+    static final String ENTRY_LOG_COMPRESSION_MIN_ENTRY_SIZE = "dbStorage_entryLogCompressionMinEntrySize";
+
+    static final String LOAD_AWARE_LEDGER_PLACEMENT = "dbStorage_loadAwareLedgerPlacement";
+
+    static final String OFF_HEAP_CACHE_INDEX = "dbStorage_offHeapCacheIndex";
+
     private static final int MB = 1024 * 1024;
 
     private static final long DEFAULT_WRITE_CACHE_MAX_SIZE_MB =
@@ -124,6 +141,13 @@ public class DbLedgerStorage implements LedgerStorage {
     private int numberOfDirs;
     private List<SingleDirectoryDbLedgerStorage> ledgerStorageList;
 
+    // Directory of the ledgers which are not necessarily in the directory picked by the ledger id hash.
+    // With load aware placement, it holds all the ledgers, otherwise only the ledgers placed outside of
+    // their hash directory while it was enabled. The placement is persisted by the ledger metadata index
+    // of the directory holding the ledger.
+    private ConcurrentLongHashMap<SingleDirectoryDbLedgerStorage> ledgerPlacements = null;
+    private boolean loadAwarePlacement = false;
+
     private ExecutorService entryLoggerWriteExecutor = null;
     private ExecutorService entryLoggerFlushExecutor = null;
 
@@ -132,6 +156,7 @@ public class DbLedgerStorage implements LedgerStorage {
     // parent DbLedgerStorage stats (not per directory)
     private static final String MAX_READAHEAD_BATCH_SIZE = "readahead-max-batch-size";
     private static final String MAX_WRITE_CACHE_SIZE = "write-cache-max-size";
+    private static final String INIT_DIRECTORIES_TIME = "init-directories-time";
 
     @StatsDoc(
             name = MAX_READAHEAD_BATCH_SIZE,
@@ -145,6 +170,12 @@ public class DbLedgerStorage implements LedgerStorage {
     )
     private Gauge<Long> writeCacheSizeGauge;
 
+    @StatsDoc(
+            name = INIT_DIRECTORIES_TIME,
+            help = "time spent opening the ledger storage of all the ledger directories on startup"
+    )
+    private OpStatsLogger initDirectoriesTimeStats;
+
     @Override
     public void initialize(ServerConfiguration conf, LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager,
                            LedgerDirsManager indexDirsManager, StatsLogger statsLogger, ByteBufAllocator allocator)
@@ -177,7 +208,13 @@ public class DbLedgerStorage implements LedgerStorage {
         long readAheadCacheBatchBytesSize = conf.getInt(READ_AHEAD_CACHE_BATCH_BYTES_SIZE,
                 DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE);
 
-        ledgerStorageList = Lists.newArrayList();
+        boolean parallelInitialization = getBooleanVariableOrDefault(conf, PARALLEL_DIRECTORIES_INITIALIZATION,
+                false);
+        long initStartNanos = MathUtils.nowInNano();
+        List<Callable<SingleDirectoryDbLedgerStorage>> storageInitializers = new ArrayList<>();
+        List<LedgerDirsManager> singleLedgerDirsManagers = new ArrayList<>();
+        List<LedgerDirsManager> singleIndexDirsManagers = new ArrayList<>();
+        List<EntryLogger> entryLoggers = new ArrayList<>();
         for (int i = 0; i < ledgerDirsManager.getAllLedgerDirs().size(); i++) {
             File ledgerDir = ledgerDirsManager.getAllLedgerDirs().get(i);
             File indexDir = indexDirsManager.getAllLedgerDirs().get(i);
@@ -238,16 +275,40 @@ public class DbLedgerStorage implements LedgerStorage {
             } else {
                 entrylogger = new DefaultEntryLogger(conf, ldm, null, statsLogger, allocator);
             }
-            ledgerStorageList.add(newSingleDirectoryDbLedgerStorage(conf, ledgerManager, ldm,
-                idm, entrylogger,
+            final EntryLogger dirEntryLogger = entrylogger;
+            storageInitializers.add(() -> newSingleDirectoryDbLedgerStorage(conf, ledgerManager, ldm,
+                idm, dirEntryLogger,
                 statsLogger, perDirectoryWriteCacheSize,
                 perDirectoryReadCacheSize,
                 readAheadCacheBatchSize, readAheadCacheBatchBytesSize));
+            singleLedgerDirsManagers.add(ldm);
+            singleIndexDirsManagers.add(idm);
+            entryLoggers.add(entrylogger);
+        }
+
+        // Opening the RocksDB indexes of each directory can take a while after an unclean
+        // shutdown, so optionally do it for all the directories at the same time
+        ledgerStorageList = initializeLedgerStorages(storageInitializers, entryLoggers, parallelInitialization);
+        for (int i = 0; i < numberOfDirs; i++) {
+            LedgerDirsManager ldm = singleLedgerDirsManagers.get(i);
+            LedgerDirsManager idm = singleIndexDirsManagers.get(i);
             ldm.getListeners().forEach(ledgerDirsManager::addLedgerDirsListener);
-            if (!lDirs[0].getPath().equals(iDirs[0].getPath())) {
+            if (!ldm.getAllLedgerDirs().get(0).getPath().equals(idm.getAllLedgerDirs().get(0).getPath())) {
                 idm.getListeners().forEach(indexDirsManager::addLedgerDirsListener);
             }
         }
+        if (numberOfDirs > 1) {
+            // Even when disabled, the ledgers placed while load aware placement was enabled must be found
+            loadAwarePlacement = getBooleanVariableOrDefault(conf, LOAD_AWARE_LEDGER_PLACEMENT, false);
+            ledgerPlacements = loadLedgerPlacements(ledgerStorageList, !loadAwarePlacement);
+            log.info(" - Load aware ledger placement: {}, {} ledgers placed", loadAwarePlacement,
+                    ledgerPlacements.size());
+        }
+        long initTimeNanos = MathUtils.elapsedNanos(initStartNanos);
+        log.info(" - Initialized {} directories in {} ms (parallel: {})", numberOfDirs,
+                TimeUnit.NANOSECONDS.toMillis(initTimeNanos), parallelInitialization);
+        initDirectoriesTimeStats = statsLogger.getOpStatsLogger(INIT_DIRECTORIES_TIME);
+        initDirectoriesTimeStats.registerSuccessfulEvent(initTimeNanos, TimeUnit.NANOSECONDS);
 
         // parent DbLedgerStorage stats (not per directory)
         readaheadBatchSizeGauge = new Gauge<Integer>() {
@@ -277,6 +338,82 @@ public class DbLedgerStorage implements LedgerStorage {
         statsLogger.registerGauge(MAX_WRITE_CACHE_SIZE, writeCacheSizeGauge);
     }
 
+    /**
+     * Create the ledger storage of each directory. If any of them fails, the storages that were
+     * created are shut down and the entry loggers of the other directories are closed, so that no
+     * RocksDB instance or file is left open.
+     */
+    @VisibleForTesting
+    static List<SingleDirectoryDbLedgerStorage> initializeLedgerStorages(
+            List<Callable<SingleDirectoryDbLedgerStorage>> storageInitializers, List<EntryLogger> entryLoggers,
+            boolean parallel) throws IOException {
+        int numberOfDirs = storageInitializers.size();
+        SingleDirectoryDbLedgerStorage[] storages = new SingleDirectoryDbLedgerStorage[numberOfDirs];
+        Throwable failure = null;
+        if (!parallel || numberOfDirs <= 1) {
+            for (int i = 0; i < numberOfDirs && failure == null; i++) {
+                try {
+                    storages[i] = storageInitializers.get(i).call();
+                } catch (Exception e) {
+                    failure = e;
+                }
+            }
+        } else {
+            ExecutorService initExecutor = Executors.newFixedThreadPool(numberOfDirs,
+                    new DefaultThreadFactory("db-storage-init"));
+            List<Future<SingleDirectoryDbLedgerStorage>> futures = new ArrayList<>();
+            for (Callable<SingleDirectoryDbLedgerStorage> initializer : storageInitializers) {
+                futures.add(initExecutor.submit(initializer));
+            }
+            initExecutor.shutdown();
+            // Wait for all the directories, even after a failure, so that the storages that are
+            // being opened can be shut down as well
+            boolean interrupted = false;
+            for (int i = 0; i < numberOfDirs; i++) {
+                while (true) {
+                    try {
+                        storages[i] = futures.get(i).get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        if (failure == null) {
+                            failure = new IOException("Interrupted while initializing ledger directories", e);
+                        }
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                        break;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure == null) {
+            return Lists.newArrayList(storages);
+        }
+        for (int i = 0; i < numberOfDirs; i++) {
+            try {
+                if (storages[i] != null) {
+                    storages[i].shutdown();
+                } else {
+                    entryLoggers.get(i).close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        throw new IOException("Failed to initialize ledger directories", failure);
+    }
+
     @VisibleForTesting
     protected SingleDirectoryDbLedgerStorage newSingleDirectoryDbLedgerStorage(ServerConfiguration conf,
             LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager,
@@ -288,6 +425,25 @@ public class DbLedgerStorage implements LedgerStorage {
                                                   readAheadCacheBatchSize, readAheadCacheBatchBytesSize);
     }
 
+    private static ConcurrentLongHashMap<SingleDirectoryDbLedgerStorage> loadLedgerPlacements(
+            List<SingleDirectoryDbLedgerStorage> ledgerStorageList, boolean onlyMisplaced) throws IOException {
+        ConcurrentLongHashMap<SingleDirectoryDbLedgerStorage> ledgerPlacements =
+                ConcurrentLongHashMap.<SingleDirectoryDbLedgerStorage>newBuilder().build();
+        for (SingleDirectoryDbLedgerStorage ls : ledgerStorageList) {
+            for (long ledgerId : ls.getActiveLedgersInRange(0, Long.MAX_VALUE)) {
+                if (onlyMisplaced
+                        && ledgerStorageList.get(MathUtils.signSafeMod(ledgerId, ledgerStorageList.size())) == ls) {
+                    continue;
+                }
+                if (ledgerPlacements.put(ledgerId, ls) != null) {
+                    log.warn("Ledger {} found in multiple ledger directories", ledgerId);
+                }
+            }
+            ls.registerLedgerDeletionListener(ledgerId -> ledgerPlacements.remove(ledgerId, ls));
+        }
+        return ledgerPlacements;
+    }
+
     @Override
     public void setStateManager(StateManager stateManager) {
         ledgerStorageList.forEach(s -> s.setStateManager(stateManager));
@@ -342,7 +498,7 @@ public class DbLedgerStorage implements LedgerStorage {
 
     @Override
     public void setMasterKey(long ledgerId, byte[] masterKey) throws IOException {
-        getLedgerStorage(ledgerId).setMasterKey(ledgerId, masterKey);
+        getLedgerStorageForWrite(ledgerId).setMasterKey(ledgerId, masterKey);
     }
 
     @Override
@@ -353,7 +509,7 @@ public class DbLedgerStorage implements LedgerStorage {
     @Override
     public long addEntry(ByteBuf entry) throws IOException, BookieException {
         long ledgerId = entry.getLong(entry.readerIndex());
-        return getLedgerStorage(ledgerId).addEntry(entry);
+        return getLedgerStorageForWrite(ledgerId).addEntry(entry);
     }
 
     @Override
@@ -415,7 +571,7 @@ public class DbLedgerStorage implements LedgerStorage {
 
     public long addLedgerToIndex(long ledgerId, boolean isFenced, byte[] masterKey,
                                  LedgerCache.PageEntriesIterable pages) throws Exception {
-        return getLedgerStorage(ledgerId).addLedgerToIndex(ledgerId, isFenced, masterKey, pages);
+        return getLedgerStorageForWrite(ledgerId).addLedgerToIndex(ledgerId, isFenced, masterKey, pages);
     }
 
     public long getLastEntryInLedger(long ledgerId) throws IOException {
@@ -427,6 +583,63 @@ public class DbLedgerStorage implements LedgerStorage {
     }
 
     private SingleDirectoryDbLedgerStorage getLedgerStorage(long ledgerId) {
+        if (ledgerPlacements != null) {
+            SingleDirectoryDbLedgerStorage ls = ledgerPlacements.get(ledgerId);
+            if (ls != null) {
+                return ls;
+            }
+        }
+        return getLedgerStorageByHash(ledgerId);
+    }
+
+    /**
+     * Get the directory storage for an operation that may create the ledger. With load aware
+     * placement, a new ledger is assigned to the less loaded of two candidate directories: the
+     * one picked by the ledger id hash and a random one. Comparing two random choices rather than
+     * all directories avoids sending all the new ledgers to the same directory until its load
+     * statistics catch up.
+     *
+     * <p>The placement of a new ledger in a directory other than the one picked by the hash is
+     * persisted before the operation proceeds, so that the entries acknowledged to the client are
+     * replayed from the journal into the same directory after a crash. The placement is chosen and
+     * persisted outside of the placements map, so that the sync doesn't block the lookups of the
+     * other ledgers.
+     */
+    private SingleDirectoryDbLedgerStorage getLedgerStorageForWrite(long ledgerId) throws IOException {
+        if (!loadAwarePlacement) {
+            return getLedgerStorage(ledgerId);
+        }
+        SingleDirectoryDbLedgerStorage placed = ledgerPlacements.get(ledgerId);
+        if (placed != null) {
+            return placed;
+        }
+
+        SingleDirectoryDbLedgerStorage hashed = getLedgerStorageByHash(ledgerId);
+        SingleDirectoryDbLedgerStorage chosen = placeNewLedger(hashed);
+        if (chosen != hashed) {
+            chosen.persistLedgerPlacement(ledgerId);
+        }
+        placed = ledgerPlacements.putIfAbsent(ledgerId, chosen);
+        if (placed == null) {
+            return chosen;
+        }
+        // Another operation placed the ledger first, drop the placement persisted by this one
+        if (placed != chosen && chosen != hashed) {
+            chosen.removeLedgerPlacement(ledgerId);
+        }
+        return placed;
+    }
+
+    private SingleDirectoryDbLedgerStorage placeNewLedger(SingleDirectoryDbLedgerStorage hashed) {
+        SingleDirectoryDbLedgerStorage other = ledgerStorageList.get(
+                ThreadLocalRandom.current().nextInt(numberOfDirs));
+        if (other != hashed && other.getWritePlacementCost() < hashed.getWritePlacementCost()) {
+            return other;
+        }
+        return hashed;
+    }
+
+    private SingleDirectoryDbLedgerStorage getLedgerStorageByHash(long ledgerId) {
         return ledgerStorageList.get(MathUtils.signSafeMod(ledgerId, numberOfDirs));
     }
 
@@ -482,14 +695,37 @@ public class DbLedgerStorage implements LedgerStorage {
             throw new IOException("ledger and index dirs size not matched");
         }
         int dirIndex = MathUtils.signSafeMod(ledgerId, ledgerDirs.size());
-        String indexBasePath = indexDirs.get(dirIndex).toString();
+        if (indexDirs.size() > 1) {
+            // the ledger might have been placed outside of the directory picked by the ledger id hash,
+            // while load aware placement was enabled
+            for (int i = 0; i < indexDirs.size(); i++) {
+                int candidate = (dirIndex + i) % indexDirs.size();
+                if (readLedgerIndexEntries(ledgerId, serverConf, indexDirs.get(candidate).toString(), processor,
+                        i < indexDirs.size() - 1)) {
+                    return;
+                }
+            }
+            return;
+        }
+        readLedgerIndexEntries(ledgerId, serverConf, indexDirs.get(dirIndex).toString(), processor, false);
+    }
 
+    private static boolean readLedgerIndexEntries(long ledgerId, ServerConfiguration serverConf, String indexBasePath,
+            LedgerLoggerProcessor processor, boolean ignoreMissingLedger) throws IOException {
         EntryLocationIndex entryLocationIndex = new EntryLocationIndex(serverConf,
                 (basePath, subPath, dbConfigType, conf1) ->
                         new KeyValueStorageRocksDB(basePath, subPath, DbConfigType.Default, conf1, true),
                 indexBasePath, NullStatsLogger.INSTANCE);
         try {
-            long lastEntryId = entryLocationIndex.getLastEntryInLedger(ledgerId);
+            long lastEntryId;
+            try {
+                lastEntryId = entryLocationIndex.getLastEntryInLedger(ledgerId);
+            } catch (Bookie.NoEntryException e) {
+                if (ignoreMissingLedger) {
+                    return false;
+                }
+                throw e;
+            }
             for (long currentEntry = 0; currentEntry <= lastEntryId; currentEntry++) {
                 long offset = entryLocationIndex.getLocation(ledgerId, currentEntry);
                 if (offset <= 0) {
@@ -500,6 +736,7 @@ public class DbLedgerStorage implements LedgerStorage {
                 long position = offset & 0xffffffffL;
                 processor.process(currentEntry, entryLogId, position);
             }
+            return true;
         } finally {
             entryLocationIndex.close();
         }
@@ -597,6 +834,13 @@ public class DbLedgerStorage implements LedgerStorage {
             .map(single -> single.getGarbageCollectionStatus().get(0)).collect(Collectors.toList());
     }
 
+    @Override
+    public double getWriteCacheUsage() {
+        // the most loaded directory limits the writes
+        return ledgerStorageList.stream()
+            .mapToDouble(SingleDirectoryDbLedgerStorage::getWriteCacheUsage).max().orElse(0);
+    }
+
     static long getLongVariableOrDefault(ServerConfiguration conf, String keyName, long defaultValue) {
         Object obj = conf.getProperty(keyName);
         if (obj instanceof Number) {
@@ -647,16 +891,16 @@ public class DbLedgerStorage implements LedgerStorage {
 
     @Override
     public EnumSet<StorageState> getStorageStateFlags() throws IOException {
-        return getLedgerStorage(STORAGE_FLAGS_KEY).getStorageStateFlags();
+        return getLedgerStorageByHash(STORAGE_FLAGS_KEY).getStorageStateFlags();
     }
 
     @Override
     public void setStorageStateFlag(StorageState flag) throws IOException {
-        getLedgerStorage(STORAGE_FLAGS_KEY).setStorageStateFlag(flag);
+        getLedgerStorageByHash(STORAGE_FLAGS_KEY).setStorageStateFlag(flag);
     }
 
     @Override
     public void clearStorageStateFlag(StorageState flag) throws IOException {
-        getLedgerStorage(STORAGE_FLAGS_KEY).clearStorageStateFlag(flag);
+        getLedgerStorageByHash(STORAGE_FLAGS_KEY).clearStorageStateFlag(flag);
     }
 }
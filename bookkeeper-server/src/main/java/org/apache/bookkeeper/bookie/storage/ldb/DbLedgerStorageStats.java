@@ -70,6 +70,7 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
     private static final String READ_CACHE_SIZE = "read-cache-size";
     private static final String READ_CACHE_COUNT = "read-cache-count";
+    private static final String CACHE_INDEX_SIZE = "cache-index-size";
 
     @StatsDoc(
         name = ADD_ENTRY,
@@ -195,12 +196,18 @@ class DbLedgerStorageStats {
         help = "Current number of entries in read cache"
     )
     private final Gauge<Long> readCacheCountGauge;
+    @StatsDoc(
+        name = CACHE_INDEX_SIZE,
+        help = "Current number of bytes used by the indexes of the write and read caches"
+    )
+    private final Gauge<Long> cacheIndexSizeGauge;
 
     DbLedgerStorageStats(StatsLogger stats,
                          Supplier<Long> writeCacheSizeSupplier,
                          Supplier<Long> writeCacheCountSupplier,
                          Supplier<Long> readCacheSizeSupplier,
-                         Supplier<Long> readCacheCountSupplier) {
+                         Supplier<Long> readCacheCountSupplier,
+                         Supplier<Long> cacheIndexSizeSupplier) {
         addEntryStats = stats.getThreadScopedOpStatsLogger(ADD_ENTRY);
         readEntryStats = stats.getThreadScopedOpStatsLogger(READ_ENTRY);
         readFromLocationIndexTime = stats.getThreadScopedCounter(READ_ENTRY_LOCATIONS_INDEX_TIME);
@@ -271,6 +278,18 @@ class DbLedgerStorageStats {
             }
         };
         stats.registerGauge(READ_CACHE_COUNT, readCacheCountGauge);
+        cacheIndexSizeGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return cacheIndexSizeSupplier.get();
+            }
+        };
+        stats.registerGauge(CACHE_INDEX_SIZE, cacheIndexSizeGauge);
     }
 
 }
@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Codec used to compress the payload of the entries that are flushed from the
+ * write cache into the entry logs.
+ *
+ * <p>Implementations must be thread safe, since the same instance is shared by
+ * the flush thread and by all the read threads of a ledger directory.
+ */
+public interface EntryCompressionCodec {
+
+    /**
+     * Compression types that can be stored in the entry logs.
+     *
+     * <p>The code of each type is persisted next to the compressed entry, so it
+     * must never be changed or reused.
+     */
+    enum Type {
+        NONE(0x0),
+        LZ4(0x1);
+
+        private final int code;
+
+        Type(int code) {
+            this.code = code;
+        }
+
+        public int code() {
+            return code;
+        }
+
+        public static Type of(int code) {
+            switch (code) {
+                case 0x0:
+                    return NONE;
+                case 0x1:
+                    return LZ4;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * @return the type of this codec
+     */
+    Type type();
+
+    /**
+     * @return the maximum number of bytes that {@link #compress(ByteBuf, ByteBuf)}
+     *         may write when compressing {@code length} bytes
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * Compress the readable bytes of {@code src} into {@code dst}, starting at the
+     * writer index of {@code dst}. The indexes of {@code src} are not modified.
+     *
+     * @return the number of bytes written into {@code dst}
+     */
+    int compress(ByteBuf src, ByteBuf dst);
+
+    /**
+     * Decompress the readable bytes of {@code src} into {@code dst}, starting at the
+     * writer index of {@code dst}. The indexes of {@code src} are not modified.
+     *
+     * @param decompressedLength the exact size of the decompressed data
+     */
+    void decompress(ByteBuf src, ByteBuf dst, int decompressedLength);
+}
@@ -0,0 +1,187 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import java.io.IOException;
+import org.apache.bookkeeper.bookie.storage.ldb.EntryCompressionCodec.Type;
+
+/**
+ * Compress and decompress entries when they are moved between the write/read caches
+ * and the entry logs.
+ *
+ * <p>A compressed entry keeps its ledger id and entry id in clear, so that the entry logs can
+ * still be scanned, compacted and used to rebuild the indexes without knowing about compression:
+ *
+ * <pre>
+ * ledger id: 8 bytes
+ * entry id: 8 bytes
+ * marker: 8 bytes (COMPRESSED_ENTRY_MARKER | codec type)
+ * uncompressed payload size: 4 bytes
+ * compressed payload
+ * </pre>
+ *
+ * <p>In a regular entry the marker position holds the last add confirmed. The bookie does not validate
+ * the payload sent by the clients, so an entry whose last add confirmed happens to match the marker is
+ * never stored as-is: it gets wrapped in a header with the {@link Type#NONE} codec, which keeps the
+ * payload uncompressed. This is done even when compression is disabled, so a stored entry carrying the
+ * marker was always written by the compressor. Other entries that are too small or that do not shrink
+ * are stored as-is, and uncompressed entries are always readable, so the codec can be enabled or
+ * disabled on an existing bookie.
+ */
+class EntryCompressor {
+
+    private static final int ENTRY_HEADER_SIZE = 8 + 8;
+    static final int COMPRESSED_ENTRY_HEADER_SIZE = ENTRY_HEADER_SIZE + 8 + 4;
+
+    // Sign bit set followed by "KCZ"; the lowest byte stores the codec type
+    static final long COMPRESSED_ENTRY_MARKER = 0xCB4B435A00000000L;
+    private static final long COMPRESSED_ENTRY_MARKER_MASK = 0xFFFFFFFFFFFFFF00L;
+
+    private final ByteBufAllocator allocator;
+    private final EntryCompressionCodec codec;
+    private final int minEntrySize;
+
+    EntryCompressor(ByteBufAllocator allocator, Type type, int minEntrySize) {
+        this.allocator = allocator;
+        this.codec = getCodec(type);
+        this.minEntrySize = Math.max(minEntrySize, COMPRESSED_ENTRY_HEADER_SIZE + 1);
+    }
+
+    static EntryCompressionCodec getCodec(Type type) {
+        if (type == Type.LZ4) {
+            return LZ4EntryCompressionCodec.INSTANCE;
+        }
+        return null;
+    }
+
+    static Type parseType(String name) {
+        try {
+            return Type.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown entry log compression codec: " + name);
+        }
+    }
+
+    boolean isEnabled() {
+        return codec != null;
+    }
+
+    /**
+     * Compress an entry before it gets added to the entry log.
+     *
+     * @return the entry itself if it is stored as-is, otherwise a new buffer that must be
+     *         released by the caller. The refcount of the original entry is never changed.
+     */
+    ByteBuf compress(ByteBuf entry) {
+        int entrySize = entry.readableBytes();
+        if (codec == null || entrySize < minEntrySize) {
+            return isCompressed(entry) ? wrap(entry) : entry;
+        }
+
+        int payloadSize = entrySize - ENTRY_HEADER_SIZE;
+        ByteBuf payload = entry.slice(entry.readerIndex() + ENTRY_HEADER_SIZE, payloadSize);
+        ByteBuf compressed = allocator.directBuffer(
+                COMPRESSED_ENTRY_HEADER_SIZE + codec.maxCompressedLength(payloadSize));
+        compressed.writeBytes(entry, entry.readerIndex(), ENTRY_HEADER_SIZE);
+        compressed.writeLong(COMPRESSED_ENTRY_MARKER | codec.type().code());
+        compressed.writeInt(payloadSize);
+        codec.compress(payload, compressed);
+
+        if (compressed.readableBytes() >= entrySize) {
+            // Not worth it, store the entry uncompressed
+            ReferenceCountUtil.release(compressed);
+            return isCompressed(entry) ? wrap(entry) : entry;
+        }
+        return compressed;
+    }
+
+    /**
+     * Store the payload uncompressed behind a {@link Type#NONE} header, for the entries whose last
+     * add confirmed would otherwise be read back as the compression marker.
+     */
+    private ByteBuf wrap(ByteBuf entry) {
+        int payloadSize = entry.readableBytes() - ENTRY_HEADER_SIZE;
+        ByteBuf wrapped = allocator.directBuffer(COMPRESSED_ENTRY_HEADER_SIZE + payloadSize);
+        wrapped.writeBytes(entry, entry.readerIndex(), ENTRY_HEADER_SIZE);
+        wrapped.writeLong(COMPRESSED_ENTRY_MARKER | Type.NONE.code());
+        wrapped.writeInt(payloadSize);
+        wrapped.writeBytes(entry, entry.readerIndex() + ENTRY_HEADER_SIZE, payloadSize);
+        return wrapped;
+    }
+
+    /**
+     * Decompress an entry read from the entry log.
+     *
+     * <p>This method takes ownership of the passed buffer: if the entry was compressed, the
+     * stored buffer is released and a new buffer is returned, otherwise the same buffer is returned.
+     */
+    ByteBuf decompress(ByteBuf stored) throws IOException {
+        if (!isCompressed(stored)) {
+            return stored;
+        }
+
+        try {
+            int readerIndex = stored.readerIndex();
+            int code = (int) (stored.getLong(readerIndex + ENTRY_HEADER_SIZE) & ~COMPRESSED_ENTRY_MARKER_MASK);
+            Type type = Type.of(code);
+            int payloadSize = stored.getInt(readerIndex + ENTRY_HEADER_SIZE + 8);
+            if (type == Type.NONE) {
+                if (payloadSize != stored.readableBytes() - COMPRESSED_ENTRY_HEADER_SIZE) {
+                    throw new IOException("Invalid size " + payloadSize + " of uncompressed entry "
+                            + stored.getLong(readerIndex) + "@" + stored.getLong(readerIndex + 8));
+                }
+                ByteBuf entry = allocator.directBuffer(ENTRY_HEADER_SIZE + payloadSize,
+                        ENTRY_HEADER_SIZE + payloadSize);
+                entry.writeBytes(stored, readerIndex, ENTRY_HEADER_SIZE);
+                entry.writeBytes(stored, readerIndex + COMPRESSED_ENTRY_HEADER_SIZE, payloadSize);
+                return entry;
+            }
+            EntryCompressionCodec entryCodec = type != null ? getCodec(type) : null;
+            if (entryCodec == null) {
+                throw new IOException("Unknown compression codec " + code + " for entry "
+                        + stored.getLong(readerIndex) + "@" + stored.getLong(readerIndex + 8));
+            }
+
+            ByteBuf entry = allocator.directBuffer(ENTRY_HEADER_SIZE + payloadSize, ENTRY_HEADER_SIZE + payloadSize);
+            try {
+                entry.writeBytes(stored, readerIndex, ENTRY_HEADER_SIZE);
+                entryCodec.decompress(stored.slice(readerIndex + COMPRESSED_ENTRY_HEADER_SIZE,
+                        stored.readableBytes() - COMPRESSED_ENTRY_HEADER_SIZE), entry, payloadSize);
+                return entry;
+            } catch (RuntimeException e) {
+                ReferenceCountUtil.release(entry);
+                throw new IOException("Failed to decompress entry " + stored.getLong(readerIndex)
+                        + "@" + stored.getLong(readerIndex + 8), e);
+            }
+        } finally {
+            ReferenceCountUtil.release(stored);
+        }
+    }
+
+    static boolean isCompressed(ByteBuf stored) {
+        return stored.readableBytes() >= COMPRESSED_ENTRY_HEADER_SIZE
+                && (stored.getLong(stored.readerIndex() + ENTRY_HEADER_SIZE) & COMPRESSED_ENTRY_MARKER_MASK)
+                    == COMPRESSED_ENTRY_MARKER;
+    }
+}
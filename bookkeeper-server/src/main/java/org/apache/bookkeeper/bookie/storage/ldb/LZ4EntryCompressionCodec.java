@@ -0,0 +1,102 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * An {@code lz4} based {@link EntryCompressionCodec} implementation.
+ *
+ * <p>All functions are thread safe.
+ */
+class LZ4EntryCompressionCodec implements EntryCompressionCodec {
+
+    static final LZ4EntryCompressionCodec INSTANCE = new LZ4EntryCompressionCodec();
+
+    private static final LZ4Factory factory = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor compressor = factory.fastCompressor();
+    // Used to decompress when the size of the output is known
+    private static final LZ4FastDecompressor decompressor = factory.fastDecompressor();
+
+    private LZ4EntryCompressionCodec() {
+    }
+
+    @Override
+    public Type type() {
+        return Type.LZ4;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return compressor.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(ByteBuf src, ByteBuf dst) {
+        int srcLen = src.readableBytes();
+        int maxLen = compressor.maxCompressedLength(srcLen);
+        dst.ensureWritable(maxLen);
+
+        ByteBuffer srcNio = directNioBuffer(src, src.readerIndex(), srcLen);
+        ByteBuffer dstNio = dst.isDirect()
+                ? dst.nioBuffer(dst.writerIndex(), maxLen) : ByteBuffer.allocateDirect(maxLen);
+        int compressedLen = compressor.compress(srcNio, srcNio.position(), srcLen,
+                dstNio, dstNio.position(), maxLen);
+        if (!dst.isDirect()) {
+            dstNio.limit(compressedLen);
+            dst.setBytes(dst.writerIndex(), dstNio);
+        }
+        dst.writerIndex(dst.writerIndex() + compressedLen);
+        return compressedLen;
+    }
+
+    @Override
+    public void decompress(ByteBuf src, ByteBuf dst, int decompressedLength) {
+        dst.ensureWritable(decompressedLength);
+
+        ByteBuffer srcNio = directNioBuffer(src, src.readerIndex(), src.readableBytes());
+        ByteBuffer dstNio = dst.isDirect() ? dst.nioBuffer(dst.writerIndex(), decompressedLength)
+                : ByteBuffer.allocateDirect(decompressedLength);
+        decompressor.decompress(srcNio, srcNio.position(), dstNio, dstNio.position(), decompressedLength);
+        if (!dst.isDirect()) {
+            dst.setBytes(dst.writerIndex(), dstNio);
+        }
+        dst.writerIndex(dst.writerIndex() + decompressedLength);
+    }
+
+    /**
+     * The JNI codec does not honor the array offset of heap ByteBuffers, so only
+     * direct memory is handed over to lz4. Entries are normally in direct memory already.
+     */
+    private static ByteBuffer directNioBuffer(ByteBuf buf, int index, int length) {
+        if (buf.isDirect() && buf.nioBufferCount() == 1) {
+            return buf.nioBuffer(index, length);
+        }
+        ByteBuffer copy = ByteBuffer.allocateDirect(length);
+        buf.getBytes(index, copy);
+        copy.flip();
+        return copy;
+    }
+}
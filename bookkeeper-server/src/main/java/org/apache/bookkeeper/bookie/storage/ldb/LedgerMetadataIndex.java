@@ -291,6 +291,43 @@ public class LedgerMetadataIndex implements Closeable {
         }
     }
 
+    /**
+     * Insert a new ledger, without master key, and persist it right away. Nothing is done if the
+     * ledger already exists.
+     *
+     * <p>The master key is set later with {@link #setMasterKey(long, byte[])}, which replaces an
+     * empty master key.
+     */
+    public void createLedger(long ledgerId) throws IOException {
+        ReentrantLock lock = lockForLedger(ledgerId);
+        lock.lock();
+        try {
+            if (ledgers.get(ledgerId) != null) {
+                return;
+            }
+
+            LedgerData ledgerData = LedgerData.newBuilder().setExists(true).setFenced(false)
+                    .setMasterKey(ByteString.EMPTY).build();
+            LongWrapper key = LongWrapper.get(ledgerId);
+            try {
+                ledgersDb.put(key.array, ledgerData.toByteArray());
+                ledgersDb.sync();
+            } finally {
+                key.recycle();
+            }
+
+            if (ledgers.put(ledgerId, ledgerData) == null) {
+                ledgersCount.incrementAndGet();
+            }
+            pendingDeletedLedgers.remove(ledgerId);
+            if (log.isDebugEnabled()) {
+                log.debug("Created ledger {}", ledgerId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Flushes all pending changes.
      */
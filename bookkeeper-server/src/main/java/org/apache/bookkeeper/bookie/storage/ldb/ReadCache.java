@@ -49,7 +49,7 @@ import org.slf4j.LoggerFactory;
 public class ReadCache implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
 
-    private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
     private final List<ByteBuf> cacheSegments;
     private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
@@ -67,6 +67,14 @@ public class ReadCache implements Closeable {
     }
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false);
+    }
+
+    /**
+     * @param offHeapIndex whether the indexes of the segments are stored in direct memory allocated
+     *                     from {@code allocator}, instead of the heap
+     */
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, boolean offHeapIndex) {
         this.allocator = allocator;
         int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
         segmentSize = (int) (maxCacheSize / segmentsCount);
@@ -76,17 +84,20 @@ public class ReadCache implements Closeable {
 
         for (int i = 0; i < segmentsCount; i++) {
             cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
-            ConcurrentLongLongPairHashMap concurrentLongLongPairHashMap = ConcurrentLongLongPairHashMap.newBuilder()
+            ConcurrentLongLongPairHashMap.Builder indexBuilder = ConcurrentLongLongPairHashMap.newBuilder()
                     .expectedItems(4096)
-                    .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
-                    .build();
-            cacheIndexes.add(concurrentLongLongPairHashMap);
+                    .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors());
+            if (offHeapIndex) {
+                indexBuilder.offHeap(allocator);
+            }
+            cacheIndexes.add(indexBuilder.build());
         }
     }
 
     @Override
     public void close() {
         cacheSegments.forEach(ReferenceCountUtil::safeRelease);
+        cacheIndexes.forEach(ConcurrentLongLongPairHashMap::close);
     }
 
     public void put(long ledgerId, long entryId, ByteBuf entry) {
@@ -227,4 +238,15 @@ public class ReadCache implements Closeable {
             lock.readLock().unlock();
         }
     }
+
+    /**
+     * @return the memory used by the indexes of the segments, in bytes
+     */
+    public long indexSizeInBytes() {
+        long size = 0;
+        for (int i = 0; i < cacheIndexes.size(); i++) {
+            size += cacheIndexes.get(i).sizeInBytes();
+        }
+        return size;
+    }
 }
@@ -78,6 +78,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.ThreadRegistry;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.slf4j.Logger;
@@ -131,6 +132,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final long writeCacheMaxSize;
     private final long readCacheMaxSize;
+    private final LedgerDirsManager ledgerDirsManager;
+    // Moving average of the write cache flush time, used to estimate the load of the directory
+    private volatile long averageFlushTimeNanos = 0;
+    // Free space ratio of the ledger directory, refreshed after each flush rather than on the write path
+    private volatile double freeSpaceRatio = 1.0;
     private final int readAheadCacheBatchSize;
     private final long readAheadCacheBatchBytesSize;
 
@@ -140,6 +146,16 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
+    private static final String DEFAULT_ENTRY_LOG_COMPRESSION_CODEC = "none";
+    private static final int DEFAULT_ENTRY_LOG_COMPRESSION_MIN_ENTRY_SIZE = 256;
+
+    private final EntryCompressor entryCompressor;
+
+    // Report the flushed entries to the checkpoint source, so that the journal replay can skip them
+    private final boolean journalReplayIndexEnabled;
+    // Only accessed while holding the flushMutex
+    private boolean lastFlushFailed = false;
+
     private final long maxReadAheadBytesSize;
 
     private final Counter flushExecutorTime;
@@ -169,9 +185,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 .scopeLabel("ledgerDir", ledgerBaseDir)
                 .scopeLabel("indexDir", indexBaseDir);
 
+        this.ledgerDirsManager = ledgerDirsManager;
+        updateFreeSpaceRatio();
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        boolean offHeapCacheIndex = conf.getBoolean(DbLedgerStorage.OFF_HEAP_CACHE_INDEX, false);
+        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2, WriteCache.DEFAULT_MAX_SEGMENT_SIZE,
+                offHeapCacheIndex);
+        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2,
+                WriteCache.DEFAULT_MAX_SEGMENT_SIZE, offHeapCacheIndex);
 
         readCacheMaxSize = readCacheSize;
         this.readAheadCacheBatchSize = readAheadCacheBatchSize;
@@ -184,12 +205,43 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        readCache = new ReadCache(allocator, readCacheMaxSize, ReadCache.DEFAULT_MAX_SEGMENT_SIZE, offHeapCacheIndex);
 
-        ledgerIndex = new LedgerMetadataIndex(conf,
-                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
-        entryLocationIndex = new EntryLocationIndex(conf,
-                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+        journalReplayIndexEnabled = conf.getJournalReplayIndexEnabled();
+
+        entryCompressor = new EntryCompressor(allocator,
+                EntryCompressor.parseType(conf.getString(DbLedgerStorage.ENTRY_LOG_COMPRESSION_CODEC,
+                        DEFAULT_ENTRY_LOG_COMPRESSION_CODEC)),
+                conf.getInt(DbLedgerStorage.ENTRY_LOG_COMPRESSION_MIN_ENTRY_SIZE,
+                        DEFAULT_ENTRY_LOG_COMPRESSION_MIN_ENTRY_SIZE));
+        if (entryCompressor.isEnabled()) {
+            log.info("Entry log compression enabled on {}: codec={}", ledgerBaseDir,
+                    conf.getString(DbLedgerStorage.ENTRY_LOG_COMPRESSION_CODEC));
+        }
+
+        LedgerMetadataIndex ledgerMetadataIndex = null;
+        try {
+            ledgerMetadataIndex = new LedgerMetadataIndex(conf,
+                    KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+            entryLocationIndex = new EntryLocationIndex(conf,
+                    KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+        } catch (IOException | RuntimeException e) {
+            // Release what was already opened, the storage is never shut down when its creation fails
+            if (ledgerMetadataIndex != null) {
+                try {
+                    ledgerMetadataIndex.close();
+                } catch (IOException ioe) {
+                    e.addSuppressed(ioe);
+                }
+            }
+            writeCache.close();
+            writeCacheBeingFlushed.close();
+            readCache.close();
+            executor.shutdown();
+            cleanupExecutor.shutdown();
+            throw e;
+        }
+        ledgerIndex = ledgerMetadataIndex;
 
         transientLedgerInfoCache = ConcurrentLongHashMap.<TransientLedgerInfo>newBuilder()
                 .expectedItems(16 * 1024)
@@ -208,7 +260,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             () -> writeCache.size() + writeCacheBeingFlushed.size(),
             () -> writeCache.count() + writeCacheBeingFlushed.count(),
             () -> readCache.size(),
-            () -> readCache.count()
+            () -> readCache.count(),
+            () -> writeCache.indexSizeInBytes() + writeCacheBeingFlushed.indexSizeInBytes()
+                    + readCache.indexSizeInBytes()
         );
 
         flushExecutorTime = ledgerIndexDirStatsLogger.getThreadScopedCounter("db-storage-thread-time");
@@ -632,8 +686,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
 
         long readEntryStartNano = MathUtils.nowInNano();
+        int storedEntrySize;
         try {
             entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+            storedEntrySize = entry.readableBytes();
+            entry = entryCompressor.decompress(entry);
         } finally {
             dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
                     MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
@@ -642,7 +699,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         readCache.put(ledgerId, entryId, entry);
 
         // Try to read more entries
-        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
+        long nextEntryLocation = entryLocation + 4 /* size header */ + storedEntrySize;
         fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
 
         return entry;
@@ -661,6 +718,8 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             while (chargeReadAheadCache(count, size) && currentEntryLogId == firstEntryLogId) {
                 ByteBuf entry = entryLogger.readEntry(orginalLedgerId,
                         firstEntryId, currentEntryLocation);
+                int storedEntrySize = entry.readableBytes();
+                entry = entryCompressor.decompress(entry);
 
                 try {
                     long currentEntryLedgerId = entry.getLong(0);
@@ -678,7 +737,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     firstEntryId++;
                     size += entry.readableBytes();
 
-                    currentEntryLocation += 4 + entry.readableBytes();
+                    currentEntryLocation += 4 + storedEntrySize;
                     currentEntryLogId = currentEntryLocation >> 32;
                 } finally {
                     ReferenceCountUtil.release(entry);
@@ -762,7 +821,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 MathUtils.elapsedNanos(locationIndexStartNano), TimeUnit.NANOSECONDS);
 
         long readEntryStartNano = MathUtils.nowInNano();
-        ByteBuf content = entryLogger.readEntry(ledgerId, lastEntryId, entryLocation);
+        ByteBuf content = entryCompressor.decompress(entryLogger.readEntry(ledgerId, lastEntryId, entryLocation));
         dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
                 MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
         return content;
@@ -813,10 +872,22 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             // Write all the pending entries into the entry logger and collect the offset
             // position for each entry
 
+            ConcurrentLongLongHashMap lastFlushedEntries = journalReplayIndexEnabled && !lastFlushFailed
+                    ? ConcurrentLongLongHashMap.newBuilder().concurrencyLevel(1).build() : null;
             Batch batch = entryLocationIndex.newBatch();
             writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                long location = entryLogger.addEntry(ledgerId, entry);
-                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+                ByteBuf storedEntry = entryCompressor.compress(entry);
+                try {
+                    long location = entryLogger.addEntry(ledgerId, storedEntry);
+                    entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+                    if (lastFlushedEntries != null && lastFlushedEntries.get(ledgerId) < entryId) {
+                        lastFlushedEntries.put(ledgerId, entryId);
+                    }
+                } finally {
+                    if (storedEntry != entry) {
+                        ReferenceCountUtil.release(storedEntry);
+                    }
+                }
             });
 
             long entryLoggerStart = MathUtils.nowInNano();
@@ -837,6 +908,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             recordSuccessfulEvent(dbLedgerStorageStats.getFlushLedgerIndexStats(), ledgerIndexStartTime);
 
             lastCheckpoint = thisCheckpoint;
+            if (lastFlushedEntries != null) {
+                checkpointSource.entriesFlushed(thisCheckpoint, lastFlushedEntries);
+            }
+            lastFlushFailed = false;
 
             // Discard all the entry from the write cache, since they're now persisted
             writeCacheBeingFlushed.clear();
@@ -848,9 +923,16 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 log.debug("Flushing done time {} s -- Written {} MB/s", flushTimeSeconds, flushThroughput);
             }
 
+            long flushTimeNanos = MathUtils.elapsedNanos(startTime);
+            averageFlushTimeNanos = averageFlushTimeNanos == 0
+                    ? flushTimeNanos : (averageFlushTimeNanos * 7 + flushTimeNanos) / 8;
+            updateFreeSpaceRatio();
             recordSuccessfulEvent(dbLedgerStorageStats.getFlushStats(), startTime);
             dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeToFlush);
         } catch (IOException e) {
+            // The entries of a failed flush are swapped back into the write cache, and are only
+            // persisted by the flush after the next one
+            lastFlushFailed = true;
             recordFailedEvent(dbLedgerStorageStats.getFlushStats(), startTime);
             // Leave IOExecption as it is
             throw e;
@@ -1087,6 +1169,43 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return entryLocationIndex;
     }
 
+    /**
+     * Estimate the cost of writing new ledgers into this directory, from the entries pending in the
+     * write cache, the recent flush time and the free disk space. A directory on a slow or nearly
+     * full disk gets a higher cost.
+     *
+     * @return the write placement cost, or {@link Double#MAX_VALUE} if the directory is not writable
+     */
+    double getWritePlacementCost() {
+        if (!ledgerDirsManager.hasWritableLedgerDirs()) {
+            return Double.MAX_VALUE;
+        }
+
+        double pendingWrites = 1.0 + (writeCache.size() + writeCacheBeingFlushed.size()) / (double) writeCacheMaxSize;
+        double flushTimeMillis = Math.max(1.0, averageFlushTimeNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+        return pendingWrites * flushTimeMillis / freeSpaceRatio;
+    }
+
+    private void updateFreeSpaceRatio() {
+        File dir = ledgerDirsManager.getAllLedgerDirs().get(0);
+        freeSpaceRatio = Math.max(0.01, (double) dir.getUsableSpace() / Math.max(1L, dir.getTotalSpace()));
+    }
+
+    /**
+     * Persist that a new ledger is stored in this directory, when it is not placed by the ledger id hash.
+     */
+    void persistLedgerPlacement(long ledgerId) throws IOException {
+        ledgerIndex.createLedger(ledgerId);
+    }
+
+    /**
+     * Drop a placement persisted with {@link #persistLedgerPlacement(long)}, when the ledger was
+     * placed in another directory concurrently.
+     */
+    void removeLedgerPlacement(long ledgerId) throws IOException {
+        ledgerIndex.delete(ledgerId);
+    }
+
     private void recordSuccessfulEvent(OpStatsLogger logger, long startTimeNanos) {
         logger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
     }
@@ -1100,6 +1219,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return Collections.singletonList(gcThread.getGarbageCollectionStatus());
     }
 
+    @Override
+    public double getWriteCacheUsage() {
+        return (writeCache.size() + writeCacheBeingFlushed.size()) / (double) writeCacheMaxSize;
+    }
+
     /**
      * Interface which process ledger logger.
      */
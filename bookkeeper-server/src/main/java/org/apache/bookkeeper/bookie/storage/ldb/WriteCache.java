@@ -59,10 +59,9 @@ public class WriteCache implements Closeable {
         void accept(long ledgerId, long entryId, ByteBuf entry) throws IOException;
     }
 
-    private final ConcurrentLongLongPairHashMap index = ConcurrentLongLongPairHashMap.newBuilder()
-            .expectedItems(4096)
-            .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
-            .build();
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+
+    private final ConcurrentLongLongPairHashMap index;
 
     private final ConcurrentLongLongHashMap lastEntryMap = ConcurrentLongLongHashMap.newBuilder()
             .expectedItems(4096)
@@ -87,10 +86,18 @@ public class WriteCache implements Closeable {
 
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize) {
         // Default maxSegmentSize set to 1Gb
-        this(allocator, maxCacheSize, 1 * 1024 * 1024 * 1024);
+        this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
 
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false);
+    }
+
+    /**
+     * @param offHeapIndex whether the index of the entries is stored in direct memory allocated from
+     *                     {@code allocator}, instead of the heap
+     */
+    public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, boolean offHeapIndex) {
         checkArgument(maxSegmentSize > 0);
 
         long alignedMaxSegmentSize = alignToPowerOfTwo(maxSegmentSize);
@@ -113,6 +120,14 @@ public class WriteCache implements Closeable {
 
         int lastSegmentSize = (int) (maxCacheSize % maxSegmentSize);
         cacheSegments[segmentsCount - 1] = Unpooled.directBuffer(lastSegmentSize, lastSegmentSize);
+
+        ConcurrentLongLongPairHashMap.Builder indexBuilder = ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(4096)
+                .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors());
+        if (offHeapIndex) {
+            indexBuilder.offHeap(allocator);
+        }
+        this.index = indexBuilder.build();
     }
 
     public void clear() {
@@ -129,6 +144,7 @@ public class WriteCache implements Closeable {
         for (ByteBuf buf : cacheSegments) {
             buf.release();
         }
+        index.close();
     }
 
     public boolean put(long ledgerId, long entryId, ByteBuf entry) {
@@ -289,6 +305,13 @@ public class WriteCache implements Closeable {
         return cacheCount.sum();
     }
 
+    /**
+     * @return the memory used by the index of the cached entries, in bytes
+     */
+    public long indexSizeInBytes() {
+        return index.sizeInBytes();
+    }
+
     public boolean isEmpty() {
         return cacheSize.get() == 0L;
     }
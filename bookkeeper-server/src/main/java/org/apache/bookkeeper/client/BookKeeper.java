@@ -138,6 +138,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     final LedgerManagerFactory ledgerManagerFactory;
     final LedgerManager ledgerManager;
     final LedgerIdGenerator ledgerIdGenerator;
+    // null unless the ledger metadata cache is enabled
+    final LedgerMetadataCache ledgerMetadataCache;
 
     // Ensemble Placement Policy
     final EnsemblePlacementPolicy placementPolicy;
@@ -534,7 +536,18 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
             throw new IOException("Failed to initialize ledger manager factory", e);
         }
         this.ledgerManager = new CleanupLedgerManager(ledgerManagerFactory.newLedgerManager());
-        this.ledgerIdGenerator = ledgerManagerFactory.newLedgerIdGenerator();
+        if (conf.getLedgerIdPreallocationSize() > 1) {
+            this.ledgerIdGenerator = new PreallocatedLedgerIdGenerator(ledgerManagerFactory.newLedgerIdGenerator(),
+                    conf.getLedgerIdPreallocationSize());
+        } else {
+            this.ledgerIdGenerator = ledgerManagerFactory.newLedgerIdGenerator();
+        }
+        if (conf.getLedgerMetadataCacheMaxEntries() > 0) {
+            this.ledgerMetadataCache = new LedgerMetadataCache(ledgerManager, conf.getLedgerMetadataCacheMaxEntries(),
+                    scheduler, this.statsLogger);
+        } else {
+            this.ledgerMetadataCache = null;
+        }
 
         this.bookieQuarantineRatio = conf.getBookieQuarantineRatio();
         scheduleBookieHealthCheckIfEnabled(conf);
@@ -558,6 +571,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         ledgerManagerFactory = null;
         ledgerManager = null;
         ledgerIdGenerator = null;
+        ledgerMetadataCache = null;
         featureProvider = null;
         eventLoopGroup = null;
         bookieWatcher = null;
@@ -648,6 +662,29 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         return ledgerManager;
     }
 
+    /**
+     * Read the metadata of a ledger, from the ledger metadata cache if it is enabled.
+     *
+     * @param ledgerId the ledger id
+     * @param closedOnly whether the cached metadata is only used if the ledger is closed, for the
+     *                   callers which need the latest metadata of the open ledgers
+     */
+    CompletableFuture<Versioned<LedgerMetadata>> readLedgerMetadata(long ledgerId, boolean closedOnly) {
+        if (ledgerMetadataCache == null) {
+            return getLedgerManager().readLedgerMetadata(ledgerId);
+        }
+        return ledgerMetadataCache.readLedgerMetadata(ledgerId, closedOnly);
+    }
+
+    /**
+     * Remove the metadata of a deleted ledger from the ledger metadata cache.
+     */
+    void invalidateLedgerMetadata(long ledgerId) {
+        if (ledgerMetadataCache != null) {
+            ledgerMetadataCache.invalidate(ledgerId);
+        }
+    }
+
     @VisibleForTesting
     public LedgerManagerFactory getLedgerManagerFactory() {
         return ledgerManagerFactory;
@@ -1375,7 +1412,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
      * @param cb    callback method
      */
     public void asyncIsClosed(long lId, final IsClosedCallback cb, final Object ctx){
-        ledgerManager.readLedgerMetadata(lId).whenComplete((metadata, exception) -> {
+        readLedgerMetadata(lId, true).whenComplete((metadata, exception) -> {
                 if (exception == null) {
                     cb.isClosedComplete(BKException.Code.OK, metadata.getValue().isClosed(), ctx);
                 } else {
@@ -1602,7 +1639,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
 
     @Override
     public CompletableFuture<LedgerMetadata> getLedgerMetadata(long ledgerId) {
-        CompletableFuture<Versioned<LedgerMetadata>> versioned = getLedgerManager().readLedgerMetadata(ledgerId);
+        CompletableFuture<Versioned<LedgerMetadata>> versioned = readLedgerMetadata(ledgerId, false);
         return versioned.thenApply(versionedLedgerMetadata -> {
             return versionedLedgerMetadata.getValue();
         });
@@ -51,7 +51,6 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -488,43 +487,17 @@ public class BookKeeperAdmin implements AutoCloseable {
         }
     }
 
-    // Object used for calling async methods and waiting for them to complete.
-    static class SyncObject {
-        boolean value;
-        int rc;
-
-        public SyncObject() {
-            value = false;
-            rc = BKException.Code.OK;
-        }
-    }
-
     public SortedMap<Long, LedgerMetadata> getLedgersContainBookies(Set<BookieId> bookies)
             throws InterruptedException, BKException {
-        final SyncObject sync = new SyncObject();
-        final AtomicReference<SortedMap<Long, LedgerMetadata>> resultHolder =
-                new AtomicReference<SortedMap<Long, LedgerMetadata>>(null);
+        final CompletableFuture<SortedMap<Long, LedgerMetadata>> future = new CompletableFuture<>();
         asyncGetLedgersContainBookies(bookies, new GenericCallback<SortedMap<Long, LedgerMetadata>>() {
             @Override
             public void operationComplete(int rc, SortedMap<Long, LedgerMetadata> result) {
                 LOG.info("GetLedgersContainBookies completed with rc : {}", rc);
-                synchronized (sync) {
-                    sync.rc = rc;
-                    sync.value = true;
-                    resultHolder.set(result);
-                    sync.notify();
-                }
+                SyncCallbackUtils.finish(rc, result, future);
             }
         });
-        synchronized (sync) {
-            while (!sync.value) {
-                sync.wait();
-            }
-        }
-        if (sync.rc != BKException.Code.OK) {
-            throw BKException.create(sync.rc);
-        }
-        return resultHolder.get();
+        return SyncCallbackUtils.waitForResult(future);
     }
 
     public void asyncGetLedgersContainBookies(final Set<BookieId> bookies,
@@ -595,30 +568,18 @@ public class BookKeeperAdmin implements AutoCloseable {
 
     public void recoverBookieData(final Set<BookieId> bookiesSrc, boolean dryrun, boolean skipOpenLedgers,
                                   boolean skipUnrecoverableLedgers) throws InterruptedException, BKException {
-        SyncObject sync = new SyncObject();
+        CompletableFuture<Void> future = new CompletableFuture<>();
         // Call the async method to recover bookie data.
         asyncRecoverBookieData(bookiesSrc, dryrun, skipOpenLedgers, skipUnrecoverableLedgers, new RecoverCallback() {
             @Override
             public void recoverComplete(int rc, Object ctx) {
                 LOG.info("Recover bookie operation completed with rc: {}", BKException.codeLogger(rc));
-                SyncObject syncObj = (SyncObject) ctx;
-                synchronized (syncObj) {
-                    syncObj.rc = rc;
-                    syncObj.value = true;
-                    syncObj.notify();
-                }
+                SyncCallbackUtils.finish(rc, null, future);
             }
-        }, sync);
+        }, null);
 
         // Wait for the async method to complete.
-        synchronized (sync) {
-            while (!sync.value) {
-                sync.wait();
-            }
-        }
-        if (sync.rc != BKException.Code.OK) {
-            throw BKException.create(sync.rc);
-        }
+        SyncCallbackUtils.waitForResult(future);
     }
 
     public void recoverBookieData(final long lid,
@@ -626,27 +587,15 @@ public class BookKeeperAdmin implements AutoCloseable {
                                   boolean dryrun,
                                   boolean skipOpenLedgers)
             throws InterruptedException, BKException {
-        SyncObject sync = new SyncObject();
+        CompletableFuture<Void> future = new CompletableFuture<>();
         // Call the async method to recover bookie data.
         asyncRecoverBookieData(lid, bookiesSrc, dryrun, skipOpenLedgers, (rc, ctx) -> {
             LOG.info("Recover bookie for {} completed with rc : {}", lid, BKException.codeLogger(rc));
-            SyncObject syncObject = (SyncObject) ctx;
-            synchronized (syncObject) {
-                syncObject.rc = rc;
-                syncObject.value = true;
-                syncObject.notify();
-            }
-        }, sync);
+            SyncCallbackUtils.finish(rc, null, future);
+        }, null);
 
         // Wait for the async method to complete.
-        synchronized (sync) {
-            while (!sync.value) {
-                sync.wait();
-            }
-        }
-        if (sync.rc != BKException.Code.OK) {
-            throw BKException.create(sync.rc);
-        }
+        SyncCallbackUtils.waitForResult(future);
     }
 
     /**
@@ -1791,6 +1740,20 @@ public class BookKeeperAdmin implements AutoCloseable {
                 ackQuorumSize);
     }
 
+    /**
+     * Get the network location of the bookies known by the placement policy of the client, if
+     * the policy is topology aware.
+     *
+     * @return the network location of each known bookie, or an empty map
+     */
+    public Map<BookieId, String> getBookieNetworkLocations() {
+        EnsemblePlacementPolicy placementPolicy = bkc.getPlacementPolicy();
+        if (placementPolicy instanceof TopologyAwareEnsemblePlacementPolicy) {
+            return ((TopologyAwareEnsemblePlacementPolicy) placementPolicy).getBookieNetworkLocations();
+        }
+        return Collections.emptyMap();
+    }
+
     public Map<Integer, BookieId> replaceNotAdheringPlacementPolicyBookie(List<BookieId> ensembleBookiesList,
             int writeQuorumSize, int ackQuorumSize) {
         try {
@@ -1831,6 +1794,21 @@ public class BookKeeperAdmin implements AutoCloseable {
         return bkc.getBookieClient().getListOfEntriesOfLedger(address, ledgerId);
     }
 
+    /**
+     * Makes async request for getting the lists of entries of several ledgers from a bookie in a
+     * single round trip, and returns Future for the result.
+     *
+     * @param address
+     *            BookieId of the bookie
+     * @param ledgerIds
+     *            the ledgers
+     * @return returns Future of the entries of the ledgers stored by the bookie
+     */
+    public CompletableFuture<Map<Long, AvailabilityOfEntriesOfLedger>> asyncGetListOfEntriesOfLedgers(
+            BookieId address, List<Long> ledgerIds) {
+        return bkc.getBookieClient().getListOfEntriesOfLedgers(address, ledgerIds);
+    }
+
     public BookieId getCurrentAuditor() throws IOException, InterruptedException {
         return getLedgerAuditorManager().getCurrentAuditor();
     }
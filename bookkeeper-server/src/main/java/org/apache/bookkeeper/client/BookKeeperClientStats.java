@@ -44,6 +44,10 @@ public interface BookKeeperClientStats {
     String LEDGER_RECOVER_READ_ENTRIES = "LEDGER_RECOVER_READ_ENTRIES";
     String LEDGER_RECOVER_ADD_ENTRIES = "LEDGER_RECOVER_ADD_ENTRIES";
     String LEDGER_ENSEMBLE_BOOKIE_DISTRIBUTION = "LEDGER_ENSEMBLE_BOOKIE_DISTRIBUTION";
+    String LEDGER_METADATA_CACHE_HITS = "LEDGER_METADATA_CACHE_HITS";
+    String LEDGER_METADATA_CACHE_MISSES = "LEDGER_METADATA_CACHE_MISSES";
+    String LEDGER_METADATA_CACHE_SIZE = "LEDGER_METADATA_CACHE_SIZE";
+    String LEDGER_METADATA_CACHE_WATCHED = "LEDGER_METADATA_CACHE_WATCHED";
 
     // Data Operations
 
@@ -65,6 +69,8 @@ public interface BookKeeperClientStats {
     String SPECULATIVE_READ_COUNT = "SPECULATIVE_READ_COUNT";
     String READ_REQUESTS_REORDERED = "READ_REQUESTS_REORDERED";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_OP = "GET_LIST_OF_ENTRIES_OF_LEDGER";
+    String GET_LIST_OF_ENTRIES_OF_LEDGERS_OP = "GET_LIST_OF_ENTRIES_OF_LEDGERS";
+    String COPY_ENTRIES_OP = "COPY_ENTRIES";
 
     // per channel stats
     String CHANNEL_SCOPE = "per_channel_bookie_client";
@@ -83,6 +89,8 @@ public interface BookKeeperClientStats {
     String CHANNEL_START_TLS_OP = "START_TLS";
     String CHANNEL_TIMEOUT_START_TLS_OP = "TIMEOUT_START_TLS";
     String TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER = "TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER";
+    String TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGERS = "TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGERS";
+    String TIMEOUT_COPY_ENTRIES = "TIMEOUT_COPY_ENTRIES";
 
     String NETTY_EXCEPTION_CNT = "NETTY_EXCEPTION_CNT";
     String CLIENT_CHANNEL_WRITE_WAIT = "CLIENT_CHANNEL_WRITE_WAIT";
@@ -53,6 +53,8 @@ public class BookieInfoReader {
     private final ScheduledExecutorService scheduler;
     private final BookKeeper bk;
     private final ClientConfiguration conf;
+    // null unless load aware placement is enabled
+    private final BookieLoadScorer loadScorer;
 
     /**
      * A class represents the information (e.g. disk usage, load) of a bookie.
@@ -62,12 +64,23 @@ public class BookieInfoReader {
     public static class BookieInfo implements WeightedObject {
         private final long freeDiskSpace;
         private final long totalDiskSpace;
+        private final BookieLoad load;
+        // ratio of the disk based weight given to the bookie, according to its load
+        private final double loadFactor;
         public BookieInfo() {
             this(0L, 0L);
         }
         public BookieInfo(long totalDiskSpace, long freeDiskSpace) {
+            this(totalDiskSpace, freeDiskSpace, null);
+        }
+        public BookieInfo(long totalDiskSpace, long freeDiskSpace, BookieLoad load) {
+            this(totalDiskSpace, freeDiskSpace, load, 1.0);
+        }
+        private BookieInfo(long totalDiskSpace, long freeDiskSpace, BookieLoad load, double loadFactor) {
             this.totalDiskSpace = totalDiskSpace;
             this.freeDiskSpace = freeDiskSpace;
+            this.load = load;
+            this.loadFactor = loadFactor;
         }
         public long getFreeDiskSpace() {
             return freeDiskSpace;
@@ -75,16 +88,90 @@ public class BookieInfoReader {
         public long getTotalDiskSpace() {
             return totalDiskSpace;
         }
+        /**
+         * @return the load reported by the bookie, or null if it was not requested or the bookie
+         *         doesn't report it
+         */
+        public BookieLoad getLoad() {
+            return load;
+        }
+        public double getLoadFactor() {
+            return loadFactor;
+        }
+        BookieInfo withLoadFactor(double loadFactor) {
+            return new BookieInfo(totalDiskSpace, freeDiskSpace, load, loadFactor);
+        }
         @Override
         public long getWeight() {
-            return freeDiskSpace;
+            return loadFactor == 1.0 ? freeDiskSpace : (long) (freeDiskSpace * loadFactor);
         }
         @Override
         public String toString() {
-            return "FreeDiskSpace: " + this.freeDiskSpace + " TotalDiskCapacity: " + this.totalDiskSpace;
+            return "FreeDiskSpace: " + this.freeDiskSpace + " TotalDiskCapacity: " + this.totalDiskSpace
+                + (load == null ? "" : " Load: " + load + " LoadFactor: " + loadFactor);
         }
     }
 
+    /**
+     * The load of a bookie, reported along with its disk usage.
+     *
+     * <p>NOTE: This class is tended to be used by this project only. External users should not rely on it directly.
+     */
+    public static class BookieLoad {
+        private final long journalQueueLength;
+        private final int writeCacheUsagePercent;
+        private final long addLatencyP50Micros;
+        private final long addLatencyP99Micros;
+        private final long readRequestsPerSecond;
+        private final boolean compacting;
+        private final boolean diskDegraded;
+
+        public BookieLoad(long journalQueueLength, int writeCacheUsagePercent,
+                          long addLatencyP50Micros, long addLatencyP99Micros,
+                          long readRequestsPerSecond, boolean compacting, boolean diskDegraded) {
+            this.journalQueueLength = journalQueueLength;
+            this.writeCacheUsagePercent = writeCacheUsagePercent;
+            this.addLatencyP50Micros = addLatencyP50Micros;
+            this.addLatencyP99Micros = addLatencyP99Micros;
+            this.readRequestsPerSecond = readRequestsPerSecond;
+            this.compacting = compacting;
+            this.diskDegraded = diskDegraded;
+        }
+        public long getJournalQueueLength() {
+            return journalQueueLength;
+        }
+        public int getWriteCacheUsagePercent() {
+            return writeCacheUsagePercent;
+        }
+        public long getAddLatencyP50Micros() {
+            return addLatencyP50Micros;
+        }
+        public long getAddLatencyP99Micros() {
+            return addLatencyP99Micros;
+        }
+        public long getReadRequestsPerSecond() {
+            return readRequestsPerSecond;
+        }
+        public boolean isCompacting() {
+            return compacting;
+        }
+        public boolean isDiskDegraded() {
+            return diskDegraded;
+        }
+        /**
+         * @return whether new ledgers should avoid the bookie
+         */
+        public boolean isUnhealthy() {
+            return compacting || diskDegraded;
+        }
+        @Override
+        public String toString() {
+            return "JournalQueueLength: " + journalQueueLength + " WriteCacheUsage: " + writeCacheUsagePercent
+                + "% AddLatencyP50: " + addLatencyP50Micros + "us AddLatencyP99: " + addLatencyP99Micros
+                + "us ReadRate: " + readRequestsPerSecond + "/s Compacting: " + compacting
+                + " DiskDegraded: " + diskDegraded;
+        }
+    }
 
     /**
      * Tracks the most recently reported set of bookies from BookieWatcher as well
@@ -231,6 +318,7 @@ public class BookieInfoReader {
         this.bk = bk;
         this.conf = conf;
         this.scheduler = scheduler;
+        this.loadScorer = conf.getLoadAwarePlacementEnabled() ? new BookieLoadScorer(conf) : null;
     }
 
     public void start() {
@@ -259,7 +347,14 @@ public class BookieInfoReader {
                     }
                 }
             }
-        }, 0, conf.getGetBookieInfoIntervalSeconds(), TimeUnit.SECONDS);
+        }, 0, getIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    private int getIntervalSeconds() {
+        if (loadScorer != null) {
+            return Math.min(conf.getGetBookieInfoIntervalSeconds(), conf.getLoadAwarePlacementIntervalSeconds());
+        }
+        return conf.getGetBookieInfoIntervalSeconds();
     }
 
     private void submitTask() {
@@ -326,8 +421,9 @@ public class BookieInfoReader {
         }
 
         BookieClient bkc = bk.getBookieClient();
-        final long requested = BookkeeperProtocol.GetBookieInfoRequest.Flags.TOTAL_DISK_CAPACITY_VALUE
-                               | BookkeeperProtocol.GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE;
+        final long requested = loadScorer != null
+                ? GET_BOOKIE_INFO_REQUEST_FLAGS | BookkeeperProtocol.GetBookieInfoRequest.Flags.LOAD_VALUE
+                : GET_BOOKIE_INFO_REQUEST_FLAGS;
         totalSent = 0;
         completedCnt = 0;
         errorCnt = 0;
@@ -381,7 +477,11 @@ public class BookieInfoReader {
     }
 
     void onExit() {
-        bk.placementPolicy.updateBookieInfo(bookieInfoMap.getBookieMap());
+        Map<BookieId, BookieInfo> bookieInfos = bookieInfoMap.getBookieMap();
+        if (loadScorer != null) {
+            bookieInfos = loadScorer.applyLoadFactors(bookieInfos);
+        }
+        bk.placementPolicy.updateBookieInfo(bookieInfos);
         if (errorCnt > 0) {
             if (LOG.isInfoEnabled()) {
                 LOG.info("Rescheduling in {}s due to errors", conf.getGetBookieInfoIntervalSeconds());
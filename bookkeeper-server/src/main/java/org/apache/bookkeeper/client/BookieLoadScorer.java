@@ -0,0 +1,124 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieLoad;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * Compute the ratio of their disk based weight given to the bookies according to their load,
+ * for the load aware placement.
+ *
+ * <p>Each load metric of a bookie is compared to the median of the bookies, and the bookie is
+ * scored by its most loaded metric: a bookie twice as loaded as the median gets half of its
+ * weight. The metrics are offset by a floor, so that the differences between idle bookies are
+ * ignored. The load factors are smoothed across the reports and never go below the configured
+ * minimum, so that the clients don't all move their new ledgers away from a bookie, or to the
+ * same bookies, at once.
+ */
+class BookieLoadScorer {
+
+    private static class Metric {
+        final ToLongFunction<BookieLoad> value;
+        final long floor;
+
+        Metric(ToLongFunction<BookieLoad> value, long floor) {
+            this.value = value;
+            this.floor = floor;
+        }
+    }
+
+    private final Metric[] metrics;
+    private final double smoothingFactor;
+    private final double minWeightRatio;
+    private final Map<BookieId, Double> loadFactors = new HashMap<>();
+
+    BookieLoadScorer(ClientConfiguration conf) {
+        this.metrics = new Metric[] {
+            new Metric(BookieLoad::getJournalQueueLength, conf.getLoadAwarePlacementJournalQueueFloor()),
+            new Metric(BookieLoad::getWriteCacheUsagePercent, conf.getLoadAwarePlacementWriteCacheUsageFloor()),
+            new Metric(BookieLoad::getAddLatencyP99Micros, conf.getLoadAwarePlacementAddLatencyFloorMicros()),
+            new Metric(BookieLoad::getReadRequestsPerSecond, conf.getLoadAwarePlacementReadRateFloor()),
+        };
+        this.smoothingFactor = Math.max(0.0, Math.min(1.0, conf.getLoadAwarePlacementSmoothingFactor()));
+        this.minWeightRatio = Math.max(0.0, Math.min(1.0, conf.getLoadAwarePlacementMinWeightRatio()));
+    }
+
+    /**
+     * @param bookieInfos the latest info reported by the bookies
+     * @return the info of the bookies, with their load factor
+     */
+    synchronized Map<BookieId, BookieInfo> applyLoadFactors(Map<BookieId, BookieInfo> bookieInfos) {
+        long[] medians = new long[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+            medians[i] = median(bookieInfos, metrics[i]);
+        }
+
+        Map<BookieId, BookieInfo> result = new HashMap<>(bookieInfos.size());
+        Map<BookieId, Double> newLoadFactors = new HashMap<>(bookieInfos.size());
+        for (Map.Entry<BookieId, BookieInfo> e : bookieInfos.entrySet()) {
+            BookieInfo info = e.getValue();
+            BookieLoad load = info.getLoad();
+            if (load == null) {
+                result.put(e.getKey(), info);
+                continue;
+            }
+            double score = 1.0;
+            for (int i = 0; i < metrics.length; i++) {
+                Metric metric = metrics[i];
+                // not dividing by zero when the floor is configured to 0 and the median bookie is idle
+                double ratio = (double) Math.max(1, metric.value.applyAsLong(load) + metric.floor)
+                        / Math.max(1, medians[i] + metric.floor);
+                score = Math.max(score, ratio);
+            }
+            double previous = loadFactors.getOrDefault(e.getKey(), 1.0);
+            double loadFactor = previous + smoothingFactor * (1.0 / score - previous);
+            loadFactor = Math.max(minWeightRatio, Math.min(1.0, loadFactor));
+            newLoadFactors.put(e.getKey(), loadFactor);
+            result.put(e.getKey(), info.withLoadFactor(loadFactor));
+        }
+        // forget the bookies which are gone
+        loadFactors.clear();
+        loadFactors.putAll(newLoadFactors);
+        return result;
+    }
+
+    private static long median(Map<BookieId, BookieInfo> bookieInfos, Metric metric) {
+        long[] values = new long[bookieInfos.size()];
+        int n = 0;
+        for (BookieInfo info : bookieInfos.values()) {
+            if (info.getLoad() != null) {
+                values[n++] = metric.value.applyAsLong(info.getLoad());
+            }
+        }
+        if (n == 0) {
+            return 0;
+        }
+        Arrays.sort(values, 0, n);
+        return values[n / 2];
+    }
+}
@@ -23,19 +23,24 @@ package org.apache.bookkeeper.client;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
 import org.apache.bookkeeper.client.AsyncCallback.CreateCallback;
 import org.apache.bookkeeper.client.BKException.BKNotEnoughBookiesException;
 import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncCreateAdvCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncCreateCallback;
 import org.apache.bookkeeper.client.api.CreateAdvBuilder;
+import org.apache.bookkeeper.client.api.CreateBatchBuilder;
 import org.apache.bookkeeper.client.api.CreateBuilder;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.WriteAdvHandle;
@@ -126,6 +131,28 @@ class LedgerCreateOp {
      * Initiates the operation.
      */
     public void initiate() {
+        LedgerMetadataBuilder metadataBuilder;
+        try {
+            metadataBuilder = newMetadataBuilder();
+        } catch (BKNotEnoughBookiesException e) {
+            createComplete(e.getCode(), null);
+            return;
+        }
+
+        if (this.generateLedgerId) {
+            generateLedgerIdAndCreateLedger(metadataBuilder);
+        } else {
+            this.metadata = metadataBuilder.withId(ledgerId).build();
+            // Create ledger with supplied ledgerId
+            bk.getLedgerManager().createLedgerMetadata(ledgerId, metadata)
+                .whenComplete((written, exception) -> metadataCallback(written, exception, metadataBuilder));
+        }
+    }
+
+    /**
+     * Select the first ensemble of the ledger and build its metadata, without its ledger id.
+     */
+    private LedgerMetadataBuilder newMetadataBuilder() throws BKNotEnoughBookiesException {
         int actualEnsembleSize = ensembleSize;
         List<BookieId> ensemble = null;
         // select bookies for first ensemble
@@ -153,8 +180,7 @@ class LedgerCreateOp {
                 LOG.error("Not enough bookies to create ledger with ensembleSize={},"
                         + " writeQuorumSize={} and ackQuorumSize={}",
                         actualEnsembleSize, writeQuorumSize, ackQuorumSize);
-                createComplete(lastError.getCode(), null);
-                return;
+                throw lastError;
             }
         } else {
             try {
@@ -164,8 +190,7 @@ class LedgerCreateOp {
                 LOG.error("Not enough bookies to create ledger with ensembleSize={},"
                         + " writeQuorumSize={} and ackQuorumSize={}",
                             actualEnsembleSize, writeQuorumSize, ackQuorumSize);
-                createComplete(e.getCode(), null);
-                return;
+                throw e;
             }
         }
         LedgerMetadataBuilder metadataBuilder = LedgerMetadataBuilder.create()
@@ -179,15 +204,7 @@ class LedgerCreateOp {
         if (bk.getConf().getStoreSystemtimeAsLedgerCreationTime()) {
             metadataBuilder.withCreationTime(System.currentTimeMillis()).storingCreationTime(true);
         }
-
-        if (this.generateLedgerId) {
-            generateLedgerIdAndCreateLedger(metadataBuilder);
-        } else {
-            this.metadata = metadataBuilder.withId(ledgerId).build();
-            // Create ledger with supplied ledgerId
-            bk.getLedgerManager().createLedgerMetadata(ledgerId, metadata)
-                .whenComplete((written, exception) -> metadataCallback(written, exception, metadataBuilder));
-        }
+        return metadataBuilder;
     }
 
     void generateLedgerIdAndCreateLedger(LedgerMetadataBuilder metadataBuilder) {
@@ -342,6 +359,11 @@ class LedgerCreateOp {
             return new CreateAdvBuilderImpl(this);
         }
 
+        @Override
+        public CreateBatchBuilder makeBatch(int numLedgers) {
+            return new CreateBatchBuilderImpl(this, numLedgers);
+        }
+
         private boolean validate() {
             if (builderWriteFlags == null) {
                 LOG.error("invalid null writeFlags");
@@ -472,4 +494,137 @@ class LedgerCreateOp {
             }
         }
     }
+
+    private static class CreateBatchBuilderImpl implements CreateBatchBuilder {
+
+        private final CreateBuilderImpl parent;
+        private final int numLedgers;
+
+        private CreateBatchBuilderImpl(CreateBuilderImpl parent, int numLedgers) {
+            this.parent = parent;
+            this.numLedgers = numLedgers;
+        }
+
+        @Override
+        public CompletableFuture<List<WriteHandle>> execute() {
+            CompletableFuture<List<WriteHandle>> future = new CompletableFuture<>();
+            create(future);
+            return future;
+        }
+
+        private boolean validate() {
+            if (!parent.validate()) {
+                return false;
+            }
+            if (numLedgers <= 0) {
+                LOG.error("invalid numLedgers {} <= 0", numLedgers);
+                return false;
+            }
+            return true;
+        }
+
+        private void create(CompletableFuture<List<WriteHandle>> future) {
+            if (!validate()) {
+                future.completeExceptionally(BKException.create(BKException.Code.IncorrectParameterException));
+                return;
+            }
+            List<LedgerCreateOp> ops = new ArrayList<>(numLedgers);
+            List<CompletableFuture<WriteHandle>> futures = new ArrayList<>(numLedgers);
+            for (int i = 0; i < numLedgers; i++) {
+                CompletableFuture<WriteHandle> opFuture = new CompletableFuture<>();
+                LedgerCreateOp op = new LedgerCreateOp(parent.bk, parent.builderEnsembleSize,
+                        parent.builderWriteQuorumSize, parent.builderAckQuorumSize,
+                        DigestType.fromApiDigestType(parent.builderDigestType),
+                        parent.builderPassword, new SyncCreateCallback(opFuture), null, parent.builderCustomMetadata,
+                        parent.builderWriteFlags,
+                        parent.bk.getClientCtx().getClientStats());
+                ops.add(op);
+                futures.add(opFuture);
+            }
+            ReentrantReadWriteLock closeLock = parent.bk.getCloseLock();
+            closeLock.readLock().lock();
+            try {
+                if (parent.bk.isClosed()) {
+                    future.completeExceptionally(BKException.create(BKException.Code.ClientClosedException));
+                    return;
+                }
+                List<LedgerMetadataBuilder> metadataBuilders = new ArrayList<>(numLedgers);
+                for (LedgerCreateOp op : ops) {
+                    metadataBuilders.add(op.newMetadataBuilder());
+                }
+                parent.bk.getLedgerIdGenerator().generateLedgerIds(numLedgers, (rc, ledgerIds) -> {
+                    if (BKException.Code.OK != rc) {
+                        future.completeExceptionally(BKException.create(rc));
+                        return;
+                    }
+                    createLedgers(ops, metadataBuilders, ledgerIds, futures, future);
+                });
+            } catch (BKNotEnoughBookiesException e) {
+                future.completeExceptionally(e);
+            } finally {
+                closeLock.readLock().unlock();
+            }
+        }
+
+        private void createLedgers(List<LedgerCreateOp> ops, List<LedgerMetadataBuilder> metadataBuilders,
+                                   List<Long> ledgerIds, List<CompletableFuture<WriteHandle>> futures,
+                                   CompletableFuture<List<WriteHandle>> future) {
+            Map<Long, LedgerMetadata> ledgers = new HashMap<>();
+            for (int i = 0; i < ops.size(); i++) {
+                LedgerCreateOp op = ops.get(i);
+                op.ledgerId = ledgerIds.get(i);
+                op.metadata = metadataBuilders.get(i).withId(op.ledgerId).build();
+                ledgers.put(op.ledgerId, op.metadata);
+            }
+            Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> written =
+                    parent.bk.getLedgerManager().createLedgersMetadata(ledgers);
+            for (int i = 0; i < ops.size(); i++) {
+                LedgerCreateOp op = ops.get(i);
+                LedgerMetadataBuilder metadataBuilder = metadataBuilders.get(i);
+                // a ledger whose id exists already gets a new id, and is created alone
+                written.get(op.ledgerId).whenComplete((metadata, exception) ->
+                        op.metadataCallback(metadata, exception, metadataBuilder));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, exception) -> {
+                if (exception == null) {
+                    future.complete(futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+                } else {
+                    deleteCreatedLedgers(futures,
+                            exception instanceof CompletionException ? exception.getCause() : exception, future);
+                }
+            });
+        }
+
+        /**
+         * Close and delete the ledgers which were created, when others failed to be, so that the
+         * batch creation fails as a whole.
+         */
+        private void deleteCreatedLedgers(List<CompletableFuture<WriteHandle>> futures, Throwable cause,
+                                          CompletableFuture<List<WriteHandle>> future) {
+            List<Long> createdLedgerIds = new ArrayList<>();
+            List<CompletableFuture<Void>> closeFutures = new ArrayList<>();
+            for (CompletableFuture<WriteHandle> opFuture : futures) {
+                if (!opFuture.isCompletedExceptionally()) {
+                    WriteHandle handle = opFuture.join();
+                    createdLedgerIds.add(handle.getId());
+                    closeFutures.add(handle.closeAsync());
+                }
+            }
+            if (createdLedgerIds.isEmpty()) {
+                future.completeExceptionally(cause);
+                return;
+            }
+            LOG.warn("Failed to create {} of {} ledgers, deleting the created ledgers {}",
+                    futures.size() - createdLedgerIds.size(), futures.size(), createdLedgerIds, cause);
+            CompletableFuture.allOf(closeFutures.toArray(new CompletableFuture[0])).whenComplete((ignored, e) ->
+                    new LedgerDeleteOp(parent.bk, parent.bk.getClientCtx().getClientStats(), createdLedgerIds,
+                            (rc, ctx) -> {
+                                if (rc != BKException.Code.OK) {
+                                    LOG.error("Failed to delete the ledgers {} of a failed batch creation: {}",
+                                            createdLedgerIds, BKException.getMessage(rc));
+                                }
+                                future.completeExceptionally(cause);
+                            }, null).initiate());
+        }
+    }
 }
@@ -21,6 +21,12 @@
 
 package org.apache.bookkeeper.client;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -42,7 +48,7 @@ class LedgerDeleteOp {
     static final Logger LOG = LoggerFactory.getLogger(LedgerDeleteOp.class);
 
     final BookKeeper bk;
-    final long ledgerId;
+    final List<Long> ledgerIds;
     final DeleteCallback cb;
     final Object ctx;
     final long startTime;
@@ -62,8 +68,25 @@ class LedgerDeleteOp {
      */
     LedgerDeleteOp(BookKeeper bk, BookKeeperClientStats clientStats,
                    long ledgerId, DeleteCallback cb, Object ctx) {
+        this(bk, clientStats, Collections.singletonList(ledgerId), cb, ctx);
+    }
+
+    /**
+     * Constructor, to delete several ledgers at once.
+     *
+     * @param bk
+     *            BookKeeper object
+     * @param ledgerIds
+     *            ledger Ids
+     * @param cb
+     *            callback implementation
+     * @param ctx
+     *            optional control object
+     */
+    LedgerDeleteOp(BookKeeper bk, BookKeeperClientStats clientStats,
+                   Collection<Long> ledgerIds, DeleteCallback cb, Object ctx) {
         this.bk = bk;
-        this.ledgerId = ledgerId;
+        this.ledgerIds = new ArrayList<>(ledgerIds);
         this.cb = cb;
         this.ctx = ctx;
         this.startTime = MathUtils.nowInNano();
@@ -76,25 +99,40 @@ class LedgerDeleteOp {
     public void initiate() {
         // Asynchronously delete the ledger from meta manager
         // When this completes, it will invoke the callback method below.
-        bk.getLedgerManager().removeLedgerMetadata(ledgerId, Version.ANY)
+        CompletableFuture<Void> removeFuture;
+        if (ledgerIds.size() == 1) {
+            removeFuture = bk.getLedgerManager().removeLedgerMetadata(ledgerIds.get(0), Version.ANY);
+        } else {
+            Map<Long, Version> versions = new HashMap<>();
+            for (long ledgerId : ledgerIds) {
+                versions.put(ledgerId, Version.ANY);
+            }
+            removeFuture = bk.getLedgerManager().removeLedgersMetadata(versions);
+        }
+        removeFuture
             .whenCompleteAsync((ignore, exception) -> {
                     if (exception != null) {
                         deleteOpLogger.registerFailedEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
                     } else {
+                        ledgerIds.forEach(bk::invalidateLedgerMetadata);
                         deleteOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
                     }
                     cb.deleteComplete(BKException.getExceptionCode(exception), this.ctx);
-                }, bk.getMainWorkerPool().chooseThread(ledgerId));
+                }, bk.getMainWorkerPool().chooseThread(ledgerIds.get(0)));
     }
 
     @Override
     public String toString() {
-        return String.format("LedgerDeleteOp(%d)", ledgerId);
+        if (ledgerIds.size() == 1) {
+            return String.format("LedgerDeleteOp(%d)", ledgerIds.get(0));
+        }
+        return String.format("LedgerDeleteOp(%s)", ledgerIds);
     }
 
     static class DeleteBuilderImpl  implements DeleteBuilder {
 
         private Long builderLedgerId;
+        private Collection<Long> builderLedgerIds;
         private final BookKeeper bk;
 
         DeleteBuilderImpl(BookKeeper bk) {
@@ -107,15 +145,38 @@ class LedgerDeleteOp {
             return this;
         }
 
+        @Override
+        public DeleteBuilder withLedgerIds(Collection<Long> ledgerIds) {
+            this.builderLedgerIds = ledgerIds;
+            return this;
+        }
+
         @Override
         public CompletableFuture<Void> execute() {
             CompletableFuture<Void> future = new CompletableFuture<>();
             SyncDeleteCallback result = new SyncDeleteCallback(future);
-            delete(builderLedgerId, result);
+            delete(result);
             return future;
         }
 
         private boolean validate() {
+            if (builderLedgerIds != null) {
+                if (builderLedgerId != null) {
+                    LOG.error("invalid ledgerId {} set along with ledgerIds {}", builderLedgerId, builderLedgerIds);
+                    return false;
+                }
+                if (builderLedgerIds.isEmpty()) {
+                    LOG.error("invalid empty ledgerIds");
+                    return false;
+                }
+                for (Long ledgerId : builderLedgerIds) {
+                    if (ledgerId == null || ledgerId < 0) {
+                        LOG.error("invalid ledgerId {} < 0", ledgerId);
+                        return false;
+                    }
+                }
+                return true;
+            }
             if (builderLedgerId == null || builderLedgerId < 0) {
                 LOG.error("invalid ledgerId {} < 0", builderLedgerId);
                 return false;
@@ -123,12 +184,17 @@ class LedgerDeleteOp {
             return true;
         }
 
-        private void delete(Long ledgerId, AsyncCallback.DeleteCallback cb) {
+        private void delete(AsyncCallback.DeleteCallback cb) {
             if (!validate()) {
                 cb.deleteComplete(BKException.Code.IncorrectParameterException, null);
                 return;
             }
-            LedgerDeleteOp op = new LedgerDeleteOp(bk, bk.getClientCtx().getClientStats(), ledgerId, cb, null);
+            LedgerDeleteOp op;
+            if (builderLedgerIds != null) {
+                op = new LedgerDeleteOp(bk, bk.getClientCtx().getClientStats(), builderLedgerIds, cb, null);
+            } else {
+                op = new LedgerDeleteOp(bk, bk.getClientCtx().getClientStats(), builderLedgerId, cb, null);
+            }
             ReentrantReadWriteLock closeLock = bk.getCloseLock();
             closeLock.readLock().lock();
             try {
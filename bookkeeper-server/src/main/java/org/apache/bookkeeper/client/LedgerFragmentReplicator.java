@@ -21,10 +21,12 @@ package org.apache.bookkeeper.client;
 
 import static org.apache.bookkeeper.client.LedgerHandle.INVALID_ENTRY_ID;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_BYTES_READ;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_BYTES_REPLICATED;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_BYTES_WRITTEN;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_READ;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_WRITTEN;
 import static org.apache.bookkeeper.replication.ReplicationStats.READ_DATA_LATENCY;
+import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_QUEUE_SIZE;
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_WORKER_SCOPE;
 import static org.apache.bookkeeper.replication.ReplicationStats.WRITE_DATA_LATENCY;
 
@@ -32,6 +34,8 @@ import com.google.common.util.concurrent.RateLimiter;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCounted;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -49,10 +53,12 @@ import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieAddressResolver;
 import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.MultiCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -96,6 +102,16 @@ public class LedgerFragmentReplicator {
         help = "The distribution of size of entries written by the replicator"
     )
     private final OpStatsLogger numBytesWritten;
+    @StatsDoc(
+        name = NUM_BYTES_REPLICATED,
+        help = "Number of bytes written by the replicator"
+    )
+    private final Counter numBytesReplicated;
+    @StatsDoc(
+        name = REPLICATION_QUEUE_SIZE,
+        help = "Number of reads and copies of the replicator waiting for its byte rate budget"
+    )
+    private final Gauge<Integer> replicationQueueSize;
     @StatsDoc(
             name = READ_DATA_LATENCY,
             help = "The distribution of latency of read entries by the replicator"
@@ -122,11 +138,25 @@ public class LedgerFragmentReplicator {
         numBytesRead = this.statsLogger.getOpStatsLogger(NUM_BYTES_READ);
         numEntriesWritten = this.statsLogger.getCounter(NUM_ENTRIES_WRITTEN);
         numBytesWritten = this.statsLogger.getOpStatsLogger(NUM_BYTES_WRITTEN);
+        numBytesReplicated = this.statsLogger.getCounter(NUM_BYTES_REPLICATED);
         readDataLatency = this.statsLogger.getOpStatsLogger(READ_DATA_LATENCY);
         writeDataLatency = this.statsLogger.getOpStatsLogger(WRITE_DATA_LATENCY);
         if (conf.getReplicationRateByBytes() > 0) {
             this.replicationThrottle = new Throttler(conf.getReplicationRateByBytes());
         }
+        replicationQueueSize = new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                Throttler throttle = replicationThrottle;
+                return null == throttle ? 0 : throttle.getNumWaiting();
+            }
+        };
+        this.statsLogger.registerGauge(REPLICATION_QUEUE_SIZE, replicationQueueSize);
         averageEntrySize = new AtomicInteger(INITIAL_AVERAGE_ENTRY_SIZE);
         this.conf = conf;
     }
@@ -171,6 +201,18 @@ public class LedgerFragmentReplicator {
             return;
         }
 
+        if (conf.isRereplicationBulkCopyEnabled()) {
+            copyFragmentEntries(lh, lf, ledgerFragmentMcb, newBookies, onReadEntryFailureCallback);
+        } else {
+            replicateFragmentEntries(lh, lf, ledgerFragmentMcb, newBookies, onReadEntryFailureCallback);
+        }
+    }
+
+    private void replicateFragmentEntries(final LedgerHandle lh,
+            final LedgerFragment lf,
+            final AsyncCallback.VoidCallback ledgerFragmentMcb,
+            final Set<BookieId> newBookies,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
         /*
          * Add all the entries to entriesToReplicate list from
          * firstStoredEntryId to lastStoredEntryID.
@@ -196,6 +238,76 @@ public class LedgerFragmentReplicator {
         }
     }
 
+    /**
+     * Ask each new bookie to copy the entries of the fragment from the other bookies of its
+     * ensemble, instead of reading and writing them through this client. If a bookie fails to
+     * copy them, e.g. because it does not support it, the entries are replicated to it one by one.
+     */
+    private void copyFragmentEntries(final LedgerHandle lh,
+            final LedgerFragment lf,
+            final AsyncCallback.VoidCallback ledgerFragmentMcb,
+            final Set<BookieId> newBookies,
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
+        final long firstEntryId = lf.getFirstStoredEntryId();
+        final long lastEntryId = lf.getLastStoredEntryId();
+        // the bookies being replaced are not read from
+        List<String> ensemble = new ArrayList<>(lf.getEnsemble().size());
+        for (int i = 0; i < lf.getEnsemble().size(); i++) {
+            String address = "";
+            if (!lf.getBookiesIndexes().contains(i)) {
+                try {
+                    address = bkc.getBookieAddressResolver().resolve(lf.getEnsemble().get(i)).toString();
+                } catch (BookieAddressResolver.BookieIdNotResolvedException e) {
+                    LOG.warn("Failed to resolve bookie {} to copy entries of ledger {}",
+                            lf.getEnsemble().get(i), lh.getId(), e);
+                }
+            }
+            ensemble.add(address);
+        }
+
+        MultiCallback copyMcb = new MultiCallback(newBookies.size(), ledgerFragmentMcb, null,
+                BKException.Code.OK, BKException.Code.LedgerRecoveryException);
+        if (replicationThrottle != null) {
+            replicationThrottle.resetRate(conf.getReplicationRateByBytes());
+        }
+        for (BookieId newBookie : newBookies) {
+            if (replicationThrottle != null) {
+                replicationThrottle.acquire((int) Math.min(Integer.MAX_VALUE,
+                        (long) averageEntrySize.get() * (lastEntryId - firstEntryId + 1)));
+            }
+            long startCopyTime = MathUtils.nowInNano();
+            bkc.getBookieClient().copyEntries(newBookie, lh.getId(), lh.getLedgerKey(),
+                    firstEntryId, lastEntryId, ensemble, lh.getLedgerMetadata().getWriteQuorumSize(),
+                    (rc, ledgerId, entriesCopied, bytesCopied, failedEntryId, ctx) -> {
+                        if (rc == BKException.Code.OK) {
+                            writeDataLatency.registerSuccessfulEvent(
+                                    MathUtils.elapsedNanos(startCopyTime), TimeUnit.NANOSECONDS);
+                            numEntriesWritten.addCount(entriesCopied);
+                            numBytesReplicated.addCount(bytesCopied);
+                            if (entriesCopied > 0) {
+                                updateAverageEntrySize((int) (bytesCopied / entriesCopied));
+                            }
+                            if (LOG.isDebugEnabled()) {
+                                LOG.debug("Copied entries {}-{} of ledger {} to bookie {}",
+                                        firstEntryId, lastEntryId, ledgerId, newBookie);
+                            }
+                            copyMcb.processResult(rc, null, null);
+                            return;
+                        }
+                        LOG.warn("Failed to copy entries {}-{} of ledger {} to bookie {} : {},"
+                                + " replicating them entry by entry", firstEntryId, lastEntryId, ledgerId,
+                                newBookie, BKException.getMessage(rc));
+                        try {
+                            replicateFragmentEntries(lh, lf, copyMcb, Collections.singleton(newBookie),
+                                    onReadEntryFailureCallback);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            copyMcb.processResult(BKException.Code.InterruptedException, null, null);
+                        }
+                    }, null);
+        }
+    }
+
     /**
      * This method replicate a ledger fragment which is a contiguous portion of
      * a ledger that was stored in an ensemble that included the failed bookie.
@@ -222,7 +334,9 @@ public class LedgerFragmentReplicator {
             final BiConsumer<Long, Long> onReadEntryFailureCallback)
             throws InterruptedException {
         Set<LedgerFragment> partionedFragments = splitIntoSubFragments(lh, lf,
-                bkc.getConf().getRereplicationEntryBatchSize());
+                bkc.getConf().isRereplicationBulkCopyEnabled()
+                        ? bkc.getConf().getRereplicationBulkCopyBatchSize()
+                        : bkc.getConf().getRereplicationEntryBatchSize());
         LOG.info("Replicating fragment {} in {} sub fragments.",
                 lf, partionedFragments.size());
         replicateNextBatch(lh, partionedFragments.iterator(),
@@ -362,6 +476,7 @@ public class LedgerFragmentReplicator {
                     numEntriesWritten.inc();
                     if (ctx instanceof Long) {
                         numBytesWritten.registerSuccessfulValue((Long) ctx);
+                        numBytesReplicated.addCount((Long) ctx);
                     }
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Success writing ledger id {}, entry id {} to a new bookie {}!",
@@ -517,6 +632,7 @@ public class LedgerFragmentReplicator {
 
     static class Throttler {
         private final RateLimiter rateLimiter;
+        private final AtomicInteger numWaiting = new AtomicInteger(0);
 
         Throttler(int throttleBytes) {
             this.rateLimiter = RateLimiter.create(throttleBytes);
@@ -534,7 +650,17 @@ public class LedgerFragmentReplicator {
 
         // acquire. if bybytes: bytes of this entry; if byentries: 1.
         void acquire(int permits) {
-            rateLimiter.acquire(permits);
+            numWaiting.incrementAndGet();
+            try {
+                rateLimiter.acquire(permits);
+            } finally {
+                numWaiting.decrementAndGet();
+            }
+        }
+
+        // number of threads waiting in acquire
+        int getNumWaiting() {
+            return numWaiting.get();
         }
     }
 }
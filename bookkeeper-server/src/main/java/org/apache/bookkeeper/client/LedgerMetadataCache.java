@@ -0,0 +1,217 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CATEGORY_CLIENT;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_HITS;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_MISSES;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_SIZE;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.LEDGER_METADATA_CACHE_WATCHED;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of the ledger metadata read by the client, to avoid reading the metadata of the
+ * same ledgers from the metadata store each time they are opened.
+ *
+ * <p>The metadata of a closed ledger is served from the cache until it is evicted or the ledger is
+ * deleted by this client. The metadata of an open ledger is watched with a
+ * {@link LedgerMetadataListener}, which updates the cache when it changes, until the ledger is
+ * closed or the metadata is evicted. As the updates of the watched metadata are asynchronous, the
+ * callers needing the latest metadata of an open ledger, like the recovery, only use the cached
+ * metadata of closed ledgers.
+ */
+@StatsDoc(
+    name = CATEGORY_CLIENT,
+    help = "Ledger metadata cache related stats"
+)
+class LedgerMetadataCache {
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerMetadataCache.class);
+
+    private final LedgerManager ledgerManager;
+    // to unregister the listeners outside of their notification
+    private final Executor executor;
+    private final Cache<Long, Versioned<LedgerMetadata>> cache;
+    private final ConcurrentMap<Long, LedgerMetadataListener> watches = new ConcurrentHashMap<>();
+
+    @StatsDoc(
+        name = LEDGER_METADATA_CACHE_HITS,
+        help = "number of ledger metadata reads served from the cache"
+    )
+    private final Counter hits;
+    @StatsDoc(
+        name = LEDGER_METADATA_CACHE_MISSES,
+        help = "number of ledger metadata reads from the metadata store"
+    )
+    private final Counter misses;
+
+    LedgerMetadataCache(LedgerManager ledgerManager, long maxEntries, Executor executor,
+                        StatsLogger statsLogger) {
+        this.ledgerManager = ledgerManager;
+        this.executor = executor;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .removalListener(this::onRemoval)
+                .build();
+        this.hits = statsLogger.getCounter(LEDGER_METADATA_CACHE_HITS);
+        this.misses = statsLogger.getCounter(LEDGER_METADATA_CACHE_MISSES);
+        statsLogger.registerGauge(LEDGER_METADATA_CACHE_SIZE, new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return cache.size();
+            }
+        });
+        statsLogger.registerGauge(LEDGER_METADATA_CACHE_WATCHED, new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return watches.size();
+            }
+        });
+    }
+
+    /**
+     * Read the metadata of a ledger.
+     *
+     * @param ledgerId the ledger id
+     * @param closedOnly whether the cached metadata is only used if the ledger is closed
+     * @return the metadata of the ledger
+     */
+    CompletableFuture<Versioned<LedgerMetadata>> readLedgerMetadata(long ledgerId, boolean closedOnly) {
+        Versioned<LedgerMetadata> metadata = cache.getIfPresent(ledgerId);
+        if (metadata != null && (!closedOnly || metadata.getValue().isClosed())) {
+            hits.inc();
+            return CompletableFuture.completedFuture(metadata);
+        }
+        misses.inc();
+        return ledgerManager.readLedgerMetadata(ledgerId).thenApply(read -> {
+            update(ledgerId, read, true);
+            return read;
+        });
+    }
+
+    /**
+     * Remove the metadata of a ledger, when it is deleted.
+     */
+    void invalidate(long ledgerId) {
+        cache.invalidate(ledgerId);
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    boolean isWatched(long ledgerId) {
+        return watches.containsKey(ledgerId);
+    }
+
+    private void update(long ledgerId, Versioned<LedgerMetadata> metadata, boolean insert) {
+        Versioned<LedgerMetadata> cached = cache.asMap().compute(ledgerId, (id, current) -> {
+            if (current == null) {
+                return insert ? metadata : null;
+            }
+            return current.getVersion().compare(metadata.getVersion()) == Version.Occurred.BEFORE
+                    ? metadata : current;
+        });
+        if (cached == null) {
+            // evicted
+            unwatch(ledgerId);
+            return;
+        }
+        if (cached.getValue().isClosed()) {
+            // the metadata of a closed ledger only changes with the re-replication, which
+            // readers tolerate as they fall back on the other replicas
+            unwatch(ledgerId);
+        } else if (!watches.containsKey(ledgerId)) {
+            CacheListener listener = new CacheListener();
+            if (watches.putIfAbsent(ledgerId, listener) == null) {
+                ledgerManager.registerLedgerMetadataListener(ledgerId, listener);
+                // the metadata may have been evicted, before or after the watch was added, or the
+                // watch removed and its unregistration run before the registration
+                if (watches.get(ledgerId) != listener || !cache.asMap().containsKey(ledgerId)) {
+                    watches.remove(ledgerId, listener);
+                    unregister(ledgerId, listener);
+                }
+            }
+        }
+    }
+
+    private void unwatch(long ledgerId) {
+        LedgerMetadataListener listener = watches.remove(ledgerId);
+        if (listener != null) {
+            unregister(ledgerId, listener);
+        }
+    }
+
+    private void unregister(long ledgerId, LedgerMetadataListener listener) {
+        executor.execute(() -> ledgerManager.unregisterLedgerMetadataListener(ledgerId, listener));
+    }
+
+    private void onRemoval(RemovalNotification<Long, Versioned<LedgerMetadata>> notification) {
+        if (notification.getCause() != RemovalCause.REPLACED) {
+            unwatch(notification.getKey());
+        }
+    }
+
+    private class CacheListener implements LedgerMetadataListener {
+        @Override
+        public void onChanged(long ledgerId, Versioned<LedgerMetadata> metadata) {
+            if (watches.get(ledgerId) != this) {
+                return;
+            }
+            if (metadata == null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Ledger {} is deleted, removing its metadata from the cache", ledgerId);
+                }
+                invalidate(ledgerId);
+            } else {
+                update(ledgerId, metadata, false);
+            }
+        }
+    }
+}
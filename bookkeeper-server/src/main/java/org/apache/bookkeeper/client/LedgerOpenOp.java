@@ -110,7 +110,8 @@ class LedgerOpenOp {
         /**
          * Asynchronously read the ledger metadata node.
          */
-        bk.getLedgerManager().readLedgerMetadata(ledgerId)
+        // the recovery needs the latest metadata of an open ledger
+        bk.readLedgerMetadata(ledgerId, doRecovery)
                 .thenAcceptAsync(this::openWithMetadata, bk.getScheduler().chooseThread(ledgerId))
                 .exceptionally(exception -> {
                     openComplete(BKException.getExceptionCode(exception), null);
@@ -0,0 +1,144 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import org.apache.bookkeeper.meta.LedgerIdGenerator;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+
+/**
+ * A ledger id generator which allocates ranges of ledger ids from the underlying generator, and
+ * hands them out one at a time.
+ *
+ * <p>A new range is requested when half of the current one is used, so that the ledger creations
+ * don't wait for it. The ids which are not used before the client is closed are skipped, and the
+ * creations still waiting for an id fail.
+ */
+class PreallocatedLedgerIdGenerator implements LedgerIdGenerator {
+
+    private final LedgerIdGenerator underlying;
+    private final int preallocationSize;
+
+    // guarded by this
+    private final Queue<Long> ledgerIds = new ArrayDeque<>();
+    private final Queue<GenericCallback<Long>> waiters = new ArrayDeque<>();
+    private boolean allocating = false;
+    private boolean closed = false;
+
+    PreallocatedLedgerIdGenerator(LedgerIdGenerator underlying, int preallocationSize) {
+        this.underlying = underlying;
+        this.preallocationSize = preallocationSize;
+    }
+
+    @Override
+    public void generateLedgerId(GenericCallback<Long> cb) {
+        Long ledgerId = null;
+        boolean allocate = false;
+        boolean rejected;
+        synchronized (this) {
+            rejected = closed;
+            if (!rejected) {
+                ledgerId = ledgerIds.poll();
+                if (ledgerId == null) {
+                    waiters.add(cb);
+                }
+                if (!allocating && ledgerIds.size() < preallocationSize / 2) {
+                    allocating = true;
+                    allocate = true;
+                }
+            }
+        }
+        if (rejected) {
+            cb.operationComplete(BKException.Code.ClientClosedException, null);
+            return;
+        }
+        if (ledgerId != null) {
+            cb.operationComplete(BKException.Code.OK, ledgerId);
+        }
+        if (allocate) {
+            allocate();
+        }
+    }
+
+    private void allocate() {
+        underlying.generateLedgerIds(preallocationSize, (rc, allocated) -> {
+            List<GenericCallback<Long>> failed = new ArrayList<>();
+            List<GenericCallback<Long>> served = new ArrayList<>();
+            List<Long> servedIds = new ArrayList<>();
+            boolean allocateAgain = false;
+            synchronized (this) {
+                if (rc == BKException.Code.OK) {
+                    // the ids allocated after close are skipped, the waiters were failed on close
+                    if (!closed) {
+                        ledgerIds.addAll(allocated);
+                    }
+                    while (!waiters.isEmpty() && !ledgerIds.isEmpty()) {
+                        served.add(waiters.poll());
+                        servedIds.add(ledgerIds.poll());
+                    }
+                    // more creations are waiting than the ids allocated at once
+                    allocateAgain = !waiters.isEmpty();
+                } else {
+                    failed.addAll(waiters);
+                    waiters.clear();
+                }
+                allocating = allocateAgain;
+            }
+            for (int i = 0; i < served.size(); i++) {
+                served.get(i).operationComplete(BKException.Code.OK, servedIds.get(i));
+            }
+            for (GenericCallback<Long> cb : failed) {
+                cb.operationComplete(rc, null);
+            }
+            if (allocateAgain) {
+                allocate();
+            }
+        });
+    }
+
+    @Override
+    public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        underlying.generateLedgerIds(count, cb);
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<GenericCallback<Long>> failed;
+        synchronized (this) {
+            closed = true;
+            ledgerIds.clear();
+            failed = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        for (GenericCallback<Long> cb : failed) {
+            cb.operationComplete(BKException.Code.ClientClosedException, null);
+        }
+        underlying.close();
+    }
+
+    synchronized int getAvailableLedgerIds() {
+        return ledgerIds.size();
+    }
+}
@@ -94,6 +94,8 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
     public static final String REPP_RANDOM_READ_REORDERING = "ensembleRandomReadReordering";
 
     static final int RACKNAME_DISTANCE_FROM_LEAVES = 1;
+    // leaves sampled at random before listing all the leaves of a network location
+    static final int MAX_RANDOM_LEAF_SAMPLES = 32;
 
     // masks for reordering
     static final int LOCAL_MASK       = 0x01 << 24;
@@ -353,6 +355,19 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         try {
             Set<BookieId> comprehensiveExclusionBookiesSet = addDefaultRackBookiesIfMinNumRacksIsEnforced(
                     excludeBookies);
+            if (!unhealthyBookies.isEmpty()) {
+                // avoid the bookies compacting or with a degraded disk, unless there are not enough others
+                Set<BookieId> healthyExclusionBookiesSet = new HashSet<BookieId>(comprehensiveExclusionBookiesSet);
+                healthyExclusionBookiesSet.addAll(unhealthyBookies);
+                try {
+                    return newEnsembleInternal(ensembleSize, writeQuorumSize, ackQuorumSize,
+                            healthyExclusionBookiesSet, null, null);
+                } catch (BKNotEnoughBookiesException e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Not enough bookies besides the unhealthy bookies {}", unhealthyBookies);
+                    }
+                }
+            }
             PlacementResult<List<BookieId>> newEnsembleResult = newEnsembleInternal(ensembleSize,
                     writeQuorumSize, ackQuorumSize, comprehensiveExclusionBookiesSet, null, null);
             return newEnsembleResult;
@@ -579,6 +594,19 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
                                                    Ensemble<BookieNode> ensemble,
                                                    boolean fallbackToRandom)
             throws BKNotEnoughBookiesException {
+        if (!this.isWeighted) {
+            Node sampled = topology.chooseRandomLeaf(NodeBase.ROOT,
+                    n -> n instanceof BookieNode
+                            && knownBookies.containsKey(((BookieNode) n).getAddr())
+                            && !excludeRacks.contains(n.getNetworkLocation())
+                            && !excludeBookies.contains(n)
+                            && (!enforceDurability || predicate.apply((BookieNode) n, ensemble)),
+                    MAX_RANDOM_LEAF_SAMPLES);
+            if (null != sampled && ensemble.addNode((BookieNode) sampled)) {
+                excludeBookies.add(sampled);
+                return (BookieNode) sampled;
+            }
+        }
 
         List<BookieNode> knownNodes = new ArrayList<>(knownBookies.values());
         Set<Node> fullExclusionBookiesList = new HashSet<Node>(excludeBookies);
@@ -647,6 +675,21 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
      */
     protected BookieNode selectRandomFromRack(String netPath, Set<Node> excludeBookies, Predicate<BookieNode> predicate,
             Ensemble<BookieNode> ensemble) throws BKNotEnoughBookiesException {
+        if (!this.isWeighted) {
+            // sample the indexed leaves first, which finds a candidate in a few attempts unless
+            // most of them are excluded, instead of listing and shuffling all the leaves
+            Node sampled = topology.chooseRandomLeaf(netPath,
+                    n -> n instanceof BookieNode && !excludeBookies.contains(n)
+                            && predicate.apply((BookieNode) n, ensemble),
+                    MAX_RANDOM_LEAF_SAMPLES);
+            if (null != sampled) {
+                BookieNode bn = (BookieNode) sampled;
+                if (ensemble.addNode(bn)) {
+                    excludeBookies.add(bn);
+                }
+                return bn;
+            }
+        }
         WeightedRandomSelection<BookieNode> wRSelection = null;
         List<Node> leaves = new ArrayList<Node>(topology.getLeaves(netPath));
         if (!this.isWeighted) {
@@ -64,6 +64,8 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
     protected final Map<BookieId, BookieNode> historyBookies = new HashMap<BookieId, BookieNode>();
     protected final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
     protected Map<BookieNode, WeightedObject> bookieInfoMap = new HashMap<BookieNode, WeightedObject>();
+    // bookies reported compacting or with a degraded disk, avoided by the new ensembles if possible
+    protected Set<BookieId> unhealthyBookies = Collections.emptySet();
     // Initialize to empty set
     protected ImmutableSet<BookieId> readOnlyBookies = ImmutableSet.of();
     boolean isWeighted;
@@ -766,6 +768,24 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
         }
     }
 
+    /**
+     * Get the network location of the bookies known by the placement policy.
+     *
+     * @return the network location of each known bookie
+     */
+    public Map<BookieId, String> getBookieNetworkLocations() {
+        rwLock.readLock().lock();
+        try {
+            Map<BookieId, String> networkLocations = new HashMap<>(knownBookies.size());
+            for (Map.Entry<BookieId, BookieNode> bookie : knownBookies.entrySet()) {
+                networkLocations.put(bookie.getKey(), bookie.getValue().getNetworkLocation());
+            }
+            return networkLocations;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
     public static int differBetweenBookies(List<BookieId> bookiesA, List<BookieId> bookiesB) {
         if (CollectionUtils.isEmpty(bookiesA) || CollectionUtils.isEmpty(bookiesB)) {
             return Integer.MAX_VALUE;
@@ -793,14 +813,23 @@ abstract class TopologyAwareEnsemblePlacementPolicy implements
             List<BookieNode> allBookies = new ArrayList<BookieNode>(knownBookies.values());
             // create a new map to reflect the new mapping
             Map<BookieNode, WeightedObject> map = new HashMap<BookieNode, WeightedObject>();
+            Set<BookieId> unhealthy = new HashSet<BookieId>();
             for (BookieNode bookie : allBookies) {
-                if (bookieInfoMap.containsKey(bookie.getAddr())) {
-                    map.put(bookie, bookieInfoMap.get(bookie.getAddr()));
+                BookieInfo info = bookieInfoMap.get(bookie.getAddr());
+                if (info != null) {
+                    map.put(bookie, info);
+                    if (info.getLoad() != null && info.getLoad().isUnhealthy()) {
+                        unhealthy.add(bookie.getAddr());
+                    }
                 } else {
                     map.put(bookie, new BookieInfo());
                 }
             }
+            if (!unhealthy.equals(this.unhealthyBookies)) {
+                LOG.info("Bookies compacting or with a degraded disk, avoided by new ensembles: {}", unhealthy);
+            }
             this.bookieInfoMap = map;
+            this.unhealthyBookies = unhealthy.isEmpty() ? Collections.emptySet() : unhealthy;
             this.weightedSelection.updateMap(this.bookieInfoMap);
         } finally {
             rwLock.writeLock().unlock();
@@ -122,4 +122,15 @@ public interface CreateBuilder extends OpBuilder<WriteHandle> {
      */
     CreateAdvBuilder makeAdv();
 
+    /**
+     * Create several ledgers at once with this configuration, instead of a single ledger. Each
+     * ledger gets its own ensemble and ledger id.
+     *
+     * @param numLedgers the number of ledgers to create
+     *
+     * @return a new {@link CreateBatchBuilder} builder
+     * @since 4.16
+     */
+    CreateBatchBuilder makeBatch(int numLedgers);
+
 }
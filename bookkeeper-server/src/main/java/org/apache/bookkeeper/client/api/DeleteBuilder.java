@@ -20,6 +20,7 @@
  */
 package org.apache.bookkeeper.client.api;
 
+import java.util.Collection;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
 
@@ -41,4 +42,15 @@ public interface DeleteBuilder extends OpBuilder<Void> {
      */
     DeleteBuilder withLedgerId(long ledgerId);
 
+    /**
+     * Set the ids of several ledgers to be deleted at once, instead of a single ledger. The
+     * deletion is not atomic: when it fails, some of the ledgers may have been deleted.
+     *
+     * @param ledgerIds
+     *
+     * @return the builder itself
+     * @since 4.16
+     */
+    DeleteBuilder withLedgerIds(Collection<Long> ledgerIds);
+
 }
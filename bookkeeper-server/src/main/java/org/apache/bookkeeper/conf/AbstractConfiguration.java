@@ -86,11 +86,15 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     protected static final String ZK_REQUEST_RATE_LIMIT = "zkRequestRateLimit";
     protected static final String AVAILABLE_NODE = "available";
     protected static final String REREPLICATION_ENTRY_BATCH_SIZE = "rereplicationEntryBatchSize";
+    protected static final String REREPLICATION_BULK_COPY_ENABLED = "rereplicationBulkCopyEnabled";
+    protected static final String REREPLICATION_BULK_COPY_BATCH_SIZE = "rereplicationBulkCopyBatchSize";
+    protected static final String REREPLICATION_BULK_COPY_TIMEOUT_SEC = "rereplicationBulkCopyTimeoutSec";
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_UNDERREPLICATED_MARK_TIME =
             "storeSystemTimeAsLedgerUnderreplicatedMarkTime";
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_CREATION_TIME = "storeSystemTimeAsLedgerCreationTime";
 
     protected static final String ENABLE_BUSY_WAIT = "enableBusyWait";
+    protected static final String ENABLE_VIRTUAL_THREADS = "enableVirtualThreads";
     protected static final String ENABLE_HEALTH_CHECK = "enableHealthCheck";
 
     // Metastore settings, only being used when LEDGER_MANAGER_FACTORY_CLASS is MSLedgerManagerFactory
@@ -467,6 +471,9 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     /**
      * Set Ledger metadata format version.
      *
+     * <p>Version 4 is much smaller than the default version 3 for the ledgers with many ensemble
+     * changes, but can't be read by the clients and bookies older than 4.16.
+     *
      * @param metadataFormatVersion
      *          Ledger metadata format version. pass -1 to use default version
      */
@@ -623,6 +630,76 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getLong(REREPLICATION_ENTRY_BATCH_SIZE, 10);
     }
 
+    /**
+     * Whether the replication workers ask the new bookies to copy the entries of a fragment
+     * directly from the other bookies of its ensemble, instead of reading each entry and adding it
+     * to the new bookies themselves. The entries are copied as they are stored, with their digest.
+     * A fragment is re-replicated entry by entry if the new bookie fails to copy it, for instance
+     * if it doesn't support copying entries.
+     *
+     * @return whether the fragments are copied from bookie to bookie
+     */
+    public boolean isRereplicationBulkCopyEnabled() {
+        return getBoolean(REREPLICATION_BULK_COPY_ENABLED, false);
+    }
+
+    /**
+     * Set whether the replication workers ask the new bookies to copy the fragments from bookie
+     * to bookie.
+     *
+     * @param enabled whether the fragments are copied from bookie to bookie
+     * @return configuration
+     * @see #isRereplicationBulkCopyEnabled()
+     */
+    public T setRereplicationBulkCopyEnabled(boolean enabled) {
+        setProperty(REREPLICATION_BULK_COPY_ENABLED, enabled);
+        return getThis();
+    }
+
+    /**
+     * Get the max number of entries a new bookie is asked to copy with a single request, when
+     * the fragments are copied from bookie to bookie.
+     *
+     * @return max number of entries copied by a request
+     */
+    public long getRereplicationBulkCopyBatchSize() {
+        return getLong(REREPLICATION_BULK_COPY_BATCH_SIZE, 1000);
+    }
+
+    /**
+     * Set the max number of entries a new bookie is asked to copy with a single request.
+     *
+     * @param batchSize max number of entries copied by a request
+     * @return configuration
+     */
+    public T setRereplicationBulkCopyBatchSize(long batchSize) {
+        setProperty(REREPLICATION_BULK_COPY_BATCH_SIZE, batchSize);
+        return getThis();
+    }
+
+    /**
+     * Get the time after which a request to copy entries from bookie to bookie fails, in seconds.
+     * The bookie stops copying the entries after this time, and the replication worker re-replicates
+     * the entries which were not copied once the bookie responded, or after the read and add entry
+     * timeouts more if it doesn't.
+     *
+     * @return timeout of the copy requests in seconds
+     */
+    public int getRereplicationBulkCopyTimeout() {
+        return getInt(REREPLICATION_BULK_COPY_TIMEOUT_SEC, 300);
+    }
+
+    /**
+     * Set the time after which a request to copy entries from bookie to bookie fails.
+     *
+     * @param timeoutSec timeout of the copy requests in seconds
+     * @return configuration
+     */
+    public T setRereplicationBulkCopyTimeout(int timeoutSec) {
+        setProperty(REREPLICATION_BULK_COPY_TIMEOUT_SEC, timeoutSec);
+        return getThis();
+    }
+
     /**
      * Get metastore implementation class.
      *
@@ -1192,6 +1269,41 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getThis();
     }
 
+    /**
+     * Return whether the blocking metadata and replication work runs on virtual threads.
+     *
+     * <p>Default is false
+     *
+     * @return the value of the option
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return getBoolean(ENABLE_VIRTUAL_THREADS, false);
+    }
+
+    /**
+     * Option to run the blocking metadata and replication work on a new virtual thread per task
+     * instead of fixed pools of platform threads.
+     *
+     * <p>When enabled, the ZooKeeper ledger managers process the ledgers of each znode, for the
+     * auditor checks and the admin tools, on their own virtual thread instead of the single thread
+     * of the manager, and the replication worker replicates each of its concurrent ledgers
+     * ({@code rwMaxConcurrentLedgers}) on a virtual thread, so that the number of concurrent
+     * ledgers can be raised without adding platform threads.
+     *
+     * <p>Virtual threads require JDK 21+. On older JVMs, the option is ignored with a warning.
+     *
+     * <p>Default is false.
+     *
+     * @param virtualThreadsEnabled
+     *            whether to run the blocking work on virtual threads
+     *
+     * @see #isVirtualThreadsEnabled()
+     */
+    public T setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        setProperty(ENABLE_VIRTUAL_THREADS, virtualThreadsEnabled);
+        return getThis();
+    }
+
     /**
      * Return the flag indicating whether to limit stats logging.
      *
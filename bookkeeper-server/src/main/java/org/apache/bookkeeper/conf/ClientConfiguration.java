@@ -123,6 +123,7 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String ADD_ENTRY_TIMEOUT_SEC = "addEntryTimeoutSec";
     protected static final String ADD_ENTRY_QUORUM_TIMEOUT_SEC = "addEntryQuorumTimeoutSec";
     protected static final String READ_ENTRY_TIMEOUT_SEC = "readEntryTimeoutSec";
+    protected static final String PROPAGATE_REQUEST_TIMEOUTS = "propagateRequestTimeouts";
     protected static final String TIMEOUT_MONITOR_INTERVAL_SEC = "timeoutMonitorIntervalSec";
     protected static final String TIMEOUT_TASK_INTERVAL_MILLIS = "timeoutTaskIntervalMillis";
     protected static final String EXPLICIT_LAC_INTERVAL = "explicitLacInterval";
@@ -147,6 +148,18 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String BOOKIE_MAX_MULTIPLE_FOR_WEIGHTED_PLACEMENT =
         "bookieMaxMultipleForWeightBasedPlacement";
     protected static final String GET_BOOKIE_INFO_TIMEOUT_SECS = "getBookieInfoTimeoutSecs";
+    protected static final String LEDGER_METADATA_CACHE_MAX_ENTRIES = "ledgerMetadataCacheMaxEntries";
+    protected static final String LEDGER_ID_PREALLOCATION_SIZE = "ledgerIdPreallocationSize";
+    protected static final String LOAD_AWARE_PLACEMENT_ENABLED = "loadAwarePlacementEnabled";
+    protected static final String LOAD_AWARE_PLACEMENT_INTERVAL_SECONDS = "loadAwarePlacementIntervalSeconds";
+    protected static final String LOAD_AWARE_PLACEMENT_SMOOTHING_FACTOR = "loadAwarePlacementSmoothingFactor";
+    protected static final String LOAD_AWARE_PLACEMENT_MIN_WEIGHT_RATIO = "loadAwarePlacementMinWeightRatio";
+    protected static final String LOAD_AWARE_PLACEMENT_JOURNAL_QUEUE_FLOOR = "loadAwarePlacementJournalQueueFloor";
+    protected static final String LOAD_AWARE_PLACEMENT_WRITE_CACHE_USAGE_FLOOR =
+            "loadAwarePlacementWriteCacheUsageFloor";
+    protected static final String LOAD_AWARE_PLACEMENT_ADD_LATENCY_FLOOR_MICROS =
+            "loadAwarePlacementAddLatencyFloorMicros";
+    protected static final String LOAD_AWARE_PLACEMENT_READ_RATE_FLOOR = "loadAwarePlacementReadRateFloor";
     protected static final String START_TLS_TIMEOUT_SECS = "startTLSTimeoutSecs";
     protected static final String TLS_HOSTNAME_VERIFICATION_ENABLED = "tlsHostnameVerificationEnabled";
 
@@ -697,6 +710,30 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the add and read entry timeouts are sent to the bookies along with the requests,
+     * so that the bookies drop the requests the client stopped waiting for. Only supported by the
+     * v3 protocol.
+     *
+     * @return true if the request timeouts are sent to the bookies.
+     */
+    public boolean getPropagateRequestTimeouts() {
+        return getBoolean(PROPAGATE_REQUEST_TIMEOUTS, false);
+    }
+
+    /**
+     * Set whether the add and read entry timeouts are sent to the bookies along with the requests.
+     * @see #getPropagateRequestTimeouts()
+     *
+     * @param enabled
+     *          whether to send the request timeouts to the bookies.
+     * @return client configuration.
+     */
+    public ClientConfiguration setPropagateRequestTimeouts(boolean enabled) {
+        setProperty(PROPAGATE_REQUEST_TIMEOUTS, enabled);
+        return this;
+    }
+
     /**
      * Get the interval between successive executions of the operation timeout monitor. This value is in seconds.
      *
@@ -1523,6 +1560,241 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return getInt(BOOKIE_MAX_MULTIPLE_FOR_WEIGHTED_PLACEMENT, 3);
     }
 
+    /**
+     * Get the max number of ledgers whose metadata is cached by the client, to avoid reading the
+     * metadata of the same ledgers from the metadata store each time they are opened. The metadata
+     * of the closed ledgers is cached until evicted, and the metadata of the open ledgers is
+     * watched for changes while cached. Default is 0, which disables the cache.
+     *
+     * @return the max number of ledgers in the ledger metadata cache
+     */
+    public int getLedgerMetadataCacheMaxEntries() {
+        return getInt(LEDGER_METADATA_CACHE_MAX_ENTRIES, 0);
+    }
+
+    /**
+     * Set the max number of ledgers whose metadata is cached by the client.
+     *
+     * @param maxEntries
+     * @return client configuration
+     * @see #getLedgerMetadataCacheMaxEntries()
+     */
+    public ClientConfiguration setLedgerMetadataCacheMaxEntries(int maxEntries) {
+        setProperty(LEDGER_METADATA_CACHE_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the number of ledger ids the client allocates at once from the metadata store, for the
+     * ledgers it creates afterwards.
+     *
+     * <p>The ids are allocated with a single metadata request when the id generator supports it,
+     * which saves a metadata round trip for most of the ledger creations. The ids of the ledgers
+     * created by different clients are then no longer increasing with their creation time, and the
+     * ids which are not used before the client is closed are skipped. A value of 0 or 1 disables
+     * the preallocation.
+     *
+     * @return the number of preallocated ledger ids
+     */
+    public int getLedgerIdPreallocationSize() {
+        return getInt(LEDGER_ID_PREALLOCATION_SIZE, 0);
+    }
+
+    /**
+     * Set the number of ledger ids the client allocates at once from the metadata store.
+     *
+     * @param size
+     * @return client configuration
+     * @see #getLedgerIdPreallocationSize()
+     */
+    public ClientConfiguration setLedgerIdPreallocationSize(int size) {
+        setProperty(LEDGER_ID_PREALLOCATION_SIZE, size);
+        return this;
+    }
+
+    /**
+     * Return whether the load of the bookies is considered for the placement of new ledgers.
+     *
+     * <p>It only applies with the disk weight based placement: the bookies report their journal
+     * queue, write cache usage, add latency and read rate along with their free disk space, and the
+     * weight of the bookies more loaded than the others is reduced. The bookies which are compacting
+     * or have a degraded disk are avoided, unless there are not enough other bookies.
+     *
+     * @return whether load aware placement is enabled
+     */
+    public boolean getLoadAwarePlacementEnabled() {
+        return getBoolean(LOAD_AWARE_PLACEMENT_ENABLED, false);
+    }
+
+    /**
+     * Set whether the load of the bookies is considered for the placement of new ledgers.
+     *
+     * @param enabled
+     * @return client configuration
+     * @see #getLoadAwarePlacementEnabled()
+     */
+    public ClientConfiguration setLoadAwarePlacementEnabled(boolean enabled) {
+        setProperty(LOAD_AWARE_PLACEMENT_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the time interval between successive polls of the bookie info when load aware placement
+     * is enabled, as the load changes much faster than the free disk space. Default is 30s.
+     *
+     * @return the poll interval in seconds
+     */
+    public int getLoadAwarePlacementIntervalSeconds() {
+        return getInt(LOAD_AWARE_PLACEMENT_INTERVAL_SECONDS, 30);
+    }
+
+    /**
+     * Set the time interval between successive polls of the bookie info when load aware placement
+     * is enabled.
+     *
+     * @param interval
+     * @param unit
+     * @return client configuration
+     */
+    public ClientConfiguration setLoadAwarePlacementIntervalSeconds(int interval, TimeUnit unit) {
+        setProperty(LOAD_AWARE_PLACEMENT_INTERVAL_SECONDS, unit.toSeconds(interval));
+        return this;
+    }
+
+    /**
+     * Get the weight given to the latest load report of a bookie, between 0 and 1, when updating
+     * its placement weight. Lower values damp the changes of weight, so that the clients don't all
+     * move their new ledgers to the same bookies at once. Default is 0.3.
+     *
+     * @return the smoothing factor
+     */
+    public double getLoadAwarePlacementSmoothingFactor() {
+        return getDouble(LOAD_AWARE_PLACEMENT_SMOOTHING_FACTOR, 0.3);
+    }
+
+    /**
+     * Set the weight given to the latest load report of a bookie when updating its placement weight.
+     *
+     * @param smoothingFactor
+     * @return client configuration
+     */
+    public ClientConfiguration setLoadAwarePlacementSmoothingFactor(double smoothingFactor) {
+        setProperty(LOAD_AWARE_PLACEMENT_SMOOTHING_FACTOR, smoothingFactor);
+        return this;
+    }
+
+    /**
+     * Get the minimum ratio of its disk based weight kept by a loaded bookie, so that it still
+     * gets some new ledgers. Default is 0.1.
+     *
+     * @return the minimum weight ratio
+     */
+    public double getLoadAwarePlacementMinWeightRatio() {
+        return getDouble(LOAD_AWARE_PLACEMENT_MIN_WEIGHT_RATIO, 0.1);
+    }
+
+    /**
+     * Set the minimum ratio of its disk based weight kept by a loaded bookie.
+     *
+     * @param minWeightRatio
+     * @return client configuration
+     */
+    public ClientConfiguration setLoadAwarePlacementMinWeightRatio(double minWeightRatio) {
+        setProperty(LOAD_AWARE_PLACEMENT_MIN_WEIGHT_RATIO, minWeightRatio);
+        return this;
+    }
+
+    /**
+     * Get the journal queue length added to the queue length of each bookie before comparing it
+     * to the other bookies, so that the differences between nearly idle bookies are ignored.
+     * Default is 100.
+     *
+     * @return the journal queue length floor
+     */
+    public long getLoadAwarePlacementJournalQueueFloor() {
+        return getLong(LOAD_AWARE_PLACEMENT_JOURNAL_QUEUE_FLOOR, 100);
+    }
+
+    /**
+     * Set the journal queue length added to the queue length of each bookie before comparing it.
+     *
+     * @param floor
+     * @return client configuration
+     * @see #getLoadAwarePlacementJournalQueueFloor()
+     */
+    public ClientConfiguration setLoadAwarePlacementJournalQueueFloor(long floor) {
+        setProperty(LOAD_AWARE_PLACEMENT_JOURNAL_QUEUE_FLOOR, floor);
+        return this;
+    }
+
+    /**
+     * Get the write cache usage, in percent, added to the usage of each bookie before comparing it
+     * to the other bookies. Default is 20.
+     *
+     * @return the write cache usage floor
+     */
+    public long getLoadAwarePlacementWriteCacheUsageFloor() {
+        return getLong(LOAD_AWARE_PLACEMENT_WRITE_CACHE_USAGE_FLOOR, 20);
+    }
+
+    /**
+     * Set the write cache usage, in percent, added to the usage of each bookie before comparing it.
+     *
+     * @param floor
+     * @return client configuration
+     * @see #getLoadAwarePlacementWriteCacheUsageFloor()
+     */
+    public ClientConfiguration setLoadAwarePlacementWriteCacheUsageFloor(long floor) {
+        setProperty(LOAD_AWARE_PLACEMENT_WRITE_CACHE_USAGE_FLOOR, floor);
+        return this;
+    }
+
+    /**
+     * Get the latency, in microseconds, added to the p99 add latency of each bookie before
+     * comparing it to the other bookies. Default is 2000.
+     *
+     * @return the add latency floor in microseconds
+     */
+    public long getLoadAwarePlacementAddLatencyFloorMicros() {
+        return getLong(LOAD_AWARE_PLACEMENT_ADD_LATENCY_FLOOR_MICROS, 2000);
+    }
+
+    /**
+     * Set the latency, in microseconds, added to the p99 add latency of each bookie before
+     * comparing it.
+     *
+     * @param floorMicros
+     * @return client configuration
+     * @see #getLoadAwarePlacementAddLatencyFloorMicros()
+     */
+    public ClientConfiguration setLoadAwarePlacementAddLatencyFloorMicros(long floorMicros) {
+        setProperty(LOAD_AWARE_PLACEMENT_ADD_LATENCY_FLOOR_MICROS, floorMicros);
+        return this;
+    }
+
+    /**
+     * Get the read rate, in requests per second, added to the read rate of each bookie before
+     * comparing it to the other bookies. Default is 200.
+     *
+     * @return the read rate floor
+     */
+    public long getLoadAwarePlacementReadRateFloor() {
+        return getLong(LOAD_AWARE_PLACEMENT_READ_RATE_FLOOR, 200);
+    }
+
+    /**
+     * Set the read rate, in requests per second, added to the read rate of each bookie before
+     * comparing it.
+     *
+     * @param floor
+     * @return client configuration
+     * @see #getLoadAwarePlacementReadRateFloor()
+     */
+    public ClientConfiguration setLoadAwarePlacementReadRateFloor(long floor) {
+        setProperty(LOAD_AWARE_PLACEMENT_READ_RATE_FLOOR, floor);
+        return this;
+    }
+
     /**
      * Return the timeout value for getBookieInfo request.
      * @return
@@ -153,11 +153,26 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
     protected static final String JOURNAL_CHANNEL_PROVIDER = "journalChannelProvider";
     protected static final String JOURNAL_REUSE_FILES = "journalReuseFiles";
+    protected static final String JOURNAL_PARALLEL_REPLAY = "journalParallelReplay";
+    protected static final String JOURNAL_REPLAY_INDEX_ENABLED = "journalReplayIndexEnabled";
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
     protected static final String CLOSE_CHANNEL_ON_RESPONSE_TIMEOUT = "closeChannelOnResponseTimeout";
     protected static final String WAIT_TIMEOUT_ON_RESPONSE_BACKPRESSURE = "waitTimeoutOnResponseBackpressureMs";
+    protected static final String V2_PROTOCOL_REQUEST_TIMEOUT_MS = "v2ProtocolRequestTimeoutMs";
+    protected static final String REPLICATION_BYTE_RATE_LIMIT = "replicationByteRateLimit";
+    protected static final String COPY_ENTRIES_MAX_OUTSTANDING = "copyEntriesMaxOutstanding";
+    // tenant fair scheduling
+    protected static final String TENANT_FAIR_SCHEDULING_ENABLED = "tenantFairSchedulingEnabled";
+    protected static final String TENANT_SCHEDULING_MAX_OUTSTANDING_REQUESTS =
+            "tenantSchedulingMaxOutstandingRequests";
+    protected static final String TENANT_SCHEDULING_MAX_QUEUED_REQUESTS = "tenantSchedulingMaxQueuedRequests";
+    protected static final String TENANT_SCHEDULING_WEIGHTS = "tenantSchedulingWeights";
+    protected static final String TENANT_SCHEDULING_BYTE_RATE_LIMIT = "tenantSchedulingByteRateLimit";
+    protected static final String TENANT_SCHEDULING_BYTE_RATE_LIMITS = "tenantSchedulingByteRateLimits";
+    protected static final String TENANT_SCHEDULING_TAILING_READ_WEIGHT = "tenantSchedulingTailingReadWeight";
+    protected static final String TENANT_SCHEDULING_TAILING_READ_WINDOW = "tenantSchedulingTailingReadWindow";
 
     // Bookie Parameters
     protected static final String BOOKIE_PORT = "bookiePort";
@@ -181,6 +196,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
 
     protected static final String SERVER_NUM_ACCEPTOR_THREADS = "serverNumAcceptorThreads";
     protected static final String SERVER_NUM_IO_THREADS = "serverNumIOThreads";
+    protected static final String PIN_ADD_WORKER_THREADS_TO_CPU_CORES = "pinAddWorkerThreadsToCpuCores";
 
     // Zookeeper Parameters
     protected static final String ZK_RETRY_BACKOFF_START_MS = "zkRetryBackoffStartMs";
@@ -202,6 +218,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
 
     // Replication parameters
     protected static final String AUDITOR_PERIODIC_CHECK_INTERVAL = "auditorPeriodicCheckInterval";
+    protected static final String AUDITOR_INCREMENTAL_CHECK_ENABLED = "auditorIncrementalCheckEnabled";
+    protected static final String AUDITOR_FULL_CHECK_INTERVAL = "auditorFullCheckInterval";
     protected static final String AUDITOR_PERIODIC_BOOKIE_CHECK_INTERVAL = "auditorPeriodicBookieCheckInterval";
     protected static final String AUDITOR_PERIODIC_PLACEMENT_POLICY_CHECK_INTERVAL =
                                                                 "auditorPeriodicPlacementPolicyCheckInterval";
@@ -211,9 +229,17 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String AUTO_RECOVERY_DAEMON_ENABLED = "autoRecoveryDaemonEnabled";
     protected static final String LOST_BOOKIE_RECOVERY_DELAY = "lostBookieRecoveryDelay";
     protected static final String RW_REREPLICATE_BACKOFF_MS = "rwRereplicateBackoffMs";
+    protected static final String RW_MAX_CONCURRENT_LEDGERS = "rwMaxConcurrentLedgers";
     protected static final String UNDERREPLICATED_LEDGER_RECOVERY_GRACE_PERIOD =
             "underreplicatedLedgerRecoveryGracePeriod";
     protected static final String AUDITOR_REPLICAS_CHECK_INTERVAL = "auditorReplicasCheckInterval";
+    protected static final String AUDITOR_REPLICAS_CHECK_MAX_OUTSTANDING_LEDGERS =
+        "auditorReplicasCheckMaxOutstandingLedgers";
+    protected static final String AUDITOR_REPLICAS_CHECK_BATCH_SIZE = "auditorReplicasCheckBatchSize";
+    protected static final String AUDITOR_REPLICAS_CHECK_SAMPLING_CONFIDENCE =
+        "auditorReplicasCheckSamplingConfidence";
+    protected static final String AUDITOR_REPLICAS_CHECK_SAMPLING_MIN_DEFECT_RATE =
+        "auditorReplicasCheckSamplingMinDefectRate";
     protected static final String AUDITOR_MAX_NUMBER_OF_CONCURRENT_OPEN_LEDGER_OPERATIONS =
         "auditorMaxNumberOfConcurrentOpenLedgerOperations";
     protected static final String AUDITOR_ACQUIRE_CONCURRENT_OPEN_LEDGER_OPERATIONS_TIMEOUT_MSEC =
@@ -226,6 +252,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String NUM_READ_WORKER_THREADS = "numReadWorkerThreads";
     protected static final String MAX_PENDING_READ_REQUESTS_PER_THREAD = "maxPendingReadRequestsPerThread";
     protected static final String MAX_PENDING_ADD_REQUESTS_PER_THREAD = "maxPendingAddRequestsPerThread";
+    protected static final String MAX_LEDGERS_PER_LIST_OF_ENTRIES_REQUEST = "maxLedgersPerListOfEntriesRequest";
     protected static final String NUM_LONG_POLL_WORKER_THREADS = "numLongPollWorkerThreads";
     protected static final String NUM_HIGH_PRIORITY_WORKER_THREADS = "numHighPriorityWorkerThreads";
     protected static final String READ_WORKER_THREADS_THROTTLING_ENABLED = "readWorkerThreadsThrottlingEnabled";
@@ -235,6 +262,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String REQUEST_TIMER_NO_OF_TICKS = "requestTimerNumTicks";
 
     protected static final String READ_BUFFER_SIZE = "readBufferSizeBytes";
+    protected static final String ENTRY_LOG_MMAP_READ_ENABLED = "entryLogMmapReadEnabled";
     protected static final String WRITE_BUFFER_SIZE = "writeBufferSizeBytes";
     // Whether the bookie should use its hostname or ipaddress for the
     // registration.
@@ -1022,6 +1050,50 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journals of the different journal directories are replayed in parallel,
+     * one thread per journal directory, when the bookie starts.
+     *
+     * @return true if journals are replayed in parallel
+     */
+    public boolean getJournalParallelReplay() {
+        return this.getBoolean(JOURNAL_PARALLEL_REPLAY, false);
+    }
+
+    /**
+     * Enable/disable replaying the journals of the different journal directories in parallel
+     * when the bookie starts.
+     *
+     * @param journalParallelReplay flag to enable/disable parallel journal replay
+     * @return server configuration object
+     */
+    public ServerConfiguration setJournalParallelReplay(boolean journalParallelReplay) {
+        setProperty(JOURNAL_PARALLEL_REPLAY, journalParallelReplay);
+        return this;
+    }
+
+    /**
+     * Whether the journal keeps a replay index next to each journal file. The index records the
+     * ledgers whose entries were already flushed by the ledger storage after the last log mark, so
+     * that those entries can be skipped when the journal is replayed.
+     *
+     * @return true if the journal replay index is enabled
+     */
+    public boolean getJournalReplayIndexEnabled() {
+        return this.getBoolean(JOURNAL_REPLAY_INDEX_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable the journal replay index.
+     *
+     * @param journalReplayIndexEnabled flag to enable/disable the journal replay index
+     * @return server configuration object
+     */
+    public ServerConfiguration setJournalReplayIndexEnabled(boolean journalReplayIndexEnabled) {
+        setProperty(JOURNAL_REPLAY_INDEX_ENABLED, journalReplayIndexEnabled);
+        return this;
+    }
+
     /**
      * Get max number of adds in progress. 0 == unlimited.
      *
@@ -1118,6 +1190,255 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Timeout after which the bookie drops the v2 protocol requests not processed yet, replying
+     * with a too many requests error. The v3 protocol requests carry their own timeout, set by
+     * the clients, while the v2 protocol requests have none, so this should match the add and
+     * read timeouts of the v2 protocol clients.
+     *
+     * @return timeout of the v2 protocol requests in milliseconds, 0 to never drop requests
+     */
+    public long getV2ProtocolRequestTimeoutMs() {
+        return getLong(V2_PROTOCOL_REQUEST_TIMEOUT_MS, 0);
+    }
+
+    /**
+     * Set the timeout after which the bookie drops the v2 protocol requests not processed yet.
+     *
+     * @param timeoutMs
+     *          timeout of the v2 protocol requests in milliseconds, 0 to never drop requests
+     * @return server configuration
+     */
+    public ServerConfiguration setV2ProtocolRequestTimeoutMs(long timeoutMs) {
+        setProperty(V2_PROTOCOL_REQUEST_TIMEOUT_MS, timeoutMs);
+        return this;
+    }
+
+    /**
+     * Max rate of the entries added by the replication workers re-replicating ledgers to this
+     * bookie, in bytes per second. Reading from the connections of the replication workers is
+     * suspended while they exceed it, so re-replication cannot saturate the disks used by the
+     * clients and the ledger recoveries. The adds of ledger recoveries are not limited.
+     *
+     * @return max rate of the re-replicated entries in bytes per second, 0 for no limit
+     */
+    public long getReplicationByteRateLimit() {
+        return getLong(REPLICATION_BYTE_RATE_LIMIT, 0);
+    }
+
+    /**
+     * Set the max rate of the entries added by the replication workers, in bytes per second.
+     *
+     * @param bytesPerSecond
+     *          max rate of the re-replicated entries in bytes per second, 0 for no limit
+     * @return server configuration
+     */
+    public ServerConfiguration setReplicationByteRateLimit(long bytesPerSecond) {
+        setProperty(REPLICATION_BYTE_RATE_LIMIT, bytesPerSecond);
+        return this;
+    }
+
+    /**
+     * Max number of entries a copy entries request has being read from the other bookies or
+     * being added to this bookie at the same time. The replication workers send these requests
+     * to copy the ledger fragments of a lost bookie from bookie to bookie.
+     *
+     * @return max number of outstanding entries of a copy entries request
+     */
+    public int getCopyEntriesMaxOutstanding() {
+        return getInt(COPY_ENTRIES_MAX_OUTSTANDING, 16);
+    }
+
+    /**
+     * Set the max number of outstanding entries of a copy entries request.
+     *
+     * @param maxOutstanding
+     *          max number of outstanding entries of a copy entries request
+     * @return server configuration
+     */
+    public ServerConfiguration setCopyEntriesMaxOutstanding(int maxOutstanding) {
+        setProperty(COPY_ENTRIES_MAX_OUTSTANDING, maxOutstanding);
+        return this;
+    }
+
+    /**
+     * Whether the read and add requests are scheduled fairly across tenants before being
+     * handed to the worker thread pools. The tenant of a request is the authenticated principal
+     * of its connection, the requests of the anonymous connections share a single tenant.
+     *
+     * @return true if tenant fair scheduling is enabled
+     */
+    public boolean isTenantFairSchedulingEnabled() {
+        return getBoolean(TENANT_FAIR_SCHEDULING_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the fair scheduling of requests across tenants.
+     *
+     * @param enabled
+     *          whether to enable tenant fair scheduling
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantFairSchedulingEnabled(boolean enabled) {
+        setProperty(TENANT_FAIR_SCHEDULING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Max number of requests released by the tenant scheduler to a worker thread pool and not
+     * completed yet. 0 == twice the number of threads of the pool.
+     *
+     * @return max number of outstanding requests per thread pool
+     */
+    public int getTenantSchedulingMaxOutstandingRequests() {
+        return getInt(TENANT_SCHEDULING_MAX_OUTSTANDING_REQUESTS, 0);
+    }
+
+    /**
+     * Set the max number of requests released by the tenant scheduler to a worker thread pool
+     * and not completed yet.
+     *
+     * @param maxRequests
+     *          max number of outstanding requests per thread pool
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantSchedulingMaxOutstandingRequests(int maxRequests) {
+        setProperty(TENANT_SCHEDULING_MAX_OUTSTANDING_REQUESTS, maxRequests);
+        return this;
+    }
+
+    /**
+     * Max number of requests of a tenant waiting in the tenant scheduler, for reads and adds
+     * separately. Further requests are rejected with a too many requests error.
+     *
+     * @return max number of queued requests per tenant
+     */
+    public int getTenantSchedulingMaxQueuedRequests() {
+        return getInt(TENANT_SCHEDULING_MAX_QUEUED_REQUESTS, 10000);
+    }
+
+    /**
+     * Set the max number of requests of a tenant waiting in the tenant scheduler.
+     *
+     * @param maxRequests
+     *          max number of queued requests per tenant
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantSchedulingMaxQueuedRequests(int maxRequests) {
+        setProperty(TENANT_SCHEDULING_MAX_QUEUED_REQUESTS, maxRequests);
+        return this;
+    }
+
+    /**
+     * Scheduling weights of the tenants, as a list of <i>tenant:weight</i>. Tenants not listed
+     * have a weight of 1.
+     *
+     * @return tenant weights
+     */
+    public String[] getTenantSchedulingWeights() {
+        return getStringArray(TENANT_SCHEDULING_WEIGHTS);
+    }
+
+    /**
+     * Set the scheduling weights of the tenants.
+     *
+     * @param weights
+     *          list of <i>tenant:weight</i>
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantSchedulingWeights(String[] weights) {
+        setProperty(TENANT_SCHEDULING_WEIGHTS, weights);
+        return this;
+    }
+
+    /**
+     * Default byte rate quota of a tenant, in bytes per second, for reads and adds separately.
+     * 0 == unlimited.
+     *
+     * @return byte rate quota per tenant
+     */
+    public long getTenantSchedulingByteRateLimit() {
+        return getLong(TENANT_SCHEDULING_BYTE_RATE_LIMIT, 0);
+    }
+
+    /**
+     * Set the default byte rate quota of a tenant, in bytes per second.
+     *
+     * @param bytesPerSecond
+     *          byte rate quota per tenant, 0 for unlimited
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantSchedulingByteRateLimit(long bytesPerSecond) {
+        setProperty(TENANT_SCHEDULING_BYTE_RATE_LIMIT, bytesPerSecond);
+        return this;
+    }
+
+    /**
+     * Byte rate quotas of specific tenants, as a list of <i>tenant:bytesPerSecond</i>,
+     * overriding {@link #getTenantSchedulingByteRateLimit()}.
+     *
+     * @return byte rate quotas of specific tenants
+     */
+    public String[] getTenantSchedulingByteRateLimits() {
+        return getStringArray(TENANT_SCHEDULING_BYTE_RATE_LIMITS);
+    }
+
+    /**
+     * Set the byte rate quotas of specific tenants.
+     *
+     * @param limits
+     *          list of <i>tenant:bytesPerSecond</i>
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantSchedulingByteRateLimits(String[] limits) {
+        setProperty(TENANT_SCHEDULING_BYTE_RATE_LIMITS, limits);
+        return this;
+    }
+
+    /**
+     * Weight of the tailing reads of a tenant relative to its catch-up reads.
+     *
+     * @return tailing read weight
+     */
+    public double getTenantSchedulingTailingReadWeight() {
+        return getDouble(TENANT_SCHEDULING_TAILING_READ_WEIGHT, 4.0);
+    }
+
+    /**
+     * Set the weight of the tailing reads of a tenant relative to its catch-up reads.
+     *
+     * @param weight
+     *          tailing read weight
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantSchedulingTailingReadWeight(double weight) {
+        setProperty(TENANT_SCHEDULING_TAILING_READ_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Number of entries behind the last entry added to a ledger on this bookie within which a
+     * read is scheduled as a tailing read. Reads further behind are catch-up reads.
+     *
+     * @return tailing read window in entries
+     */
+    public int getTenantSchedulingTailingReadWindow() {
+        return getInt(TENANT_SCHEDULING_TAILING_READ_WINDOW, 1000);
+    }
+
+    /**
+     * Set the number of entries behind the last entry added to a ledger within which a read is
+     * scheduled as a tailing read.
+     *
+     * @param entries
+     *          tailing read window in entries
+     * @return server configuration
+     */
+    public ServerConfiguration setTenantSchedulingTailingReadWindow(int entries) {
+        setProperty(TENANT_SCHEDULING_TAILING_READ_WINDOW, entries);
+        return this;
+    }
+
     /**
      * Get bookie port that bookie server listen on.
      *
@@ -1534,6 +1855,33 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether each add worker thread is pinned to its own CPU core. The ledgers are sharded
+     * across the add worker threads, so the adds, force ledger and write LAC requests of a ledger
+     * then always run on the same core. This only changes where the add worker threads run, the
+     * requests are executed by the add worker threads as when the threads are not pinned.
+     *
+     * <p>The cores are acquired through the cpu-affinity module, {@link #getNumAddWorkerThreads()}
+     * should not exceed the number of isolated cores.
+     *
+     * @return true if the add worker threads are pinned to CPU cores
+     */
+    public boolean isPinAddWorkerThreadsToCpuCores() {
+        return getBoolean(PIN_ADD_WORKER_THREADS_TO_CPU_CORES, false);
+    }
+
+    /**
+     * Set whether the add worker threads are pinned to CPU cores.
+     *
+     * @see #isPinAddWorkerThreadsToCpuCores()
+     * @param enabled whether to pin the add worker threads to CPU cores
+     * @return server configuration
+     */
+    public ServerConfiguration setPinAddWorkerThreadsToCpuCores(boolean enabled) {
+        setProperty(PIN_ADD_WORKER_THREADS_TO_CPU_CORES, enabled);
+        return this;
+    }
+
     /**
      * Timeout to drain the socket on close.
      *
@@ -1935,6 +2283,29 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether entries of sealed entry logs are read through a memory mapping of the entry log,
+     * instead of being copied through a {@link org.apache.bookkeeper.bookie.BufferedReadChannel}.
+     * Entries are then returned as slices of the mapping without any copy.
+     *
+     * @return true if entry logs are read through memory mappings
+     */
+    public boolean isEntryLogMmapReadEnabled() {
+        return getBoolean(ENTRY_LOG_MMAP_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable reading sealed entry logs through memory mappings.
+     *
+     * @param enabled
+     *          flag to enable/disable memory mapped reads
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogMmapReadEnabled(boolean enabled) {
+        setProperty(ENTRY_LOG_MMAP_READ_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Set the number of threads that would handle write requests.
      *
@@ -2098,6 +2469,26 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(MAX_PENDING_ADD_REQUESTS_PER_THREAD, 10000);
     }
 
+    /**
+     * Set the max number of ledgers whose entries can be listed with a single request. The
+     * requests for more ledgers are failed as bad requests.
+     *
+     * @param maxLedgersPerListOfEntriesRequest
+     * @return server configuration
+     */
+    public ServerConfiguration setMaxLedgersPerListOfEntriesRequest(int maxLedgersPerListOfEntriesRequest) {
+        setProperty(MAX_LEDGERS_PER_LIST_OF_ENTRIES_REQUEST, maxLedgersPerListOfEntriesRequest);
+        return this;
+    }
+
+    /**
+     * Limit the number of ledgers whose entries are listed with a single request, to bound the
+     * size of the response and the time a read worker thread spends on it (default: 1000 ledgers).
+     */
+    public int getMaxLedgersPerListOfEntriesRequest() {
+        return getInt(MAX_LEDGERS_PER_LIST_OF_ENTRIES_REQUEST, 1000);
+    }
+
 
 
     /**
@@ -2595,6 +2986,53 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getLong(AUDITOR_PERIODIC_CHECK_INTERVAL, 604800);
     }
 
+    /**
+     * Enable the incremental periodic checks of the auditor. The auditor keeps a snapshot of the
+     * metadata of all the ledgers, updated by a metadata watch per ledger, and the periodic
+     * ledgers check and placement policy check only re-evaluate the ledgers whose metadata
+     * changed or with a bookie whose availability changed since their last run.
+     *
+     * @param enabled
+     *            whether the periodic checks are incremental
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorIncrementalCheckEnabled(boolean enabled) {
+        setProperty(AUDITOR_INCREMENTAL_CHECK_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether the periodic checks of the auditor are incremental.
+     *
+     * @return true if the periodic checks are incremental. By default it is false.
+     */
+    public boolean isAuditorIncrementalCheckEnabled() {
+        return getBoolean(AUDITOR_INCREMENTAL_CHECK_ENABLED, false);
+    }
+
+    /**
+     * Set the interval at which the incremental periodic checks of the auditor still re-evaluate
+     * all the ledgers, to detect the issues which don't change the metadata, like the entries
+     * lost by a bookie which stayed available. Setting this to 0 disables the full checks.
+     *
+     * @param interval The interval in seconds. e.g. 2419200 = 4 weeks
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorFullCheckInterval(long interval) {
+        setProperty(AUDITOR_FULL_CHECK_INTERVAL, interval);
+        return this;
+    }
+
+    /**
+     * Get the interval at which the incremental periodic checks of the auditor re-evaluate all
+     * the ledgers.
+     *
+     * @return The interval in seconds. Default is 2419200 (4 weeks).
+     */
+    public long getAuditorFullCheckInterval() {
+        return getLong(AUDITOR_FULL_CHECK_INTERVAL, 2419200);
+    }
+
     /**
      * Set the interval between auditor bookie checks.
      * The auditor bookie check, checks ledger metadata to see which bookies
@@ -2709,6 +3147,97 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getLong(AUDITOR_REPLICAS_CHECK_INTERVAL, 0);
     }
 
+    /**
+     * Set the max number of ledgers the auditor replicas check verifies at the same time.
+     *
+     * @param maxOutstandingLedgers
+     *            max number of ledgers being checked
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckMaxOutstandingLedgers(int maxOutstandingLedgers) {
+        setProperty(AUDITOR_REPLICAS_CHECK_MAX_OUTSTANDING_LEDGERS, maxOutstandingLedgers);
+        return this;
+    }
+
+    /**
+     * Get the max number of ledgers the auditor replicas check verifies at the same time.
+     *
+     * @return max number of ledgers being checked. By default it is 100.
+     */
+    public int getAuditorReplicasCheckMaxOutstandingLedgers() {
+        return getInt(AUDITOR_REPLICAS_CHECK_MAX_OUTSTANDING_LEDGERS, 100);
+    }
+
+    /**
+     * Set the max number of ledgers whose entries the auditor replicas check lists with a single
+     * request to a bookie. Setting it to 1 lists the entries of each ledger with its own request.
+     *
+     * @param batchSize
+     *            max number of ledgers per request
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckBatchSize(int batchSize) {
+        setProperty(AUDITOR_REPLICAS_CHECK_BATCH_SIZE, batchSize);
+        return this;
+    }
+
+    /**
+     * Get the max number of ledgers whose entries the auditor replicas check lists with a single
+     * request to a bookie.
+     *
+     * @return max number of ledgers per request. By default it is 100.
+     */
+    public int getAuditorReplicasCheckBatchSize() {
+        return getInt(AUDITOR_REPLICAS_CHECK_BATCH_SIZE, 100);
+    }
+
+    /**
+     * Set the confidence of the sampled auditor replicas check, which checks a random sample of
+     * the ledgers large enough to detect, with this confidence, that at least
+     * {@link #getAuditorReplicasCheckSamplingMinDefectRate()} of the ledgers have missing
+     * replicas. Setting it to 0 checks all the ledgers.
+     *
+     * @param confidence
+     *            confidence, between 0 and 1, e.g. 0.99
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckSamplingConfidence(double confidence) {
+        setProperty(AUDITOR_REPLICAS_CHECK_SAMPLING_CONFIDENCE, confidence);
+        return this;
+    }
+
+    /**
+     * Get the confidence of the sampled auditor replicas check.
+     *
+     * @return confidence. By default it is 0, all the ledgers are checked.
+     */
+    public double getAuditorReplicasCheckSamplingConfidence() {
+        return getDouble(AUDITOR_REPLICAS_CHECK_SAMPLING_CONFIDENCE, 0);
+    }
+
+    /**
+     * Set the fraction of the ledgers with missing replicas that the sampled auditor replicas
+     * check must detect.
+     *
+     * @param minDefectRate
+     *            fraction of the ledgers, between 0 and 1
+     * @return server configuration
+     */
+    public ServerConfiguration setAuditorReplicasCheckSamplingMinDefectRate(double minDefectRate) {
+        setProperty(AUDITOR_REPLICAS_CHECK_SAMPLING_MIN_DEFECT_RATE, minDefectRate);
+        return this;
+    }
+
+    /**
+     * Get the fraction of the ledgers with missing replicas that the sampled auditor replicas
+     * check must detect.
+     *
+     * @return fraction of the ledgers. By default it is 0.001.
+     */
+    public double getAuditorReplicasCheckSamplingMinDefectRate() {
+        return getDouble(AUDITOR_REPLICAS_CHECK_SAMPLING_MIN_DEFECT_RATE, 0.001);
+    }
+
     /**
      * Get the semaphore limit value of getting ledger from zookeeper in auto recovery.
      *
@@ -2824,6 +3353,27 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         setProperty(RW_REREPLICATE_BACKOFF_MS, backoffMs);
     }
 
+    /**
+     * Get the max number of ledgers the replication worker re-replicates at the same time.
+     *
+     * @return max number of ledgers re-replicated concurrently
+     */
+    public int getRwMaxConcurrentLedgers() {
+        return getInt(RW_MAX_CONCURRENT_LEDGERS, 1);
+    }
+
+    /**
+     * Set the max number of ledgers the replication worker re-replicates at the same time.
+     * They share the byte rate of {@link #getReplicationRateByBytes()}.
+     *
+     * @param maxConcurrentLedgers max number of ledgers re-replicated concurrently
+     * @return server configuration
+     */
+    public ServerConfiguration setRwMaxConcurrentLedgers(int maxConcurrentLedgers) {
+        setProperty(RW_MAX_CONCURRENT_LEDGERS, maxConcurrentLedgers);
+        return this;
+    }
+
     /**
      * Sets that whether force start a bookie in readonly mode.
      *
@@ -18,17 +18,23 @@
 package org.apache.bookkeeper.meta;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
@@ -37,6 +43,7 @@ import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.LedgerMetadataBuilder;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.common.util.ExecutorUtils;
 import org.apache.bookkeeper.conf.AbstractConfiguration;
 import org.apache.bookkeeper.meta.zk.ZKMetadataDriverBase;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
@@ -57,6 +64,7 @@ import org.apache.zookeeper.AsyncCallback.VoidCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooKeeper;
@@ -74,6 +82,9 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
 
     @VisibleForTesting
     static final int ZK_CONNECT_BACKOFF_MS = 200;
+    // number of ledgers created or removed by each multi request of the batch operations
+    @VisibleForTesting
+    static final int ZK_BATCH_SIZE = 100;
 
     private final LedgerMetadataSerDe serDe;
     protected final AbstractConfiguration conf;
@@ -85,6 +96,10 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
             new ConcurrentHashMap<Long, Set<LedgerMetadataListener>>();
     // we use this to prevent long stack chains from building up in callbacks
     protected ScheduledExecutorService scheduler;
+    // runs the loops processing the ledgers of a znode. Their processors may block, e.g. the auditor
+    // waiting for its open ledger permits, so with virtual threads each loop gets its own thread
+    // instead of holding the scheduler
+    private final ExecutorService processorExecutor;
 
     /**
      * ReadLedgerMetadataTask class.
@@ -189,6 +204,9 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
         this.ledgerRootPath = ZKMetadataDriverBase.resolveZkLedgersRootPath(conf);
         this.scheduler = Executors
                 .newSingleThreadScheduledExecutor(new DefaultThreadFactory("ZkLedgerManagerScheduler"));
+        ExecutorService virtualThreadExecutor = conf.isVirtualThreadsEnabled()
+                ? ExecutorUtils.newVirtualThreadPerTaskExecutor("ZkLedgerManagerProcessor-") : null;
+        this.processorExecutor = virtualThreadExecutor != null ? virtualThreadExecutor : scheduler;
         if (LOG.isDebugEnabled()) {
             LOG.debug("Using AbstractZkLedgerManager with root path : {}", ledgerRootPath);
         }
@@ -273,17 +291,24 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
     @Override
     public CompletableFuture<Versioned<LedgerMetadata>> createLedgerMetadata(long ledgerId,
                                                                              LedgerMetadata inputMetadata) {
-        CompletableFuture<Versioned<LedgerMetadata>> promise = new CompletableFuture<>();
         /*
          * Create a random number and use it as creator token.
          */
         final long cToken = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
-        final LedgerMetadata metadata;
+        return createLedgerMetadata(ledgerId, withCToken(ledgerId, inputMetadata, cToken), cToken);
+    }
+
+    private static LedgerMetadata withCToken(long ledgerId, LedgerMetadata inputMetadata, long cToken) {
         if (inputMetadata.getMetadataFormatVersion() > LedgerMetadataSerDe.METADATA_FORMAT_VERSION_2) {
-            metadata = LedgerMetadataBuilder.from(inputMetadata).withId(ledgerId).withCToken(cToken).build();
+            return LedgerMetadataBuilder.from(inputMetadata).withId(ledgerId).withCToken(cToken).build();
         } else {
-            metadata = inputMetadata;
+            return inputMetadata;
         }
+    }
+
+    private CompletableFuture<Versioned<LedgerMetadata>> createLedgerMetadata(long ledgerId, LedgerMetadata metadata,
+                                                                              long cToken) {
+        CompletableFuture<Versioned<LedgerMetadata>> promise = new CompletableFuture<>();
         String ledgerPath = getLedgerPath(ledgerId);
         StringCallback scb = new StringCallback() {
             @Override
@@ -346,6 +371,73 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
         return promise;
     }
 
+    @Override
+    public Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> createLedgersMetadata(
+            Map<Long, LedgerMetadata> ledgers) {
+        Map<Long, LedgerMetadata> metadatas = new TreeMap<>();
+        Map<Long, Long> cTokens = new HashMap<>();
+        Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> promises = new TreeMap<>();
+        for (Map.Entry<Long, LedgerMetadata> e : ledgers.entrySet()) {
+            long cToken = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+            metadatas.put(e.getKey(), withCToken(e.getKey(), e.getValue(), cToken));
+            cTokens.put(e.getKey(), cToken);
+            promises.put(e.getKey(), new CompletableFuture<>());
+        }
+        // the neighbour ledgers share their parent znodes, which are created by the first batch, so
+        // each batch is sent once the previous one completed, successfully or not
+        CompletableFuture<Void> previousBatch = FutureUtils.Void();
+        for (List<Long> batch : Lists.partition(new ArrayList<>(metadatas.keySet()), ZK_BATCH_SIZE)) {
+            previousBatch = previousBatch.thenCompose(ignored -> {
+                createLedgerBatchMetadata(batch, metadatas, cTokens, promises);
+                return CompletableFuture.allOf(batch.stream().map(promises::get).toArray(CompletableFuture[]::new))
+                        .handle((result, exception) -> null);
+            });
+        }
+        return promises;
+    }
+
+    private void createLedgerBatchMetadata(List<Long> ledgerIds, Map<Long, LedgerMetadata> metadatas,
+                                           Map<Long, Long> cTokens,
+                                           Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> promises) {
+        final List<ACL> zkAcls = ZkUtils.getACLs(conf);
+        List<Op> ops = new ArrayList<>(ledgerIds.size());
+        for (long ledgerId : ledgerIds) {
+            try {
+                ops.add(Op.create(getLedgerPath(ledgerId), serDe.serialize(metadatas.get(ledgerId)), zkAcls,
+                        CreateMode.PERSISTENT));
+            } catch (IOException ioe) {
+                // none of the ledgers of the batch is created
+                for (long batchLedgerId : ledgerIds) {
+                    promises.get(batchLedgerId).completeExceptionally(
+                            new BKException.BKMetadataSerializationException(ioe));
+                }
+                return;
+            }
+        }
+        zk.multi(ops, (rc, path, ctx, opResults) -> {
+            if (Code.OK.intValue() == rc) {
+                for (long ledgerId : ledgerIds) {
+                    FutureUtils.complete(promises.get(ledgerId),
+                            new Versioned<>(metadatas.get(ledgerId), new LongVersion(0)));
+                }
+            } else if (Code.NODEEXISTS.intValue() == rc || Code.NONODE.intValue() == rc) {
+                // some ledgers already exist, or their parent znodes don't exist yet, so create them
+                // one by one, checking the creator token of the existing ones and creating the parents
+                for (long ledgerId : ledgerIds) {
+                    FutureUtils.proxyTo(createLedgerMetadata(ledgerId, metadatas.get(ledgerId), cTokens.get(ledgerId)),
+                            promises.get(ledgerId));
+                }
+            } else {
+                // the multi is atomic, so none of the ledgers of the batch is created
+                LOG.error("Could not create the nodes of ledgers {}", ledgerIds, KeeperException.create(Code.get(rc)));
+                for (long ledgerId : ledgerIds) {
+                    FutureUtils.completeExceptionally(promises.get(ledgerId),
+                            new BKException.ZKException(KeeperException.create(Code.get(rc))));
+                }
+            }
+        }, null);
+    }
+
     @Override
     public CompletableFuture<Void> removeLedgerMetadata(final long ledgerId, final Version version) {
         CompletableFuture<Void> promise = new CompletableFuture<>();
@@ -371,18 +463,7 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
                     LOG.warn("Ledger node does not exist in ZooKeeper: ledgerId={}.  Returning success.", ledgerId);
                     FutureUtils.complete(promise, null);
                 } else if (rc == KeeperException.Code.OK.intValue()) {
-                    // removed listener on ledgerId
-                    Set<LedgerMetadataListener> listenerSet = listeners.remove(ledgerId);
-                    if (null != listenerSet) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug(
-                                    "Remove registered ledger metadata listeners on ledger {} after ledger is deleted.",
-                                    ledgerId);
-                        }
-                    } else if (LOG.isDebugEnabled()) {
-                        LOG.debug("No ledger metadata listeners to remove from ledger {} when it's being deleted.",
-                                ledgerId);
-                    }
+                    removeListeners(ledgerId);
                     FutureUtils.complete(promise, null);
                 } else {
                     promise.completeExceptionally(
@@ -404,6 +485,95 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
         return promise;
     }
 
+    private void removeListeners(long ledgerId) {
+        // removed listener on ledgerId
+        Set<LedgerMetadataListener> listenerSet = listeners.remove(ledgerId);
+        if (null != listenerSet) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Remove registered ledger metadata listeners on ledger {} after ledger is deleted.",
+                        ledgerId);
+            }
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("No ledger metadata listeners to remove from ledger {} when it's being deleted.",
+                    ledgerId);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> removeLedgersMetadata(Map<Long, Version> ledgers) {
+        Map<Long, Integer> znodeVersions = new TreeMap<>();
+        for (Map.Entry<Long, Version> e : ledgers.entrySet()) {
+            Version version = e.getValue();
+            if (Version.NEW == version) {
+                LOG.error("Request to delete ledger {} metadata with version set to the initial one", e.getKey());
+                return FutureUtils.exception(new BKException.BKMetadataVersionException());
+            } else if (Version.ANY == version) {
+                znodeVersions.put(e.getKey(), -1);
+            } else if (!(version instanceof LongVersion)) {
+                LOG.info("Not an instance of ZKVersion: {}", e.getKey());
+                return FutureUtils.exception(new BKException.BKMetadataVersionException());
+            } else {
+                znodeVersions.put(e.getKey(), (int) ((LongVersion) version).getLongVersion());
+            }
+        }
+        return FutureUtils.processList(
+                Lists.partition(new ArrayList<>(znodeVersions.keySet()), ZK_BATCH_SIZE),
+                batch -> removeLedgerBatchMetadata(batch, znodeVersions, ledgers),
+                null
+        ).thenApply(ignored -> null);
+    }
+
+    private CompletableFuture<Void> removeLedgerBatchMetadata(List<Long> ledgerIds, Map<Long, Integer> znodeVersions,
+                                                              Map<Long, Version> versions) {
+        List<Op> ops = new ArrayList<>(ledgerIds.size());
+        for (long ledgerId : ledgerIds) {
+            ops.add(Op.delete(getLedgerPath(ledgerId), znodeVersions.get(ledgerId)));
+        }
+        final CompletableFuture<Void> batchFuture = new CompletableFuture<>();
+        zk.multi(ops, (rc, path, ctx, opResults) -> {
+            if (Code.OK.intValue() == rc) {
+                ledgerIds.forEach(this::removeListeners);
+                if (this instanceof HierarchicalLedgerManager || this instanceof LongHierarchicalLedgerManager) {
+                    FutureUtils.proxyTo(removeEmptyParents(ledgerIds), batchFuture);
+                } else {
+                    FutureUtils.complete(batchFuture, null);
+                }
+            } else if (Code.NONODE.intValue() == rc) {
+                // some ledgers don't exist, which isn't an error, so remove them one by one
+                List<CompletableFuture<Void>> removeFutures = new ArrayList<>(ledgerIds.size());
+                for (long ledgerId : ledgerIds) {
+                    removeFutures.add(removeLedgerMetadata(ledgerId, versions.get(ledgerId)));
+                }
+                FutureUtils.proxyTo(FutureUtils.collect(removeFutures).thenApply(ignored -> null), batchFuture);
+            } else {
+                FutureUtils.completeExceptionally(batchFuture,
+                        new BKException.ZKException(KeeperException.create(Code.get(rc))));
+            }
+        }, null);
+        return batchFuture;
+    }
+
+    /**
+     * Remove the parent znodes of the removed ledgers which are left empty, as the removal of a
+     * single ledger does for the hierarchical ledger managers.
+     */
+    private CompletableFuture<Void> removeEmptyParents(List<Long> ledgerIds) {
+        Set<String> parents = new TreeSet<>();
+        for (long ledgerId : ledgerIds) {
+            String ledgerPath = getLedgerPath(ledgerId);
+            parents.add(ledgerPath.substring(0, ledgerPath.lastIndexOf('/')));
+        }
+        List<CompletableFuture<Void>> removeFutures = new ArrayList<>(parents.size());
+        for (String parent : parents) {
+            CompletableFuture<Void> removeFuture = new CompletableFuture<>();
+            // the parents which aren't empty are left as is
+            ZkUtils.asyncDeleteFullPathOptimistic(zk, parent, -1,
+                    (rc, path, ctx) -> FutureUtils.complete(removeFuture, null), parent);
+            removeFutures.add(removeFuture);
+        }
+        return FutureUtils.collect(removeFutures).thenApply(ignored -> null);
+    }
+
     @Override
     public void registerLedgerMetadataListener(long ledgerId, LedgerMetadataListener listener) {
         if (null != listener) {
@@ -604,7 +774,7 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
                 MultiCallback mcb = new MultiCallback(zkActiveLedgers.size(), finalCb, ctx,
                                                       successRc, failureRc);
                 // start loop over all ledgers
-                scheduler.submit(() -> {
+                processorExecutor.submit(() -> {
                     for (Long ledger : zkActiveLedgers) {
                         processor.process(ledger, mcb);
                     }
@@ -689,6 +859,9 @@ public abstract class AbstractZkLedgerManager implements LedgerManager, Watcher
     public void close() {
         try {
             scheduler.shutdown();
+            if (processorExecutor != scheduler) {
+                processorExecutor.shutdown();
+            }
         } catch (Exception e) {
             LOG.warn("Error when closing zookeeper based ledger manager: ", e);
         }
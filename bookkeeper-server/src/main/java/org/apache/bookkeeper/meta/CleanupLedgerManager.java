@@ -20,7 +20,9 @@ package org.apache.bookkeeper.meta;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -142,6 +144,27 @@ public class CleanupLedgerManager implements LedgerManager {
         }
     }
 
+    @Override
+    public Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> createLedgersMetadata(
+            Map<Long, LedgerMetadata> ledgers) {
+        closeLock.readLock().lock();
+        try {
+            Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> promises;
+            if (closed) {
+                promises = new TreeMap<>();
+                for (long ledgerId : ledgers.keySet()) {
+                    promises.put(ledgerId, closedPromise());
+                }
+                return promises;
+            }
+            promises = underlying.createLedgersMetadata(ledgers);
+            promises.values().forEach(this::recordPromise);
+            return promises;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
     @Override
     public CompletableFuture<Void> removeLedgerMetadata(long ledgerId, Version version) {
         closeLock.readLock().lock();
@@ -157,6 +180,21 @@ public class CleanupLedgerManager implements LedgerManager {
         }
     }
 
+    @Override
+    public CompletableFuture<Void> removeLedgersMetadata(Map<Long, Version> ledgers) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return closedPromise();
+            }
+            CompletableFuture<Void> promise = underlying.removeLedgersMetadata(ledgers);
+            recordPromise(promise);
+            return promise;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
     @Override
     public CompletableFuture<Versioned<LedgerMetadata>> readLedgerMetadata(long ledgerId) {
         closeLock.readLock().lock();
@@ -18,6 +18,12 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 
 /**
@@ -36,4 +42,41 @@ public interface LedgerIdGenerator extends Closeable {
      */
     void generateLedgerId(GenericCallback<Long> cb);
 
+    /**
+     * Generate a range of global unique ledger ids. Implementations may generate them at once,
+     * instead of one at a time.
+     *
+     * @param count
+     *            Number of ledger ids to generate
+     * @param cb
+     *            Callback when the new ledger ids are generated, in increasing order, with the same
+     *            return codes as {@link #generateLedgerId(GenericCallback)}
+     */
+    default void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        if (count <= 0) {
+            cb.operationComplete(BKException.Code.OK, Collections.emptyList());
+            return;
+        }
+        final List<Long> ledgerIds = new ArrayList<>(count);
+        final AtomicInteger pending = new AtomicInteger(count);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        for (int i = 0; i < count; i++) {
+            generateLedgerId((rc, ledgerId) -> {
+                if (rc != BKException.Code.OK) {
+                    if (failed.compareAndSet(false, true)) {
+                        cb.operationComplete(rc, null);
+                    }
+                    return;
+                }
+                synchronized (ledgerIds) {
+                    ledgerIds.add(ledgerId);
+                }
+                if (pending.decrementAndGet() == 0) {
+                    Collections.sort(ledgerIds);
+                    cb.operationComplete(BKException.Code.OK, ledgerIds);
+                }
+            });
+        }
+    }
+
 }
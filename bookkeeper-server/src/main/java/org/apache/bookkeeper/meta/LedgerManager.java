@@ -19,11 +19,16 @@ package org.apache.bookkeeper.meta;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
 import org.apache.bookkeeper.versioning.Version;
@@ -55,6 +60,28 @@ public interface LedgerManager extends Closeable {
      */
     CompletableFuture<Versioned<LedgerMetadata>> createLedgerMetadata(long ledgerId, LedgerMetadata metadata);
 
+    /**
+     * Create new ledgers with the provided ledger ids and metadata. Implementations may create
+     * them in batches, instead of one at a time.
+     *
+     * <p>The creation is not atomic: each ledger is created, or fails to be, on its own, so that
+     * the caller knows which ledgers were created when some of them failed.
+     *
+     * @param ledgers
+     *            Metadata of the new ledgers, by ledger id
+     * @return Future of each ledger, by ledger id, which when completed returns the metadata of the
+     *         newly created ledger. Completed with the same exceptions as
+     *         {@link #createLedgerMetadata(long, LedgerMetadata)}.
+     */
+    default Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> createLedgersMetadata(
+            Map<Long, LedgerMetadata> ledgers) {
+        Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> futures = new TreeMap<>();
+        for (Map.Entry<Long, LedgerMetadata> e : ledgers.entrySet()) {
+            futures.put(e.getKey(), createLedgerMetadata(e.getKey(), e.getValue()));
+        }
+        return futures;
+    }
+
     /**
      * Remove a specified ledger metadata by ledgerId and version.
      *
@@ -73,6 +100,26 @@ public interface LedgerManager extends Closeable {
      */
     CompletableFuture<Void> removeLedgerMetadata(long ledgerId, Version version);
 
+    /**
+     * Remove the metadata of ledgers by ledgerId and version. Implementations may remove them in
+     * batches, instead of one at a time.
+     *
+     * <p>The removal is not atomic: when the future completes with an exception, some of the
+     * ledgers may have been removed.
+     *
+     * @param ledgers
+     *          Ledger metadata versions, by ledger id
+     * @return Future which, when completed, denotes that the ledgers metadata have been removed.
+     *         Completed with the same exceptions as {@link #removeLedgerMetadata(long, Version)}.
+     */
+    default CompletableFuture<Void> removeLedgersMetadata(Map<Long, Version> ledgers) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(ledgers.size());
+        for (Map.Entry<Long, Version> e : ledgers.entrySet()) {
+            futures.add(removeLedgerMetadata(e.getKey(), e.getValue()));
+        }
+        return FutureUtils.collect(futures).thenApply(ignored -> null);
+    }
+
     /**
      * Read ledger metadata of a specified ledger.
      *
@@ -35,16 +35,20 @@ import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 import org.apache.bookkeeper.client.LedgerMetadataBuilder;
 import org.apache.bookkeeper.client.LedgerMetadataUtils;
 import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.LedgerMetadata.State;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.DataFormats.LedgerCustomMetadataFormat;
 import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,7 +78,16 @@ public class LedgerMetadataSerDe {
      */
     public static final int METADATA_FORMAT_VERSION_3 = 3;
 
-    public static final int MAXIMUM_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_3;
+    /**
+     * Protobuf based, serialized in binary format, with the bookies of the ensembles encoded as
+     * indexes in a dictionary of the bookies of the ledger, the first entry ids of the ensembles
+     * delta encoded, and the large custom metadata compressed. Much smaller than version 3 for
+     * the ledgers with many ensemble changes.
+     * Available from v4.16.x onwards.
+     */
+    public static final int METADATA_FORMAT_VERSION_4 = 4;
+
+    public static final int MAXIMUM_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_4;
     public static final int CURRENT_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_3;
     private static final int LOWEST_COMPAT_METADATA_FORMAT_VERSION = METADATA_FORMAT_VERSION_1;
 
@@ -89,6 +102,9 @@ public class LedgerMetadataSerDe {
     private static final String V1_CLOSED_TAG = "CLOSED";
     private static final int V1_IN_RECOVERY_ENTRY_ID = -102;
 
+    // the custom metadata is compressed in version 4 when larger than this
+    private static final int V4_COMPRESS_CUSTOM_METADATA_THRESHOLD = 256;
+
     private static void writeHeader(OutputStream os, int version) throws IOException {
         os.write(VERSION_KEY_BYTES);
         os.write(String.valueOf(version).getBytes(UTF_8));
@@ -128,6 +144,9 @@ public class LedgerMetadataSerDe {
         int formatVersion = metadata.getMetadataFormatVersion();
         final byte[] serialized;
         switch (formatVersion) {
+        case METADATA_FORMAT_VERSION_4:
+            serialized = serializeVersion4(metadata);
+            break;
         case METADATA_FORMAT_VERSION_3:
             serialized = serializeVersion3(metadata);
             break;
@@ -152,52 +171,52 @@ public class LedgerMetadataSerDe {
         return serialized;
     }
 
-    private static byte[] serializeVersion3(LedgerMetadata metadata) throws IOException {
+    private static byte[] serializeVersion4(LedgerMetadata metadata) throws IOException {
         try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            writeHeader(os, METADATA_FORMAT_VERSION_3);
-            LedgerMetadataFormat.Builder builder = LedgerMetadataFormat.newBuilder();
-            builder.setQuorumSize(metadata.getWriteQuorumSize())
-                .setAckQuorumSize(metadata.getAckQuorumSize())
-                .setEnsembleSize(metadata.getEnsembleSize())
-                .setLength(metadata.getLength())
-                .setLastEntryId(metadata.getLastEntryId());
-
-            switch (metadata.getState()) {
-            case CLOSED:
-                builder.setState(LedgerMetadataFormat.State.CLOSED);
-                break;
-            case IN_RECOVERY:
-                builder.setState(LedgerMetadataFormat.State.IN_RECOVERY);
-                break;
-            case OPEN:
-                builder.setState(LedgerMetadataFormat.State.OPEN);
-                break;
-            default:
-                checkArgument(false,
-                              String.format("Unknown state %s for protobuf serialization", metadata.getState()));
-                break;
-            }
+            writeHeader(os, METADATA_FORMAT_VERSION_4);
+            LedgerMetadataFormat.Builder builder = toProtoFormat(metadata);
 
-            /** Hack to get around fact that ctime was never versioned correctly */
-            if (LedgerMetadataUtils.shouldStoreCtime(metadata)) {
-                builder.setCtime(metadata.getCtime());
+            Map<String, byte[]> customMetadata = metadata.getCustomMetadata();
+            int customMetadataSize = 0;
+            for (Map.Entry<String, byte[]> entry : customMetadata.entrySet()) {
+                customMetadataSize += entry.getKey().length() + entry.getValue().length;
+            }
+            if (customMetadataSize > V4_COMPRESS_CUSTOM_METADATA_THRESHOLD) {
+                ByteString compressed = compressCustomMetadata(builder.getCustomMetadataList());
+                if (compressed.size() < customMetadataSize) {
+                    builder.clearCustomMetadata().setCompressedCustomMetadata(compressed);
+                }
             }
 
-
-            builder.setDigestType(apiToProtoDigestType(metadata.getDigestType()));
-
-            serializePassword(metadata.getPassword(), builder);
-
-            Map<String, byte[]> customMetadata = metadata.getCustomMetadata();
-            if (customMetadata.size() > 0) {
-                LedgerMetadataFormat.cMetadataMapEntry.Builder cMetadataBuilder =
-                    LedgerMetadataFormat.cMetadataMapEntry.newBuilder();
-                for (Map.Entry<String, byte[]> entry : customMetadata.entrySet()) {
-                    cMetadataBuilder.setKey(entry.getKey()).setValue(ByteString.copyFrom(entry.getValue()));
-                    builder.addCustomMetadata(cMetadataBuilder.build());
+            Map<BookieId, Integer> bookieIndexes = new HashMap<>();
+            long prevFirstEntryId = 0;
+            for (Map.Entry<Long, ? extends List<BookieId>> entry : metadata.getAllEnsembles().entrySet()) {
+                LedgerMetadataFormat.CompactSegment.Builder segmentBuilder =
+                    LedgerMetadataFormat.CompactSegment.newBuilder();
+                segmentBuilder.setFirstEntryIdDelta(entry.getKey() - prevFirstEntryId);
+                prevFirstEntryId = entry.getKey();
+                for (BookieId addr : entry.getValue()) {
+                    Integer index = bookieIndexes.get(addr);
+                    if (index == null) {
+                        index = bookieIndexes.size();
+                        bookieIndexes.put(addr, index);
+                        builder.addBookie(addr.toString());
+                    }
+                    segmentBuilder.addEnsembleMemberIndex(index);
                 }
+                builder.addCompactSegment(segmentBuilder.build());
             }
 
+            builder.build().writeDelimitedTo(os);
+            return os.toByteArray();
+        }
+    }
+
+    private static byte[] serializeVersion3(LedgerMetadata metadata) throws IOException {
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            writeHeader(os, METADATA_FORMAT_VERSION_3);
+            LedgerMetadataFormat.Builder builder = toProtoFormat(metadata);
+
             for (Map.Entry<Long, ? extends List<BookieId>> entry : metadata.getAllEnsembles().entrySet()) {
                 LedgerMetadataFormat.Segment.Builder segmentBuilder = LedgerMetadataFormat.Segment.newBuilder();
                 segmentBuilder.setFirstEntryId(entry.getKey());
@@ -207,13 +226,78 @@ public class LedgerMetadataSerDe {
                 builder.addSegment(segmentBuilder.build());
             }
 
-            builder.setCToken(metadata.getCToken());
-
             builder.build().writeDelimitedTo(os);
             return os.toByteArray();
         }
     }
 
+    /**
+     * The fields shared by the binary formats, all but the ensembles.
+     */
+    private static LedgerMetadataFormat.Builder toProtoFormat(LedgerMetadata metadata) {
+        LedgerMetadataFormat.Builder builder = LedgerMetadataFormat.newBuilder();
+        builder.setQuorumSize(metadata.getWriteQuorumSize())
+            .setAckQuorumSize(metadata.getAckQuorumSize())
+            .setEnsembleSize(metadata.getEnsembleSize())
+            .setLength(metadata.getLength())
+            .setLastEntryId(metadata.getLastEntryId());
+
+        switch (metadata.getState()) {
+        case CLOSED:
+            builder.setState(LedgerMetadataFormat.State.CLOSED);
+            break;
+        case IN_RECOVERY:
+            builder.setState(LedgerMetadataFormat.State.IN_RECOVERY);
+            break;
+        case OPEN:
+            builder.setState(LedgerMetadataFormat.State.OPEN);
+            break;
+        default:
+            checkArgument(false,
+                          String.format("Unknown state %s for protobuf serialization", metadata.getState()));
+            break;
+        }
+
+        /** Hack to get around fact that ctime was never versioned correctly */
+        if (LedgerMetadataUtils.shouldStoreCtime(metadata)) {
+            builder.setCtime(metadata.getCtime());
+        }
+
+
+        builder.setDigestType(apiToProtoDigestType(metadata.getDigestType()));
+
+        serializePassword(metadata.getPassword(), builder);
+
+        Map<String, byte[]> customMetadata = metadata.getCustomMetadata();
+        if (customMetadata.size() > 0) {
+            LedgerMetadataFormat.cMetadataMapEntry.Builder cMetadataBuilder =
+                LedgerMetadataFormat.cMetadataMapEntry.newBuilder();
+            for (Map.Entry<String, byte[]> entry : customMetadata.entrySet()) {
+                cMetadataBuilder.setKey(entry.getKey()).setValue(ByteString.copyFrom(entry.getValue()));
+                builder.addCustomMetadata(cMetadataBuilder.build());
+            }
+        }
+
+        builder.setCToken(metadata.getCToken());
+        return builder;
+    }
+
+    private static ByteString compressCustomMetadata(List<LedgerMetadataFormat.cMetadataMapEntry> customMetadata)
+            throws IOException {
+        ByteString.Output output = ByteString.newOutput();
+        try (DeflaterOutputStream os = new DeflaterOutputStream(output)) {
+            LedgerCustomMetadataFormat.newBuilder().addAllCustomMetadata(customMetadata).build().writeTo(os);
+        }
+        return output.toByteString();
+    }
+
+    private static List<LedgerMetadataFormat.cMetadataMapEntry> decompressCustomMetadata(ByteString compressed)
+            throws IOException {
+        try (InflaterInputStream is = new InflaterInputStream(compressed.newInput())) {
+            return LedgerCustomMetadataFormat.parseFrom(is).getCustomMetadataList();
+        }
+    }
+
     private static byte[] serializeVersion2(LedgerMetadata metadata) throws IOException {
         try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
             writeHeader(os, METADATA_FORMAT_VERSION_2);
@@ -353,8 +437,9 @@ public class LedgerMetadataSerDe {
             }
 
             switch (metadataFormatVersion) {
+            case METADATA_FORMAT_VERSION_4:
             case METADATA_FORMAT_VERSION_3:
-                return parseVersion3Config(ledgerId, is, metadataStoreCtime);
+                return parseBinaryConfig(metadataFormatVersion, ledgerId, is, metadataStoreCtime);
             case METADATA_FORMAT_VERSION_2:
                 return parseVersion2Config(ledgerId, is, metadataStoreCtime);
             case METADATA_FORMAT_VERSION_1:
@@ -362,17 +447,17 @@ public class LedgerMetadataSerDe {
             default:
                 throw new IOException(
                         String.format("Metadata version not compatible. Expected between %d and %d, but got %d",
-                                      LOWEST_COMPAT_METADATA_FORMAT_VERSION, CURRENT_METADATA_FORMAT_VERSION,
+                                      LOWEST_COMPAT_METADATA_FORMAT_VERSION, MAXIMUM_METADATA_FORMAT_VERSION,
                                       metadataFormatVersion));
             }
         }
     }
 
-    private static LedgerMetadata parseVersion3Config(long ledgerId, InputStream is, Optional<Long> metadataStoreCtime)
-            throws IOException {
+    private static LedgerMetadata parseBinaryConfig(int metadataFormatVersion, long ledgerId, InputStream is,
+                                                    Optional<Long> metadataStoreCtime) throws IOException {
         LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
                 .withId(ledgerId)
-                .withMetadataFormatVersion(METADATA_FORMAT_VERSION_3);
+                .withMetadataFormatVersion(metadataFormatVersion);
         LedgerMetadataFormat.Builder formatBuilder = LedgerMetadataFormat.newBuilder();
         formatBuilder.mergeDelimitedFrom(is);
         LedgerMetadataFormat data = formatBuilder.build();
@@ -438,8 +523,31 @@ public class LedgerMetadataSerDe {
             builder.newEnsembleEntry(s.getFirstEntryId(), addrs);
         }
 
-        if (data.getCustomMetadataCount() > 0) {
-            builder.withCustomMetadata(data.getCustomMetadataList().stream().collect(
+        if (data.getCompactSegmentCount() > 0) {
+            BookieId[] bookies = new BookieId[data.getBookieCount()];
+            for (int i = 0; i < bookies.length; i++) {
+                bookies[i] = BookieId.parse(data.getBookie(i));
+            }
+            long firstEntryId = 0;
+            for (LedgerMetadataFormat.CompactSegment s : data.getCompactSegmentList()) {
+                List<BookieId> addrs = new ArrayList<>(s.getEnsembleMemberIndexCount());
+                for (int i = 0; i < s.getEnsembleMemberIndexCount(); i++) {
+                    int index = s.getEnsembleMemberIndex(i);
+                    if (index < 0 || index >= bookies.length) {
+                        throw new IOException("Invalid bookie index " + index + " in ledger metadata");
+                    }
+                    addrs.add(bookies[index]);
+                }
+                firstEntryId += s.getFirstEntryIdDelta();
+                builder.newEnsembleEntry(firstEntryId, addrs);
+            }
+        }
+
+        List<LedgerMetadataFormat.cMetadataMapEntry> customMetadata = data.hasCompressedCustomMetadata()
+                ? decompressCustomMetadata(data.getCompressedCustomMetadata())
+                : data.getCustomMetadataList();
+        if (customMetadata.size() > 0) {
+            builder.withCustomMetadata(customMetadata.stream().collect(
                                                Collectors.toMap(e -> e.getKey(),
                                                                 e -> e.getValue().toByteArray())));
         }
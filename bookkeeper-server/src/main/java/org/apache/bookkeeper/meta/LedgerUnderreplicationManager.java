@@ -57,6 +57,23 @@ public interface LedgerUnderreplicationManager extends AutoCloseable {
      */
     CompletableFuture<Void> markLedgerUnderreplicatedAsync(long ledgerId, Collection<String> missingReplicas);
 
+    /**
+     * Mark ledgers as underreplicated with the same missing bookies, e.g. all the ledgers of a
+     * lost bookie. Implementations may mark them in batches, instead of one at a time.
+     *
+     * @param ledgerIds ledger ids
+     * @param missingReplicas missing replicas
+     * @return a future presents the mark result.
+     */
+    default CompletableFuture<Void> markLedgersUnderreplicatedAsync(Collection<Long> ledgerIds,
+                                                                    Collection<String> missingReplicas) {
+        return FutureUtils.processList(
+                Lists.newArrayList(ledgerIds),
+                ledgerId -> markLedgerUnderreplicatedAsync(ledgerId, missingReplicas),
+                null
+        ).thenApply(ignored -> null);
+    }
+
     /**
      * Mark a ledger as fully replicated. If the ledger is not
      * already marked as underreplicated, this is a noop.
@@ -100,6 +117,20 @@ public interface LedgerUnderreplicationManager extends AutoCloseable {
     long getLedgerToRereplicate()
             throws ReplicationException.UnavailableException;
 
+    /**
+     * Acquire up to <i>maxLedgers</i> underreplicated ledgers for rereplication, locked as by
+     * {@link #getLedgerToRereplicate()}. Each of them must then be released or marked replicated.
+     * This call is blocking, so will not return until at least one ledger is
+     * available for rereplication.
+     *
+     * @param maxLedgers max number of ledgers to acquire
+     * @return the acquired ledger ids, never empty
+     */
+    default List<Long> getLedgersToRereplicate(int maxLedgers)
+            throws ReplicationException.UnavailableException {
+        return Lists.newArrayList(getLedgerToRereplicate());
+    }
+
     /**
      * Poll for a underreplicated ledger to rereplicate.
      * @see #getLedgerToRereplicate
@@ -328,6 +328,34 @@ public class LongZkLedgerIdGenerator implements LedgerIdGenerator {
         }
     }
 
+    @Override
+    public void generateLedgerIds(int count, final GenericCallback<List<Long>> cb) {
+        try {
+            if (!ledgerIdGenPathPresent(zk)) {
+                // We've not moved onto 63-bit ledgers yet.
+                shortIdGen.generateLedgerIds(count, (rc, result) -> {
+                    if (rc == BKException.Code.LedgerIdOverflowException) {
+                        // 31-bit IDs overflowed. Generate the 63-bit ids one at a time, which
+                        // starts using them.
+                        LedgerIdGenerator.super.generateLedgerIds(count, cb);
+                    } else {
+                        cb.operationComplete(rc, result);
+                    }
+                });
+            } else {
+                // The 63-bit ids are generated one at a time, as they may span high order directories.
+                LedgerIdGenerator.super.generateLedgerIds(count, cb);
+            }
+        } catch (KeeperException e) {
+            LOG.error("Failed to create long ledger ID path", e);
+            cb.operationComplete(BKException.Code.ZKException, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Failed to create long ledger ID path", e);
+            cb.operationComplete(BKException.Code.InterruptedException, null);
+        }
+    }
+
     @Override
     public void close() throws IOException {
         shortIdGen.close();
@@ -18,6 +18,8 @@
 package org.apache.bookkeeper.meta;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
@@ -27,6 +29,8 @@ import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.ACL;
 import org.slf4j.Logger;
@@ -121,6 +125,93 @@ public class ZkLedgerIdGenerator implements LedgerIdGenerator {
                 }, null);
     }
 
+    @Override
+    public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+        generateLedgerIdsImpl(count, cb, zk, ledgerPrefix, zkAcls);
+    }
+
+    /**
+     * Generate a range of ledger ids with a single multi request, which creates the sequential
+     * znodes of all the ids at once.
+     */
+    public static void generateLedgerIdsImpl(int count, final GenericCallback<List<Long>> cb, ZooKeeper zk,
+            String ledgerPrefix, List<ACL> zkAcls) {
+        if (count <= 0) {
+            cb.operationComplete(BKException.Code.OK, Collections.emptyList());
+            return;
+        }
+        List<Op> ops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ops.add(Op.create(ledgerPrefix, new byte[0], zkAcls, CreateMode.EPHEMERAL_SEQUENTIAL));
+        }
+        zk.multi(ops, (rc, path, ctx, opResults) -> {
+            if (rc == KeeperException.Code.NONODE.intValue()) {
+                // the parent znode of the ids doesn't exist yet, so generate the first id alone to create it
+                generateLedgerIdImpl((firstRc, firstLedgerId) -> {
+                    if (firstRc != BKException.Code.OK) {
+                        cb.operationComplete(firstRc, null);
+                        return;
+                    }
+                    generateLedgerIdsImpl(count - 1, (otherRc, otherLedgerIds) -> {
+                        if (otherRc != BKException.Code.OK) {
+                            cb.operationComplete(otherRc, null);
+                            return;
+                        }
+                        List<Long> ledgerIds = new ArrayList<>(count);
+                        ledgerIds.add(firstLedgerId);
+                        ledgerIds.addAll(otherLedgerIds);
+                        Collections.sort(ledgerIds);
+                        cb.operationComplete(BKException.Code.OK, ledgerIds);
+                    }, zk, ledgerPrefix, zkAcls);
+                }, zk, ledgerPrefix, zkAcls);
+                return;
+            } else if (rc != KeeperException.Code.OK.intValue()) {
+                LOG.error("Could not generate {} new ledger ids", count,
+                        KeeperException.create(KeeperException.Code.get(rc), path));
+                cb.operationComplete(BKException.Code.ZKException, null);
+                return;
+            }
+
+            /*
+             * Extract ledger ids from generated paths
+             */
+            List<Long> ledgerIds = new ArrayList<>(count);
+            List<Op> deletes = new ArrayList<>(count);
+            int resultRc = BKException.Code.OK;
+            for (OpResult opResult : opResults) {
+                String idPathName = ((OpResult.CreateResult) opResult).getPath();
+                deletes.add(Op.delete(idPathName, -1));
+                try {
+                    long ledgerId = getLedgerIdFromGenPath(idPathName, ledgerPrefix);
+                    if (ledgerId < 0 || ledgerId >= Integer.MAX_VALUE) {
+                        resultRc = BKException.Code.LedgerIdOverflowException;
+                    } else {
+                        ledgerIds.add(ledgerId);
+                    }
+                } catch (IOException e) {
+                    LOG.error("Could not extract ledger-id from id gen path:" + idPathName, e);
+                    resultRc = BKException.Code.ZKException;
+                }
+            }
+            if (resultRc == BKException.Code.OK) {
+                Collections.sort(ledgerIds);
+                cb.operationComplete(BKException.Code.OK, ledgerIds);
+            } else {
+                cb.operationComplete(resultRc, null);
+            }
+
+            // delete the znodes for id generation
+            zk.multi(deletes, (deleteRc, deletePath, deleteCtx, deleteResults) -> {
+                if (deleteRc != KeeperException.Code.OK.intValue()) {
+                    LOG.warn("Exception during deleting znodes for id generation : ",
+                            KeeperException.create(KeeperException.Code.get(deleteRc), deletePath));
+                } else if (LOG.isDebugEnabled()) {
+                    LOG.debug("Deleting {} znodes for id generation", deletes.size());
+                }
+            }, null);
+        }, null);
+    }
+
     // get ledger id from generation path
     private static long getLedgerIdFromGenPath(String nodeName, String ledgerPrefix) throws IOException {
         long ledgerId;
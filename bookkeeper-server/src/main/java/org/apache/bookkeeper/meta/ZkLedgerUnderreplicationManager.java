@@ -21,22 +21,28 @@ package org.apache.bookkeeper.meta;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.TextFormat;
 import com.google.protobuf.TextFormat.ParseException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -61,6 +67,7 @@ import org.apache.zookeeper.AddWatchMode;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooDefs.Ids;
@@ -84,6 +91,10 @@ import org.slf4j.LoggerFactory;
  * segments which are represented in hexidecimal.
  * e.g. For ledger id 0xcafebeef0000feed, the path is
  *  cafe/beef/0000/feed/
+ *
+ * <p>The batch operations send up to {@link #ZK_BATCH_SIZE} requests at once: the ledgers are
+ * marked with a multi-op per batch, and the ledger locks are acquired and the ledger znodes are
+ * listed with pipelined requests, instead of one round trip per ledger.
  */
 public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationManager {
     static final Logger LOG = LoggerFactory.getLogger(ZkLedgerUnderreplicationManager.class);
@@ -92,6 +103,9 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
 
     private static final byte[] LOCK_DATA = getLockData();
 
+    // max number of znodes created or read in a single batch
+    static final int ZK_BATCH_SIZE = 1000;
+
     private static class Lock {
         private final String lockZNode;
         private final Optional<Integer> ledgerZNodeVersion;
@@ -276,15 +290,7 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
                 }
                 return null;
             }
-            TextFormat.merge(new String(data, UTF_8), builder);
-            UnderreplicatedLedgerFormat underreplicatedLedgerFormat = builder.build();
-            UnderreplicatedLedger underreplicatedLedger = new UnderreplicatedLedger(ledgerId);
-            List<String> replicaList = underreplicatedLedgerFormat.getReplicaList();
-            long ctime = (underreplicatedLedgerFormat.hasCtime() ? underreplicatedLedgerFormat.getCtime()
-                    : UnderreplicatedLedger.UNASSIGNED_CTIME);
-            underreplicatedLedger.setCtime(ctime);
-            underreplicatedLedger.setReplicaList(replicaList);
-            return underreplicatedLedger;
+            return parseUnderreplicatedLedger(ledgerId, data);
         } catch (KeeperException ke) {
             throw ReplicationException.fromKeeperException("Error contacting zookeeper", ke);
         } catch (InterruptedException ie) {
@@ -295,6 +301,20 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
         }
     }
 
+    private static UnderreplicatedLedger parseUnderreplicatedLedger(long ledgerId, byte[] data)
+            throws TextFormat.ParseException {
+        UnderreplicatedLedgerFormat.Builder builder = UnderreplicatedLedgerFormat.newBuilder();
+        TextFormat.merge(new String(data, UTF_8), builder);
+        UnderreplicatedLedgerFormat underreplicatedLedgerFormat = builder.build();
+        UnderreplicatedLedger underreplicatedLedger = new UnderreplicatedLedger(ledgerId);
+        List<String> replicaList = underreplicatedLedgerFormat.getReplicaList();
+        long ctime = (underreplicatedLedgerFormat.hasCtime() ? underreplicatedLedgerFormat.getCtime()
+                : UnderreplicatedLedger.UNASSIGNED_CTIME);
+        underreplicatedLedger.setCtime(ctime);
+        underreplicatedLedger.setReplicaList(replicaList);
+        return underreplicatedLedger;
+    }
+
     @Override
     public CompletableFuture<Void> markLedgerUnderreplicatedAsync(long ledgerId, Collection<String> missingReplicas) {
         if (LOG.isDebugEnabled()) {
@@ -311,12 +331,7 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
                                                    final Collection<String> missingReplicas,
                                                    final List<ACL> zkAcls,
                                                    final CompletableFuture<Void> finalFuture) {
-        final UnderreplicatedLedgerFormat.Builder builder = UnderreplicatedLedgerFormat.newBuilder();
-        if (conf.getStoreSystemTimeAsLedgerUnderreplicatedMarkTime()) {
-            builder.setCtime(System.currentTimeMillis());
-        }
-        missingReplicas.forEach(builder::addReplica);
-        final byte[] urLedgerData = builder.build().toString().getBytes(UTF_8);
+        final byte[] urLedgerData = getUnderreplicatedLedgerData(missingReplicas);
         ZkUtils.asyncCreateFullPathOptimistic(
             zkc, znode, urLedgerData, zkAcls, CreateMode.PERSISTENT,
             (rc, path, ctx, name) -> {
@@ -332,6 +347,95 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
     }
 
 
+    private byte[] getUnderreplicatedLedgerData(Collection<String> missingReplicas) {
+        final UnderreplicatedLedgerFormat.Builder builder = UnderreplicatedLedgerFormat.newBuilder();
+        if (conf.getStoreSystemTimeAsLedgerUnderreplicatedMarkTime()) {
+            builder.setCtime(System.currentTimeMillis());
+        }
+        missingReplicas.forEach(builder::addReplica);
+        return builder.build().toString().getBytes(UTF_8);
+    }
+
+    @Override
+    public CompletableFuture<Void> markLedgersUnderreplicatedAsync(Collection<Long> ledgerIds,
+                                                                   Collection<String> missingReplicas) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("markLedgersUnderreplicated(ledgerIds={}, missingReplica={})", ledgerIds, missingReplicas);
+        }
+        List<Long> sortedLedgerIds = new ArrayList<>(ledgerIds);
+        // the neighbour ledgers share the upper levels of their parent znodes, so sorted batches
+        // have few of them to check and create
+        Collections.sort(sortedLedgerIds);
+        return FutureUtils.processList(
+                Lists.partition(sortedLedgerIds, ZK_BATCH_SIZE),
+                batch -> markLedgerBatchUnderreplicatedAsync(batch, missingReplicas),
+                null
+        ).thenApply(ignored -> null);
+    }
+
+    private CompletableFuture<Void> markLedgerBatchUnderreplicatedAsync(List<Long> ledgerIds,
+                                                                        Collection<String> missingReplicas) {
+        // the last level of the hierarchy is made of the low bits of the ledger id, so each ledger
+        // has a parent znode of its own, which doesn't exist unless the ledger is already marked.
+        // The upper levels are shared by the neighbour ledgers, and only created if missing.
+        final Set<String> sharedParents = new TreeSet<>();
+        for (long ledgerId : ledgerIds) {
+            String parent = getParentZnodePath(urLedgerPath, ledgerId);
+            for (int level = 0; level < 3; level++) {
+                parent = parent.substring(0, parent.lastIndexOf('/'));
+                sharedParents.add(parent);
+            }
+        }
+        List<CompletableFuture<Boolean>> existsFutures = new ArrayList<>(sharedParents.size());
+        for (String parent : sharedParents) {
+            CompletableFuture<Boolean> existsFuture = new CompletableFuture<>();
+            zkc.exists(parent, false, (rc, path, ctx, stat) -> {
+                if (Code.OK.intValue() == rc) {
+                    FutureUtils.complete(existsFuture, true);
+                } else if (Code.NONODE.intValue() == rc) {
+                    FutureUtils.complete(existsFuture, false);
+                } else {
+                    FutureUtils.completeExceptionally(existsFuture, KeeperException.create(Code.get(rc), path));
+                }
+            }, null);
+            existsFutures.add(existsFuture);
+        }
+        return FutureUtils.collect(existsFutures).thenCompose(parentsExist -> {
+            final List<ACL> zkAcls = ZkUtils.getACLs(conf);
+            final byte[] urLedgerData = getUnderreplicatedLedgerData(missingReplicas);
+            List<Op> ops = new ArrayList<>(2 * ledgerIds.size() + sharedParents.size());
+            // the parents sort before their children
+            Iterator<Boolean> parentExists = parentsExist.iterator();
+            for (String parent : sharedParents) {
+                if (!parentExists.next()) {
+                    ops.add(Op.create(parent, new byte[0], zkAcls, CreateMode.PERSISTENT));
+                }
+            }
+            for (long ledgerId : ledgerIds) {
+                ops.add(Op.create(getParentZnodePath(urLedgerPath, ledgerId), new byte[0], zkAcls,
+                        CreateMode.PERSISTENT));
+                ops.add(Op.create(getUrLedgerZnode(ledgerId), urLedgerData, zkAcls, CreateMode.PERSISTENT));
+            }
+            final CompletableFuture<Void> batchFuture = new CompletableFuture<>();
+            zkc.multi(ops, (rc, path, ctx, opResults) -> {
+                if (Code.OK.intValue() == rc) {
+                    FutureUtils.complete(batchFuture, null);
+                } else if (Code.NODEEXISTS.intValue() == rc || Code.NONODE.intValue() == rc) {
+                    // some ledgers are already marked, or the parents changed concurrently, so mark
+                    // them one by one, merging the missing replicas
+                    List<CompletableFuture<Void>> markFutures = new ArrayList<>(ledgerIds.size());
+                    for (long ledgerId : ledgerIds) {
+                        markFutures.add(markLedgerUnderreplicatedAsync(ledgerId, missingReplicas));
+                    }
+                    FutureUtils.proxyTo(FutureUtils.collect(markFutures).thenApply(ignored -> null), batchFuture);
+                } else {
+                    FutureUtils.completeExceptionally(batchFuture, KeeperException.create(Code.get(rc)));
+                }
+            }, null);
+            return batchFuture;
+        });
+    }
+
     private void handleLedgerUnderreplicatedAlreadyMarked(final String znode,
                                                           final Collection<String> missingReplicas,
                                                           final List<ACL> zkAcls,
@@ -387,6 +491,51 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
         }, null);
     }
 
+    /**
+     * Check whether a znode exists, through the asynchronous ZooKeeper API. The synchronous calls
+     * of the ZooKeeper client wait in a synchronized block, which pins a virtual thread to its
+     * carrier for the whole round trip, so the calls made for each ledger by the replication tasks
+     * and the auditor checks wait on a future instead.
+     *
+     * @return the stat of the znode, or null if it does not exist
+     */
+    private Stat exists(String path) throws KeeperException, InterruptedException {
+        CompletableFuture<Stat> future = new CompletableFuture<>();
+        zkc.exists(path, false, (rc, p, ctx, stat) -> {
+            if (Code.OK.intValue() == rc) {
+                future.complete(stat);
+            } else if (Code.NONODE.intValue() == rc) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(KeeperException.create(Code.get(rc), p));
+            }
+        }, null);
+        return waitForResult(future);
+    }
+
+    /**
+     * Delete a znode, through the asynchronous ZooKeeper API for the same reason as {@link #exists(String)}.
+     */
+    private void delete(String path, int version) throws KeeperException, InterruptedException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        zkc.delete(path, version, (rc, p, ctx) -> {
+            if (Code.OK.intValue() == rc) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(KeeperException.create(Code.get(rc), p));
+            }
+        }, null);
+        waitForResult(future);
+    }
+
+    private static <T> T waitForResult(CompletableFuture<T> future) throws KeeperException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw (KeeperException) e.getCause();
+        }
+    }
+
     @Override
     public void markLedgerReplicated(long ledgerId) throws ReplicationException.UnavailableException {
         if (LOG.isDebugEnabled()) {
@@ -397,7 +546,7 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
             if (l != null) {
                 final Optional<Integer> ledgerZNodeVersion = l.getLedgerZNodeVersion();
                 if (ledgerZNodeVersion.isPresent()) {
-                    zkc.delete(getUrLedgerZnode(ledgerId), ledgerZNodeVersion.get());
+                    delete(getUrLedgerZnode(ledgerId), ledgerZNodeVersion.get());
 
                     try {
                         // clean up the hierarchy
@@ -405,9 +554,9 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
                         for (int i = 1; i <= 4; i++) {
                             String[] p = Arrays.copyOf(parts, parts.length - i);
                             String path = Joiner.on("/").join(p);
-                            Stat s = zkc.exists(path, null);
+                            Stat s = exists(path);
                             if (s != null) {
-                                zkc.delete(path, s.getVersion());
+                                delete(path, s.getVersion());
                             }
                         }
                     } catch (KeeperException.NotEmptyException nee) {
@@ -452,6 +601,8 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
 
         return new Iterator<UnderreplicatedLedger>() {
             final Queue<UnderreplicatedLedger> curBatch = new LinkedList<UnderreplicatedLedger>();
+            // ledger znodes of the current directory, read by pages of ZK_BATCH_SIZE
+            final Queue<String> ledgerZnodes = new LinkedList<String>();
 
             @Override
             public void remove() {
@@ -464,20 +615,26 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
                     return true;
                 }
 
-                while (queue.size() > 0 && curBatch.size() == 0) {
-                    String parent = queue.remove();
+                while ((queue.size() > 0 || ledgerZnodes.size() > 0) && curBatch.size() == 0) {
                     try {
+                        if (ledgerZnodes.size() > 0) {
+                            List<String> page = new ArrayList<>(Math.min(ledgerZnodes.size(), ZK_BATCH_SIZE));
+                            while (ledgerZnodes.size() > 0 && page.size() < ZK_BATCH_SIZE) {
+                                page.add(ledgerZnodes.remove());
+                            }
+                            for (UnderreplicatedLedger underreplicatedLedger : readUnderreplicatedLedgers(page)) {
+                                List<String> replicaList = underreplicatedLedger.getReplicaList();
+                                if ((predicate == null) || predicate.test(replicaList)) {
+                                    curBatch.add(underreplicatedLedger);
+                                }
+                            }
+                            continue;
+                        }
+                        String parent = queue.remove();
                         for (String c : zkc.getChildren(parent, false)) {
                             String child = parent + "/" + c;
                             if (c.startsWith("urL")) {
-                                long ledgerId = getLedgerId(child);
-                                UnderreplicatedLedger underreplicatedLedger = getLedgerUnreplicationInfo(ledgerId);
-                                if (underreplicatedLedger != null) {
-                                    List<String> replicaList = underreplicatedLedger.getReplicaList();
-                                    if ((predicate == null) || predicate.test(replicaList)) {
-                                        curBatch.add(underreplicatedLedger);
-                                    }
-                                }
+                                ledgerZnodes.add(child);
                             } else {
                                 queue.add(child);
                             }
@@ -502,6 +659,147 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
         };
     }
 
+    /**
+     * Read the given underreplicated ledger znodes with pipelined requests, skipping the ones
+     * which don't exist anymore.
+     */
+    private List<UnderreplicatedLedger> readUnderreplicatedLedgers(List<String> znodes)
+            throws KeeperException, InterruptedException, TextFormat.ParseException {
+        List<CompletableFuture<byte[]>> readFutures = new ArrayList<>(znodes.size());
+        for (String znode : znodes) {
+            CompletableFuture<byte[]> readFuture = new CompletableFuture<>();
+            zkc.getData(znode, false, (rc, path, ctx, data, stat) -> {
+                if (Code.OK.intValue() == rc) {
+                    readFuture.complete(data);
+                } else if (Code.NONODE.intValue() == rc) {
+                    readFuture.complete(null);
+                } else {
+                    readFuture.completeExceptionally(KeeperException.create(Code.get(rc), path));
+                }
+            }, null);
+            readFutures.add(readFuture);
+        }
+        List<UnderreplicatedLedger> underreplicatedLedgers = new ArrayList<>(znodes.size());
+        for (int i = 0; i < znodes.size(); i++) {
+            byte[] data = awaitZkResult(readFutures.get(i));
+            if (data != null) {
+                underreplicatedLedgers.add(parseUnderreplicatedLedger(getLedgerId(znodes.get(i)), data));
+            }
+        }
+        return underreplicatedLedgers;
+    }
+
+    private static <T> T awaitZkResult(CompletableFuture<T> future) throws KeeperException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            throw (KeeperException) ee.getCause();
+        }
+    }
+
+    /**
+     * Lock up to <i>maxLedgers</i> underreplicated ledgers of the hierarchy, adding them to
+     * <i>ledgers</i>.
+     */
+    private void getLedgersToRereplicateFromHierarchy(String parent, long depth, int maxLedgers, List<Long> ledgers)
+            throws KeeperException, InterruptedException {
+        List<String> children;
+        try {
+            children = subTreeCache.getChildren(parent);
+        } catch (KeeperException.NoNodeException nne) {
+            // can occur if another underreplicated ledger's
+            // hierarchy is being cleaned up
+            return;
+        }
+        Collections.shuffle(children);
+
+        if (depth == 4) {
+            Set<String> locks = new HashSet<>(subTreeCache.getChildren(urLockPath));
+            List<String> candidates = new ArrayList<>();
+            for (String child : children) {
+                if (ledgers.size() + candidates.size() >= maxLedgers) {
+                    ledgers.addAll(lockLedgersToRereplicate(parent, candidates));
+                    candidates.clear();
+                    if (ledgers.size() >= maxLedgers) {
+                        return;
+                    }
+                }
+                if (!locks.contains(child)) {
+                    candidates.add(child);
+                }
+            }
+            ledgers.addAll(lockLedgersToRereplicate(parent, candidates));
+            return;
+        }
+
+        for (String child : children) {
+            if (ledgers.size() >= maxLedgers) {
+                return;
+            }
+            getLedgersToRereplicateFromHierarchy(parent + "/" + child, depth + 1, maxLedgers, ledgers);
+        }
+    }
+
+    /**
+     * Lock the given ledger znodes which still exist, with pipelined requests.
+     *
+     * @return the ids of the locked ledgers
+     */
+    private List<Long> lockLedgersToRereplicate(String parent, List<String> children)
+            throws KeeperException, InterruptedException {
+        List<ACL> zkAcls = ZkUtils.getACLs(conf);
+        List<CompletableFuture<Long>> lockFutures = new ArrayList<>(children.size());
+        for (String child : children) {
+            long ledgerId;
+            try {
+                ledgerId = getLedgerId(child);
+            } catch (NumberFormatException nfe) {
+                continue;
+            }
+            String lockPath = urLockPath + "/" + child;
+            CompletableFuture<Long> lockFuture = new CompletableFuture<>();
+            zkc.exists(parent + "/" + child, false, (rc, path, ctx, stat) -> {
+                if (Code.NONODE.intValue() == rc) {
+                    lockFuture.complete(-1L);
+                } else if (Code.OK.intValue() != rc) {
+                    lockFuture.completeExceptionally(KeeperException.create(Code.get(rc), path));
+                } else {
+                    zkc.create(lockPath, LOCK_DATA, zkAcls, CreateMode.EPHEMERAL, (createRc, createPath, c, name) -> {
+                        if (Code.OK.intValue() == createRc) {
+                            heldLocks.put(ledgerId, new Lock(lockPath, Optional.of(stat.getVersion())));
+                            lockFuture.complete(ledgerId);
+                        } else if (Code.NODEEXISTS.intValue() == createRc) {
+                            lockFuture.complete(-1L);
+                        } else {
+                            lockFuture.completeExceptionally(KeeperException.create(Code.get(createRc), createPath));
+                        }
+                    }, null);
+                }
+            }, null);
+            lockFutures.add(lockFuture);
+        }
+
+        List<Long> lockedLedgers = new ArrayList<>(lockFutures.size());
+        KeeperException error = null;
+        for (CompletableFuture<Long> lockFuture : lockFutures) {
+            try {
+                long ledgerId = awaitZkResult(lockFuture);
+                if (ledgerId != -1) {
+                    lockedLedgers.add(ledgerId);
+                }
+            } catch (KeeperException ke) {
+                error = ke;
+            }
+        }
+        // the ledgers locked before an error are returned, so that they are released once replicated
+        if (error != null && lockedLedgers.isEmpty()) {
+            throw error;
+        } else if (error != null) {
+            LOG.warn("Error locking underreplicated ledgers under {}", parent, error);
+        }
+        return lockedLedgers;
+    }
+
     private long getLedgerToRereplicateFromHierarchy(String parent, long depth)
             throws KeeperException, InterruptedException {
         if (depth == 4) {
@@ -618,6 +916,41 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
         }
     }
 
+    @Override
+    public List<Long> getLedgersToRereplicate(int maxLedgers) throws ReplicationException.UnavailableException {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("getLedgersToRereplicate(maxLedgers={})", maxLedgers);
+        }
+        if (maxLedgers <= 1) {
+            return Lists.newArrayList(getLedgerToRereplicate());
+        }
+        while (true) {
+            final CountDownLatch changedLatch = new CountDownLatch(1);
+            Watcher w = new Watcher() {
+                @Override
+                public void process(WatchedEvent e) {
+                    LOG.info("Latch countdown due to ZK event: " + e);
+                    changedLatch.countDown();
+                }
+            };
+            try (SubTreeCache.WatchGuard wg = subTreeCache.registerWatcherWithGuard(w)) {
+                waitIfLedgerReplicationDisabled();
+                List<Long> ledgers = new ArrayList<>(maxLedgers);
+                getLedgersToRereplicateFromHierarchy(urLedgerPath, 0, maxLedgers, ledgers);
+                if (!ledgers.isEmpty()) {
+                    return ledgers;
+                }
+                // nothing found, wait for a watcher to trigger
+                changedLatch.await();
+            } catch (KeeperException ke) {
+                throw ReplicationException.fromKeeperException("Error contacting zookeeper", ke);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new ReplicationException.UnavailableException("Interrupted while connecting zookeeper", ie);
+            }
+        }
+    }
+
     private void waitIfLedgerReplicationDisabled() throws UnavailableException,
             InterruptedException {
         ReplicationEnableCb cb = new ReplicationEnableCb();
@@ -635,7 +968,7 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
         try {
             Lock l = heldLocks.get(ledgerId);
             if (l != null) {
-                zkc.delete(l.getLockZNode(), -1);
+                delete(l.getLockZNode(), -1);
             }
         } catch (KeeperException.NoNodeException nne) {
             // this is ok
@@ -724,8 +1057,8 @@ public class ZkLedgerUnderreplicationManager implements LedgerUnderreplicationMa
             LOG.debug("isLedgerReplicationEnabled()");
         }
         try {
-            return null == zkc.exists(basePath + '/'
-                + BookKeeperConstants.DISABLE_NODE, false);
+            return null == exists(basePath + '/'
+                + BookKeeperConstants.DISABLE_NODE);
         } catch (KeeperException ke) {
             LOG.error("Error while checking the state of "
                     + "ledger re-replication", ke);
@@ -19,6 +19,7 @@ package org.apache.bookkeeper.net;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Network Topology Interface.
@@ -90,4 +91,21 @@ public interface NetworkTopology {
      * @return number of available nodes
      */
     int countNumOfAvailableNodes(String scope, Collection<Node> excludedNodes);
+
+    /**
+     * Randomly choose a leaf under <i>scope</i> accepted by <i>filter</i>, without listing the
+     * leaves of the scope.
+     *
+     * <p>The leaves are sampled at random, so a null result doesn't mean that no leaf is
+     * accepted: the caller should then fall back to {@link #getLeaves(String)}.
+     *
+     * @param scope a network location, or network locations separated by commas after ~ to
+     *              choose a leaf out of them
+     * @param filter the leaves which can be chosen
+     * @param maxAttempts max number of leaves sampled
+     * @return the leaf chosen, or null if none was found
+     */
+    default Node chooseRandomLeaf(String scope, Predicate<Node> filter, int maxAttempts) {
+        return null;
+    }
 }
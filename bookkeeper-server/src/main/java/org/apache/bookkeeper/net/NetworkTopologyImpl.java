@@ -21,12 +21,16 @@ import com.google.common.base.Strings;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -389,6 +393,12 @@ public class NetworkTopologyImpl implements NetworkTopology {
      * The lock used to manage access.
      */
     protected ReadWriteLock netlock = new ReentrantReadWriteLock();
+    /**
+     * All the leaves, and the leaves of each network location, indexed for
+     * {@link #chooseRandomLeaf(String, Predicate, int)}.
+     */
+    private final IndexedLeaves allLeaves = new IndexedLeaves();
+    private final Map<String, IndexedLeaves> leavesByLocation = new HashMap<String, IndexedLeaves>();
 
     public NetworkTopologyImpl() {
         clusterMap = new InnerNode(InnerNode.ROOT);
@@ -429,6 +439,9 @@ public class NetworkTopologyImpl implements NetworkTopology {
                 if (rack == null) {
                     numOfRacks++;
                 }
+                allLeaves.add(node);
+                leavesByLocation.computeIfAbsent(NodeBase.normalize(node.getNetworkLocation()),
+                        location -> new IndexedLeaves()).add(node);
                 if (!(node instanceof InnerNode)) {
                     if (depthOfAllLeaves == -1) {
                         depthOfAllLeaves = node.getLevel();
@@ -505,6 +518,15 @@ public class NetworkTopologyImpl implements NetworkTopology {
                 if (rack == null) {
                     numOfRacks--;
                 }
+                allLeaves.remove(node);
+                String location = NodeBase.normalize(node.getNetworkLocation());
+                IndexedLeaves locationLeaves = leavesByLocation.get(location);
+                if (null != locationLeaves) {
+                    locationLeaves.remove(node);
+                    if (locationLeaves.size() == 0) {
+                        leavesByLocation.remove(location);
+                    }
+                }
             }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("NetworkTopology became:\n" + this);
@@ -792,6 +814,90 @@ public class NetworkTopologyImpl implements NetworkTopology {
         }
     }
 
+    @Override
+    public Node chooseRandomLeaf(String scope, Predicate<Node> filter, int maxAttempts) {
+        netlock.readLock().lock();
+        try {
+            IndexedLeaves candidates;
+            String[] excludedScopes = null;
+            if (scope.startsWith(INVERSE)) {
+                candidates = allLeaves;
+                excludedScopes = scope.substring(1).split(NODE_SEPARATOR);
+                for (int i = 0; i < excludedScopes.length; i++) {
+                    excludedScopes[i] = NodeBase.normalize(excludedScopes[i]);
+                }
+            } else {
+                String location = NodeBase.normalize(scope);
+                // null for the scopes above the network locations of the leaves, left to getLeaves
+                candidates = NodeBase.ROOT.equals(location) ? allLeaves : leavesByLocation.get(location);
+            }
+            if (null == candidates || candidates.size() == 0) {
+                return null;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < maxAttempts; i++) {
+                Node leaf = candidates.get(random.nextInt(candidates.size()));
+                if (!isUnderScopes(leaf, excludedScopes) && filter.test(leaf)) {
+                    return leaf;
+                }
+            }
+            return null;
+        } finally {
+            netlock.readLock().unlock();
+        }
+    }
+
+    private static boolean isUnderScopes(Node leaf, String[] scopes) {
+        if (null == scopes) {
+            return false;
+        }
+        String location = NodeBase.normalize(leaf.getNetworkLocation());
+        for (String scope : scopes) {
+            if (location.startsWith(scope)
+                    && (location.length() == scope.length()
+                        || location.charAt(scope.length()) == NodeBase.PATH_SEPARATOR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Leaves in an array, for the random selection, with their positions by path, for the
+     * removal in constant time.
+     */
+    private static class IndexedLeaves {
+        private final List<Node> leaves = new ArrayList<Node>();
+        // by path, as the leaves are equal by name only
+        private final Map<String, Integer> positions = new HashMap<String, Integer>();
+
+        void add(Node leaf) {
+            if (null == positions.putIfAbsent(NodeBase.getPath(leaf), leaves.size())) {
+                leaves.add(leaf);
+            }
+        }
+
+        void remove(Node leaf) {
+            Integer position = positions.remove(NodeBase.getPath(leaf));
+            if (null == position) {
+                return;
+            }
+            Node last = leaves.remove(leaves.size() - 1);
+            if (position < leaves.size()) {
+                leaves.set(position, last);
+                positions.put(NodeBase.getPath(last), position);
+            }
+        }
+
+        Node get(int position) {
+            return leaves.get(position);
+        }
+
+        int size() {
+            return leaves.size();
+        }
+    }
+
     @Override
     public int countNumOfAvailableNodes(String scope, Collection<Node> excludedNodes) {
         boolean isExcluded = false;
@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -155,4 +156,9 @@ public class StabilizeNetworkTopology implements NetworkTopology {
     public int countNumOfAvailableNodes(String scope, Collection<Node> excludedNodes) {
         return impl.countNumOfAvailableNodes(scope, excludedNodes);
     }
+
+    @Override
+    public Node chooseRandomLeaf(String scope, Predicate<Node> filter, int maxAttempts) {
+        return impl.chooseRandomLeaf(scope, filter, maxAttempts);
+    }
 }
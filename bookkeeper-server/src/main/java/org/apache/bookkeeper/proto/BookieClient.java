@@ -23,9 +23,11 @@ package org.apache.bookkeeper.proto;
 import io.netty.util.ReferenceCounted;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
@@ -230,6 +232,43 @@ public interface BookieClient {
     CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(BookieId address,
             long ledgerId);
 
+    /**
+     * Makes async request for getting the lists of entries of several ledgers from a bookie in a
+     * single round trip, and returns Future for the result.
+     *
+     * <p>The ledgers not stored by the bookie are missing from the result. The request fails as a
+     * whole if the bookie doesn't support it.
+     *
+     * @param address
+     *            BookieId of the bookie
+     * @param ledgerIds
+     *            the ledgers
+     * @return returns Future of the entries of the ledgers stored by the bookie
+     */
+    CompletableFuture<Map<Long, AvailabilityOfEntriesOfLedger>> getListOfEntriesOfLedgers(BookieId address,
+            List<Long> ledgerIds);
+
+    /**
+     * Ask a bookie to copy a range of entries of a ledger from the other bookies of the ensemble.
+     * The bookie reads each entry from the bookies of its write set and adds it, as it is stored,
+     * to its own ledger storage.
+     *
+     * @param address the address of the bookie copying the entries
+     * @param ledgerId the ledger id
+     * @param masterKey the master key of the ledger
+     * @param firstEntryId the first entry to copy
+     * @param lastEntryId the last entry to copy
+     * @param ensemble the network addresses of the bookies of the ensemble of the entries, an
+     *                 empty string for the bookies which must not be read from
+     * @param writeQuorumSize the write quorum size of the ledger
+     * @param cb the callback notified when the entries are copied or the copy failed
+     * @param ctx a context object passed to the callback on completion
+     */
+    void copyEntries(BookieId address, long ledgerId, byte[] masterKey,
+                     long firstEntryId, long lastEntryId,
+                     List<String> ensemble, int writeQuorumSize,
+                     CopyEntriesCallback cb, Object ctx);
+
     /**
      * @return whether bookie client object has been closed
      */
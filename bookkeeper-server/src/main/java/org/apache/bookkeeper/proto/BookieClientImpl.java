@@ -35,8 +35,10 @@ import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -54,8 +56,10 @@ import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedger;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedgers;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
@@ -339,6 +343,38 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         return futureResult;
     }
 
+    @Override
+    public CompletableFuture<Map<Long, AvailabilityOfEntriesOfLedger>> getListOfEntriesOfLedgers(BookieId address,
+            List<Long> ledgerIds) {
+        FutureGetListOfEntriesOfLedgers futureResult = new FutureGetListOfEntriesOfLedgers();
+        if (ledgerIds.isEmpty()) {
+            futureResult.complete(Collections.emptyMap());
+            return futureResult;
+        }
+        final long key = ledgerIds.get(0);
+        final PerChannelBookieClientPool client = lookupClient(address);
+        if (client == null) {
+            futureResult.getListOfEntriesOfLedgersComplete(
+                    getRc(BKException.Code.BookieHandleNotAvailableException), null);
+            return futureResult;
+        }
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                try {
+                    executor.executeOrdered(key, () ->
+                            futureResult.getListOfEntriesOfLedgersComplete(rc, null)
+                    );
+                } catch (RejectedExecutionException re) {
+                    futureResult.getListOfEntriesOfLedgersComplete(getRc(BKException.Code.InterruptedException),
+                            null);
+                }
+            } else {
+                pcbc.getListOfEntriesOfLedgers(ledgerIds, futureResult);
+            }
+        }, key);
+        return futureResult;
+    }
+
     private void completeRead(final int rc,
                               final long ledgerId,
                               final long entryId,
@@ -539,6 +575,33 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }, requested, useV3Enforced);
     }
 
+    @Override
+    public void copyEntries(final BookieId addr, final long ledgerId, final byte[] masterKey,
+                            final long firstEntryId, final long lastEntryId,
+                            final List<String> ensemble, final int writeQuorumSize,
+                            final CopyEntriesCallback cb, final Object ctx) {
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            cb.copyEntriesComplete(getRc(BKException.Code.BookieHandleNotAvailableException),
+                    ledgerId, 0L, 0L, -1L, ctx);
+            return;
+        }
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                try {
+                    executor.executeOrdered(ledgerId,
+                            () -> cb.copyEntriesComplete(rc, ledgerId, 0L, 0L, -1L, ctx));
+                } catch (RejectedExecutionException re) {
+                    cb.copyEntriesComplete(getRc(BKException.Code.InterruptedException),
+                            ledgerId, 0L, 0L, -1L, ctx);
+                }
+            } else {
+                pcbc.copyEntries(ledgerId, masterKey, firstEntryId, lastEntryId,
+                        ensemble, writeQuorumSize, cb, ctx);
+            }
+        }, ledgerId, true);
+    }
+
     private void monitorPendingOperations() {
         for (PerChannelBookieClientPool clientPool : channels.values()) {
             clientPool.checkTimeoutOnPendingOperations();
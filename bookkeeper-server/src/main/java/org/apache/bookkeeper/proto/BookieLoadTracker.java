@@ -0,0 +1,214 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.stats.OpStatsData;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+
+/**
+ * Track the recent latency of the add requests and rate of the read requests of the bookie,
+ * which are reported to the clients in the GetBookieInfo responses for the placement of new
+ * ledgers.
+ *
+ * <p>The requests are recorded in windows of {@link #WINDOW_NANOS}, and the values are
+ * reported from the last complete window, so that they don't depend on when they are read.
+ * The latencies are recorded in buckets with a precision of a quarter of a power of two.
+ */
+class BookieLoadTracker {
+
+    static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final int NUM_BUCKETS = 144;
+
+    private static class Window {
+        final long startNanos;
+        final AtomicLongArray addLatencyBuckets = new AtomicLongArray(NUM_BUCKETS);
+        final LongAdder reads = new LongAdder();
+        // set when the window is complete
+        volatile long endNanos;
+
+        Window(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+
+    private final LongSupplier nanoClock;
+    private volatile Window current;
+    private volatile Window last;
+
+    BookieLoadTracker() {
+        this(MathUtils::nowInNano);
+    }
+
+    BookieLoadTracker(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        long now = nanoClock.getAsLong();
+        this.current = new Window(now);
+        this.last = new Window(now);
+        this.last.endNanos = now;
+    }
+
+    void recordAddLatency(long latencyNanos) {
+        long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        currentWindow().addLatencyBuckets.incrementAndGet(bucket(micros));
+    }
+
+    void recordRead() {
+        currentWindow().reads.increment();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the percentile of the add latencies of the last window, in microseconds, or 0 if
+     *         there was no add request
+     */
+    long getAddLatencyPercentileMicros(double percentile) {
+        currentWindow();
+        AtomicLongArray buckets = last.addLatencyBuckets;
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(NUM_BUCKETS - 1);
+    }
+
+    long getReadRequestsPerSecond() {
+        currentWindow();
+        Window window = last;
+        long durationNanos = Math.max(1L, window.endNanos - window.startNanos);
+        return window.reads.sum() * TimeUnit.SECONDS.toNanos(1) / durationNanos;
+    }
+
+    private Window currentWindow() {
+        Window window = current;
+        long now = nanoClock.getAsLong();
+        if (now - window.startNanos < WINDOW_NANOS) {
+            return window;
+        }
+        synchronized (this) {
+            window = current;
+            if (now - window.startNanos >= WINDOW_NANOS) {
+                window.endNanos = now;
+                last = window;
+                window = new Window(now);
+                current = window;
+            }
+            return window;
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        int log = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (log - 2)) & 3);
+        return Math.min(NUM_BUCKETS - 1, 4 * (log - 1) + sub);
+    }
+
+    static long bucketUpperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int log = bucket / 4 + 1;
+        int sub = bucket % 4;
+        return ((5L + sub) << (log - 2)) - 1;
+    }
+
+    /**
+     * Decorate the stats of the add requests, to record their latency.
+     */
+    OpStatsLogger trackAddRequests(OpStatsLogger addRequestStats) {
+        return new TrackingOpStatsLogger(addRequestStats, true);
+    }
+
+    /**
+     * Decorate the stats of the read requests, to count them.
+     */
+    OpStatsLogger trackReadRequests(OpStatsLogger readRequestStats) {
+        return new TrackingOpStatsLogger(readRequestStats, false);
+    }
+
+    private class TrackingOpStatsLogger implements OpStatsLogger {
+        private final OpStatsLogger delegate;
+        private final boolean adds;
+
+        TrackingOpStatsLogger(OpStatsLogger delegate, boolean adds) {
+            this.delegate = delegate;
+            this.adds = adds;
+        }
+
+        private void record(long eventLatency, TimeUnit unit) {
+            if (adds) {
+                recordAddLatency(unit.toNanos(eventLatency));
+            } else {
+                recordRead();
+            }
+        }
+
+        @Override
+        public void registerFailedEvent(long eventLatency, TimeUnit unit) {
+            record(eventLatency, unit);
+            delegate.registerFailedEvent(eventLatency, unit);
+        }
+
+        @Override
+        public void registerSuccessfulEvent(long eventLatency, TimeUnit unit) {
+            record(eventLatency, unit);
+            delegate.registerSuccessfulEvent(eventLatency, unit);
+        }
+
+        @Override
+        public void registerSuccessfulValue(long value) {
+            delegate.registerSuccessfulValue(value);
+        }
+
+        @Override
+        public void registerFailedValue(long value) {
+            delegate.registerFailedValue(value);
+        }
+
+        @Override
+        public OpStatsData toOpStatsData() {
+            return delegate.toOpStatsData();
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+    }
+}
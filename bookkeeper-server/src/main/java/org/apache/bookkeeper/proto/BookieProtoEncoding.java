@@ -321,11 +321,17 @@ public class BookieProtoEncoding {
         }
 
         public static void serializeAddResponseInto(int rc, BookieProtocol.ParsedAddRequest req, ByteBuf buf) {
+            serializeAddResponseInto(rc, PacketHeader.toInt(req.getProtocolVersion(), req.getOpCode(), (short) 0),
+                    req.getLedgerId(), req.getEntryId(), buf);
+        }
+
+        public static void serializeAddResponseInto(int rc, int packetHeader, long ledgerId, long entryId,
+                                                    ByteBuf buf) {
             buf.writeInt(RESPONSE_HEADERS_SIZE); // Frame size
-            buf.writeInt(PacketHeader.toInt(req.getProtocolVersion(), req.getOpCode(), (short) 0));
+            buf.writeInt(packetHeader);
             buf.writeInt(rc); // rc-code
-            buf.writeLong(req.getLedgerId());
-            buf.writeLong(req.getEntryId());
+            buf.writeLong(ledgerId);
+            buf.writeLong(entryId);
         }
     }
 
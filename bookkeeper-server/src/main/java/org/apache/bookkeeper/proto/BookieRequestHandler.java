@@ -20,14 +20,24 @@
  */
 package org.apache.bookkeeper.proto;
 
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RESPONSES_PER_FLUSH;
+
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.group.ChannelGroup;
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+import io.netty.util.internal.PlatformDependent;
 import java.nio.channels.ClosedChannelException;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.processor.RequestProcessor;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
 
 /**
  * Serverside handler for bookkeeper requests.
@@ -36,18 +46,29 @@ import org.apache.bookkeeper.processor.RequestProcessor;
 public class BookieRequestHandler extends ChannelInboundHandlerAdapter {
 
     private static final int DEFAULT_PENDING_RESPONSE_SIZE = 256;
+    // max number of add responses written with a single flush, so that the event loop
+    // still serves the other channels while a channel has a large backlog of responses
+    private static final int MAX_RESPONSES_PER_FLUSH = 1024;
 
     private final RequestProcessor requestProcessor;
     private final ChannelGroup allChannels;
+    private final OpStatsLogger responsesPerFlushStats;
 
     private ChannelHandlerContext ctx;
 
-    private ByteBuf pendingSendResponses = null;
+    // add responses prepared by the journal threads, written from the channel event loop
+    private final Queue<PendingAddResponse> pendingAddResponses = PlatformDependent.newMpscQueue();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Runnable flushTask = this::writePendingResponses;
+    // only accessed from the channel event loop
     private int maxPendingResponsesSize = DEFAULT_PENDING_RESPONSE_SIZE;
 
     BookieRequestHandler(ServerConfiguration conf, RequestProcessor processor, ChannelGroup allChannels) {
         this.requestProcessor = processor;
         this.allChannels = allChannels;
+        this.responsesPerFlushStats = processor instanceof BookieRequestProcessor
+                ? ((BookieRequestProcessor) processor).getRequestStats().getResponsesPerFlushStats()
+                : NullStatsLogger.INSTANCE.getOpStatsLogger(RESPONSES_PER_FLUSH);
     }
 
     public ChannelHandlerContext ctx() {
@@ -90,24 +111,117 @@ public class BookieRequestHandler extends ChannelInboundHandlerAdapter {
         requestProcessor.processRequest(msg, this);
     }
 
-    public synchronized void prepareSendResponseV2(int rc, BookieProtocol.ParsedAddRequest req) {
+    /**
+     * Queue the response of a v2 add request. The response is only written on the channel
+     * once {@link #flushPendingResponse()} is called.
+     */
+    public void prepareSendResponseV2(int rc, BookieProtocol.ParsedAddRequest req) {
+        pendingAddResponses.offer(PendingAddResponse.create(rc, req));
+    }
+
+    /**
+     * Write the queued add responses on the channel.
+     *
+     * <p>The responses are written from the channel event loop, by a single task scheduled
+     * until it runs. The responses queued meanwhile, possibly by other journals, are written
+     * by the same task with a single flush, so the more loaded the bookie is, the more
+     * responses are coalesced in each write.
+     */
+    public void flushPendingResponse() {
+        if (!pendingAddResponses.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        try {
+            ctx.channel().eventLoop().execute(flushTask);
+        } catch (RejectedExecutionException e) {
+            log.warn("Failed to write add responses on {}, event loop is shutting down", ctx.channel());
+            flushScheduled.set(false);
+            discardPendingResponses();
+        }
+    }
+
+    private void writePendingResponses() {
+        // responses queued from now on are written by the next task
+        flushScheduled.set(false);
+        if (!ctx.channel().isActive()) {
+            discardPendingResponses();
+            return;
+        }
+
+        ByteBuf pendingSendResponses = null;
+        int numResponses = 0;
+        PendingAddResponse response;
+        while (numResponses < MAX_RESPONSES_PER_FLUSH && (response = pendingAddResponses.poll()) != null) {
+            if (pendingSendResponses == null) {
+                pendingSendResponses = ctx.alloc().directBuffer(maxPendingResponsesSize);
+            }
+            response.serializeInto(pendingSendResponses);
+            response.recycle();
+            numResponses++;
+        }
         if (pendingSendResponses == null) {
-            pendingSendResponses = ctx().alloc().directBuffer(maxPendingResponsesSize);
+            return;
+        }
+
+        maxPendingResponsesSize = (int) Math.max(
+                maxPendingResponsesSize * 0.5 + 0.5 * pendingSendResponses.readableBytes(),
+                DEFAULT_PENDING_RESPONSE_SIZE);
+        ctx.writeAndFlush(pendingSendResponses, ctx.voidPromise());
+        responsesPerFlushStats.registerSuccessfulValue(numResponses);
+
+        if (!pendingAddResponses.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            scheduleFlush();
         }
-        BookieProtoEncoding.ResponseEnDeCoderPreV3.serializeAddResponseInto(rc, req, pendingSendResponses);
     }
 
-    public synchronized void flushPendingResponse() {
-        if (pendingSendResponses != null) {
-            maxPendingResponsesSize = (int) Math.max(
-                    maxPendingResponsesSize * 0.5 + 0.5 * pendingSendResponses.readableBytes(),
-                    DEFAULT_PENDING_RESPONSE_SIZE);
-            if (ctx().channel().isActive()) {
-                ctx().writeAndFlush(pendingSendResponses, ctx.voidPromise());
-            } else {
-                pendingSendResponses.release();
+    private void discardPendingResponses() {
+        PendingAddResponse response;
+        while ((response = pendingAddResponses.poll()) != null) {
+            response.recycle();
+        }
+    }
+
+    /**
+     * Response of a v2 add request, waiting to be written.
+     */
+    private static final class PendingAddResponse {
+        private static final Recycler<PendingAddResponse> RECYCLER = new Recycler<PendingAddResponse>() {
+            @Override
+            protected PendingAddResponse newObject(Handle<PendingAddResponse> handle) {
+                return new PendingAddResponse(handle);
             }
-            pendingSendResponses = null;
+        };
+
+        private final Handle<PendingAddResponse> recyclerHandle;
+        private int rc;
+        private int packetHeader;
+        private long ledgerId;
+        private long entryId;
+
+        private PendingAddResponse(Handle<PendingAddResponse> recyclerHandle) {
+            this.recyclerHandle = recyclerHandle;
+        }
+
+        static PendingAddResponse create(int rc, BookieProtocol.ParsedAddRequest req) {
+            PendingAddResponse response = RECYCLER.get();
+            response.rc = rc;
+            response.packetHeader = BookieProtocol.PacketHeader.toInt(
+                    req.getProtocolVersion(), req.getOpCode(), (short) 0);
+            response.ledgerId = req.getLedgerId();
+            response.entryId = req.getEntryId();
+            return response;
+        }
+
+        void serializeInto(ByteBuf buf) {
+            BookieProtoEncoding.ResponseEnDeCoderPreV3.serializeAddResponseInto(
+                    rc, packetHeader, ledgerId, entryId, buf);
+        }
+
+        void recycle() {
+            recyclerHandle.recycle(this);
         }
     }
 }
@@ -21,6 +21,8 @@
 package org.apache.bookkeeper.proto;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_SCHEDULER_SCOPE;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_SCOPE;
 import static org.apache.bookkeeper.proto.RequestUtils.hasFlag;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -30,30 +32,42 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.bookkeeper.auth.AuthProviderFactoryFactory;
 import org.apache.bookkeeper.auth.AuthToken;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
 import org.apache.bookkeeper.bookie.Bookie;
-import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
+import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.processor.RequestProcessor;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.tls.SecurityException;
 import org.apache.bookkeeper.tls.SecurityHandlerFactory;
 import org.apache.bookkeeper.tls.SecurityHandlerFactory.NodeType;
+import org.apache.bookkeeper.util.EventLoopUtil;
 import org.apache.bookkeeper.util.NettyChannelUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,12 +81,15 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(BookieRequestProcessor.class);
 
+    private static final int MAX_TRACKED_LEDGERS = 100_000;
+
     /**
      * The server configuration. We use this for getting the number of add and read
      * worker threads.
      */
     private final ServerConfiguration serverCfg;
     private final long waitTimeoutOnBackpressureMillis;
+    private final long v2RequestTimeoutNanos;
     private final boolean preserveMdcForTaskExecution;
 
     /**
@@ -111,14 +128,27 @@ public class BookieRequestProcessor implements RequestProcessor {
      */
     private final HashedWheelTimer requestTimer;
 
+    /**
+     * The schedulers sharing the read and write threadpools across tenants, if enabled.
+     */
+    private final TenantRequestScheduler readScheduler;
+    private final TenantRequestScheduler writeScheduler;
+
+    // last entry added to the recently written ledgers, to tell tailing reads from catch-up reads.
+    // The ledgers not written anymore are evicted first.
+    private final Cache<Long, Long> lastAddedEntries;
+    private final int tailingReadWindow;
+
     // Expose Stats
     private final BKStats bkStats = BKStats.getInstance();
     private final boolean statsEnabled;
 
     private final RequestStats requestStats;
 
-    final Semaphore addsSemaphore;
-    final Semaphore readsSemaphore;
+    final InProgressRequestLimiter addsLimiter;
+    final InProgressRequestLimiter readsLimiter;
+    // limits the entries re-replicated to this bookie, if enabled
+    private final ChannelByteRateLimiter replicationLimiter;
 
     final ChannelGroup allChannels;
 
@@ -129,6 +159,22 @@ public class BookieRequestProcessor implements RequestProcessor {
     private final ByteBufAllocator allocator;
 
     private final boolean throttleReadResponses;
+    private final int maxLedgersPerListOfEntriesRequest;
+
+    // client reading the entries of the copy entries requests from the other bookies, created on
+    // the first request
+    @Getter(AccessLevel.NONE)
+    private BookieClientImpl peerBookieClient;
+    @Getter(AccessLevel.NONE)
+    private EventLoopGroup peerEventLoopGroup;
+    @Getter(AccessLevel.NONE)
+    private OrderedExecutor peerExecutor;
+    @Getter(AccessLevel.NONE)
+    private ScheduledExecutorService peerScheduler;
+    @Getter(AccessLevel.NONE)
+    private final StatsLogger statsLogger;
+    // metadata of the ledgers, to check the copy entries requests against, if available
+    private volatile LedgerManager ledgerManager;
 
     public BookieRequestProcessor(ServerConfiguration serverCfg, Bookie bookie, StatsLogger statsLogger,
                                   SecurityHandlerFactory shFactory, ByteBufAllocator allocator,
@@ -136,10 +182,13 @@ public class BookieRequestProcessor implements RequestProcessor {
         this.serverCfg = serverCfg;
         this.allocator = allocator;
         this.allChannels = allChannels;
+        this.statsLogger = statsLogger;
         this.waitTimeoutOnBackpressureMillis = serverCfg.getWaitTimeoutOnResponseBackpressureMillis();
+        this.v2RequestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(serverCfg.getV2ProtocolRequestTimeoutMs());
         this.preserveMdcForTaskExecution = serverCfg.getPreserveMdcForTaskExecution();
         this.bookie = bookie;
         this.throttleReadResponses = serverCfg.isReadWorkerThreadsThrottlingEnabled();
+        this.maxLedgersPerListOfEntriesRequest = serverCfg.getMaxLedgersPerListOfEntriesRequest();
         this.readThreadPool = createExecutor(
                 this.serverCfg.getNumReadWorkerThreads(),
                 "BookieReadThreadPool",
@@ -149,6 +198,7 @@ public class BookieRequestProcessor implements RequestProcessor {
                 this.serverCfg.getNumAddWorkerThreads(),
                 "BookieWriteThreadPool",
                 serverCfg.getMaxPendingAddRequestPerThread(),
+                serverCfg.isPinAddWorkerThreadsToCpuCores(),
                 statsLogger);
         if (serverCfg.getNumLongPollWorkerThreads() <= 0 && readThreadPool != null) {
             this.longPollThreadPool = this.readThreadPool;
@@ -200,57 +250,123 @@ public class BookieRequestProcessor implements RequestProcessor {
         this.requestStats = new RequestStats(statsLogger);
 
         int maxAdds = serverCfg.getMaxAddsInProgressLimit();
-        addsSemaphore = maxAdds > 0 ? new Semaphore(maxAdds, true) : null;
+        addsLimiter = maxAdds > 0 ? new InProgressRequestLimiter("add", maxAdds,
+                requestStats::blockAddRequest, requestStats::unblockAddRequest) : null;
 
         int maxReads = serverCfg.getMaxReadsInProgressLimit();
-        readsSemaphore = maxReads > 0 ? new Semaphore(maxReads, true) : null;
+        readsLimiter = maxReads > 0 ? new InProgressRequestLimiter("read", maxReads,
+                requestStats::blockReadRequest, requestStats::unblockReadRequest) : null;
+
+        long replicationByteRateLimit = serverCfg.getReplicationByteRateLimit();
+        replicationLimiter = replicationByteRateLimit > 0 ? new ChannelByteRateLimiter("replication",
+                replicationByteRateLimit, requestStats.getReplicationAddThrottledStats()) : null;
+
+        this.tailingReadWindow = serverCfg.getTenantSchedulingTailingReadWindow();
+        if (serverCfg.isTenantFairSchedulingEnabled()) {
+            Map<String, Double> weights = new HashMap<>();
+            TenantRequestScheduler.parseTenantSettings(serverCfg.getTenantSchedulingWeights())
+                    .forEach((tenant, weight) -> weights.put(tenant, Double.parseDouble(weight)));
+            Map<String, Long> byteRateLimits = new HashMap<>();
+            TenantRequestScheduler.parseTenantSettings(serverCfg.getTenantSchedulingByteRateLimits())
+                    .forEach((tenant, limit) -> byteRateLimits.put(tenant, Long.parseLong(limit)));
+            StatsLogger schedulerStatsLogger = statsLogger.scope(TENANT_SCHEDULER_SCOPE);
+            this.readScheduler = createTenantScheduler(readThreadPool, serverCfg.getNumReadWorkerThreads(),
+                    weights, byteRateLimits, schedulerStatsLogger.scope("read"));
+            this.writeScheduler = createTenantScheduler(writeThreadPool, serverCfg.getNumAddWorkerThreads(),
+                    weights, byteRateLimits, schedulerStatsLogger.scope("write"));
+            this.lastAddedEntries = CacheBuilder.newBuilder()
+                    .maximumSize(MAX_TRACKED_LEDGERS)
+                    .build();
+        } else {
+            this.readScheduler = null;
+            this.writeScheduler = null;
+            this.lastAddedEntries = null;
+        }
+    }
+
+    private TenantRequestScheduler createTenantScheduler(OrderedExecutor threadPool,
+                                                         int numThreads,
+                                                         Map<String, Double> weights,
+                                                         Map<String, Long> byteRateLimits,
+                                                         StatsLogger statsLogger) {
+        if (null == threadPool) {
+            return null;
+        }
+        int maxOutstandingRequests = serverCfg.getTenantSchedulingMaxOutstandingRequests();
+        if (maxOutstandingRequests <= 0) {
+            maxOutstandingRequests = 2 * numThreads;
+        }
+        return new TenantRequestScheduler(threadPool, requestTimer,
+                maxOutstandingRequests,
+                serverCfg.getTenantSchedulingMaxQueuedRequests(),
+                serverCfg.getTenantSchedulingTailingReadWeight(),
+                serverCfg.getTenantSchedulingByteRateLimit(),
+                weights, byteRateLimits, statsLogger);
+    }
+
+    /**
+     * Get the tenant of a request: the authenticated principal of its connection. The requests
+     * of the connections not authenticated are all accounted to the anonymous tenant.
+     */
+    String getTenant(BookieRequestHandler requestHandler) {
+        AuthHandler.ServerSideHandler authHandler = requestHandler.ctx().pipeline()
+                .get(AuthHandler.ServerSideHandler.class);
+        BookKeeperPrincipal principal = null == authHandler ? null : authHandler.connectionPeer.getAuthorizedId();
+        if (null != principal) {
+            return principal.getName();
+        }
+        return BookKeeperPrincipal.ANONYMOUS.getName();
+    }
+
+    private void onAddRequestQueued(long ledgerId, long entryId) {
+        if (ledgerId >= 0 && entryId >= 0) {
+            lastAddedEntries.put(ledgerId, entryId);
+        }
+    }
+
+    private TenantRequestScheduler.RequestClass getReadRequestClass(long ledgerId, long entryId) {
+        Long lastAddedEntry = lastAddedEntries.getIfPresent(ledgerId);
+        if (null != lastAddedEntry && entryId > lastAddedEntry - tailingReadWindow) {
+            return TenantRequestScheduler.RequestClass.TAILING_READ;
+        } else {
+            return TenantRequestScheduler.RequestClass.CATCHUP_READ;
+        }
+    }
+
+    /**
+     * Account an entry read to the byte rate quota of the tenant of the request.
+     */
+    void onReadEntryBytes(BookieRequestHandler requestHandler, long bytes) {
+        if (null != readScheduler) {
+            readScheduler.chargeRead(getTenant(requestHandler), bytes);
+        }
     }
 
     protected void onAddRequestStart(Channel channel) {
-        if (addsSemaphore != null) {
-            if (!addsSemaphore.tryAcquire()) {
-                final long throttlingStartTimeNanos = MathUtils.nowInNano();
-                channel.config().setAutoRead(false);
-                LOG.info("Too many add requests in progress, disabling autoread on channel {}", channel);
-                requestStats.blockAddRequest();
-                addsSemaphore.acquireUninterruptibly();
-                channel.config().setAutoRead(true);
-                final long delayNanos = MathUtils.elapsedNanos(throttlingStartTimeNanos);
-                LOG.info("Re-enabled autoread on channel {} after AddRequest delay of {} nanos", channel, delayNanos);
-                requestStats.unblockAddRequest(delayNanos);
-            }
+        if (addsLimiter != null) {
+            addsLimiter.onRequestStart(channel);
         }
         requestStats.trackAddRequest();
     }
 
     protected void onAddRequestFinish() {
         requestStats.untrackAddRequest();
-        if (addsSemaphore != null) {
-            addsSemaphore.release();
+        if (addsLimiter != null) {
+            addsLimiter.onRequestFinish();
         }
     }
 
     protected void onReadRequestStart(Channel channel) {
-        if (readsSemaphore != null) {
-            if (!readsSemaphore.tryAcquire()) {
-                final long throttlingStartTimeNanos = MathUtils.nowInNano();
-                channel.config().setAutoRead(false);
-                LOG.info("Too many read requests in progress, disabling autoread on channel {}", channel);
-                requestStats.blockReadRequest();
-                readsSemaphore.acquireUninterruptibly();
-                channel.config().setAutoRead(true);
-                final long delayNanos = MathUtils.elapsedNanos(throttlingStartTimeNanos);
-                LOG.info("Re-enabled autoread on channel {} after ReadRequest delay of {} nanos", channel, delayNanos);
-                requestStats.unblockReadRequest(delayNanos);
-            }
+        if (readsLimiter != null) {
+            readsLimiter.onRequestStart(channel);
         }
         requestStats.trackReadRequest();
     }
 
     protected void onReadRequestFinish() {
         requestStats.untrackReadRequest();
-        if (readsSemaphore != null) {
-            readsSemaphore.release();
+        if (readsLimiter != null) {
+            readsLimiter.onRequestFinish();
         }
     }
 
@@ -274,20 +390,85 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
         shutdownExecutor(highPriorityThreadPool);
         requestTimer.stop();
+        synchronized (this) {
+            if (null != peerBookieClient) {
+                peerBookieClient.close();
+                peerExecutor.shutdown();
+                peerScheduler.shutdown();
+                peerEventLoopGroup.shutdownGracefully();
+            }
+        }
         LOG.info("Closed RequestProcessor");
     }
 
+    /**
+     * Set the ledger manager the copy entries requests are checked against. The bookie rejects
+     * these requests without it.
+     *
+     * @param ledgerManager ledger manager of the cluster of the bookie
+     */
+    public void setLedgerManager(LedgerManager ledgerManager) {
+        this.ledgerManager = ledgerManager;
+    }
+
+    /**
+     * Get the client reading the entries of the copy entries requests from the other bookies. The
+     * bookies are addressed by their network address, as resolved by the replication workers.
+     */
+    synchronized BookieClient getPeerBookieClient() throws IOException {
+        if (null == peerBookieClient) {
+            ClientConfiguration clientConf = new ClientConfiguration(serverCfg);
+            clientConf.setClientRole(ClientConfiguration.CLIENT_ROLE_SYSTEM);
+            peerEventLoopGroup = EventLoopUtil.getClientEventLoopGroup(clientConf,
+                    new DefaultThreadFactory("BookiePeerClientIO"));
+            peerExecutor = OrderedExecutor.newBuilder()
+                    .name("BookiePeerClientWorker")
+                    .numThreads(1)
+                    .build();
+            peerScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("BookiePeerClientScheduler"));
+            peerBookieClient = new BookieClientImpl(clientConf, peerEventLoopGroup, allocator,
+                    peerExecutor, peerScheduler, statsLogger.scope(CLIENT_SCOPE),
+                    BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+        }
+        return peerBookieClient;
+    }
+
     private OrderedExecutor createExecutor(
             int numThreads,
             String nameFormat,
             int maxTasksInQueue,
             StatsLogger statsLogger) {
+        return createExecutor(numThreads, nameFormat, maxTasksInQueue, false, statsLogger);
+    }
+
+    private OrderedExecutor createExecutor(
+            int numThreads,
+            String nameFormat,
+            int maxTasksInQueue,
+            boolean pinToCpuCores,
+            StatsLogger statsLogger) {
         if (numThreads <= 0) {
             return null;
         } else {
+            ThreadFactory threadFactory = new DefaultThreadFactory(nameFormat);
+            if (pinToCpuCores) {
+                // each thread executes the requests of its ledgers, keep it on its own core
+                ThreadFactory unpinnedThreadFactory = threadFactory;
+                threadFactory = task -> unpinnedThreadFactory.newThread(() -> {
+                    try {
+                        CpuAffinity.acquireCore();
+                    } catch (Throwable t) {
+                        LOG.warn("Failed to acquire CPU core for thread {}: {}", Thread.currentThread().getName(),
+                                t.getMessage(), t);
+                    }
+                    task.run();
+                });
+            }
             return OrderedExecutor.newBuilder()
                     .numThreads(numThreads)
                     .name(nameFormat)
+                    .threadFactory(threadFactory)
                     .traceTaskExecution(serverCfg.getEnableTaskExecutionStats())
                     .preserveMdcForTaskExecution(serverCfg.getPreserveMdcForTaskExecution())
                     .statsLogger(statsLogger)
@@ -353,6 +534,12 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case GET_LIST_OF_ENTRIES_OF_LEDGER:
                         processGetListOfEntriesOfLedgerProcessorV3(r, requestHandler);
                         break;
+                    case COPY_ENTRIES:
+                        processCopyEntriesRequestV3(r, requestHandler);
+                        break;
+                    case GET_LIST_OF_ENTRIES_OF_LEDGERS:
+                        processGetListOfEntriesOfLedgersProcessorV3(r, requestHandler);
+                        break;
                     default:
                         LOG.info("Unknown operation type {}", header.getOperation());
                         final BookkeeperProtocol.Response response =
@@ -421,7 +608,7 @@ public class BookieRequestProcessor implements RequestProcessor {
         if (null == writeThreadPool) {
             writeLac.run();
         } else {
-            writeThreadPool.executeOrdered(r.getAddRequest().getLedgerId(), writeLac);
+            writeThreadPool.executeOrdered(r.getWriteLacRequest().getLedgerId(), writeLac);
         }
     }
 
@@ -436,6 +623,12 @@ public class BookieRequestProcessor implements RequestProcessor {
     }
 
     private void processAddRequestV3(final BookkeeperProtocol.Request r, final BookieRequestHandler requestHandler) {
+        // Recovery adds without priority are sent by the replication workers, while the ledger
+        // recoveries send them with a high priority
+        if (null != replicationLimiter && !RequestUtils.isHighPriority(r)
+                && RequestUtils.hasFlag(r.getAddRequest(), BookkeeperProtocol.AddRequest.Flag.RECOVERY_ADD)) {
+            replicationLimiter.onRequest(requestHandler.ctx().channel(), r.getAddRequest().getBody().size());
+        }
         WriteEntryProcessorV3 write = new WriteEntryProcessorV3(r, requestHandler, this);
 
         final OrderedExecutor threadPool;
@@ -447,29 +640,38 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             write.run();
+        } else if (null != writeScheduler && threadPool == writeThreadPool) {
+            BookkeeperProtocol.AddRequest add = r.getAddRequest();
+            onAddRequestQueued(add.getLedgerId(), add.getEntryId());
+            writeScheduler.submit(getTenant(requestHandler), TenantRequestScheduler.RequestClass.WRITE,
+                    add.getLedgerId(), add.getBody().size(), write, () -> rejectAddRequestV3(r, write));
         } else {
             try {
                 threadPool.executeOrdered(r.getAddRequest().getLedgerId(), write);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
-                              r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-                BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
-                        .setLedgerId(r.getAddRequest().getLedgerId())
-                        .setEntryId(r.getAddRequest().getEntryId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(write.getHeader())
-                        .setStatus(addResponse.getStatus())
-                        .setAddResponse(addResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+                rejectAddRequestV3(r, write);
             }
         }
     }
 
+    private void rejectAddRequestV3(BookkeeperProtocol.Request r, WriteEntryProcessorV3 write) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests",
+                      r.getAddRequest().getLedgerId(), r.getAddRequest().getEntryId());
+        }
+        getRequestStats().getAddEntryRejectedCounter().inc();
+        BookkeeperProtocol.AddResponse.Builder addResponse = BookkeeperProtocol.AddResponse.newBuilder()
+                .setLedgerId(r.getAddRequest().getLedgerId())
+                .setEntryId(r.getAddRequest().getEntryId())
+                .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(write.getHeader())
+                .setStatus(addResponse.getStatus())
+                .setAddResponse(addResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        write.sendResponse(addResponse.getStatus(), resp, requestStats.getAddRequestStats());
+    }
+
     private void processForceLedgerRequestV3(final BookkeeperProtocol.Request r,
                                              final BookieRequestHandler requestHandler) {
         ForceLedgerProcessorV3 forceLedger = new ForceLedgerProcessorV3(r, requestHandler, this);
@@ -487,34 +689,39 @@ public class BookieRequestProcessor implements RequestProcessor {
             try {
                 threadPool.executeOrdered(r.getForceLedgerRequest().getLedgerId(), forceLedger);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to force ledger {}. Too many pending requests",
-                              r.getForceLedgerRequest().getLedgerId());
-                }
-                BookkeeperProtocol.ForceLedgerResponse.Builder forceLedgerResponse =
-                        BookkeeperProtocol.ForceLedgerResponse.newBuilder()
-                        .setLedgerId(r.getForceLedgerRequest().getLedgerId())
-                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                        .setHeader(forceLedger.getHeader())
-                        .setStatus(forceLedgerResponse.getStatus())
-                        .setForceLedgerResponse(forceLedgerResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                forceLedger.sendResponse(
-                    forceLedgerResponse.getStatus(),
-                    resp,
-                    requestStats.getForceLedgerRequestStats());
+                rejectForceLedgerRequestV3(r, forceLedger);
             }
         }
     }
 
+    private void rejectForceLedgerRequestV3(BookkeeperProtocol.Request r, ForceLedgerProcessorV3 forceLedger) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to force ledger {}. Too many pending requests",
+                      r.getForceLedgerRequest().getLedgerId());
+        }
+        BookkeeperProtocol.ForceLedgerResponse.Builder forceLedgerResponse =
+                BookkeeperProtocol.ForceLedgerResponse.newBuilder()
+                .setLedgerId(r.getForceLedgerRequest().getLedgerId())
+                .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(forceLedger.getHeader())
+                .setStatus(forceLedgerResponse.getStatus())
+                .setForceLedgerResponse(forceLedgerResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        forceLedger.sendResponse(
+            forceLedgerResponse.getStatus(),
+            resp,
+            requestStats.getForceLedgerRequestStats());
+    }
+
     private void processReadRequestV3(final BookkeeperProtocol.Request r, final BookieRequestHandler requestHandler) {
         ExecutorService fenceThread = null == highPriorityThreadPool ? null :
                 highPriorityThreadPool.chooseThread(requestHandler.ctx());
 
         final ReadEntryProcessorV3 read;
         final OrderedExecutor threadPool;
-        if (RequestUtils.isLongPollReadRequest(r.getReadRequest())) {
+        final boolean isLongPoll = RequestUtils.isLongPollReadRequest(r.getReadRequest());
+        if (isLongPoll) {
             ExecutorService lpThread = longPollThreadPool.chooseThread(requestHandler.ctx());
 
             read = new LongPollReadEntryProcessorV3(r, requestHandler, this, fenceThread,
@@ -537,30 +744,39 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             read.run();
+        } else if (null != readScheduler && threadPool == readThreadPool && !isLongPoll) {
+            BookkeeperProtocol.ReadRequest readRequest = r.getReadRequest();
+            readScheduler.submit(getTenant(requestHandler),
+                    getReadRequestClass(readRequest.getLedgerId(), readRequest.getEntryId()),
+                    readRequest.getLedgerId(), -1, read, () -> rejectReadRequestV3(r, read));
         } else {
             try {
                 threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
-                              r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
-                    .setLedgerId(r.getReadRequest().getLedgerId())
-                    .setEntryId(r.getReadRequest().getEntryId())
-                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                    .setHeader(read.getHeader())
-                    .setStatus(readResponse.getStatus())
-                    .setReadResponse(readResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
-                onReadRequestFinish();
+                rejectReadRequestV3(r, read);
             }
         }
     }
 
+    private void rejectReadRequestV3(BookkeeperProtocol.Request r, ReadEntryProcessorV3 read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
+                      r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
+            .setLedgerId(r.getReadRequest().getLedgerId())
+            .setEntryId(r.getReadRequest().getEntryId())
+            .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+            .setHeader(read.getHeader())
+            .setStatus(readResponse.getStatus())
+            .setReadResponse(readResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
     private void processStartTLSRequestV3(final BookkeeperProtocol.Request r,
                                           final BookieRequestHandler requestHandler) {
         BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder();
@@ -639,7 +855,31 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processGetListOfEntriesOfLedgersProcessorV3(final BookkeeperProtocol.Request r,
+                                                             final BookieRequestHandler requestHandler) {
+        GetListOfEntriesOfLedgersProcessorV3 getListOfEntriesOfLedgers =
+                new GetListOfEntriesOfLedgersProcessorV3(r, requestHandler, this);
+        if (null == readThreadPool) {
+            getListOfEntriesOfLedgers.run();
+        } else {
+            readThreadPool.submit(getListOfEntriesOfLedgers);
+        }
+    }
+
+    private void processCopyEntriesRequestV3(final BookkeeperProtocol.Request r,
+                                             final BookieRequestHandler requestHandler) {
+        CopyEntriesProcessorV3 copyEntries = new CopyEntriesProcessorV3(r, requestHandler, this);
+        if (null == readThreadPool) {
+            copyEntries.run();
+        } else {
+            readThreadPool.submit(copyEntries);
+        }
+    }
+
     private void processAddRequest(final BookieProtocol.ParsedAddRequest r, final BookieRequestHandler requestHandler) {
+        if (null != replicationLimiter && !r.isHighPriority() && r.isRecoveryAdd()) {
+            replicationLimiter.onRequest(requestHandler.ctx().channel(), r.getData().readableBytes());
+        }
         WriteEntryProcessor write = WriteEntryProcessor.create(r, requestHandler, this);
 
         // If it's a high priority add (usually as part of recovery process), we want to make sure it gets
@@ -653,24 +893,32 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             write.run();
+        } else if (null != writeScheduler && threadPool == writeThreadPool) {
+            onAddRequestQueued(r.getLedgerId(), r.getEntryId());
+            writeScheduler.submit(getTenant(requestHandler), TenantRequestScheduler.RequestClass.WRITE,
+                    r.getLedgerId(), r.getData().readableBytes(), write, () -> rejectAddRequest(r, write));
         } else {
             try {
                 threadPool.executeOrdered(r.getLedgerId(), write);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getAddEntryRejectedCounter().inc();
-
-                write.sendWriteReqResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getAddRequestStats());
+                rejectAddRequest(r, write);
             }
         }
     }
 
+    private void rejectAddRequest(BookieProtocol.ParsedAddRequest r, WriteEntryProcessor write) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to add entry at {}:{}. Too many pending requests", r.ledgerId,
+                    r.entryId);
+        }
+        getRequestStats().getAddEntryRejectedCounter().inc();
+
+        write.sendWriteReqResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getAddRequestStats());
+    }
+
     private void processReadRequest(final BookieProtocol.ReadRequest r, final BookieRequestHandler requestHandler) {
         ExecutorService fenceThreadPool =
                 null == highPriorityThreadPool ? null : highPriorityThreadPool.chooseThread(requestHandler.ctx());
@@ -689,24 +937,31 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         if (null == threadPool) {
             read.run();
+        } else if (null != readScheduler && threadPool == readThreadPool) {
+            readScheduler.submit(getTenant(requestHandler), getReadRequestClass(r.getLedgerId(), r.getEntryId()),
+                    r.getLedgerId(), -1, read, () -> rejectReadRequest(r, read));
         } else {
             try {
                 threadPool.executeOrdered(r.getLedgerId(), read);
             } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
-                }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                read.sendResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getReadRequestStats());
-                onReadRequestFinish();
+                rejectReadRequest(r, read);
             }
         }
     }
 
+    private void rejectReadRequest(BookieProtocol.ReadRequest r, ReadEntryProcessor read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
+                    r.entryId);
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        read.sendResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
     public long getWaitTimeoutOnBackpressureMillis() {
         return waitTimeoutOnBackpressureMillis;
     }
@@ -22,6 +22,7 @@
 package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -114,6 +115,30 @@ public class BookkeeperInternalCallbacks {
                 AvailabilityOfEntriesOfLedger availabilityOfEntriesOfLedger);
     }
 
+    /**
+     * A callback interface for GetListOfEntriesOfLedgers command.
+     */
+    public interface GetListOfEntriesOfLedgersCallback {
+        /**
+         * @param ledgers the entries of the requested ledgers stored by the bookie, the ledgers
+         *                not stored by the bookie are missing
+         */
+        void getListOfEntriesOfLedgersComplete(int rc, Map<Long, AvailabilityOfEntriesOfLedger> ledgers);
+    }
+
+    /**
+     * A callback interface for CopyEntries command.
+     */
+    public interface CopyEntriesCallback {
+        /**
+         * @param entriesCopied number of entries copied from the first entry of the request
+         * @param bytesCopied bytes of the entries copied
+         * @param failedEntryId the entry which couldn't be read from any bookie, or -1
+         */
+        void copyEntriesComplete(int rc, long ledgerId, long entriesCopied, long bytesCopied,
+                                 long failedEntryId, Object ctx);
+    }
+
     /**
      * Handle the Response Code and transform it to a BKException.
      *
@@ -153,6 +178,19 @@ public class BookkeeperInternalCallbacks {
         }
     }
 
+    /**
+     * Future for GetListOfEntriesOfLedgers.
+     */
+    public static class FutureGetListOfEntriesOfLedgers
+            extends CompletableFuture<Map<Long, AvailabilityOfEntriesOfLedger>>
+            implements GetListOfEntriesOfLedgersCallback {
+
+        @Override
+        public void getListOfEntriesOfLedgersComplete(int rc, Map<Long, AvailabilityOfEntriesOfLedger> ledgers) {
+            finish(rc, ledgers, this);
+        }
+    }
+
     /**
      * A generic callback interface.
      */
@@ -0,0 +1,101 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+
+/**
+ * Limit the rate of the bytes of a type of requests, shared by all the channels, without
+ * blocking the I/O threads.
+ *
+ * <p>The requests are always admitted, and the bytes exceeding the budget are borrowed from
+ * the next seconds. Reading from the channel of such a request is suspended until the debt is
+ * paid off, so the sender is throttled by the TCP backpressure.
+ */
+class ChannelByteRateLimiter {
+
+    private final long bytesPerSecond;
+    private final String suspensionReason;
+    private final AttributeKey<Boolean> throttledKey;
+    private final OpStatsLogger throttleStats;
+
+    // budget accumulated up to one second worth of bytes, negative when borrowed
+    private long availableBytes;
+    private long lastRefillNanos;
+
+    /**
+     * @param requestType type of the limited requests
+     * @param bytesPerSecond max rate of the bytes of the limited requests
+     * @param throttleStats stats of the delays the channels are suspended for
+     */
+    ChannelByteRateLimiter(String requestType, long bytesPerSecond, OpStatsLogger throttleStats) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.suspensionReason = requestType + " byte rate";
+        this.throttledKey = AttributeKey.valueOf(ChannelByteRateLimiter.class, requestType);
+        this.throttleStats = throttleStats;
+        this.availableBytes = bytesPerSecond;
+        this.lastRefillNanos = MathUtils.nowInNano();
+    }
+
+    void onRequest(Channel channel, long bytes) {
+        long delayNanos = reserve(bytes);
+        if (delayNanos <= 0 || channel.attr(throttledKey).setIfAbsent(Boolean.TRUE) != null) {
+            return;
+        }
+
+        ChannelReadSuspension.suspend(channel, suspensionReason);
+        throttleStats.registerSuccessfulEvent(delayNanos, TimeUnit.NANOSECONDS);
+        try {
+            channel.eventLoop().schedule(() -> {
+                channel.attr(throttledKey).set(null);
+                ChannelReadSuspension.resume(channel, suspensionReason);
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the event loop is shutting down with the channel
+            channel.attr(throttledKey).set(null);
+            ChannelReadSuspension.resume(channel, suspensionReason);
+        }
+    }
+
+    /**
+     * Take bytes from the budget, borrowing them from the next seconds if needed.
+     *
+     * @return the time until the borrowed bytes are paid off, in nanoseconds, or 0 if within budget
+     */
+    synchronized long reserve(long bytes) {
+        long now = MathUtils.nowInNano();
+        long refill = (long) ((double) (now - lastRefillNanos) * bytesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        if (refill > 0) {
+            availableBytes = Math.min(bytesPerSecond, availableBytes + refill);
+            lastRefillNanos = now;
+        }
+        availableBytes -= bytes;
+        if (availableBytes >= 0) {
+            return 0;
+        }
+        return (long) ((double) -availableBytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reasons a channel stopped reading for. A channel can be suspended by several limiters at the
+ * same time, it only resumes reading once all of them have resumed it.
+ */
+final class ChannelReadSuspension {
+
+    private static final AttributeKey<Set<String>> REASONS_KEY =
+            AttributeKey.valueOf(ChannelReadSuspension.class, "reasons");
+
+    private ChannelReadSuspension() {}
+
+    /**
+     * Stop reading from a channel.
+     *
+     * @param channel the channel to suspend
+     * @param reason why the channel is suspended
+     */
+    static void suspend(Channel channel, String reason) {
+        Set<String> reasons = getReasons(channel);
+        synchronized (reasons) {
+            reasons.add(reason);
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * Withdraw a reason a channel was suspended for, and resume reading from the channel if it
+     * was the last one.
+     *
+     * @param channel the suspended channel
+     * @param reason why the channel was suspended
+     * @return true if the channel reads again
+     */
+    static boolean resume(Channel channel, String reason) {
+        Set<String> reasons = getReasons(channel);
+        synchronized (reasons) {
+            reasons.remove(reason);
+            if (!reasons.isEmpty()) {
+                return false;
+            }
+            if (channel.isActive()) {
+                channel.config().setAutoRead(true);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static Set<String> getReasons(Channel channel) {
+        Attribute<Set<String>> attr = channel.attr(REASONS_KEY);
+        Set<String> reasons = attr.get();
+        if (reasons == null) {
+            Set<String> newReasons = new HashSet<>();
+            reasons = attr.setIfAbsent(newReasons);
+            if (reasons == null) {
+                reasons = newReasons;
+            }
+        }
+        return reasons;
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyEntriesRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyEntriesResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 copy entries packets.
+ *
+ * <p>The ensemble of the request is checked against the ledger metadata first. The entries are
+ * then read from the other bookies of the ensemble, and added to this bookie as they are stored,
+ * with their digest, by the add worker threads. At most {@code copyEntriesMaxOutstanding} entries
+ * are being read or added at the same time, and the next reads are delayed while the bookie is over
+ * its re-replication byte rate limit, if any. No entry is read anymore once the timeout of the
+ * request elapsed or the client is gone. The response is sent once all the entries are added, or
+ * once the outstanding entries are done after a failure.
+ */
+class CopyEntriesProcessorV3 extends PacketProcessorBaseV3 {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CopyEntriesProcessorV3.class);
+
+    private final long ledgerId;
+    private final byte[] masterKey;
+    private final long firstEntryId;
+    private final long lastEntryId;
+    // null for the bookies which must not be read from
+    private final List<BookieId> ensemble;
+    private final int writeQuorumSize;
+    private final int maxOutstanding;
+    private final long timeoutNanos;
+    private final long startTimeNanos;
+
+    private BookieClient bookieClient;
+
+    // guarded by this
+    private long nextEntryId;
+    private int outstanding = 0;
+    private boolean readsDelayed = false;
+    private long entriesCopied = 0;
+    private long bytesCopied = 0;
+    private StatusCode failedStatus = null;
+    private long failedEntryId = -1L;
+
+    CopyEntriesProcessorV3(Request request, BookieRequestHandler requestHandler,
+                           BookieRequestProcessor requestProcessor) {
+        super(request, requestHandler, requestProcessor);
+        CopyEntriesRequest copyEntriesRequest = request.getCopyEntriesRequest();
+        this.ledgerId = copyEntriesRequest.getLedgerId();
+        this.masterKey = copyEntriesRequest.getMasterKey().toByteArray();
+        this.firstEntryId = copyEntriesRequest.getFirstEntryId();
+        this.lastEntryId = copyEntriesRequest.getLastEntryId();
+        this.ensemble = new ArrayList<>(copyEntriesRequest.getEnsembleCount());
+        for (String address : copyEntriesRequest.getEnsembleList()) {
+            ensemble.add(address.isEmpty() ? null : BookieId.parse(address));
+        }
+        this.writeQuorumSize = copyEntriesRequest.getWriteQuorumSize();
+        this.maxOutstanding = Math.max(1, requestProcessor.getServerCfg().getCopyEntriesMaxOutstanding());
+        this.timeoutNanos = request.getHeader().hasTimeoutMs()
+                ? TimeUnit.MILLISECONDS.toNanos(request.getHeader().getTimeoutMs()) : 0L;
+        this.startTimeNanos = MathUtils.nowInNano();
+        this.nextEntryId = firstEntryId;
+    }
+
+    @Override
+    public void run() {
+        if (!isVersionCompatible()) {
+            sendCopyEntriesResponse(StatusCode.EBADVERSION);
+            return;
+        }
+        if (requestProcessor.getBookie().isReadOnly()) {
+            LOG.warn("BookieServer is running in readonly mode,"
+                    + " so rejecting the request to copy entries of ledger {}", ledgerId);
+            sendCopyEntriesResponse(StatusCode.EREADONLY);
+            return;
+        }
+        if (firstEntryId < 0 || firstEntryId > lastEntryId
+                || writeQuorumSize <= 0 || writeQuorumSize > ensemble.size()) {
+            LOG.error("Invalid request to copy entries {}-{} of ledger {} from {} with write quorum {}",
+                    firstEntryId, lastEntryId, ledgerId, ensemble, writeQuorumSize);
+            sendCopyEntriesResponse(StatusCode.EBADREQ);
+            return;
+        }
+        LedgerManager ledgerManager = requestProcessor.getLedgerManager();
+        if (null == ledgerManager) {
+            LOG.warn("The ledger metadata is not available, so rejecting the request to copy entries of ledger {}",
+                    ledgerId);
+            sendCopyEntriesResponse(StatusCode.EBADREQ);
+            return;
+        }
+        ledgerManager.readLedgerMetadata(ledgerId).whenComplete((metadata, cause) -> {
+            if (null != cause) {
+                int rc = BKException.getExceptionCode(cause, BKException.Code.MetaStoreException);
+                if (BKException.Code.NoSuchLedgerExistsOnMetadataServerException == rc) {
+                    sendCopyEntriesResponse(StatusCode.ENOLEDGER);
+                } else {
+                    LOG.error("Failed to read the metadata of ledger {} to copy its entries", ledgerId, cause);
+                    sendCopyEntriesResponse(StatusCode.EIO);
+                }
+            } else if (!isValidCopy(metadata.getValue(), firstEntryId, lastEntryId, ensemble, writeQuorumSize)) {
+                LOG.error("Rejecting the request to copy entries {}-{} of ledger {} from {} with write quorum {},"
+                        + " which don't match its metadata {}", firstEntryId, lastEntryId, ledgerId, ensemble,
+                        writeQuorumSize, metadata.getValue());
+                sendCopyEntriesResponse(StatusCode.EBADREQ);
+            } else {
+                startCopy();
+            }
+        });
+    }
+
+    /**
+     * Check that the entries belong to a single ensemble of the ledger, and that the bookies to
+     * read them from are the bookies of this ensemble. The bookies are compared by their network
+     * address, so the entries can only be copied from the bookies registered with their address.
+     */
+    static boolean isValidCopy(LedgerMetadata metadata, long firstEntryId, long lastEntryId,
+                               List<BookieId> ensemble, int writeQuorumSize) {
+        if (metadata.getWriteQuorumSize() != writeQuorumSize
+                || (metadata.isClosed() && lastEntryId > metadata.getLastEntryId())) {
+            return false;
+        }
+        Map.Entry<Long, ? extends List<BookieId>> segment = metadata.getAllEnsembles().floorEntry(firstEntryId);
+        Long nextSegment = metadata.getAllEnsembles().higherKey(firstEntryId);
+        if (null == segment || (null != nextSegment && nextSegment <= lastEntryId)
+                || segment.getValue().size() != ensemble.size()) {
+            return false;
+        }
+        for (int i = 0; i < ensemble.size(); i++) {
+            if (null != ensemble.get(i) && !ensemble.get(i).equals(segment.getValue().get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startCopy() {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Copying entries {}-{} of ledger {} from {}", firstEntryId, lastEntryId, ledgerId, ensemble);
+        }
+        try {
+            bookieClient = requestProcessor.getPeerBookieClient();
+        } catch (IOException e) {
+            LOG.error("Failed to create the client to copy entries of ledger {}", ledgerId, e);
+            sendCopyEntriesResponse(StatusCode.EIO);
+            return;
+        }
+        readNextEntries();
+    }
+
+    private void readNextEntries() {
+        List<Long> entryIds = new ArrayList<>();
+        boolean stopped = false;
+        synchronized (this) {
+            if (null == failedStatus && nextEntryId <= lastEntryId && (!requestHandler.ctx().channel().isActive()
+                    || (timeoutNanos > 0 && MathUtils.elapsedNanos(enqueueNanos) > timeoutNanos))) {
+                // the client doesn't wait for the response anymore, and copies the other entries itself
+                LOG.warn("Stopping to copy entries {}-{} of ledger {} at entry {}, the request timed out"
+                        + " or its client is gone", firstEntryId, lastEntryId, ledgerId, nextEntryId);
+                failedStatus = StatusCode.EIO;
+                failedEntryId = nextEntryId;
+                stopped = 0 == outstanding;
+            }
+            while (null == failedStatus && !readsDelayed
+                    && outstanding < maxOutstanding && nextEntryId <= lastEntryId) {
+                entryIds.add(nextEntryId++);
+                outstanding++;
+            }
+        }
+        if (stopped) {
+            sendCopyEntriesResponse(StatusCode.EIO);
+            return;
+        }
+        for (long entryId : entryIds) {
+            readEntry(entryId, 0, BKException.Code.NoSuchEntryException);
+        }
+    }
+
+    /**
+     * Read an entry from the bookies of its write set, in turn from the attempt-th one.
+     */
+    private void readEntry(long entryId, int attempt, int lastRc) {
+        // the write set of the entry, as placed by the round robin distribution schedule
+        BookieId bookie = null;
+        while (attempt < writeQuorumSize && null == bookie) {
+            bookie = ensemble.get((int) ((entryId + attempt) % ensemble.size()));
+            attempt++;
+        }
+        if (null == bookie) {
+            LOG.error("Failed to read entry {} of ledger {} from any bookie of {} : {}",
+                    entryId, ledgerId, ensemble, BKException.getMessage(lastRc));
+            entryDone(entryId, lastRc == BKException.Code.NoSuchEntryException
+                    || lastRc == BKException.Code.NoSuchLedgerExistsException
+                    ? StatusCode.ENOENTRY : StatusCode.EIO, 0);
+            return;
+        }
+        final int nextAttempt = attempt;
+        final BookieId source = bookie;
+        bookieClient.readEntry(source, ledgerId, entryId, (rc, ledgerId, entryId1, buffer, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to read entry {} of ledger {} from {} : {}",
+                            entryId, ledgerId, source, BKException.getMessage(rc));
+                }
+                // an entry missing from one bookie and unreadable from another is reported as an error
+                readEntry(entryId, nextAttempt,
+                        lastRc == BKException.Code.NoSuchEntryException ? rc : lastRc);
+            } else {
+                // the entry is released by the bookie
+                buffer.retain();
+                submitAddEntry(entryId, buffer);
+            }
+        }, null, BookieProtocol.FLAG_NONE);
+    }
+
+    /**
+     * Add the entry from an add worker thread, as the add requests, rather than from the thread of
+     * the client reading the entries, which is shared by all the copy requests.
+     */
+    private void submitAddEntry(long entryId, ByteBuf entry) {
+        OrderedExecutor writeThreadPool = requestProcessor.getWriteThreadPool();
+        if (null == writeThreadPool) {
+            addEntry(entryId, entry);
+            return;
+        }
+        try {
+            writeThreadPool.executeOrdered(ledgerId, () -> addEntry(entryId, entry));
+        } catch (RejectedExecutionException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to submit the add of entry {} of ledger {} copied", entryId, ledgerId, e);
+            }
+            entry.release();
+            entryDone(entryId, StatusCode.ETOOMANYREQUESTS, 0);
+        }
+    }
+
+    private void addEntry(long entryId, ByteBuf entry) {
+        final int entrySize = entry.readableBytes();
+        StatusCode status;
+        try {
+            requestProcessor.getBookie().recoveryAddEntry(entry,
+                    (rc, ledgerId, entryId1, addr, ctx) -> entryDone(entryId,
+                            rc == BookieProtocol.EOK ? StatusCode.EOK : StatusCode.EIO, entrySize),
+                    null, masterKey);
+            return;
+        } catch (OperationRejectedException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Operation rejected while copying entry {} of ledger {}", entryId, ledgerId, e);
+            }
+            status = StatusCode.ETOOMANYREQUESTS;
+        } catch (IOException e) {
+            LOG.error("Error copying entry {} of ledger {}", entryId, ledgerId, e);
+            status = StatusCode.EIO;
+        } catch (BookieException e) {
+            LOG.error("Unauthorized access to ledger {} while copying entry {}", ledgerId, entryId, e);
+            status = StatusCode.EUA;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while copying entry {} of ledger {}", entryId, ledgerId, e);
+            status = StatusCode.EIO;
+        }
+        entryDone(entryId, status, entrySize);
+    }
+
+    private void entryDone(long entryId, StatusCode status, int entrySize) {
+        boolean done;
+        synchronized (this) {
+            outstanding--;
+            if (StatusCode.EOK == status) {
+                entriesCopied++;
+                bytesCopied += entrySize;
+            } else if (null == failedStatus) {
+                failedStatus = status;
+                failedEntryId = entryId;
+            }
+            done = 0 == outstanding && (null != failedStatus || nextEntryId > lastEntryId);
+        }
+        if (done) {
+            sendCopyEntriesResponse(null == failedStatus ? StatusCode.EOK : failedStatus);
+            return;
+        }
+        if (StatusCode.EOK != status) {
+            return;
+        }
+
+        requestProcessor.getRequestStats().getCopyEntriesBytesCounter().addCount(entrySize);
+        ChannelByteRateLimiter limiter = requestProcessor.getReplicationLimiter();
+        long delayNanos = null == limiter ? 0 : limiter.reserve(entrySize);
+        if (delayNanos <= 0) {
+            readNextEntries();
+            return;
+        }
+        synchronized (this) {
+            if (readsDelayed) {
+                return;
+            }
+            readsDelayed = true;
+        }
+        requestProcessor.getRequestTimer().newTimeout(timeout -> {
+            synchronized (this) {
+                readsDelayed = false;
+            }
+            readNextEntries();
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void sendCopyEntriesResponse(StatusCode status) {
+        CopyEntriesResponse.Builder copyEntriesResponse = CopyEntriesResponse.newBuilder()
+                .setStatus(status)
+                .setLedgerId(ledgerId);
+        synchronized (this) {
+            copyEntriesResponse.setEntriesCopied(entriesCopied)
+                    .setBytesCopied(bytesCopied);
+            if (StatusCode.ENOENTRY == status) {
+                copyEntriesResponse.setFailedEntryId(failedEntryId);
+            }
+        }
+
+        RequestStats requestStats = requestProcessor.getRequestStats();
+        if (StatusCode.EOK == status) {
+            requestStats.getCopyEntriesStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestStats.getCopyEntriesStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+
+        Response response = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(status)
+                .setCopyEntriesResponse(copyEntriesResponse)
+                .build();
+        sendResponse(status, response, requestStats.getCopyEntriesRequestStats());
+    }
+}
@@ -22,6 +22,9 @@ package org.apache.bookkeeper.proto;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
+import org.apache.bookkeeper.bookie.LedgerStorage;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
@@ -70,6 +73,9 @@ public class GetBookieInfoProcessorV3 extends PacketProcessorBaseV3 implements R
                 totalDiskSpace = requestProcessor.getBookie().getTotalDiskSpace();
                 getBookieInfoResponse.setTotalDiskCapacity(totalDiskSpace);
             }
+            if ((requested & GetBookieInfoRequest.Flags.LOAD_VALUE) != 0) {
+                setLoad(getBookieInfoResponse);
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("FreeDiskSpace info is " + freeDiskSpace + " totalDiskSpace is: " + totalDiskSpace);
             }
@@ -86,6 +92,25 @@ public class GetBookieInfoProcessorV3 extends PacketProcessorBaseV3 implements R
         return getBookieInfoResponse.build();
     }
 
+    private void setLoad(GetBookieInfoResponse.Builder getBookieInfoResponse) {
+        Bookie bookie = requestProcessor.getBookie();
+        LedgerStorage ledgerStorage = bookie.getLedgerStorage();
+        BookieLoadTracker loadTracker = requestProcessor.getRequestStats().getLoadTracker();
+        boolean compacting = false;
+        for (GarbageCollectionStatus gcStatus : ledgerStorage.getGarbageCollectionStatus()) {
+            compacting |= gcStatus.isForceCompacting() || gcStatus.isMajorCompacting()
+                    || gcStatus.isMinorCompacting();
+        }
+        getBookieInfoResponse
+                .setJournalQueueLength(bookie.getJournalQueueLength())
+                .setWriteCacheUsagePercent((int) Math.round(ledgerStorage.getWriteCacheUsage() * 100))
+                .setAddLatencyP50Micros(loadTracker.getAddLatencyPercentileMicros(50))
+                .setAddLatencyP99Micros(loadTracker.getAddLatencyPercentileMicros(99))
+                .setReadRequestsPerSecond(loadTracker.getReadRequestsPerSecond())
+                .setCompacting(compacting)
+                .setDiskDegraded(bookie.isDiskDegraded());
+    }
+
     @Override
     public void run() {
         GetBookieInfoResponse getBookieInfoResponse = getGetBookieInfoResponse();
@@ -0,0 +1,129 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgersRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgersResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 entries of several ledgers packets.
+ *
+ * <p>The ledgers not stored by the bookie are left out of the response, and the request fails
+ * as a whole if the entries of any other ledger can't be listed. The requests for more ledgers
+ * than {@link org.apache.bookkeeper.conf.ServerConfiguration#getMaxLedgersPerListOfEntriesRequest()}
+ * are failed as bad requests.
+ */
+public class GetListOfEntriesOfLedgersProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GetListOfEntriesOfLedgersProcessorV3.class);
+    protected final GetListOfEntriesOfLedgersRequest getListOfEntriesOfLedgersRequest;
+
+    public GetListOfEntriesOfLedgersProcessorV3(Request request, BookieRequestHandler requestHandler,
+            BookieRequestProcessor requestProcessor) {
+        super(request, requestHandler, requestProcessor);
+        this.getListOfEntriesOfLedgersRequest = request.getGetListOfEntriesOfLedgersRequest();
+    }
+
+    private GetListOfEntriesOfLedgersResponse getListOfEntriesOfLedgersResponse() {
+        long startTimeNanos = MathUtils.nowInNano();
+
+        GetListOfEntriesOfLedgersResponse.Builder getListOfEntriesOfLedgersResponse =
+                GetListOfEntriesOfLedgersResponse.newBuilder();
+
+        if (!isVersionCompatible()) {
+            getListOfEntriesOfLedgersResponse.setStatus(StatusCode.EBADVERSION);
+            requestProcessor.getRequestStats().getGetListOfEntriesOfLedgersStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            return getListOfEntriesOfLedgersResponse.build();
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received new getListOfEntriesOfLedgers request for {} ledgers",
+                    getListOfEntriesOfLedgersRequest.getLedgerIdCount());
+        }
+        if (getListOfEntriesOfLedgersRequest.getLedgerIdCount()
+                > requestProcessor.getMaxLedgersPerListOfEntriesRequest()) {
+            LOG.warn("Rejecting getListOfEntriesOfLedgers request for {} ledgers, more than the max of {}",
+                    getListOfEntriesOfLedgersRequest.getLedgerIdCount(),
+                    requestProcessor.getMaxLedgersPerListOfEntriesRequest());
+            getListOfEntriesOfLedgersResponse.setStatus(StatusCode.EBADREQ);
+            requestProcessor.getRequestStats().getListOfEntriesOfLedgersStats
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            return getListOfEntriesOfLedgersResponse.build();
+        }
+        StatusCode status = StatusCode.EOK;
+        for (long ledgerId : getListOfEntriesOfLedgersRequest.getLedgerIdList()) {
+            try {
+                AvailabilityOfEntriesOfLedger availabilityOfEntriesOfLedger = new AvailabilityOfEntriesOfLedger(
+                        requestProcessor.getBookie().getListOfEntriesOfLedger(ledgerId));
+                getListOfEntriesOfLedgersResponse.addLedgers(GetListOfEntriesOfLedgerResponse.newBuilder()
+                        .setStatus(StatusCode.EOK)
+                        .setLedgerId(ledgerId)
+                        .setAvailabilityOfEntriesOfLedger(
+                                ByteString.copyFrom(availabilityOfEntriesOfLedger.serializeStateOfEntriesOfLedger())));
+            } catch (Bookie.NoLedgerException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("No ledger found while performing getListOfEntriesOfLedgers from ledger: {}",
+                            ledgerId);
+                }
+            } catch (IOException e) {
+                status = StatusCode.EIO;
+                LOG.error("IOException while performing getListOfEntriesOfLedgers from ledger: {}", ledgerId);
+                getListOfEntriesOfLedgersResponse.clearLedgers();
+                break;
+            }
+        }
+
+        if (status == StatusCode.EOK) {
+            requestProcessor.getRequestStats().getListOfEntriesOfLedgersStats
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestProcessor.getRequestStats().getListOfEntriesOfLedgersStats
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+        // Finally set the status and return
+        getListOfEntriesOfLedgersResponse.setStatus(status);
+        return getListOfEntriesOfLedgersResponse.build();
+    }
+
+    @Override
+    public void run() {
+        GetListOfEntriesOfLedgersResponse listOfEntriesOfLedgersResponse = getListOfEntriesOfLedgersResponse();
+        Response.Builder response = Response.newBuilder().setHeader(getHeader())
+                .setStatus(listOfEntriesOfLedgersResponse.getStatus())
+                .setGetListOfEntriesOfLedgersResponse(listOfEntriesOfLedgersResponse);
+        Response resp = response.build();
+        sendResponse(listOfEntriesOfLedgersResponse.getStatus(), resp,
+                requestProcessor.getRequestStats().getListOfEntriesOfLedgersRequestStats);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limit the number of requests in progress without blocking the I/O threads.
+ *
+ * <p>A request decoded from a channel is always admitted, since it has already been read. When
+ * the limit is exceeded, reading from the channel is suspended instead, and the channel waits
+ * in a queue. Each time a request completes below the limit, the channel at the head of the
+ * queue resumes reading, so the suspended channels are resumed round-robin, and the channels
+ * which don't send requests of this type are never held up. A channel also suspended by another
+ * limiter only resumes reading once that limiter resumes it too.
+ */
+class InProgressRequestLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InProgressRequestLimiter.class);
+
+    private final String requestType;
+    private final String suspensionReason;
+    private final int maxInProgress;
+    private final AtomicInteger inProgress = new AtomicInteger(0);
+    private final Queue<Channel> suspendedChannels = new ConcurrentLinkedQueue<>();
+    // time at which a channel was suspended, only set while it is waiting in the queue
+    private final AttributeKey<Long> suspendedAtKey;
+    private final Runnable onSuspend;
+    private final LongConsumer onResume;
+
+    /**
+     * @param requestType type of the limited requests, for logging
+     * @param maxInProgress max number of requests in progress
+     * @param onSuspend called when a channel is suspended
+     * @param onResume called with the nanos a channel was suspended for, when it is resumed
+     */
+    InProgressRequestLimiter(String requestType, int maxInProgress, Runnable onSuspend, LongConsumer onResume) {
+        this.requestType = requestType;
+        this.suspensionReason = requestType + " requests in progress";
+        this.maxInProgress = maxInProgress;
+        this.suspendedAtKey = AttributeKey.valueOf(InProgressRequestLimiter.class, requestType);
+        this.onSuspend = onSuspend;
+        this.onResume = onResume;
+    }
+
+    void onRequestStart(Channel channel) {
+        if (inProgress.incrementAndGet() > maxInProgress) {
+            Attribute<Long> suspendedAt = channel.attr(suspendedAtKey);
+            if (suspendedAt.setIfAbsent(MathUtils.nowInNano()) == null) {
+                ChannelReadSuspension.suspend(channel, suspensionReason);
+                onSuspend.run();
+                LOG.info("Too many {} requests in progress, disabling autoread on channel {}", requestType, channel);
+                suspendedChannels.offer(channel);
+                if (inProgress.get() < maxInProgress) {
+                    // requests completed while the channel was being suspended
+                    resumeNextChannel();
+                }
+            }
+        }
+    }
+
+    void onRequestFinish() {
+        if (inProgress.decrementAndGet() < maxInProgress) {
+            resumeNextChannel();
+        }
+    }
+
+    private void resumeNextChannel() {
+        Channel channel;
+        while ((channel = suspendedChannels.poll()) != null) {
+            Long suspendedAtNanos = channel.attr(suspendedAtKey).getAndSet(null);
+            if (suspendedAtNanos == null) {
+                continue;
+            }
+            long delayNanos = MathUtils.elapsedNanos(suspendedAtNanos);
+            onResume.accept(delayNanos);
+            // a channel still suspended by another limiter doesn't use the free slot
+            if (ChannelReadSuspension.resume(channel, suspensionReason)) {
+                LOG.info("Re-enabled autoread on channel {} after {} request delay of {} nanos",
+                        channel, requestType, delayNanos);
+                return;
+            }
+        }
+    }
+}
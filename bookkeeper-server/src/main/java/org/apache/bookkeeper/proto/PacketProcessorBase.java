@@ -199,8 +199,42 @@ abstract class PacketProcessorBase<T extends Request> implements Runnable {
             }
             return;
         }
+
+        if (isExpired()) {
+            if (request instanceof BookieProtocol.ReadRequest) {
+                requestProcessor.getRequestStats().getReadEntryExpiredCounter().inc();
+                sendResponse(BookieProtocol.ETOOMANYREQUESTS,
+                             ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, request),
+                             requestProcessor.getRequestStats().getReadRequestStats());
+                requestProcessor.onReadRequestFinish();
+            }
+            if (request instanceof BookieProtocol.ParsedAddRequest) {
+                requestProcessor.getRequestStats().getAddEntryExpiredCounter().inc();
+                sendResponse(BookieProtocol.ETOOMANYREQUESTS,
+                             ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, request),
+                             requestProcessor.getRequestStats().getAddRequestStats());
+                ((BookieProtocol.ParsedAddRequest) request).release();
+                request.recycle();
+                requestProcessor.onAddRequestFinish();
+            }
+            return;
+        }
         processPacket();
     }
 
+    /**
+     * Check whether the client stopped waiting for the response. The v2 protocol requests carry
+     * no timeout, so the timeout configured on the bookie for v2 requests is used. The fencing
+     * and high priority requests of the ledger recovery never expire.
+     */
+    protected boolean isExpired() {
+        if (request.isHighPriority()
+                || request instanceof BookieProtocol.ReadRequest && ((BookieProtocol.ReadRequest) request).isFencing()) {
+            return false;
+        }
+        long timeoutNanos = requestProcessor.getV2RequestTimeoutNanos();
+        return timeoutNanos > 0 && MathUtils.elapsedNanos(enqueueNanos) > timeoutNanos;
+    }
+
     protected abstract void processPacket();
 }
@@ -113,6 +113,21 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
         }
     }
 
+    /**
+     * Check whether the client stopped waiting for the response, according to the timeout
+     * carried in the request header. The fencing and high priority requests of the ledger
+     * recovery never expire.
+     */
+    protected boolean isExpired() {
+        if (RequestUtils.isHighPriority(request)
+                || request.hasReadRequest() && RequestUtils.isFenceRequest(request.getReadRequest())) {
+            return false;
+        }
+        BKPacketHeader header = request.getHeader();
+        return header.hasTimeoutMs()
+                && MathUtils.elapsedNanos(enqueueNanos) > TimeUnit.MILLISECONDS.toNanos(header.getTimeoutMs());
+    }
+
     protected boolean isVersionCompatible() {
         return this.request.getHeader().getVersion().equals(ProtocolVersion.VERSION_THREE);
     }
@@ -76,6 +76,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -96,16 +97,19 @@ import org.apache.bookkeeper.auth.ClientAuthProvider;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeperClientStats;
 import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieLoad;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.util.MdcUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.CopyEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetListOfEntriesOfLedgerCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetListOfEntriesOfLedgersCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallbackCtx;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
@@ -115,12 +119,16 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyEntriesRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyEntriesResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgersRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgersResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacRequest;
@@ -182,8 +190,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final OrderedExecutor executor;
     final long addEntryTimeoutNanos;
     final long readEntryTimeoutNanos;
+    final boolean propagateRequestTimeouts;
     final int maxFrameSize;
     final long getBookieInfoTimeoutNanos;
+    final long copyEntriesTimeoutNanos;
     final int startTLSTimeout;
 
     private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
@@ -272,6 +282,26 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final OpStatsLogger connectTimer;
     private final OpStatsLogger getListOfEntriesOfLedgerCompletionOpLogger;
     private final OpStatsLogger getListOfEntriesOfLedgerCompletionTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.GET_LIST_OF_ENTRIES_OF_LEDGERS_OP,
+        help = "channel stats of get_list_of_entries_of_ledgers requests"
+    )
+    private final OpStatsLogger getListOfEntriesOfLedgersOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGERS,
+        help = "timeout stats of get_list_of_entries_of_ledgers requests"
+    )
+    private final OpStatsLogger getListOfEntriesOfLedgersTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.COPY_ENTRIES_OP,
+        help = "channel stats of copy_entries requests"
+    )
+    private final OpStatsLogger copyEntriesOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.TIMEOUT_COPY_ENTRIES,
+        help = "timeout stats of copy_entries requests"
+    )
+    private final OpStatsLogger copyEntriesTimeoutOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.NETTY_EXCEPTION_CNT,
         help = "the number of exceptions received from this channel"
@@ -399,7 +429,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.state = ConnectionState.DISCONNECTED;
         this.addEntryTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryTimeout());
         this.readEntryTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getReadEntryTimeout());
+        this.propagateRequestTimeouts = conf.getPropagateRequestTimeouts();
         this.getBookieInfoTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getBookieInfoTimeout());
+        this.copyEntriesTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getRereplicationBulkCopyTimeout());
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
@@ -432,6 +464,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         startTLSTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_START_TLS_OP);
         getListOfEntriesOfLedgerCompletionTimeoutOpLogger = statsLogger
                 .getOpStatsLogger(BookKeeperClientStats.TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER);
+        getListOfEntriesOfLedgersOpLogger = statsLogger
+                .getOpStatsLogger(BookKeeperClientStats.GET_LIST_OF_ENTRIES_OF_LEDGERS_OP);
+        getListOfEntriesOfLedgersTimeoutOpLogger = statsLogger
+                .getOpStatsLogger(BookKeeperClientStats.TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGERS);
+        copyEntriesOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.COPY_ENTRIES_OP);
+        copyEntriesTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.TIMEOUT_COPY_ENTRIES);
         exceptionCounter = statsLogger.getCounter(BookKeeperClientStats.NETTY_EXCEPTION_CNT);
         connectTimer = statsLogger.getOpStatsLogger(BookKeeperClientStats.CLIENT_CONNECT_TIMER);
         addEntryOutstanding = statsLogger.getCounter(BookKeeperClientStats.ADD_OP_OUTSTANDING);
@@ -799,7 +837,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .setOperation(OperationType.ADD_ENTRY)
                     .setTxnId(txnId);
             if (((short) options & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
+                // the recovery adds are never dropped by the bookie
                 headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
+            } else if (propagateRequestTimeouts) {
+                headerBuilder.setTimeoutMs(TimeUnit.NANOSECONDS.toMillis(addEntryTimeoutNanos));
             }
 
             ByteString body = null;
@@ -899,6 +940,56 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, getListOfEntriesOfLedgerRequest);
     }
 
+    public void getListOfEntriesOfLedgers(final List<Long> ledgerIds, GetListOfEntriesOfLedgersCallback cb) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGERS);
+        completionObjects.put(completionKey,
+                new GetListOfEntriesOfLedgersCompletion(completionKey, cb, ledgerIds.get(0)));
+
+        // Build the request.
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.GET_LIST_OF_ENTRIES_OF_LEDGERS).setTxnId(txnId);
+
+        GetListOfEntriesOfLedgersRequest.Builder getListOfEntriesOfLedgersRequestBuilder =
+                GetListOfEntriesOfLedgersRequest.newBuilder().addAllLedgerId(ledgerIds);
+
+        final Request getListOfEntriesOfLedgersRequest = Request.newBuilder().setHeader(headerBuilder)
+                .setGetListOfEntriesOfLedgersRequest(getListOfEntriesOfLedgersRequestBuilder).build();
+
+        writeAndFlush(channel, completionKey, getListOfEntriesOfLedgersRequest);
+    }
+
+    public void copyEntries(final long ledgerId, byte[] masterKey, long firstEntryId, long lastEntryId,
+                            List<String> ensemble, int writeQuorumSize, CopyEntriesCallback cb, Object ctx) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.COPY_ENTRIES);
+        completionObjects.put(completionKey, new CopyEntriesCompletion(completionKey, cb, ctx, ledgerId));
+
+        // Build the request.
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.COPY_ENTRIES)
+                .setTxnId(txnId)
+                // the bookie stops copying the entries after the timeout, so that they are not copied
+                // both by the bookie and by the fallback of the client
+                .setTimeoutMs(TimeUnit.NANOSECONDS.toMillis(copyEntriesTimeoutNanos));
+
+        CopyEntriesRequest.Builder copyEntriesBuilder = CopyEntriesRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
+                .setFirstEntryId(firstEntryId)
+                .setLastEntryId(lastEntryId)
+                .addAllEnsemble(ensemble)
+                .setWriteQuorumSize(writeQuorumSize);
+
+        final Request copyEntriesRequest = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setCopyEntriesRequest(copyEntriesBuilder)
+                .build();
+
+        writeAndFlush(channel, completionKey, copyEntriesRequest);
+    }
+
     /**
      * Long Poll Reads.
      */
@@ -995,6 +1086,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 readBuilder.setMasterKey(ByteString.copyFrom(masterKey));
             }
 
+            // long poll reads wait on the bookie for their own timeout, and the fencing and
+            // high priority reads of the recovery are never dropped by the bookie
+            if (propagateRequestTimeouts && null == timeOutInMillis
+                    && ((short) flags & (BookieProtocol.FLAG_DO_FENCING | BookieProtocol.FLAG_HIGH_PRIORITY)) == 0) {
+                headerBuilder.setTimeoutMs(TimeUnit.NANOSECONDS.toMillis(readEntryTimeoutNanos));
+            }
+
             request = withRequestContext(Request.newBuilder())
                     .setHeader(headerBuilder)
                     .setReadRequest(readBuilder)
@@ -2072,10 +2170,21 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 logResponse(status, "freeDisk", freeDiskSpace, "totalDisk", totalDiskSpace);
             }
 
+            BookieLoad load = null;
+            if (getBookieInfoResponse.hasJournalQueueLength()) {
+                load = new BookieLoad(getBookieInfoResponse.getJournalQueueLength(),
+                                      getBookieInfoResponse.getWriteCacheUsagePercent(),
+                                      getBookieInfoResponse.getAddLatencyP50Micros(),
+                                      getBookieInfoResponse.getAddLatencyP99Micros(),
+                                      getBookieInfoResponse.getReadRequestsPerSecond(),
+                                      getBookieInfoResponse.getCompacting(),
+                                      getBookieInfoResponse.getDiskDegraded());
+            }
+
             int rc = convertStatus(status, BKException.Code.ReadException);
             cb.getBookieInfoComplete(rc,
                                      new BookieInfo(totalDiskSpace,
-                                                    freeDiskSpace), ctx);
+                                                    freeDiskSpace, load), ctx);
         }
     }
 
@@ -2134,6 +2243,126 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class GetListOfEntriesOfLedgersCompletion extends CompletionValue {
+        final GetListOfEntriesOfLedgersCallback cb;
+
+        public GetListOfEntriesOfLedgersCompletion(final CompletionKey key,
+                final GetListOfEntriesOfLedgersCallback origCallback, final long ledgerId) {
+            super("GetListOfEntriesOfLedgers", null, ledgerId, 0L, getListOfEntriesOfLedgersOpLogger,
+                    getListOfEntriesOfLedgersTimeoutOpLogger);
+            this.cb = new GetListOfEntriesOfLedgersCallback() {
+                @Override
+                public void getListOfEntriesOfLedgersComplete(int rc,
+                        Map<Long, AvailabilityOfEntriesOfLedger> ledgers) {
+                    logOpResult(rc);
+                    origCallback.getListOfEntriesOfLedgersComplete(rc, ledgers);
+                    key.release();
+                }
+            };
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> cb.getListOfEntriesOfLedgersComplete(rc, null));
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            GetListOfEntriesOfLedgersResponse getListOfEntriesOfLedgersResponse = response
+                    .getGetListOfEntriesOfLedgersResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                    ? getListOfEntriesOfLedgersResponse.getStatus() : response.getStatus();
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledgers", getListOfEntriesOfLedgersResponse.getLedgersCount());
+            }
+
+            // the bookies reject the operations they don't know, and the requests for too many ledgers
+            int rc = status == StatusCode.EBADREQ
+                    ? BKException.Code.IllegalOpException : convertStatus(status, BKException.Code.ReadException);
+            Map<Long, AvailabilityOfEntriesOfLedger> ledgers = null;
+            if (rc == BKException.Code.OK) {
+                ledgers = new HashMap<>();
+                for (GetListOfEntriesOfLedgerResponse ledger : getListOfEntriesOfLedgersResponse.getLedgersList()) {
+                    if (ledger.getStatus() == StatusCode.EOK && ledger.hasAvailabilityOfEntriesOfLedger()) {
+                        ledgers.put(ledger.getLedgerId(), new AvailabilityOfEntriesOfLedger(Unpooled.wrappedBuffer(
+                                ledger.getAvailabilityOfEntriesOfLedger().asReadOnlyByteBuffer())));
+                    }
+                }
+            }
+            cb.getListOfEntriesOfLedgersComplete(rc, ledgers);
+        }
+    }
+
+    class CopyEntriesCompletion extends CompletionValue {
+        final CopyEntriesCallback cb;
+
+        public CopyEntriesCompletion(final CompletionKey key,
+                                     final CopyEntriesCallback origCallback,
+                                     final Object origCtx,
+                                     final long ledgerId) {
+            super("CopyEntries", origCtx, ledgerId, 0L,
+                  copyEntriesOpLogger, copyEntriesTimeoutOpLogger);
+            this.cb = new CopyEntriesCallback() {
+                @Override
+                public void copyEntriesComplete(int rc, long ledgerId, long entriesCopied, long bytesCopied,
+                                                long failedEntryId, Object ctx) {
+                    logOpResult(rc);
+                    origCallback.copyEntriesComplete(rc, ledgerId, entriesCopied, bytesCopied,
+                            failedEntryId, origCtx);
+                    key.release();
+                }
+            };
+        }
+
+        @Override
+        boolean maybeTimeout() {
+            // give the bookie the time to respond once its outstanding reads and adds are done
+            if (MathUtils.elapsedNanos(startTime) >= copyEntriesTimeoutNanos + readEntryTimeoutNanos
+                    + addEntryTimeoutNanos) {
+                timeout();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> cb.copyEntriesComplete(rc, ledgerId, 0L, 0L, -1L, ctx));
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            CopyEntriesResponse copyEntriesResponse = response.getCopyEntriesResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? copyEntriesResponse.getStatus() : response.getStatus();
+
+            long entriesCopied = copyEntriesResponse.getEntriesCopied();
+            long bytesCopied = copyEntriesResponse.getBytesCopied();
+            long failedEntryId = copyEntriesResponse.hasFailedEntryId()
+                ? copyEntriesResponse.getFailedEntryId() : -1L;
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledgerId", ledgerId, "entriesCopied", entriesCopied,
+                        "failedEntryId", failedEntryId);
+            }
+
+            int rc = convertStatus(status, BKException.Code.ReadException);
+            cb.copyEntriesComplete(rc, ledgerId, entriesCopied, bytesCopied, failedEntryId, ctx);
+        }
+    }
+
     private final Recycler<AddCompletion> addCompletionRecycler = new Recycler<AddCompletion>() {
             @Override
             protected AddCompletion newObject(Recycler.Handle<AddCompletion> handle) {
@@ -86,6 +86,7 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
                 }
             }
             data = requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId());
+            requestProcessor.onReadEntryBytes(requestHandler, data.readableBytes());
             if (LOG.isDebugEnabled()) {
                 LOG.debug("##### Read entry ##### {} -- ref-count: {}", data.readableBytes(), data.refCnt());
             }
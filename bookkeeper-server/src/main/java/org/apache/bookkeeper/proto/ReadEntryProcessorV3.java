@@ -171,6 +171,7 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                                      Stopwatch startTimeSw)
         throws IOException, BookieException {
         ByteBuf entryBody = requestProcessor.getBookie().readEntry(ledgerId, entryId);
+        requestProcessor.onReadEntryBytes(requestHandler, entryBody.readableBytes());
         if (null != fenceResult) {
             handleReadResultForFenceRead(entryBody, readResponseBuilder, entryId, startTimeSw);
             return null;
@@ -268,6 +269,17 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
             return;
         }
 
+        if (isExpired()) {
+            requestProcessor.getRequestStats().getReadEntryExpiredCounter().inc();
+            ReadResponse readResponse = ReadResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setEntryId(entryId)
+                .setStatus(StatusCode.ETOOMANYREQUESTS)
+                .build();
+            sendResponse(readResponse);
+            return;
+        }
+
         executeOp();
     }
 
@@ -22,6 +22,7 @@ package org.apache.bookkeeper.proto;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_BLOCKED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_BLOCKED_WAIT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_EXPIRED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_IN_PROGRESS;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_REJECTED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_REQUEST;
@@ -31,11 +32,17 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_BOOKIE_INFO;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_BOOKIE_INFO_REQUEST;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_ENTRIES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_ENTRIES_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COPY_ENTRIES_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_LIST_OF_ENTRIES_OF_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_LIST_OF_ENTRIES_OF_LEDGERS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_LIST_OF_ENTRIES_OF_LEDGERS_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_BLOCKED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_BLOCKED_WAIT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_EXPIRED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_FENCE_READ;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_FENCE_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_FENCE_WAIT;
@@ -50,6 +57,8 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_SCHE
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAC;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAC_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAST_ENTRY_NOENTRY_ERROR;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.REPLICATION_ADD_ENTRY_THROTTLED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RESPONSES_PER_FLUSH;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.SERVER_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.WRITE_LAC;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.WRITE_LAC_REQUEST;
@@ -57,6 +66,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.WRITE_THREAD_QU
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
@@ -107,6 +117,19 @@ public class RequestStats {
             parent = ADD_ENTRY_REQUEST
     )
     private final Counter addEntryRejectedCounter;
+    @StatsDoc(
+            name = ADD_ENTRY_EXPIRED,
+            help = "Counter for adds dropped because the client stopped waiting for them",
+            parent = ADD_ENTRY_REQUEST
+    )
+    private final Counter addEntryExpiredCounter;
+    @StatsDoc(
+            name = REPLICATION_ADD_ENTRY_THROTTLED,
+            help = "operation stats of the delays re-replication channels are suspended for by the replication"
+                + " byte rate limit",
+            parent = ADD_ENTRY_REQUEST
+    )
+    private final OpStatsLogger replicationAddThrottledStats;
     @StatsDoc(
         name = READ_ENTRY_REQUEST,
         help = "request stats of ReadEntry on a bookie"
@@ -124,6 +147,12 @@ public class RequestStats {
             parent = READ_ENTRY_REQUEST
     )
     private final Counter readEntryRejectedCounter;
+    @StatsDoc(
+            name = READ_ENTRY_EXPIRED,
+            help = "Counter for reads dropped because the client stopped waiting for them",
+            parent = READ_ENTRY_REQUEST
+    )
+    private final Counter readEntryExpiredCounter;
     @StatsDoc(
         name = FORCE_LEDGER,
         help = "operation stats of ForceLedger on a bookie",
@@ -225,6 +254,11 @@ public class RequestStats {
         help = "channel write stats on a bookie"
     )
     final OpStatsLogger channelWriteStats;
+    @StatsDoc(
+        name = RESPONSES_PER_FLUSH,
+        help = "number of add responses written to a channel with a single flush"
+    )
+    final OpStatsLogger responsesPerFlushStats;
     @StatsDoc(
         name = ADD_ENTRY_BLOCKED,
         help = "operation stats of AddEntry blocked on a bookie"
@@ -246,17 +280,52 @@ public class RequestStats {
             parent = GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST
     )
     final OpStatsLogger getListOfEntriesOfLedgerStats;
+    @StatsDoc(
+            name = GET_LIST_OF_ENTRIES_OF_LEDGERS_REQUEST,
+            help = "request stats of GetListOfEntriesOfLedgers on a bookie"
+    )
+    final OpStatsLogger getListOfEntriesOfLedgersRequestStats;
+    @StatsDoc(
+            name = GET_LIST_OF_ENTRIES_OF_LEDGERS,
+            help = "operation stats of GetListOfEntriesOfLedgers on a bookie",
+            parent = GET_LIST_OF_ENTRIES_OF_LEDGERS_REQUEST
+    )
+    final OpStatsLogger getListOfEntriesOfLedgersStats;
+    @StatsDoc(
+            name = COPY_ENTRIES_REQUEST,
+            help = "request stats of CopyEntries on a bookie"
+    )
+    final OpStatsLogger copyEntriesRequestStats;
+    @StatsDoc(
+            name = COPY_ENTRIES,
+            help = "operation stats of CopyEntries, from the request to the last entry added",
+            parent = COPY_ENTRIES_REQUEST
+    )
+    final OpStatsLogger copyEntriesStats;
+    @StatsDoc(
+            name = COPY_ENTRIES_BYTES,
+            help = "bytes of the entries copied from the other bookies by CopyEntries requests"
+    )
+    final Counter copyEntriesBytesCounter;
+
+    // recent load of the bookie, reported to the clients by GetBookieInfo
+    @Getter(AccessLevel.PACKAGE)
+    final BookieLoadTracker loadTracker;
 
     public RequestStats(StatsLogger statsLogger) {
+        this.loadTracker = new BookieLoadTracker();
         this.addEntryStats = statsLogger.getThreadScopedOpStatsLogger(ADD_ENTRY);
         this.writeThreadQueuedLatency = statsLogger.getThreadScopedOpStatsLogger(WRITE_THREAD_QUEUED_LATENCY);
-        this.addRequestStats = statsLogger.getOpStatsLogger(ADD_ENTRY_REQUEST);
+        this.addRequestStats = loadTracker.trackAddRequests(statsLogger.getOpStatsLogger(ADD_ENTRY_REQUEST));
         this.addEntryRejectedCounter = statsLogger.getCounter(ADD_ENTRY_REJECTED);
+        this.addEntryExpiredCounter = statsLogger.getCounter(ADD_ENTRY_EXPIRED);
+        this.replicationAddThrottledStats = statsLogger.getOpStatsLogger(REPLICATION_ADD_ENTRY_THROTTLED);
         this.readEntryStats = statsLogger.getThreadScopedOpStatsLogger(READ_ENTRY);
         this.readEntryRejectedCounter = statsLogger.getCounter(READ_ENTRY_REJECTED);
+        this.readEntryExpiredCounter = statsLogger.getCounter(READ_ENTRY_EXPIRED);
         this.forceLedgerStats = statsLogger.getOpStatsLogger(FORCE_LEDGER);
         this.forceLedgerRequestStats = statsLogger.getOpStatsLogger(FORCE_LEDGER_REQUEST);
-        this.readRequestStats = statsLogger.getOpStatsLogger(READ_ENTRY_REQUEST);
+        this.readRequestStats = loadTracker.trackReadRequests(statsLogger.getOpStatsLogger(READ_ENTRY_REQUEST));
         this.fenceReadEntryStats = statsLogger.getOpStatsLogger(READ_ENTRY_FENCE_READ);
         this.fenceReadRequestStats = statsLogger.getOpStatsLogger(READ_ENTRY_FENCE_REQUEST);
         this.fenceReadWaitStats = statsLogger.getOpStatsLogger(READ_ENTRY_FENCE_WAIT);
@@ -273,6 +342,7 @@ public class RequestStats {
         this.getBookieInfoStats = statsLogger.getOpStatsLogger(GET_BOOKIE_INFO);
         this.getBookieInfoRequestStats = statsLogger.getOpStatsLogger(GET_BOOKIE_INFO_REQUEST);
         this.channelWriteStats = statsLogger.getOpStatsLogger(CHANNEL_WRITE);
+        this.responsesPerFlushStats = statsLogger.getOpStatsLogger(RESPONSES_PER_FLUSH);
 
         this.addEntryBlockedStats = statsLogger.getOpStatsLogger(ADD_ENTRY_BLOCKED_WAIT);
         this.readEntryBlockedStats = statsLogger.getOpStatsLogger(READ_ENTRY_BLOCKED_WAIT);
@@ -280,6 +350,12 @@ public class RequestStats {
         this.getListOfEntriesOfLedgerStats = statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGER);
         this.getListOfEntriesOfLedgerRequestStats =
                 statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGER_REQUEST);
+        this.getListOfEntriesOfLedgersStats = statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGERS);
+        this.getListOfEntriesOfLedgersRequestStats =
+                statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGERS_REQUEST);
+        this.copyEntriesStats = statsLogger.getOpStatsLogger(COPY_ENTRIES);
+        this.copyEntriesRequestStats = statsLogger.getOpStatsLogger(COPY_ENTRIES_REQUEST);
+        this.copyEntriesBytesCounter = statsLogger.getCounter(COPY_ENTRIES_BYTES);
 
         statsLogger.registerGauge(ADD_ENTRY_IN_PROGRESS, new Gauge<Number>() {
             @Override
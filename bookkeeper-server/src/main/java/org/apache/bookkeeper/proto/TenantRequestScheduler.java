@@ -0,0 +1,434 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_QUEUE_DELAY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_REQUESTS_QUEUED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_REQUESTS_REJECTED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_SCHEDULER_SCOPE;
+
+import io.netty.util.Timer;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Weighted fair admission of requests to an ordered thread pool, across tenants.
+ *
+ * <p>Requests are queued per tenant and per scheduling class, and released to the thread pool
+ * following start-time fair queueing: each request is tagged with a virtual start time when
+ * it is queued, and the queued request with the lowest tag is released first. The virtual
+ * time of a flow advances by the cost (in bytes) of its requests divided by its weight, so
+ * tenants share the thread pool in proportion of their weights, and tailing reads, having a
+ * higher weight, overtake the catch-up reads of the same tenant.
+ *
+ * <p>Only a bounded number of requests is released to the thread pool at once, so that the
+ * scheduling decisions are not defeated by a deep executor queue. A tenant can also be limited
+ * to a byte rate: its requests are held in its queues while it is over its quota.
+ *
+ * <p>The flows having queued requests are kept in a heap ordered by the tag of their first
+ * request, so that picking the next request doesn't depend on the number of tenants. The
+ * released requests are handed to the thread pool outside of the scheduler lock, by a single
+ * thread at a time and in the order they were released, keeping the order of the requests of
+ * a ledger.
+ */
+@StatsDoc(
+    name = TENANT_SCHEDULER_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Bookie tenant request scheduling stats"
+)
+class TenantRequestScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TenantRequestScheduler.class);
+
+    /**
+     * Tenant the requests of new tenants are accounted to, once {@link #MAX_TENANTS} is reached.
+     */
+    static final String OVERFLOW_TENANT = "__overflow__";
+    static final int MAX_TENANTS = 1024;
+
+    // cost estimate of a read before the first read of a tenant completes
+    private static final long DEFAULT_READ_COST = 1024;
+
+    /**
+     * Scheduling class of a request.
+     */
+    enum RequestClass {
+        WRITE,
+        TAILING_READ,
+        CATCHUP_READ
+    }
+
+    private static class PendingRequest {
+        final Flow flow;
+        final long ledgerId;
+        final long cost;
+        final Runnable task;
+        final Runnable onRejected;
+        final long enqueueNanos;
+        final double startTag;
+
+        PendingRequest(Flow flow, long ledgerId, long cost, Runnable task, Runnable onRejected, double startTag) {
+            this.flow = flow;
+            this.ledgerId = ledgerId;
+            this.cost = cost;
+            this.task = task;
+            this.onRejected = onRejected;
+            this.enqueueNanos = MathUtils.nowInNano();
+            this.startTag = startTag;
+        }
+    }
+
+    /**
+     * Queue of the requests of a tenant in a scheduling class.
+     */
+    private static class Flow {
+        final Tenant tenant;
+        final double weight;
+        final ArrayDeque<PendingRequest> queue = new ArrayDeque<>();
+        double lastFinishTag = 0;
+        // whether the flow is in the ready flows heap
+        boolean ready = false;
+
+        Flow(Tenant tenant, double weight) {
+            this.tenant = tenant;
+            this.weight = weight;
+        }
+    }
+
+    private class Tenant {
+        final Flow[] flows = new Flow[RequestClass.values().length];
+        final long bytesPerSecond;
+        double tokens;
+        long lastRefillNanos;
+        long readCostEstimate = DEFAULT_READ_COST;
+        // whether the tenant is over its byte rate quota, waiting for its bucket to refill
+        boolean throttled = false;
+        volatile int queued = 0;
+
+        @StatsDoc(
+            name = TENANT_QUEUE_DELAY,
+            help = "time spent by the requests of a tenant in the scheduler queues"
+        )
+        final OpStatsLogger queueDelay;
+        @StatsDoc(
+            name = TENANT_REQUESTS_REJECTED,
+            help = "number of requests of a tenant rejected because its queues are full"
+        )
+        final Counter rejected;
+
+        Tenant(String name, double weight, long bytesPerSecond) {
+            for (RequestClass requestClass : RequestClass.values()) {
+                double classWeight = requestClass == RequestClass.TAILING_READ ? tailingReadWeight : 1;
+                flows[requestClass.ordinal()] = new Flow(this, weight * classWeight);
+            }
+            this.bytesPerSecond = bytesPerSecond;
+            this.tokens = bytesPerSecond;
+            this.lastRefillNanos = MathUtils.nowInNano();
+
+            StatsLogger tenantStatsLogger = statsLogger.scopeLabel("tenant", name);
+            this.queueDelay = tenantStatsLogger.getOpStatsLogger(TENANT_QUEUE_DELAY);
+            this.rejected = tenantStatsLogger.getCounter(TENANT_REQUESTS_REJECTED);
+            tenantStatsLogger.registerGauge(TENANT_REQUESTS_QUEUED, new Gauge<Number>() {
+                @Override
+                public Number getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Number getSample() {
+                    return queued;
+                }
+            });
+        }
+
+        /**
+         * Refill the byte rate bucket, allowing bursts of one second of quota.
+         *
+         * @return the nanos to wait until the tenant is within its quota again, 0 if it already is
+         */
+        long refill(long nowNanos) {
+            if (bytesPerSecond <= 0) {
+                return 0;
+            }
+            tokens = Math.min(bytesPerSecond,
+                    tokens + (nowNanos - lastRefillNanos) * bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = nowNanos;
+            if (tokens > 0) {
+                return 0;
+            }
+            return Math.max(1, (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond));
+        }
+    }
+
+    private final OrderedExecutor executor;
+    private final Timer timer;
+    private final StatsLogger statsLogger;
+    private final int maxOutstandingRequests;
+    private final int maxQueuedRequestsPerTenant;
+    private final double tailingReadWeight;
+    private final long defaultBytesPerSecond;
+    private final Map<String, Double> tenantWeights;
+    private final Map<String, Long> tenantBytesPerSecond;
+
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private final PriorityQueue<Flow> readyFlows =
+            new PriorityQueue<>(Comparator.comparingDouble(flow -> flow.queue.peekFirst().startTag));
+    private double virtualTime = 0;
+    private int outstandingRequests = 0;
+
+    // requests released by the scheduler and not handed to the thread pool yet
+    private final Queue<PendingRequest> releasedRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger releasing = new AtomicInteger();
+
+    TenantRequestScheduler(OrderedExecutor executor,
+                           Timer timer,
+                           int maxOutstandingRequests,
+                           int maxQueuedRequestsPerTenant,
+                           double tailingReadWeight,
+                           long defaultBytesPerSecond,
+                           Map<String, Double> tenantWeights,
+                           Map<String, Long> tenantBytesPerSecond,
+                           StatsLogger statsLogger) {
+        this.executor = executor;
+        this.timer = timer;
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        this.maxQueuedRequestsPerTenant = maxQueuedRequestsPerTenant;
+        this.tailingReadWeight = tailingReadWeight;
+        this.defaultBytesPerSecond = defaultBytesPerSecond;
+        this.tenantWeights = tenantWeights;
+        this.tenantBytesPerSecond = tenantBytesPerSecond;
+        this.statsLogger = statsLogger;
+    }
+
+    /**
+     * Parse a list of <i>tenant:value</i> settings.
+     */
+    static Map<String, String> parseTenantSettings(String[] settings) {
+        Map<String, String> result = new HashMap<>();
+        if (settings == null) {
+            return result;
+        }
+        for (String setting : settings) {
+            int idx = setting.lastIndexOf(':');
+            if (idx <= 0 || idx == setting.length() - 1) {
+                throw new IllegalArgumentException("Invalid tenant setting '" + setting
+                        + "', expected <tenant>:<value>");
+            }
+            result.put(setting.substring(0, idx).trim(), setting.substring(idx + 1).trim());
+        }
+        return result;
+    }
+
+    /**
+     * Queue a request of a tenant. The request is released to the thread pool, ordered by its
+     * ledger id, once its turn comes.
+     *
+     * @param tenant tenant of the request
+     * @param requestClass scheduling class of the request
+     * @param ledgerId ledger id of the request
+     * @param cost cost of the request in bytes, or -1 to use the estimated cost of a read
+     * @param task request processor
+     * @param onRejected called instead of the processor if the request is rejected, because the
+     *                   tenant has too many queued requests or the thread pool is full
+     */
+    void submit(String tenant, RequestClass requestClass, long ledgerId, long cost,
+                Runnable task, Runnable onRejected) {
+        boolean rejected = false;
+        synchronized (this) {
+            Tenant t = getTenant(tenant);
+            if (t.queued >= maxQueuedRequestsPerTenant) {
+                t.rejected.inc();
+                rejected = true;
+            } else {
+                Flow flow = t.flows[requestClass.ordinal()];
+                long requestCost = Math.max(1, cost >= 0 ? cost : t.readCostEstimate);
+                double startTag = Math.max(virtualTime, flow.lastFinishTag);
+                flow.lastFinishTag = startTag + requestCost / flow.weight;
+                flow.queue.addLast(new PendingRequest(flow, ledgerId, cost, task, onRejected, startTag));
+                t.queued++;
+                if (!flow.ready && !t.throttled) {
+                    flow.ready = true;
+                    readyFlows.add(flow);
+                }
+                dispatch();
+            }
+        }
+        if (rejected) {
+            onRejected.run();
+        } else {
+            executeReleased();
+        }
+    }
+
+    /**
+     * Account the bytes read by a request of a tenant to its byte rate quota. The cost of reads
+     * is only known once the entry is read.
+     */
+    synchronized void chargeRead(String tenant, long bytes) {
+        Tenant t = getTenant(tenant);
+        t.readCostEstimate = (t.readCostEstimate * 7 + bytes) / 8;
+        if (t.bytesPerSecond > 0) {
+            t.tokens -= bytes;
+        }
+    }
+
+    private Tenant getTenant(String name) {
+        Tenant tenant = tenants.get(name);
+        if (tenant == null) {
+            if (tenants.size() >= MAX_TENANTS) {
+                name = OVERFLOW_TENANT;
+                tenant = tenants.get(name);
+            }
+            if (tenant == null) {
+                tenant = new Tenant(name,
+                        tenantWeights.getOrDefault(name, 1.0),
+                        tenantBytesPerSecond.getOrDefault(name, defaultBytesPerSecond));
+                tenants.put(name, tenant);
+            }
+        }
+        return tenant;
+    }
+
+    /**
+     * Release queued requests while there are free slots in the thread pool. The released
+     * requests are handed to the thread pool by {@link #executeReleased()}, once the lock is
+     * released.
+     */
+    private void dispatch() {
+        long nowNanos = MathUtils.nowInNano();
+        while (outstandingRequests < maxOutstandingRequests && !readyFlows.isEmpty()) {
+            Flow flow = readyFlows.poll();
+            Tenant t = flow.tenant;
+            if (t.bytesPerSecond > 0) {
+                long throttleNanos = t.refill(nowNanos);
+                if (throttleNanos > 0) {
+                    // the other flows of the tenant leave the heap when they reach its top
+                    flow.ready = false;
+                    throttle(t, throttleNanos);
+                    continue;
+                }
+            }
+
+            PendingRequest request = flow.queue.pollFirst();
+            if (flow.queue.isEmpty()) {
+                flow.ready = false;
+            } else {
+                readyFlows.add(flow);
+            }
+            t.queued--;
+            if (request.cost > 0 && t.bytesPerSecond > 0) {
+                t.tokens -= request.cost;
+            }
+            virtualTime = request.startTag;
+            t.queueDelay.registerSuccessfulEvent(MathUtils.elapsedNanos(request.enqueueNanos), TimeUnit.NANOSECONDS);
+
+            outstandingRequests++;
+            releasedRequests.add(request);
+        }
+    }
+
+    /**
+     * Hold the requests of a tenant over its quota until its bucket is refilled.
+     */
+    private void throttle(Tenant t, long throttleNanos) {
+        if (t.throttled) {
+            return;
+        }
+        t.throttled = true;
+        timer.newTimeout(timeout -> {
+            synchronized (TenantRequestScheduler.this) {
+                t.throttled = false;
+                for (Flow flow : t.flows) {
+                    if (!flow.ready && !flow.queue.isEmpty()) {
+                        flow.ready = true;
+                        readyFlows.add(flow);
+                    }
+                }
+                dispatch();
+            }
+            executeReleased();
+        }, throttleNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Hand the released requests to the thread pool. Only one thread at a time does it, the
+     * other threads leave their released requests to it, so that the requests reach the thread
+     * pool in the order they were released.
+     */
+    private void executeReleased() {
+        if (releasing.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            PendingRequest request;
+            while ((request = releasedRequests.poll()) != null) {
+                execute(request);
+            }
+            missed = releasing.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void execute(PendingRequest request) {
+        try {
+            executor.executeOrdered(request.ledgerId, () -> {
+                try {
+                    request.task.run();
+                } finally {
+                    onRequestDone();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try {
+                request.onRejected.run();
+            } catch (Throwable t) {
+                LOG.error("Failed to reject request on ledger {}", request.ledgerId, t);
+            }
+            onRequestDone();
+        }
+    }
+
+    private void onRequestDone() {
+        synchronized (this) {
+            outstandingRequests--;
+            dispatch();
+        }
+        executeReleased();
+    }
+}
@@ -74,7 +74,8 @@ class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest> implemen
         ByteBuf addData = request.getData();
         try {
             if (request.isRecoveryAdd()) {
-                requestProcessor.getBookie().recoveryAddEntry(addData, this, requestHandler, request.getMasterKey());
+                requestProcessor.getBookie().recoveryAddEntry(addData, request.isHighPriority(), this,
+                        requestHandler, request.getMasterKey());
             } else {
                 requestProcessor.getBookie().addEntry(addData, false, this,
                         requestHandler, request.getMasterKey());
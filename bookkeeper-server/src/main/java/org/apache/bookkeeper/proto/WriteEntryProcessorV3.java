@@ -64,6 +64,12 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
             return addResponse.build();
         }
 
+        if (isExpired()) {
+            requestProcessor.getRequestStats().getAddEntryExpiredCounter().inc();
+            addResponse.setStatus(StatusCode.ETOOMANYREQUESTS);
+            return addResponse.build();
+        }
+
         if (requestProcessor.getBookie().isReadOnly()
             && !(RequestUtils.isHighPriority(request)
                     && requestProcessor.getBookie().isAvailableForHighPriorityWrites())) {
@@ -117,8 +123,8 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
         ByteBuf entryToAdd = Unpooled.wrappedBuffer(addRequest.getBody().asReadOnlyByteBuffer());
         try {
             if (RequestUtils.hasFlag(addRequest, AddRequest.Flag.RECOVERY_ADD)) {
-                requestProcessor.getBookie().recoveryAddEntry(entryToAdd, wcb,
-                        requestHandler.ctx().channel(), masterKey);
+                requestProcessor.getBookie().recoveryAddEntry(entryToAdd, RequestUtils.isHighPriority(request),
+                        wcb, requestHandler.ctx().channel(), masterKey);
             } else {
                 requestProcessor.getBookie().addEntry(entryToAdd, ackBeforeSync, wcb,
                         requestHandler.ctx().channel(), masterKey);
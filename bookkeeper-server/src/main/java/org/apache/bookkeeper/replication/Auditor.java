@@ -87,6 +87,8 @@ public class Auditor implements AutoCloseable {
     protected AuditorTask auditorCheckAllLedgersTask;
     protected AuditorTask auditorPlacementPolicyCheckTask;
     protected AuditorTask auditorReplicasCheckTask;
+    // the ledger metadata kept up to date for the incremental checks, null if disabled
+    private final AuditorLedgerMetadataSnapshot metadataSnapshot;
     private final List<AuditorTask> allAuditorTasks = Lists.newArrayList();
 
     private final AuditorStats auditorStats;
@@ -162,6 +164,11 @@ public class Auditor implements AutoCloseable {
         this.admin = admin;
         this.ownAdmin = ownAdmin;
         initialize(conf, bkc);
+        if (conf.isAuditorIncrementalCheckEnabled()) {
+            this.metadataSnapshot = new AuditorLedgerMetadataSnapshot(conf, ledgerManager);
+        } else {
+            this.metadataSnapshot = null;
+        }
 
         AuditorTask.ShutdownTaskHandler shutdownTaskHandler = this::submitShutdownTask;
         BiConsumer<Void, Throwable> submitBookieCheckTask = (ignore, throwable) -> this.submitBookieCheckTask();
@@ -173,11 +180,11 @@ public class Auditor implements AutoCloseable {
         allAuditorTasks.add(auditorBookieCheckTask);
         this.auditorCheckAllLedgersTask = new AuditorCheckAllLedgersTask(
                 conf, auditorStats, admin, ledgerManager,
-                ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask);
+                ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask, metadataSnapshot);
         allAuditorTasks.add(auditorCheckAllLedgersTask);
         this.auditorPlacementPolicyCheckTask = new AuditorPlacementPolicyCheckTask(
                 conf, auditorStats, admin, ledgerManager,
-                ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask);
+                ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask, metadataSnapshot);
         allAuditorTasks.add(auditorPlacementPolicyCheckTask);
         this.auditorReplicasCheckTask = new AuditorReplicasCheckTask(
                 conf, auditorStats, admin, ledgerManager,
@@ -260,6 +267,10 @@ public class Auditor implements AutoCloseable {
                 Collection<String> newBookies = CollectionUtils.subtract(
                         availableBookies, knownBookies);
                 knownBookies.addAll(newBookies);
+                if (null != metadataSnapshot) {
+                    // the ledgers of the bookies coming back may have been marked underreplicated
+                    metadataSnapshot.bookiesChanged(newBookies);
+                }
                 if (!bookiesToBeAudited.isEmpty() && knownBookies.containsAll(bookiesToBeAudited)) {
                     // the bookie, which went down earlier and had an audit scheduled for,
                     // has come up. So let us stop tracking it and cancel the audit. Since
@@ -274,7 +285,11 @@ public class Auditor implements AutoCloseable {
                 }
 
                 // find lost bookies(if any)
-                bookiesToBeAudited.addAll(CollectionUtils.subtract(knownBookies, availableBookies));
+                Collection<String> lostBookies = CollectionUtils.subtract(knownBookies, availableBookies);
+                if (null != metadataSnapshot) {
+                    metadataSnapshot.bookiesChanged(lostBookies);
+                }
+                bookiesToBeAudited.addAll(lostBookies);
                 if (bookiesToBeAudited.size() == 0) {
                     return;
                 }
@@ -637,6 +652,9 @@ public class Auditor implements AutoCloseable {
             // shutdown all auditorTasks to clean some resource
             allAuditorTasks.forEach(AuditorTask::shutdown);
             allAuditorTasks.clear();
+            if (null != metadataSnapshot) {
+                metadataSnapshot.close();
+            }
 
             if (ownAdmin) {
                 admin.close();
@@ -53,6 +53,8 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
     private final Semaphore openLedgerNoRecoverySemaphore;
     private final int openLedgerNoRecoverySemaphoreWaitTimeoutMSec;
     private final ExecutorService ledgerCheckerExecutor;
+    // null unless the check is incremental
+    private final AuditorLedgerMetadataSnapshot.ChangeTracker changeTracker;
 
     AuditorCheckAllLedgersTask(ServerConfiguration conf,
                                AuditorStats auditorStats,
@@ -62,8 +64,24 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
                                ShutdownTaskHandler shutdownTaskHandler,
                                BiConsumer<AtomicBoolean, Throwable> hasAuditCheckTask)
             throws UnavailableException {
+        this(conf, auditorStats, admin, ledgerManager, ledgerUnderreplicationManager,
+                shutdownTaskHandler, hasAuditCheckTask, null);
+    }
+
+    AuditorCheckAllLedgersTask(ServerConfiguration conf,
+                               AuditorStats auditorStats,
+                               BookKeeperAdmin admin,
+                               LedgerManager ledgerManager,
+                               LedgerUnderreplicationManager ledgerUnderreplicationManager,
+                               ShutdownTaskHandler shutdownTaskHandler,
+                               BiConsumer<AtomicBoolean, Throwable> hasAuditCheckTask,
+                               AuditorLedgerMetadataSnapshot metadataSnapshot)
+            throws UnavailableException {
         super(conf, auditorStats, admin, ledgerManager,
                 ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask);
+        this.changeTracker = null == metadataSnapshot ? null
+                : metadataSnapshot.newChangeTracker(TimeUnit.SECONDS.toMillis(conf.getAuditorFullCheckInterval()),
+                        false);
 
         if (conf.getAuditorMaxNumberOfConcurrentOpenLedgerOperations() <= 0) {
             LOG.error("auditorMaxNumberOfConcurrentOpenLedgerOperations should be greater than 0");
@@ -152,9 +170,29 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
 
     /**
      * List all the ledgers and check them individually. This should not
-     * be run very often.
+     * be run very often. When the check is incremental, only the ledgers
+     * which changed since the last run are checked, until the next full check.
      */
     void checkAllLedgers() throws BKException, IOException, InterruptedException {
+        final Set<Long> ledgersToCheck = null == changeTracker ? null : changeTracker.takeLedgersToCheck();
+        if (null != ledgersToCheck) {
+            LOG.info("Checking {} ledgers changed since the last checkAllLedgers", ledgersToCheck.size());
+        }
+        // set when the check stops before all the ledgers are processed
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+        boolean checkSuccess = false;
+        try {
+            checkLedgers(ledgersToCheck, aborted);
+            checkSuccess = !aborted.get();
+        } finally {
+            if (null != changeTracker) {
+                changeTracker.checkCompleted(ledgersToCheck, checkSuccess);
+            }
+        }
+    }
+
+    private void checkLedgers(Set<Long> ledgersToCheck, AtomicBoolean aborted)
+            throws BKException, IOException, InterruptedException {
         final BookKeeper localClient = getBookKeeper(conf);
         final BookKeeperAdmin localAdmin = getBookKeeperAdmin(localClient);
         try {
@@ -166,6 +204,7 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
                 try {
                     if (!ledgerUnderreplicationManager.isLedgerReplicationEnabled()) {
                         LOG.info("Ledger rereplication has been disabled, aborting periodic check");
+                        aborted.set(true);
                         FutureUtils.complete(processFuture, null);
                         return;
                     }
@@ -175,6 +214,7 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
                     return;
                 } catch (ReplicationException.UnavailableException ue) {
                     LOG.error("Underreplication manager unavailable running periodic check", ue);
+                    aborted.set(true);
                     FutureUtils.complete(processFuture, null);
                     return;
                 }
@@ -184,12 +224,14 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
                             TimeUnit.MILLISECONDS)) {
                         LOG.warn("Failed to acquire semaphore for {} ms, ledgerId: {}",
                                 openLedgerNoRecoverySemaphoreWaitTimeoutMSec, ledgerId);
+                        aborted.set(true);
                         FutureUtils.complete(processFuture, null);
                         return;
                     }
                 } catch (InterruptedException e) {
                     LOG.error("Unable to acquire open ledger operation semaphore ", e);
                     Thread.currentThread().interrupt();
+                    aborted.set(true);
                     FutureUtils.complete(processFuture, null);
                     return;
                 }
@@ -223,14 +265,20 @@ public class AuditorCheckAllLedgersTask extends AuditorTask {
                 }, null);
             };
 
-            ledgerManager.asyncProcessLedgers(checkLedgersProcessor,
-                    (rc, path, ctx) -> {
-                        if (BKException.Code.OK == rc) {
-                            FutureUtils.complete(processFuture, null);
-                        } else {
-                            FutureUtils.completeExceptionally(processFuture, BKException.create(rc));
-                        }
-                    }, null, BKException.Code.OK, BKException.Code.ReadException);
+            AsyncCallback.VoidCallback finalCb = (rc, path, ctx) -> {
+                if (BKException.Code.OK == rc) {
+                    FutureUtils.complete(processFuture, null);
+                } else {
+                    FutureUtils.completeExceptionally(processFuture, BKException.create(rc));
+                }
+            };
+            if (null == ledgersToCheck) {
+                ledgerManager.asyncProcessLedgers(checkLedgersProcessor, finalCb, null,
+                        BKException.Code.OK, BKException.Code.ReadException);
+            } else {
+                processLedgers(ledgersToCheck, checkLedgersProcessor, finalCb,
+                        BKException.Code.OK, BKException.Code.ReadException);
+            }
             FutureUtils.result(processFuture, BKException.HANDLER);
             try {
                 ledgerUnderreplicationManager.setCheckAllLedgersCTime(System.currentTimeMillis());
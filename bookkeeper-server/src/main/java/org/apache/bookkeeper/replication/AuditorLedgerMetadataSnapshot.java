@@ -0,0 +1,342 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.replication;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshot of the metadata of all the ledgers, kept up to date by the metadata watches of the
+ * ledger manager, so that the periodic checks of the auditor only re-evaluate the ledgers
+ * which changed instead of reading the metadata of every ledger on each run.
+ *
+ * <p>The ledgers are listed on each {@link #refresh()}, and the metadata of the new ones is
+ * read once when their watch is set, a bounded number of them at a time, without blocking the
+ * refresh. Each check gets its own {@link ChangeTracker}, which collects the ledgers created or
+ * modified, and the bookies whose availability or network location changed, since the check
+ * last ran.
+ */
+class AuditorLedgerMetadataSnapshot implements LedgerMetadataListener {
+    private static final Logger LOG = LoggerFactory.getLogger(AuditorLedgerMetadataSnapshot.class);
+
+    private final LedgerManager ledgerManager;
+    private final int zkOpTimeoutMs;
+    // limits the metadata reads of the ledgers being added to the snapshot
+    private final Semaphore pendingLoads;
+    private final int loadTimeoutMs;
+
+    private final Set<Long> trackedLedgers = ConcurrentHashMap.newKeySet();
+    // the new ledgers whose metadata is not being read yet
+    private final Queue<Long> ledgersToLoad = new ConcurrentLinkedQueue<>();
+    // the ledgers whose metadata is being read, with the time the read started
+    private final ConcurrentHashMap<Long, Long> loadingLedgers = new ConcurrentHashMap<>();
+    // guards the registration of the listeners against the close of the snapshot
+    private final Object loadLock = new Object();
+    // set while the loads are started, the metadata may be read right away by the same thread
+    private boolean startingLoads = false;
+    private final ConcurrentHashMap<Long, Versioned<LedgerMetadata>> ledgersMetadata = new ConcurrentHashMap<>();
+    private final List<ChangeTracker> changeTrackers = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+
+    AuditorLedgerMetadataSnapshot(ServerConfiguration conf, LedgerManager ledgerManager) {
+        this.ledgerManager = ledgerManager;
+        this.zkOpTimeoutMs = conf.getZkTimeout() * 2;
+        this.pendingLoads = new Semaphore(conf.getAuditorMaxNumberOfConcurrentOpenLedgerOperations());
+        this.loadTimeoutMs = conf.getAuditorAcquireConcurrentOpenLedgerOperationsTimeoutMSec();
+    }
+
+    /**
+     * Create a tracker of the changes, which starts with all the ledgers already in the snapshot.
+     *
+     * @param fullCheckIntervalMs interval at which the check re-evaluates all the ledgers, or 0
+     * @param trackTopology whether the changes of the network locations of the bookies are tracked
+     */
+    ChangeTracker newChangeTracker(long fullCheckIntervalMs, boolean trackTopology) {
+        ChangeTracker changeTracker = new ChangeTracker(fullCheckIntervalMs, trackTopology);
+        changeTrackers.add(changeTracker);
+        changeTracker.changedLedgers.addAll(trackedLedgers);
+        return changeTracker;
+    }
+
+    /**
+     * List the ledgers, and start watching the metadata of the ones not in the snapshot yet. The
+     * new ledgers are reported as changed right away, before their metadata is read.
+     */
+    synchronized void refresh() throws IOException {
+        LedgerManager.LedgerRangeIterator ledgerRangeIterator = ledgerManager.getLedgerRanges(zkOpTimeoutMs);
+        int numNewLedgers = 0;
+        while (ledgerRangeIterator.hasNext()) {
+            for (Long ledgerId : ledgerRangeIterator.next().getLedgers()) {
+                if (closed) {
+                    return;
+                }
+                if (!trackedLedgers.add(ledgerId)) {
+                    continue;
+                }
+                numNewLedgers++;
+                for (ChangeTracker changeTracker : changeTrackers) {
+                    changeTracker.changedLedgers.add(ledgerId);
+                }
+                ledgersToLoad.add(ledgerId);
+            }
+            startLoads();
+        }
+        LOG.info("Refreshed the ledger metadata snapshot: {} new ledgers, {} ledgers in total, {} waiting"
+                + " for their metadata", numNewLedgers, trackedLedgers.size(), ledgersToLoad.size());
+    }
+
+    /**
+     * Start watching the metadata of the new ledgers, as long as fewer than the max number of
+     * concurrent reads are in progress. The reads which didn't complete within the load timeout
+     * give their slot to the next ledgers, their watch is kept.
+     */
+    private void startLoads() {
+        synchronized (loadLock) {
+            if (startingLoads) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Long, Long> loading : loadingLedgers.entrySet()) {
+                if (now - loading.getValue() >= loadTimeoutMs
+                        && loadingLedgers.remove(loading.getKey(), loading.getValue())) {
+                    LOG.warn("The metadata of ledger {} was not read in {} ms, loading the next ledgers",
+                            loading.getKey(), loadTimeoutMs);
+                    pendingLoads.release();
+                }
+            }
+            startingLoads = true;
+            try {
+                while (!closed && !ledgersToLoad.isEmpty() && pendingLoads.tryAcquire()) {
+                    Long ledgerId = ledgersToLoad.poll();
+                    if (null == ledgerId) {
+                        pendingLoads.release();
+                        break;
+                    }
+                    loadingLedgers.put(ledgerId, now);
+                    ledgerManager.registerLedgerMetadataListener(ledgerId, this);
+                }
+            } finally {
+                startingLoads = false;
+            }
+        }
+    }
+
+    @Override
+    public void onChanged(long ledgerId, Versioned<LedgerMetadata> metadata) {
+        if (null != loadingLedgers.remove(ledgerId)) {
+            pendingLoads.release();
+            startLoads();
+        }
+        if (closed) {
+            return;
+        }
+        if (null == metadata) {
+            // the ledger is deleted
+            trackedLedgers.remove(ledgerId);
+            ledgersMetadata.remove(ledgerId);
+            return;
+        }
+        Versioned<LedgerMetadata> previous = ledgersMetadata.get(ledgerId);
+        while (true) {
+            if (null == previous) {
+                previous = ledgersMetadata.putIfAbsent(ledgerId, metadata);
+                if (null == previous) {
+                    // the first metadata read, the ledger is already reported as new
+                    return;
+                }
+            } else if (metadata.getVersion().compare(previous.getVersion()) != Version.Occurred.AFTER) {
+                return;
+            } else if (ledgersMetadata.replace(ledgerId, previous, metadata)) {
+                break;
+            } else {
+                previous = ledgersMetadata.get(ledgerId);
+            }
+        }
+        for (ChangeTracker changeTracker : changeTrackers) {
+            changeTracker.changedLedgers.add(ledgerId);
+        }
+    }
+
+    /**
+     * Report bookies which became available or unavailable, so that the ledgers stored on them
+     * are re-evaluated.
+     */
+    void bookiesChanged(Collection<String> bookies) {
+        if (bookies.isEmpty()) {
+            return;
+        }
+        for (ChangeTracker changeTracker : changeTrackers) {
+            for (String bookie : bookies) {
+                changeTracker.changedBookies.add(BookieId.parse(bookie));
+            }
+        }
+    }
+
+    /**
+     * Report bookies whose network location changed, or a change of the set of the network
+     * locations, to the checks tracking the topology of the cluster.
+     *
+     * @param movedBookies the bookies which moved to another network location
+     * @param locationsChanged whether network locations were added or removed, in which case all
+     *                         the ledgers are re-evaluated
+     */
+    void topologyChanged(Collection<BookieId> movedBookies, boolean locationsChanged) {
+        for (ChangeTracker changeTracker : changeTrackers) {
+            if (!changeTracker.trackTopology) {
+                continue;
+            }
+            if (locationsChanged) {
+                changeTracker.fullCheckRequested = true;
+            }
+            changeTracker.changedBookies.addAll(movedBookies);
+        }
+    }
+
+    /**
+     * Get the metadata of a ledger, or null if it is not in the snapshot or not read yet.
+     */
+    Versioned<LedgerMetadata> getLedgerMetadata(long ledgerId) {
+        return ledgersMetadata.get(ledgerId);
+    }
+
+    boolean containsLedger(long ledgerId) {
+        return trackedLedgers.contains(ledgerId);
+    }
+
+    int size() {
+        return trackedLedgers.size();
+    }
+
+    void close() {
+        synchronized (loadLock) {
+            closed = true;
+            for (Long ledgerId : trackedLedgers) {
+                ledgerManager.unregisterLedgerMetadataListener(ledgerId, this);
+            }
+        }
+        changeTrackers.clear();
+        ledgersToLoad.clear();
+        loadingLedgers.clear();
+        ledgersMetadata.clear();
+        trackedLedgers.clear();
+    }
+
+    private static <T> void drainTo(Set<T> from, Set<T> to) {
+        Iterator<T> iterator = from.iterator();
+        while (iterator.hasNext()) {
+            to.add(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * The changes of the snapshot since a check last ran.
+     */
+    class ChangeTracker {
+        private final Set<Long> changedLedgers = ConcurrentHashMap.newKeySet();
+        private final Set<BookieId> changedBookies = ConcurrentHashMap.newKeySet();
+        private final long fullCheckIntervalMs;
+        private final boolean trackTopology;
+        private volatile boolean fullCheckRequested = false;
+        private long lastFullCheckMs;
+        private long fullCheckStartMs;
+
+        private ChangeTracker(long fullCheckIntervalMs, boolean trackTopology) {
+            this.fullCheckIntervalMs = fullCheckIntervalMs;
+            this.trackTopology = trackTopology;
+            this.lastFullCheckMs = System.currentTimeMillis();
+        }
+
+        /**
+         * Refresh the snapshot, and take the ledgers to re-evaluate: the ledgers created or
+         * modified, and the ledgers with a bookie whose availability changed in any of their
+         * ensembles.
+         *
+         * @return the ledgers to check, or null if the full check of all the ledgers is due, or
+         *         requested by a change of the topology
+         */
+        Set<Long> takeLedgersToCheck() throws IOException {
+            refresh();
+            long now = System.currentTimeMillis();
+            if (fullCheckRequested || (fullCheckIntervalMs > 0 && now - lastFullCheckMs >= fullCheckIntervalMs)) {
+                fullCheckRequested = false;
+                clear();
+                fullCheckStartMs = now;
+                return null;
+            }
+            Set<Long> ledgers = new HashSet<>();
+            drainTo(changedLedgers, ledgers);
+            Set<BookieId> bookies = new HashSet<>();
+            drainTo(changedBookies, bookies);
+            if (!bookies.isEmpty()) {
+                for (Map.Entry<Long, Versioned<LedgerMetadata>> entry : ledgersMetadata.entrySet()) {
+                    for (List<BookieId> ensemble : entry.getValue().getValue().getAllEnsembles().values()) {
+                        if (ensemble.stream().anyMatch(bookies::contains)) {
+                            ledgers.add(entry.getKey());
+                            break;
+                        }
+                    }
+                }
+            }
+            return ledgers;
+        }
+
+        /**
+         * Record the end of a check.
+         *
+         * @param ledgers the ledgers taken by the check, or null for a full check
+         * @param success whether all the ledgers were checked, otherwise they are checked again on
+         *                the next run
+         */
+        void checkCompleted(Collection<Long> ledgers, boolean success) {
+            if (null == ledgers) {
+                if (success) {
+                    lastFullCheckMs = fullCheckStartMs;
+                } else {
+                    fullCheckRequested = true;
+                }
+            } else if (!success) {
+                changedLedgers.addAll(ledgers);
+            }
+        }
+
+        private void clear() {
+            changedLedgers.clear();
+            changedBookies.clear();
+        }
+    }
+}
@@ -18,11 +18,15 @@
 package org.apache.bookkeeper.replication;
 
 import com.google.common.base.Stopwatch;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -55,6 +59,14 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
     private final AtomicInteger numOfClosedLedgersAuditedInPlacementPolicyCheck;
     private final AtomicInteger numOfURLedgersElapsedRecoveryGracePeriod;
 
+    // null unless the check is incremental
+    private final AuditorLedgerMetadataSnapshot metadataSnapshot;
+    private final AuditorLedgerMetadataSnapshot.ChangeTracker changeTracker;
+    // the ledgers found not adhering or softly adhering to the placement policy, when incremental
+    private final ConcurrentHashMap<Long, EnsemblePlacementPolicy.PlacementPolicyAdherence> ledgersNotStrictlyAdhering;
+    // the network location of the bookies on the last incremental check
+    private Map<BookieId, String> lastNetworkLocations;
+
     AuditorPlacementPolicyCheckTask(ServerConfiguration conf,
                                     AuditorStats auditorStats,
                                     BookKeeperAdmin admin,
@@ -62,8 +74,29 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
                                     LedgerUnderreplicationManager ledgerUnderreplicationManager,
                                     ShutdownTaskHandler shutdownTaskHandler,
                                     BiConsumer<AtomicBoolean, Throwable> hasAuditCheckTask) {
+        this(conf, auditorStats, admin, ledgerManager, ledgerUnderreplicationManager,
+                shutdownTaskHandler, hasAuditCheckTask, null);
+    }
+
+    AuditorPlacementPolicyCheckTask(ServerConfiguration conf,
+                                    AuditorStats auditorStats,
+                                    BookKeeperAdmin admin,
+                                    LedgerManager ledgerManager,
+                                    LedgerUnderreplicationManager ledgerUnderreplicationManager,
+                                    ShutdownTaskHandler shutdownTaskHandler,
+                                    BiConsumer<AtomicBoolean, Throwable> hasAuditCheckTask,
+                                    AuditorLedgerMetadataSnapshot metadataSnapshot) {
         super(conf, auditorStats, admin, ledgerManager,
                 ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask);
+        this.metadataSnapshot = metadataSnapshot;
+        if (null == metadataSnapshot) {
+            this.changeTracker = null;
+            this.ledgersNotStrictlyAdhering = null;
+        } else {
+            this.changeTracker = metadataSnapshot.newChangeTracker(
+                    TimeUnit.SECONDS.toMillis(conf.getAuditorFullCheckInterval()), true);
+            this.ledgersNotStrictlyAdhering = new ConcurrentHashMap<>();
+        }
         this.underreplicatedLedgerRecoveryGracePeriod = conf.getUnderreplicatedLedgerRecoveryGracePeriod();
         this.numOfLedgersFoundNotAdheringInPlacementPolicyCheck = new AtomicInteger(0);
         this.numOfLedgersFoundSoftlyAdheringInPlacementPolicyCheck = new AtomicInteger(0);
@@ -169,6 +202,32 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
 
     }
 
+    /**
+     * Report the bookies which moved to another network location since the last check, and
+     * the changes of the set of the network locations, which may change the adherence of all
+     * the ledgers.
+     */
+    private void trackTopologyChanges() {
+        Map<BookieId, String> networkLocations = admin.getBookieNetworkLocations();
+        if (null != lastNetworkLocations) {
+            List<BookieId> movedBookies = new ArrayList<>();
+            for (Map.Entry<BookieId, String> bookie : networkLocations.entrySet()) {
+                String lastNetworkLocation = lastNetworkLocations.get(bookie.getKey());
+                if (null != lastNetworkLocation && !lastNetworkLocation.equals(bookie.getValue())) {
+                    movedBookies.add(bookie.getKey());
+                }
+            }
+            boolean locationsChanged = !new HashSet<>(networkLocations.values())
+                    .equals(new HashSet<>(lastNetworkLocations.values()));
+            if (locationsChanged || !movedBookies.isEmpty()) {
+                LOG.info("Network topology changed, bookies moved: {}, network locations changed: {}",
+                        movedBookies, locationsChanged);
+                metadataSnapshot.topologyChanged(movedBookies, locationsChanged);
+            }
+        }
+        lastNetworkLocations = networkLocations;
+    }
+
     void placementPolicyCheck() throws ReplicationException.BKAuditException {
         final CountDownLatch placementPolicyCheckLatch = new CountDownLatch(1);
         numOfLedgersFoundNotAdheringInPlacementPolicyCheck.set(0);
@@ -199,10 +258,37 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
                         urLedgersElapsedRecoveryGracePeriod);
             }
         }
+        final Set<Long> ledgersToCheck;
+        if (null == changeTracker) {
+            ledgersToCheck = null;
+        } else {
+            trackTopologyChanges();
+            try {
+                ledgersToCheck = changeTracker.takeLedgersToCheck();
+            } catch (IOException ioe) {
+                throw new ReplicationException.BKAuditException("Exception while listing the ledgers", ioe);
+            }
+            if (null != ledgersToCheck) {
+                // check again the ledgers not adhering, which may not have been marked underreplicated
+                for (Map.Entry<Long, EnsemblePlacementPolicy.PlacementPolicyAdherence> e
+                        : ledgersNotStrictlyAdhering.entrySet()) {
+                    if (e.getValue() == EnsemblePlacementPolicy.PlacementPolicyAdherence.FAIL) {
+                        ledgersToCheck.add(e.getKey());
+                    }
+                }
+                LOG.info("Checking {} ledgers changed since the last placementPolicyCheck", ledgersToCheck.size());
+            }
+        }
         BookkeeperInternalCallbacks.Processor<Long> ledgerProcessor =
                 new BookkeeperInternalCallbacks.Processor<Long>() {
                     @Override
                     public void process(Long ledgerId, AsyncCallback.VoidCallback iterCallback) {
+                        Versioned<LedgerMetadata> cachedMetadata = null == metadataSnapshot ? null
+                                : metadataSnapshot.getLedgerMetadata(ledgerId);
+                        if (null != cachedMetadata) {
+                            doPlacementPolicyCheck(ledgerId, iterCallback, cachedMetadata);
+                            return;
+                        }
                         ledgerManager.readLedgerMetadata(ledgerId).whenComplete((metadataVer, exception) -> {
                             if (exception == null) {
                                 doPlacementPolicyCheck(ledgerId, iterCallback, metadataVer);
@@ -212,6 +298,9 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
                                     LOG.debug("Ignoring replication of already deleted ledger {}",
                                             ledgerId);
                                 }
+                                if (null != ledgersNotStrictlyAdhering) {
+                                    ledgersNotStrictlyAdhering.remove(ledgerId);
+                                }
                                 iterCallback.processResult(BKException.Code.OK, null, null);
                             } else {
                                 LOG.warn("Unable to read the ledger: {} information", ledgerId);
@@ -222,24 +311,56 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
                 };
         // Reading the result after processing all the ledgers
         final List<Integer> resultCode = new ArrayList<Integer>(1);
-        ledgerManager.asyncProcessLedgers(ledgerProcessor, new AsyncCallback.VoidCallback() {
+        AsyncCallback.VoidCallback finalCb = new AsyncCallback.VoidCallback() {
 
             @Override
             public void processResult(int rc, String s, Object obj) {
                 resultCode.add(rc);
                 placementPolicyCheckLatch.countDown();
             }
-        }, null, BKException.Code.OK, BKException.Code.ReadException);
+        };
+        if (null == ledgersToCheck) {
+            ledgerManager.asyncProcessLedgers(ledgerProcessor, finalCb, null,
+                    BKException.Code.OK, BKException.Code.ReadException);
+        } else {
+            processLedgers(ledgersToCheck, ledgerProcessor, finalCb,
+                    BKException.Code.OK, BKException.Code.ReadException);
+        }
         try {
             placementPolicyCheckLatch.await();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            if (null != changeTracker) {
+                changeTracker.checkCompleted(ledgersToCheck, false);
+            }
             throw new ReplicationException.BKAuditException("Exception while doing placementPolicy check", e);
         }
+        if (null != changeTracker) {
+            changeTracker.checkCompleted(ledgersToCheck, resultCode.contains(BKException.Code.OK));
+        }
         if (!resultCode.contains(BKException.Code.OK)) {
             throw new ReplicationException.BKAuditException("Exception while doing placementPolicy check",
                     BKException.create(resultCode.get(0)));
         }
+        if (null != ledgersToCheck) {
+            // report all the ledgers known not to adhere, not only the ones checked by this run
+            int numNotAdhering = 0;
+            int numSoftlyAdhering = 0;
+            Iterator<Map.Entry<Long, EnsemblePlacementPolicy.PlacementPolicyAdherence>> iterator =
+                    ledgersNotStrictlyAdhering.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, EnsemblePlacementPolicy.PlacementPolicyAdherence> e = iterator.next();
+                if (!metadataSnapshot.containsLedger(e.getKey())) {
+                    iterator.remove();
+                } else if (e.getValue() == EnsemblePlacementPolicy.PlacementPolicyAdherence.FAIL) {
+                    numNotAdhering++;
+                } else {
+                    numSoftlyAdhering++;
+                }
+            }
+            numOfLedgersFoundNotAdheringInPlacementPolicyCheck.set(numNotAdhering);
+            numOfLedgersFoundSoftlyAdheringInPlacementPolicyCheck.set(numSoftlyAdhering);
+        }
         try {
             ledgerUnderreplicationManager.setPlacementPolicyCheckCTime(System.currentTimeMillis());
         } catch (ReplicationException.NonRecoverableReplicationException nre) {
@@ -309,6 +430,16 @@ public class AuditorPlacementPolicyCheckTask extends AuditorTask {
                 numOfLedgersFoundSoftlyAdheringInPlacementPolicyCheck
                         .incrementAndGet();
             }
+            if (null != ledgersNotStrictlyAdhering) {
+                if (foundSegmentNotAdheringToPlacementPolicy) {
+                    ledgersNotStrictlyAdhering.put(ledgerId,
+                            EnsemblePlacementPolicy.PlacementPolicyAdherence.FAIL);
+                } else if (foundSegmentSoftlyAdheringToPlacementPolicy) {
+                    ledgersNotStrictlyAdhering.put(ledgerId, EnsemblePlacementPolicy.PlacementPolicyAdherence.MEETS_SOFT);
+                } else {
+                    ledgersNotStrictlyAdhering.remove(ledgerId);
+                }
+            }
             numOfClosedLedgersAuditedInPlacementPolicyCheck.incrementAndGet();
         } else {
             if (LOG.isDebugEnabled()) {
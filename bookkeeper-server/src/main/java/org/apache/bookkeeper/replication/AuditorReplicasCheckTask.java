@@ -19,20 +19,25 @@ package org.apache.bookkeeper.replication;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multiset;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -56,11 +61,17 @@ import org.slf4j.LoggerFactory;
 public class AuditorReplicasCheckTask extends AuditorTask {
     private static final Logger LOG = LoggerFactory.getLogger(AuditorReplicasCheckTask.class);
 
-    private static final int MAX_CONCURRENT_REPLICAS_CHECK_LEDGER_REQUESTS = 100;
+    private static final int SAMPLED_LEDGERS_CHUNK_SIZE = 1000;
     private static final int REPLICAS_CHECK_TIMEOUT_IN_SECS = 120;
     private static final BitSet EMPTY_BITSET = new BitSet();
 
     private final int zkOpTimeoutMs;
+    private final int maxOutstandingLedgers;
+    private final int batchSize;
+    private final double samplingConfidence;
+    private final double samplingMinDefectRate;
+    // the bookies listed one ledger at a time for the rest of the replicas check
+    private final Set<BookieId> bookiesFailingBatchedRequests = ConcurrentHashMap.newKeySet();
 
     private final AtomicInteger numLedgersFoundHavingNoReplicaOfAnEntry;
     private final AtomicInteger numLedgersFoundHavingLessThanAQReplicasOfAnEntry;
@@ -75,6 +86,10 @@ public class AuditorReplicasCheckTask extends AuditorTask {
         super(conf, auditorStats, admin, ledgerManager,
                 ledgerUnderreplicationManager, shutdownTaskHandler, hasAuditCheckTask);
         this.zkOpTimeoutMs = conf.getZkTimeout() * 2;
+        this.maxOutstandingLedgers = conf.getAuditorReplicasCheckMaxOutstandingLedgers();
+        this.batchSize = conf.getAuditorReplicasCheckBatchSize();
+        this.samplingConfidence = conf.getAuditorReplicasCheckSamplingConfidence();
+        this.samplingMinDefectRate = conf.getAuditorReplicasCheckSamplingMinDefectRate();
         this.numLedgersFoundHavingNoReplicaOfAnEntry = new AtomicInteger(0);
         this.numLedgersFoundHavingLessThanAQReplicasOfAnEntry = new AtomicInteger(0);
         this.numLedgersFoundHavingLessThanWQReplicasOfAnEntry = new AtomicInteger(0);
@@ -163,114 +178,355 @@ public class AuditorReplicasCheckTask extends AuditorTask {
     }
 
     void replicasCheck() throws ReplicationException.BKAuditException {
-        ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithMissingEntries =
-                new ConcurrentHashMap<Long, MissingEntriesInfoOfLedger>();
-        ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies =
-                new ConcurrentHashMap<Long, MissingEntriesInfoOfLedger>();
+        numLedgersFoundHavingNoReplicaOfAnEntry.set(0);
+        numLedgersFoundHavingLessThanAQReplicasOfAnEntry.set(0);
+        numLedgersFoundHavingLessThanWQReplicasOfAnEntry.set(0);
+        bookiesFailingBatchedRequests.clear();
         LedgerManager.LedgerRangeIterator ledgerRangeIterator = ledgerManager.getLedgerRanges(zkOpTimeoutMs);
-        final Semaphore maxConcurrentSemaphore = new Semaphore(MAX_CONCURRENT_REPLICAS_CHECK_LEDGER_REQUESTS);
-        while (true) {
-            LedgerManager.LedgerRange ledgerRange = null;
-            try {
-                if (ledgerRangeIterator.hasNext()) {
-                    ledgerRange = ledgerRangeIterator.next();
-                } else {
-                    break;
+        if (samplingConfidence > 0) {
+            List<Long> sampledLedgers = sampleLedgers(ledgerRangeIterator,
+                    replicasCheckSampleSize(samplingConfidence, samplingMinDefectRate));
+            for (List<Long> ledgers : Lists.partition(sampledLedgers, SAMPLED_LEDGERS_CHUNK_SIZE)) {
+                checkLedgers(ledgers);
+            }
+        } else {
+            while (true) {
+                LedgerManager.LedgerRange ledgerRange = null;
+                try {
+                    if (ledgerRangeIterator.hasNext()) {
+                        ledgerRange = ledgerRangeIterator.next();
+                    } else {
+                        break;
+                    }
+                } catch (IOException ioe) {
+                    LOG.error("Got IOException while iterating LedgerRangeIterator", ioe);
+                    throw new ReplicationException.BKAuditException(
+                            "Got IOException while iterating LedgerRangeIterator", ioe);
                 }
-            } catch (IOException ioe) {
-                LOG.error("Got IOException while iterating LedgerRangeIterator", ioe);
-                throw new ReplicationException.BKAuditException(
-                        "Got IOException while iterating LedgerRangeIterator", ioe);
+                checkLedgers(ledgerRange.getLedgers());
             }
-            ledgersWithMissingEntries.clear();
-            ledgersWithUnavailableBookies.clear();
-            numLedgersFoundHavingNoReplicaOfAnEntry.set(0);
-            numLedgersFoundHavingLessThanAQReplicasOfAnEntry.set(0);
-            numLedgersFoundHavingLessThanWQReplicasOfAnEntry.set(0);
-            Set<Long> ledgersInRange = ledgerRange.getLedgers();
-            int numOfLedgersInRange = ledgersInRange.size();
-            // Final result after processing all the ledgers
-            final AtomicInteger resultCode = new AtomicInteger();
-            final CountDownLatch replicasCheckLatch = new CountDownLatch(1);
-
-            ReplicasCheckFinalCallback finalCB = new ReplicasCheckFinalCallback(resultCode, replicasCheckLatch);
-            MultiCallback mcbForThisLedgerRange = new MultiCallback(numOfLedgersInRange, finalCB, null,
-                    BKException.Code.OK, BKException.Code.ReadException) {
-                @Override
-                public void processResult(int rc, String path, Object ctx) {
-                    try {
-                        super.processResult(rc, path, ctx);
-                    } finally {
-                        maxConcurrentSemaphore.release();
+        }
+        try {
+            ledgerUnderreplicationManager.setReplicasCheckCTime(System.currentTimeMillis());
+        } catch (ReplicationException.NonRecoverableReplicationException nre) {
+            LOG.error("Non Recoverable Exception while reading from ZK", nre);
+            submitShutdownTask();
+        } catch (ReplicationException.UnavailableException ue) {
+            LOG.error("Got exception while trying to set ReplicasCheckCTime", ue);
+        }
+    }
+
+    /**
+     * Get the number of ledgers to check so that, if none of them is found with missing
+     * replicas, the fraction of the ledgers with missing replicas is lower than minDefectRate
+     * with the given confidence: (1 - minDefectRate) ^ sampleSize <= 1 - confidence.
+     */
+    static int replicasCheckSampleSize(double confidence, double minDefectRate) {
+        if (confidence >= 1 || minDefectRate <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        if (minDefectRate >= 1) {
+            return 1;
+        }
+        double sampleSize = Math.ceil(Math.log(1 - confidence) / Math.log(1 - minDefectRate));
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, sampleSize));
+    }
+
+    /**
+     * Pick a uniform random sample of the ledgers, reading their ids once without keeping them all.
+     */
+    List<Long> sampleLedgers(LedgerManager.LedgerRangeIterator ledgerRangeIterator, int sampleSize)
+            throws ReplicationException.BKAuditException {
+        List<Long> sampledLedgers = new ArrayList<>();
+        long numLedgers = 0;
+        try {
+            while (ledgerRangeIterator.hasNext()) {
+                for (Long ledgerId : ledgerRangeIterator.next().getLedgers()) {
+                    numLedgers++;
+                    if (sampledLedgers.size() < sampleSize) {
+                        sampledLedgers.add(ledgerId);
+                    } else {
+                        long index = ThreadLocalRandom.current().nextLong(numLedgers);
+                        if (index < sampleSize) {
+                            sampledLedgers.set((int) index, ledgerId);
+                        }
                     }
                 }
-            };
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Number of ledgers in the current LedgerRange : {}",
-                        numOfLedgersInRange);
             }
-            for (Long ledgerInRange : ledgersInRange) {
+        } catch (IOException ioe) {
+            LOG.error("Got IOException while iterating LedgerRangeIterator", ioe);
+            throw new ReplicationException.BKAuditException(
+                    "Got IOException while iterating LedgerRangeIterator", ioe);
+        }
+        // check the ledgers in the order of the metadata store
+        Collections.sort(sampledLedgers);
+        LOG.info("ReplicasCheck sampled {} of {} ledgers, for a confidence of {} to detect {} of the ledgers"
+                + " with missing replicas", sampledLedgers.size(), numLedgers, samplingConfidence,
+                samplingMinDefectRate);
+        return sampledLedgers;
+    }
+
+    private void checkLedgers(Collection<Long> ledgers) throws ReplicationException.BKAuditException {
+        ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithMissingEntries =
+                new ConcurrentHashMap<Long, MissingEntriesInfoOfLedger>();
+        ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies =
+                new ConcurrentHashMap<Long, MissingEntriesInfoOfLedger>();
+        /*
+         * with batched requests, the entries of a ledger are listed once the batches of its
+         * bookies are sent, which may wait for the metadata of the following ledgers. So the
+         * semaphore only limits the outstanding metadata reads, and the lister limits the ledgers
+         * being listed. Otherwise the semaphore limits the ledgers being checked.
+         */
+        final boolean batched = batchSize > 1;
+        final Semaphore maxConcurrentSemaphore = new Semaphore(maxOutstandingLedgers);
+        final EntriesOfLedgersLister entriesOfLedgersLister = new EntriesOfLedgersLister();
+        int numOfLedgersInRange = ledgers.size();
+        // Final result after processing all the ledgers
+        final AtomicInteger resultCode = new AtomicInteger();
+        final CountDownLatch replicasCheckLatch = new CountDownLatch(1);
+
+        ReplicasCheckFinalCallback finalCB = new ReplicasCheckFinalCallback(resultCode, replicasCheckLatch);
+        MultiCallback mcbForThisLedgerRange = new MultiCallback(numOfLedgersInRange, finalCB, null,
+                BKException.Code.OK, BKException.Code.ReadException) {
+            @Override
+            public void processResult(int rc, String path, Object ctx) {
                 try {
-                    if (!maxConcurrentSemaphore.tryAcquire(REPLICAS_CHECK_TIMEOUT_IN_SECS, TimeUnit.SECONDS)) {
-                        LOG.error("Timedout ({} secs) while waiting for acquiring semaphore",
-                                REPLICAS_CHECK_TIMEOUT_IN_SECS);
-                        throw new ReplicationException.BKAuditException(
-                                "Timedout while waiting for acquiring semaphore");
+                    super.processResult(rc, path, ctx);
+                } finally {
+                    if (!batched) {
+                        maxConcurrentSemaphore.release();
                     }
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    LOG.error("Got InterruptedException while acquiring semaphore for replicascheck", ie);
-                    throw new ReplicationException.BKAuditException(
-                            "Got InterruptedException while acquiring semaphore for replicascheck", ie);
-                }
-                if (checkUnderReplicationForReplicasCheck(ledgerInRange, mcbForThisLedgerRange)) {
-                    /*
-                     * if ledger is marked underreplicated, then ignore this
-                     * ledger for replicascheck.
-                     */
-                    continue;
                 }
-                ledgerManager.readLedgerMetadata(ledgerInRange)
-                        .whenComplete(new ReadLedgerMetadataCallbackForReplicasCheck(ledgerInRange,
-                                mcbForThisLedgerRange, ledgersWithMissingEntries, ledgersWithUnavailableBookies));
             }
+        };
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Number of ledgers in the current LedgerRange : {}",
+                    numOfLedgersInRange);
+        }
+        for (Long ledgerInRange : ledgers) {
             try {
-                /*
-                 * if mcbForThisLedgerRange is not calledback within
-                 * REPLICAS_CHECK_TIMEOUT_IN_SECS secs then better give up
-                 * doing replicascheck, since there could be an issue and
-                 * blocking the single threaded auditor executor thread is not
-                 * expected.
-                 */
-                if (!replicasCheckLatch.await(REPLICAS_CHECK_TIMEOUT_IN_SECS, TimeUnit.SECONDS)) {
-                    LOG.error(
-                            "For LedgerRange with num of ledgers : {} it didn't complete replicascheck"
-                                    + " in {} secs, so giving up",
-                            numOfLedgersInRange, REPLICAS_CHECK_TIMEOUT_IN_SECS);
+                if (!maxConcurrentSemaphore.tryAcquire(REPLICAS_CHECK_TIMEOUT_IN_SECS, TimeUnit.SECONDS)) {
+                    LOG.error("Timedout ({} secs) while waiting for acquiring semaphore",
+                            REPLICAS_CHECK_TIMEOUT_IN_SECS);
                     throw new ReplicationException.BKAuditException(
-                            "Got InterruptedException while doing replicascheck");
+                            "Timedout while waiting for acquiring semaphore");
                 }
             } catch (InterruptedException ie) {
                 Thread.currentThread().interrupt();
-                LOG.error("Got InterruptedException while doing replicascheck", ie);
+                LOG.error("Got InterruptedException while acquiring semaphore for replicascheck", ie);
                 throw new ReplicationException.BKAuditException(
-                        "Got InterruptedException while doing replicascheck", ie);
+                        "Got InterruptedException while acquiring semaphore for replicascheck", ie);
             }
-            reportLedgersWithMissingEntries(ledgersWithMissingEntries);
-            reportLedgersWithUnavailableBookies(ledgersWithUnavailableBookies);
-            int resultCodeIntValue = resultCode.get();
-            if (resultCodeIntValue != BKException.Code.OK) {
-                throw new ReplicationException.BKAuditException("Exception while doing replicas check",
-                        BKException.create(resultCodeIntValue));
+            if (checkUnderReplicationForReplicasCheck(ledgerInRange, mcbForThisLedgerRange)) {
+                /*
+                 * if ledger is marked underreplicated, then ignore this
+                 * ledger for replicascheck.
+                 */
+                if (batched) {
+                    maxConcurrentSemaphore.release();
+                }
+                continue;
             }
+            entriesOfLedgersLister.metadataReadStarted();
+            ledgerManager.readLedgerMetadata(ledgerInRange)
+                    .whenComplete(new ReadLedgerMetadataCallbackForReplicasCheck(ledgerInRange,
+                            mcbForThisLedgerRange, ledgersWithMissingEntries, ledgersWithUnavailableBookies,
+                            entriesOfLedgersLister))
+                    .whenComplete((metadata, exception) -> {
+                        if (batched) {
+                            maxConcurrentSemaphore.release();
+                        }
+                        entriesOfLedgersLister.metadataReadCompleted();
+                    });
         }
+        entriesOfLedgersLister.metadataReadCompleted();
         try {
-            ledgerUnderreplicationManager.setReplicasCheckCTime(System.currentTimeMillis());
-        } catch (ReplicationException.NonRecoverableReplicationException nre) {
-            LOG.error("Non Recoverable Exception while reading from ZK", nre);
-            submitShutdownTask();
-        } catch (ReplicationException.UnavailableException ue) {
-            LOG.error("Got exception while trying to set ReplicasCheckCTime", ue);
+            /*
+             * if mcbForThisLedgerRange is not calledback within
+             * REPLICAS_CHECK_TIMEOUT_IN_SECS secs then better give up
+             * doing replicascheck, since there could be an issue and
+             * blocking the single threaded auditor executor thread is not
+             * expected.
+             */
+            if (!replicasCheckLatch.await(REPLICAS_CHECK_TIMEOUT_IN_SECS, TimeUnit.SECONDS)) {
+                LOG.error(
+                        "For LedgerRange with num of ledgers : {} it didn't complete replicascheck"
+                                + " in {} secs, so giving up",
+                        numOfLedgersInRange, REPLICAS_CHECK_TIMEOUT_IN_SECS);
+                throw new ReplicationException.BKAuditException(
+                        "Got InterruptedException while doing replicascheck");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            LOG.error("Got InterruptedException while doing replicascheck", ie);
+            throw new ReplicationException.BKAuditException(
+                    "Got InterruptedException while doing replicascheck", ie);
+        }
+        reportLedgersWithMissingEntries(ledgersWithMissingEntries);
+        reportLedgersWithUnavailableBookies(ledgersWithUnavailableBookies);
+        int resultCodeIntValue = resultCode.get();
+        if (resultCodeIntValue != BKException.Code.OK) {
+            throw new ReplicationException.BKAuditException("Exception while doing replicas check",
+                    BKException.create(resultCodeIntValue));
+        }
+    }
+
+    private static class PendingListOfEntries {
+        private final long ledgerId;
+        private final BiConsumer<AvailabilityOfEntriesOfLedger, Throwable> callback;
+
+        private PendingListOfEntries(long ledgerId, BiConsumer<AvailabilityOfEntriesOfLedger, Throwable> callback) {
+            this.ledgerId = ledgerId;
+            this.callback = callback;
+        }
+    }
+
+    private static class ListOfEntriesRequest {
+        private final BookieId bookie;
+        private final List<PendingListOfEntries> ledgers;
+        private final boolean batched;
+
+        private ListOfEntriesRequest(BookieId bookie, List<PendingListOfEntries> ledgers, boolean batched) {
+            this.bookie = bookie;
+            this.ledgers = ledgers;
+            this.batched = batched;
+        }
+    }
+
+    /**
+     * Lists the entries of the ledgers being checked on their bookies, grouping the ledgers of
+     * each bookie into a single request. A batch is sent when it is full, or when the metadata of
+     * all the ledgers has been read, so that no more ledger can be added to it. The outstanding
+     * requests list up to maxOutstandingLedgers ledgers, the other requests wait for them. The
+     * ledgers of a failed batch are listed one at a time, as are all the ledgers of the bookies
+     * rejecting the batched requests.
+     */
+    private class EntriesOfLedgersLister {
+        private final Map<BookieId, List<PendingListOfEntries>> batches = new HashMap<>();
+        private final Queue<ListOfEntriesRequest> readyRequests = new ArrayDeque<>();
+        // the metadata reads in progress, plus one until all the ledgers are dispatched
+        private int pendingMetadataReads = 1;
+        // the ledgers of the outstanding requests
+        private int outstandingLedgers = 0;
+
+        synchronized void metadataReadStarted() {
+            pendingMetadataReads++;
+        }
+
+        void metadataReadCompleted() {
+            synchronized (this) {
+                if (--pendingMetadataReads > 0 || batches.isEmpty()) {
+                    return;
+                }
+                for (Entry<BookieId, List<PendingListOfEntries>> batch : batches.entrySet()) {
+                    readyRequests.add(new ListOfEntriesRequest(batch.getKey(), batch.getValue(), true));
+                }
+                batches.clear();
+            }
+            sendReadyRequests();
+        }
+
+        void getListOfEntriesOfLedger(BookieId bookie, long ledgerId,
+                                      BiConsumer<AvailabilityOfEntriesOfLedger, Throwable> callback) {
+            if (batchSize <= 1) {
+                admin.asyncGetListOfEntriesOfLedger(bookie, ledgerId).whenComplete(callback);
+                return;
+            }
+            synchronized (this) {
+                PendingListOfEntries pending = new PendingListOfEntries(ledgerId, callback);
+                if (bookiesFailingBatchedRequests.contains(bookie)) {
+                    readyRequests.add(new ListOfEntriesRequest(bookie, Collections.singletonList(pending), false));
+                } else {
+                    List<PendingListOfEntries> batch = batches.computeIfAbsent(bookie, k -> new ArrayList<>());
+                    batch.add(pending);
+                    if (batch.size() < batchSize) {
+                        return;
+                    }
+                    readyRequests.add(new ListOfEntriesRequest(bookie, batches.remove(bookie), true));
+                }
+            }
+            sendReadyRequests();
+        }
+
+        private void sendReadyRequests() {
+            while (true) {
+                ListOfEntriesRequest request;
+                synchronized (this) {
+                    request = readyRequests.peek();
+                    if (request == null || (outstandingLedgers > 0
+                            && outstandingLedgers + request.ledgers.size() > maxOutstandingLedgers)) {
+                        return;
+                    }
+                    readyRequests.poll();
+                    if (request.batched && bookiesFailingBatchedRequests.contains(request.bookie)) {
+                        splitRequest(request);
+                        continue;
+                    }
+                    outstandingLedgers += request.ledgers.size();
+                }
+                if (request.batched) {
+                    sendBatch(request);
+                } else {
+                    PendingListOfEntries pending = request.ledgers.get(0);
+                    admin.asyncGetListOfEntriesOfLedger(request.bookie, pending.ledgerId)
+                            .whenComplete((availabilityOfEntriesOfLedger, exception) -> {
+                                requestCompleted(request);
+                                pending.callback.accept(availabilityOfEntriesOfLedger, exception);
+                            });
+                }
+            }
+        }
+
+        private synchronized void splitRequest(ListOfEntriesRequest request) {
+            for (PendingListOfEntries pending : request.ledgers) {
+                readyRequests.add(new ListOfEntriesRequest(request.bookie, Collections.singletonList(pending), false));
+            }
+        }
+
+        private void requestCompleted(ListOfEntriesRequest request) {
+            synchronized (this) {
+                outstandingLedgers -= request.ledgers.size();
+            }
+            sendReadyRequests();
+        }
+
+        private void sendBatch(ListOfEntriesRequest request) {
+            BookieId bookie = request.bookie;
+            List<PendingListOfEntries> batch = request.ledgers;
+            List<Long> ledgerIds = new ArrayList<>(batch.size());
+            for (PendingListOfEntries pending : batch) {
+                ledgerIds.add(pending.ledgerId);
+            }
+            admin.asyncGetListOfEntriesOfLedgers(bookie, ledgerIds).whenComplete((ledgersEntries, exception) -> {
+                if (exception != null) {
+                    /*
+                     * list the entries of these ledgers one at a time. The bookies rejecting
+                     * the batched requests, for instance older bookies, are listed one ledger
+                     * at a time for the rest of the replicas check.
+                     */
+                    int rc = BKException.getExceptionCode(exception, BKException.Code.ReadException);
+                    if (rc == BKException.Code.IllegalOpException) {
+                        LOG.warn("{} rejected GetListOfEntriesOfLedgers for {} ledgers, listing its ledgers"
+                                + " one by one", bookie, batch.size());
+                        bookiesFailingBatchedRequests.add(bookie);
+                    } else {
+                        LOG.warn("Unable to GetListOfEntriesOfLedgers for {} ledgers from: {}, listing them one"
+                                + " by one", batch.size(), bookie, exception);
+                    }
+                    splitRequest(request);
+                    requestCompleted(request);
+                    return;
+                }
+                requestCompleted(request);
+                for (PendingListOfEntries pending : batch) {
+                    AvailabilityOfEntriesOfLedger availabilityOfEntriesOfLedger = ledgersEntries.get(pending.ledgerId);
+                    if (availabilityOfEntriesOfLedger == null) {
+                        pending.callback.accept(null, new BKException.BKNoSuchLedgerExistsException());
+                    } else {
+                        pending.callback.accept(availabilityOfEntriesOfLedger, null);
+                    }
+                }
+            });
         }
     }
 
@@ -357,16 +613,19 @@ public class AuditorReplicasCheckTask extends AuditorTask {
         private final MultiCallback mcbForThisLedgerRange;
         private final ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithMissingEntries;
         private final ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies;
+        private final EntriesOfLedgersLister entriesOfLedgersLister;
 
         ReadLedgerMetadataCallbackForReplicasCheck(
                 long ledgerInRange,
                 MultiCallback mcbForThisLedgerRange,
                 ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithMissingEntries,
-                ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies) {
+                ConcurrentHashMap<Long, MissingEntriesInfoOfLedger> ledgersWithUnavailableBookies,
+                EntriesOfLedgersLister entriesOfLedgersLister) {
             this.ledgerInRange = ledgerInRange;
             this.mcbForThisLedgerRange = mcbForThisLedgerRange;
             this.ledgersWithMissingEntries = ledgersWithMissingEntries;
             this.ledgersWithUnavailableBookies = ledgersWithUnavailableBookies;
+            this.entriesOfLedgersLister = entriesOfLedgersLister;
         }
 
         @Override
@@ -475,8 +734,8 @@ public class AuditorReplicasCheckTask extends AuditorTask {
                 final BookieId bookieInEnsemble = bookiesSegmentInfoTuple.getKey();
                 final List<BookieExpectedToContainSegmentInfo> bookieSegmentInfoList = bookiesSegmentInfoTuple
                         .getValue();
-                admin.asyncGetListOfEntriesOfLedger(bookieInEnsemble, ledgerInRange)
-                        .whenComplete(new GetListOfEntriesOfLedgerCallbackForReplicasCheck(ledgerInRange, ensembleSize,
+                entriesOfLedgersLister.getListOfEntriesOfLedger(bookieInEnsemble, ledgerInRange,
+                        new GetListOfEntriesOfLedgerCallbackForReplicasCheck(ledgerInRange, ensembleSize,
                                 writeQuorumSize, ackQuorumSize, bookieInEnsemble, bookieSegmentInfoList,
                                 ledgersWithMissingEntries, ledgersWithUnavailableBookies, mcbForThisLedger));
             }
@@ -36,6 +36,9 @@ import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.meta.LedgerUnderreplicationManager;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.MultiCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.Processor;
+import org.apache.zookeeper.AsyncCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -99,11 +102,23 @@ abstract class AuditorTask implements Runnable {
             auditorStats.getUnderReplicatedLedgerTotalSize().registerSuccessfulValue(underReplicatedSize.longValue());
         });
 
-        return FutureUtils.processList(
-                Lists.newArrayList(ledgers),
-                ledgerId -> ledgerUnderreplicationManager.markLedgerUnderreplicatedAsync(ledgerId, missingBookies),
-                null
-        );
+        return ledgerUnderreplicationManager.markLedgersUnderreplicatedAsync(ledgers, missingBookies);
+    }
+
+    /**
+     * Process the given ledgers, the same way {@link LedgerManager#asyncProcessLedgers} processes
+     * all the ledgers.
+     */
+    protected static void processLedgers(Collection<Long> ledgers, Processor<Long> processor,
+                                         AsyncCallback.VoidCallback finalCb, int successRc, int failureRc) {
+        if (ledgers.isEmpty()) {
+            finalCb.processResult(successRc, null, null);
+            return;
+        }
+        MultiCallback mcb = new MultiCallback(ledgers.size(), finalCb, null, successRc, failureRc);
+        for (Long ledgerId : ledgers) {
+            processor.process(ledgerId, mcb);
+        }
     }
 
     protected List<String> getAvailableBookies() throws BKException {
@@ -59,6 +59,9 @@ public interface ReplicationStats {
     String NUM_BYTES_READ = "NUM_BYTES_READ";
     String NUM_ENTRIES_WRITTEN = "NUM_ENTRIES_WRITTEN";
     String NUM_BYTES_WRITTEN = "NUM_BYTES_WRITTEN";
+    String NUM_BYTES_REPLICATED = "NUM_BYTES_REPLICATED";
+    String NUM_LEDGERS_REPLICATING = "NUM_LEDGERS_REPLICATING";
+    String REPLICATION_QUEUE_SIZE = "REPLICATION_QUEUE_SIZE";
     String READ_DATA_LATENCY = "READ_DATA_LATENCY";
     String WRITE_DATA_LATENCY = "WRITE_DATA_LATENCY";
     String REPLICATE_EXCEPTION = "exceptions";
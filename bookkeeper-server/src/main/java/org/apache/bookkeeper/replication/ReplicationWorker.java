@@ -22,6 +22,7 @@ package org.apache.bookkeeper.replication;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_DEFER_LEDGER_LOCK_RELEASE_OF_FAILED_LEDGER;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_FULL_OR_PARTIAL_LEDGERS_REPLICATED;
+import static org.apache.bookkeeper.replication.ReplicationStats.NUM_LEDGERS_REPLICATING;
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_NOT_ADHERING_PLACEMENT_LEDGERS_REPLICATED;
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATE_EXCEPTION;
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_WORKER_SCOPE;
@@ -36,7 +37,6 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -46,8 +46,13 @@ import java.util.SortedMap;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -63,6 +68,7 @@ import org.apache.bookkeeper.client.LedgerFragment;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.common.util.ExecutorUtils;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -72,6 +78,7 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.replication.ReplicationException.CompatibilityException;
 import org.apache.bookkeeper.replication.ReplicationException.UnavailableException;
 import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -83,6 +90,11 @@ import org.slf4j.LoggerFactory;
 /**
  * ReplicationWorker will take the fragments one by one from
  * ZKLedgerUnderreplicationManager and replicates to it.
+ *
+ * <p>With rwMaxConcurrentLedgers greater than 1, up to that many ledgers are acquired and
+ * replicated at the same time, each one by a thread of its own. Their fragments are replicated
+ * in batches which share the byte rate budget of the worker, so the batches of a large ledger
+ * are interleaved with the ones of the other ledgers.
  */
 @StatsDoc(
     name = REPLICATION_WORKER_SCOPE,
@@ -102,6 +114,10 @@ public class ReplicationWorker implements Runnable {
     private final BookKeeper bkc;
     private final boolean ownBkc;
     private final Thread workerThread;
+    // null when the ledgers are replicated one at a time by the worker thread
+    private final ExecutorService ledgerReplicationExecutor;
+    private final Semaphore concurrentLedgersPermits;
+    private final AtomicInteger numLedgersReplicating = new AtomicInteger(0);
     private final long rwRereplicateBackoffMs;
     private final long openLedgerRereplicationGracePeriod;
     private final Timer pendingReplicationTimer;
@@ -142,6 +158,11 @@ public class ReplicationWorker implements Runnable {
             help = "the number of not adhering placement policy ledgers re-replicated"
     )
     private final Counter numNotAdheringPlacementLedgersReplicated;
+    @StatsDoc(
+            name = NUM_LEDGERS_REPLICATING,
+            help = "the number of ledgers being re-replicated by the worker"
+    )
+    private final Gauge<Integer> numLedgersReplicatingGauge;
     private final Map<String, Counter> exceptionCounters;
     final LoadingCache<Long, AtomicInteger> replicationFailedLedgers;
     final LoadingCache<Long, ConcurrentSkipListSet<Long>> unableToReadEntriesForReplication;
@@ -191,6 +212,23 @@ public class ReplicationWorker implements Runnable {
         this.admin = new BookKeeperAdmin(bkc, statsLogger, new ClientConfiguration(conf));
         this.ledgerChecker = new LedgerChecker(bkc);
         this.workerThread = new BookieThread(this, "ReplicationWorker");
+        int maxConcurrentLedgers = conf.getRwMaxConcurrentLedgers();
+        if (maxConcurrentLedgers > 1) {
+            // the permits bound the ledgers replicated at once, so a virtual thread per ledger is enough
+            ExecutorService virtualThreadExecutor = conf.isVirtualThreadsEnabled()
+                    ? ExecutorUtils.newVirtualThreadPerTaskExecutor("ReplicationWorker-") : null;
+            if (virtualThreadExecutor != null) {
+                this.ledgerReplicationExecutor = virtualThreadExecutor;
+            } else {
+                AtomicInteger threadIndex = new AtomicInteger(0);
+                this.ledgerReplicationExecutor = Executors.newFixedThreadPool(maxConcurrentLedgers,
+                        r -> new BookieThread(r, "ReplicationWorker-" + threadIndex.getAndIncrement()));
+            }
+            this.concurrentLedgersPermits = new Semaphore(maxConcurrentLedgers);
+        } else {
+            this.ledgerReplicationExecutor = null;
+            this.concurrentLedgersPermits = null;
+        }
         this.openLedgerRereplicationGracePeriod = conf
                 .getOpenLedgerRereplicationGracePeriod();
         this.lockReleaseOfFailedLedgerGracePeriod = conf.getLockReleaseOfFailedLedgerGracePeriod();
@@ -225,7 +263,19 @@ public class ReplicationWorker implements Runnable {
                 .getCounter(NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION);
         this.numNotAdheringPlacementLedgersReplicated = this.statsLogger
                 .getCounter(NUM_NOT_ADHERING_PLACEMENT_LEDGERS_REPLICATED);
-        this.exceptionCounters = new HashMap<String, Counter>();
+        this.numLedgersReplicatingGauge = new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return numLedgersReplicating.get();
+            }
+        };
+        this.statsLogger.registerGauge(NUM_LEDGERS_REPLICATING, numLedgersReplicatingGauge);
+        this.exceptionCounters = new ConcurrentHashMap<String, Counter>();
         this.onReadEntryFailureCallback = (ledgerid, entryid) -> {
             numEntriesUnableToReadForReplication.inc();
             unableToReadEntriesForReplication.getUnchecked(ledgerid).add(entryid);
@@ -244,7 +294,9 @@ public class ReplicationWorker implements Runnable {
         workerRunning = true;
         while (workerRunning) {
             try {
-                if (!rereplicate()) {
+                if (null != ledgerReplicationExecutor) {
+                    submitNextLedgers();
+                } else if (!rereplicate()) {
                     LOG.warn("failed while replicating fragments");
                     waitBackOffTime(rwRereplicateBackoffMs);
                 }
@@ -284,6 +336,62 @@ public class ReplicationWorker implements Runnable {
         }
     }
 
+    /**
+     * Acquire the next under replicated ledgers once replication threads are free, as many as
+     * there are free threads, and replicate each of them on a thread. The errors are handled as
+     * the worker thread does when replicating the ledgers one at a time, backing off on the
+     * replication thread.
+     */
+    private void submitNextLedgers() throws InterruptedException, UnavailableException {
+        concurrentLedgersPermits.acquire();
+        int numPermits = 1 + concurrentLedgersPermits.drainPermits();
+        List<Long> ledgerIdsToReplicate;
+        try {
+            ledgerIdsToReplicate = underreplicationManager.getLedgersToRereplicate(numPermits);
+        } catch (UnavailableException e) {
+            concurrentLedgersPermits.release(numPermits);
+            throw e;
+        }
+        concurrentLedgersPermits.release(numPermits - ledgerIdsToReplicate.size());
+        for (long ledgerIdToReplicate : ledgerIdsToReplicate) {
+            numLedgersReplicating.incrementAndGet();
+            try {
+                ledgerReplicationExecutor.execute(() -> replicateSubmittedLedger(ledgerIdToReplicate));
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                numLedgersReplicating.decrementAndGet();
+                concurrentLedgersPermits.release();
+                underreplicationManager.releaseUnderreplicatedLedger(ledgerIdToReplicate);
+            }
+        }
+    }
+
+    private void replicateSubmittedLedger(long ledgerIdToReplicate) {
+        try {
+            if (!timedRereplicate(ledgerIdToReplicate)) {
+                LOG.warn("failed while replicating fragments of ledger {}", ledgerIdToReplicate);
+                waitBackOffTime(rwRereplicateBackoffMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.info("Interrupted while replicating fragments of ledger {}", ledgerIdToReplicate);
+        } catch (BKException e) {
+            LOG.error("BKException while replicating fragments of ledger {}", ledgerIdToReplicate, e);
+            waitBackOffTime(rwRereplicateBackoffMs);
+        } catch (ReplicationException.NonRecoverableReplicationException nre) {
+            LOG.error("NonRecoverableReplicationException "
+                    + "while replicating fragments of ledger {}", ledgerIdToReplicate, nre);
+            shutdown();
+        } catch (UnavailableException e) {
+            LOG.error("UnavailableException "
+                    + "while replicating fragments of ledger {}", ledgerIdToReplicate, e);
+            waitBackOffTime(rwRereplicateBackoffMs);
+        } finally {
+            numLedgersReplicating.decrementAndGet();
+            concurrentLedgersPermits.release();
+        }
+    }
+
     /**
      * Replicates the under replicated fragments from failed bookie ledger to
      * targetBookie.
@@ -292,7 +400,16 @@ public class ReplicationWorker implements Runnable {
             UnavailableException {
         long ledgerIdToReplicate = underreplicationManager
                 .getLedgerToRereplicate();
+        numLedgersReplicating.incrementAndGet();
+        try {
+            return timedRereplicate(ledgerIdToReplicate);
+        } finally {
+            numLedgersReplicating.decrementAndGet();
+        }
+    }
 
+    private boolean timedRereplicate(long ledgerIdToReplicate) throws InterruptedException, BKException,
+            UnavailableException {
         Stopwatch stopwatch = Stopwatch.createStarted();
         boolean success = false;
         try {
@@ -759,6 +876,15 @@ public class ReplicationWorker implements Runnable {
                     e);
             Thread.currentThread().interrupt();
         }
+        if (null != ledgerReplicationExecutor) {
+            // when shutting down from a replication thread, it is interrupted as well, so it does not wait for itself
+            ledgerReplicationExecutor.shutdownNow();
+            try {
+                ledgerReplicationExecutor.awaitTermination(conf.getRwRereplicateBackoffMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (ownBkc) {
             try {
                 bkc.close();
@@ -810,12 +936,7 @@ public class ReplicationWorker implements Runnable {
     }
 
     private Counter getExceptionCounter(String name) {
-        Counter counter = this.exceptionCounters.get(name);
-        if (counter == null) {
-            counter = this.exceptionLogger.getCounter(name);
-            this.exceptionCounters.put(name, counter);
-        }
-        return counter;
+        return this.exceptionCounters.computeIfAbsent(name, this.exceptionLogger::getCounter);
     }
 
 }
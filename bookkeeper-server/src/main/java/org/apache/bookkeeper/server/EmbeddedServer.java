@@ -429,6 +429,7 @@ public class EmbeddedServer {
             // 5. build bookie server
             BookieService bookieService =
                     new BookieService(conf, bookie, rootStatsLogger, allocatorWithOomHandler, uncleanShutdownDetection);
+            bookieService.getServer().getBookieRequestProcessor().setLedgerManager(ledgerManager);
 
             serverBuilder.addComponent(bookieService);
             log.info("Load lifecycle component : {}", BookieService.class.getName());
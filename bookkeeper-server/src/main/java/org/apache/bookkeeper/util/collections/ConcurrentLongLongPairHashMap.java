@@ -24,6 +24,8 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +40,10 @@ import java.util.concurrent.locks.StampedLock;
  * no node allocations are required to store the keys and values, and no boxing is required.
  *
  * <p>Keys <strong>MUST</strong> be &gt;= 0.
+ *
+ * <p>When built with an allocator, the tables are stored in direct memory allocated from it instead of the heap,
+ * and the map must be closed to release them. Since a released table can't be read, even optimistically, the
+ * readers of such a map always take the read lock of the section.
  */
 public class ConcurrentLongLongPairHashMap {
 
@@ -75,6 +81,7 @@ public class ConcurrentLongLongPairHashMap {
         float expandFactor = DefaultExpandFactor;
         float shrinkFactor = DefaultShrinkFactor;
         boolean autoShrink = DefaultAutoShrink;
+        ByteBufAllocator allocator = null;
 
         public Builder expectedItems(int expectedItems) {
             this.expectedItems = expectedItems;
@@ -111,9 +118,17 @@ public class ConcurrentLongLongPairHashMap {
             return this;
         }
 
+        /**
+         * Store the tables off heap, in direct buffers from the given allocator.
+         */
+        public Builder offHeap(ByteBufAllocator allocator) {
+            this.allocator = allocator;
+            return this;
+        }
+
         public ConcurrentLongLongPairHashMap build() {
             return new ConcurrentLongLongPairHashMap(expectedItems, concurrencyLevel,
-                    mapFillFactor, mapIdleFactor, autoShrink, expandFactor, shrinkFactor);
+                    mapFillFactor, mapIdleFactor, autoShrink, expandFactor, shrinkFactor, allocator);
         }
     }
 
@@ -151,12 +166,13 @@ public class ConcurrentLongLongPairHashMap {
     @Deprecated
     public ConcurrentLongLongPairHashMap(int expectedItems, int concurrencyLevel) {
         this(expectedItems, concurrencyLevel, DefaultMapFillFactor, DefaultMapIdleFactor,
-                DefaultAutoShrink, DefaultExpandFactor, DefaultShrinkFactor);
+                DefaultAutoShrink, DefaultExpandFactor, DefaultShrinkFactor, null);
     }
 
     private ConcurrentLongLongPairHashMap(int expectedItems, int concurrencyLevel,
                                           float mapFillFactor, float mapIdleFactor,
-                                         boolean autoShrink, float expandFactor, float shrinkFactor) {
+                                         boolean autoShrink, float expandFactor, float shrinkFactor,
+                                         ByteBufAllocator allocator) {
         checkArgument(expectedItems > 0);
         checkArgument(concurrencyLevel > 0);
         checkArgument(expectedItems >= concurrencyLevel);
@@ -173,7 +189,7 @@ public class ConcurrentLongLongPairHashMap {
 
         for (int i = 0; i < numSections; i++) {
             sections[i] = new Section(perSectionCapacity, mapFillFactor, mapIdleFactor,
-                    autoShrink, expandFactor, shrinkFactor);
+                    autoShrink, expandFactor, shrinkFactor, allocator);
         }
     }
 
@@ -188,7 +204,7 @@ public class ConcurrentLongLongPairHashMap {
     public long sizeInBytes() {
         long size = 0;
         for (Section s : sections) {
-            size += (long) s.table.length * Long.BYTES;
+            size += (long) s.table.length() * Long.BYTES;
         }
         return size;
     }
@@ -279,6 +295,15 @@ public class ConcurrentLongLongPairHashMap {
         }
     }
 
+    /**
+     * Release the off heap tables. The map can't be used anymore.
+     */
+    public void close() {
+        for (Section s : sections) {
+            s.close();
+        }
+    }
+
     public void forEach(BiConsumerLongPair processor) {
         for (Section s : sections) {
             s.forEach(processor);
@@ -310,7 +335,9 @@ public class ConcurrentLongLongPairHashMap {
     @SuppressWarnings("serial")
     private static final class Section extends StampedLock {
         // Keys and values are stored interleaved in the table array
-        private volatile long[] table;
+        private volatile LongArray table;
+        // allocator of the off heap tables, or null if they are on heap
+        private final ByteBufAllocator allocator;
 
         private volatile int capacity;
         private final int initCapacity;
@@ -325,10 +352,11 @@ public class ConcurrentLongLongPairHashMap {
         private final boolean autoShrink;
 
         Section(int capacity, float mapFillFactor, float mapIdleFactor, boolean autoShrink,
-                float expandFactor, float shrinkFactor) {
+                float expandFactor, float shrinkFactor, ByteBufAllocator allocator) {
             this.capacity = alignToPowerOfTwo(capacity);
             this.initCapacity = this.capacity;
-            this.table = new long[4 * this.capacity];
+            this.allocator = allocator;
+            this.table = newTable(4 * this.capacity);
             this.size = 0;
             this.usedBuckets = 0;
             this.autoShrink = autoShrink;
@@ -338,21 +366,28 @@ public class ConcurrentLongLongPairHashMap {
             this.shrinkFactor = shrinkFactor;
             this.resizeThresholdUp = (int) (this.capacity * mapFillFactor);
             this.resizeThresholdBelow = (int) (this.capacity * mapIdleFactor);
-            Arrays.fill(table, EmptyKey);
+        }
+
+        private LongArray newTable(int length) {
+            LongArray newTable = allocator != null
+                    ? new DirectLongArray(allocator, length) : new HeapLongArray(length);
+            newTable.fill(EmptyKey);
+            return newTable;
         }
 
         LongPair get(long key1, long key2, int keyHash) {
-            long stamp = tryOptimisticRead();
-            boolean acquiredLock = false;
+            // The off heap tables are released on rehash, so they can't be read optimistically
+            boolean acquiredLock = allocator != null;
+            long stamp = acquiredLock ? readLock() : tryOptimisticRead();
             int bucket = signSafeMod(keyHash, capacity);
 
             try {
                 while (true) {
                     // First try optimistic locking
-                    long storedKey1 = table[bucket];
-                    long storedKey2 = table[bucket + 1];
-                    long storedValue1 = table[bucket + 2];
-                    long storedValue2 = table[bucket + 3];
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
+                    long storedValue1 = table.get(bucket + 2);
+                    long storedValue2 = table.get(bucket + 3);
 
                     if (!acquiredLock && validate(stamp)) {
                         // The values we have read are consistent
@@ -369,10 +404,10 @@ public class ConcurrentLongLongPairHashMap {
                             acquiredLock = true;
 
                             bucket = signSafeMod(keyHash, capacity);
-                            storedKey1 = table[bucket];
-                            storedKey2 = table[bucket + 1];
-                            storedValue1 = table[bucket + 2];
-                            storedValue2 = table[bucket + 3];
+                            storedKey1 = table.get(bucket);
+                            storedKey2 = table.get(bucket + 1);
+                            storedValue1 = table.get(bucket + 2);
+                            storedValue2 = table.get(bucket + 3);
                         }
 
                         if (key1 == storedKey1 && key2 == storedKey2) {
@@ -383,7 +418,7 @@ public class ConcurrentLongLongPairHashMap {
                         }
                     }
 
-                    bucket = (bucket + 4) & (table.length - 1);
+                    bucket = (bucket + 4) & (table.length() - 1);
                 }
             } finally {
                 if (acquiredLock) {
@@ -401,14 +436,14 @@ public class ConcurrentLongLongPairHashMap {
 
             try {
                 while (true) {
-                    long storedKey1 = table[bucket];
-                    long storedKey2 = table[bucket + 1];
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
 
                     if (key1 == storedKey1 && key2 == storedKey2) {
                         if (!onlyIfAbsent) {
                             // Over written an old value for same key
-                            table[bucket + 2] = value1;
-                            table[bucket + 3] = value2;
+                            table.set(bucket + 2, value1);
+                            table.set(bucket + 3, value2);
                             return true;
                         } else {
                             return false;
@@ -422,10 +457,10 @@ public class ConcurrentLongLongPairHashMap {
                             ++usedBuckets;
                         }
 
-                        table[bucket] = key1;
-                        table[bucket + 1] = key2;
-                        table[bucket + 2] = value1;
-                        table[bucket + 3] = value2;
+                        table.set(bucket, key1);
+                        table.set(bucket + 1, key2);
+                        table.set(bucket + 2, value1);
+                        table.set(bucket + 3, value2);
                         ++size;
                         return true;
                     } else if (storedKey1 == DeletedKey) {
@@ -435,7 +470,7 @@ public class ConcurrentLongLongPairHashMap {
                         }
                     }
 
-                    bucket = (bucket + 4) & (table.length - 1);
+                    bucket = (bucket + 4) & (table.length() - 1);
                 }
             } finally {
                 if (usedBuckets > resizeThresholdUp) {
@@ -458,10 +493,10 @@ public class ConcurrentLongLongPairHashMap {
 
             try {
                 while (true) {
-                    long storedKey1 = table[bucket];
-                    long storedKey2 = table[bucket + 1];
-                    long storedValue1 = table[bucket + 2];
-                    long storedValue2 = table[bucket + 3];
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
+                    long storedValue1 = table.get(bucket + 2);
+                    long storedValue2 = table.get(bucket + 3);
                     if (key1 == storedKey1 && key2 == storedKey2) {
                         if (value1 == ValueNotFound || (value1 == storedValue1 && value2 == storedValue2)) {
                             --size;
@@ -476,7 +511,7 @@ public class ConcurrentLongLongPairHashMap {
                         return false;
                     }
 
-                    bucket = (bucket + 4) & (table.length - 1);
+                    bucket = (bucket + 4) & (table.length() - 1);
                 }
 
             } finally {
@@ -502,31 +537,31 @@ public class ConcurrentLongLongPairHashMap {
         }
 
         private void cleanBucket(int bucket) {
-            int nextInArray = (bucket + 4) & (table.length - 1);
-            if (table[nextInArray] == EmptyKey) {
-                table[bucket] = EmptyKey;
-                table[bucket + 1] = EmptyKey;
-                table[bucket + 2] = ValueNotFound;
-                table[bucket + 3] = ValueNotFound;
+            int nextInArray = (bucket + 4) & (table.length() - 1);
+            if (table.get(nextInArray) == EmptyKey) {
+                table.set(bucket, EmptyKey);
+                table.set(bucket + 1, EmptyKey);
+                table.set(bucket + 2, ValueNotFound);
+                table.set(bucket + 3, ValueNotFound);
                 --usedBuckets;
 
                 // Cleanup all the buckets that were in `DeletedKey` state,
                 // so that we can reduce unnecessary expansions
-                bucket = (bucket - 4) & (table.length - 1);
-                while (table[bucket] == DeletedKey) {
-                    table[bucket] = EmptyKey;
-                    table[bucket + 1] = EmptyKey;
-                    table[bucket + 2] = ValueNotFound;
-                    table[bucket + 3] = ValueNotFound;
+                bucket = (bucket - 4) & (table.length() - 1);
+                while (table.get(bucket) == DeletedKey) {
+                    table.set(bucket, EmptyKey);
+                    table.set(bucket + 1, EmptyKey);
+                    table.set(bucket + 2, ValueNotFound);
+                    table.set(bucket + 3, ValueNotFound);
                     --usedBuckets;
 
-                    bucket = (bucket - 4) & (table.length - 1);
+                    bucket = (bucket - 4) & (table.length() - 1);
                 }
             } else {
-                table[bucket] = DeletedKey;
-                table[bucket + 1] = DeletedKey;
-                table[bucket + 2] = ValueNotFound;
-                table[bucket + 3] = ValueNotFound;
+                table.set(bucket, DeletedKey);
+                table.set(bucket + 1, DeletedKey);
+                table.set(bucket + 2, ValueNotFound);
+                table.set(bucket + 3, ValueNotFound);
             }
         }
 
@@ -537,7 +572,7 @@ public class ConcurrentLongLongPairHashMap {
                 if (autoShrink && capacity > initCapacity) {
                     shrinkToInitCapacity();
                 } else {
-                    Arrays.fill(table, EmptyKey);
+                    table.fill(EmptyKey);
                     this.size = 0;
                     this.usedBuckets = 0;
                 }
@@ -546,11 +581,20 @@ public class ConcurrentLongLongPairHashMap {
             }
         }
 
+        void close() {
+            long stamp = writeLock();
+            try {
+                table.release();
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
         public void forEach(BiConsumerLongPair processor) {
-            long stamp = tryOptimisticRead();
+            boolean acquiredReadLock = allocator != null;
+            long stamp = acquiredReadLock ? readLock() : tryOptimisticRead();
 
-            long[] table = this.table;
-            boolean acquiredReadLock = false;
+            LongArray table = this.table;
 
             try {
 
@@ -563,21 +607,21 @@ public class ConcurrentLongLongPairHashMap {
                 }
 
                 // Go through all the buckets for this section
-                for (int bucket = 0; bucket < table.length; bucket += 4) {
-                    long storedKey1 = table[bucket];
-                    long storedKey2 = table[bucket + 1];
-                    long storedValue1 = table[bucket + 2];
-                    long storedValue2 = table[bucket + 3];
+                for (int bucket = 0; bucket < table.length(); bucket += 4) {
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
+                    long storedValue1 = table.get(bucket + 2);
+                    long storedValue2 = table.get(bucket + 3);
 
                     if (!acquiredReadLock && !validate(stamp)) {
                         // Fallback to acquiring read lock
                         stamp = readLock();
                         acquiredReadLock = true;
 
-                        storedKey1 = table[bucket];
-                        storedKey2 = table[bucket + 1];
-                        storedValue1 = table[bucket + 2];
-                        storedValue2 = table[bucket + 3];
+                        storedKey1 = table.get(bucket);
+                        storedKey2 = table.get(bucket + 1);
+                        storedValue1 = table.get(bucket + 2);
+                        storedValue2 = table.get(bucket + 3);
                     }
 
                     if (storedKey1 != DeletedKey && storedKey1 != EmptyKey) {
@@ -592,21 +636,22 @@ public class ConcurrentLongLongPairHashMap {
         }
 
         private void rehash(int newCapacity) {
-            long[] newTable = new long[4 * newCapacity];
-            Arrays.fill(newTable, EmptyKey);
+            LongArray newTable = newTable(4 * newCapacity);
 
             // Re-hash table
-            for (int i = 0; i < table.length; i += 4) {
-                long storedKey1 = table[i];
-                long storedKey2 = table[i + 1];
-                long storedValue1 = table[i + 2];
-                long storedValue2 = table[i + 3];
+            for (int i = 0; i < table.length(); i += 4) {
+                long storedKey1 = table.get(i);
+                long storedKey2 = table.get(i + 1);
+                long storedValue1 = table.get(i + 2);
+                long storedValue2 = table.get(i + 3);
                 if (storedKey1 != EmptyKey && storedKey1 != DeletedKey) {
                     insertKeyValueNoLock(newTable, newCapacity, storedKey1, storedKey2, storedValue1, storedValue2);
                 }
             }
 
+            LongArray oldTable = table;
             table = newTable;
+            oldTable.release();
             usedBuckets = size;
             // Capacity needs to be updated after the values, so that we won't see
             // a capacity value bigger than the actual array size
@@ -616,10 +661,11 @@ public class ConcurrentLongLongPairHashMap {
         }
 
         private void shrinkToInitCapacity() {
-            long[] newTable = new long[4 * initCapacity];
-            Arrays.fill(newTable, EmptyKey);
+            LongArray newTable = newTable(4 * initCapacity);
 
+            LongArray oldTable = table;
             table = newTable;
+            oldTable.release();
             size = 0;
             usedBuckets = 0;
             // Capacity needs to be updated after the values, so that we won't see
@@ -629,25 +675,104 @@ public class ConcurrentLongLongPairHashMap {
             resizeThresholdBelow = (int) (capacity * mapIdleFactor);
         }
 
-        private static void insertKeyValueNoLock(long[] table, int capacity, long key1, long key2, long value1,
+        private static void insertKeyValueNoLock(LongArray table, int capacity, long key1, long key2, long value1,
                 long value2) {
             int bucket = signSafeMod(hash(key1, key2), capacity);
 
             while (true) {
-                long storedKey1 = table[bucket];
+                long storedKey1 = table.get(bucket);
 
                 if (storedKey1 == EmptyKey) {
                     // The bucket is empty, so we can use it
-                    table[bucket] = key1;
-                    table[bucket + 1] = key2;
-                    table[bucket + 2] = value1;
-                    table[bucket + 3] = value2;
+                    table.set(bucket, key1);
+                    table.set(bucket + 1, key2);
+                    table.set(bucket + 2, value1);
+                    table.set(bucket + 3, value2);
                     return;
                 }
 
-                bucket = (bucket + 4) & (table.length - 1);
+                bucket = (bucket + 4) & (table.length() - 1);
+            }
+        }
+    }
+
+    // Array of longs, on heap or off heap
+    private abstract static class LongArray {
+        abstract long get(int index);
+
+        abstract void set(int index, long value);
+
+        abstract int length();
+
+        abstract void fill(long value);
+
+        void release() {
+        }
+    }
+
+    private static final class HeapLongArray extends LongArray {
+        private final long[] array;
+
+        HeapLongArray(int length) {
+            this.array = new long[length];
+        }
+
+        @Override
+        long get(int index) {
+            return array[index];
+        }
+
+        @Override
+        void set(int index, long value) {
+            array[index] = value;
+        }
+
+        @Override
+        int length() {
+            return array.length;
+        }
+
+        @Override
+        void fill(long value) {
+            Arrays.fill(array, value);
+        }
+    }
+
+    private static final class DirectLongArray extends LongArray {
+        private final ByteBuf buffer;
+        private final int length;
+
+        DirectLongArray(ByteBufAllocator allocator, int length) {
+            this.buffer = allocator.directBuffer(length * Long.BYTES, length * Long.BYTES);
+            this.length = length;
+        }
+
+        @Override
+        long get(int index) {
+            return buffer.getLong(index << 3);
+        }
+
+        @Override
+        void set(int index, long value) {
+            buffer.setLong(index << 3, value);
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        void fill(long value) {
+            for (int i = 0; i < length; i++) {
+                buffer.setLong(i << 3, value);
             }
         }
+
+        @Override
+        void release() {
+            buffer.release();
+        }
     }
 
     private static final long HashMixer = 0xc6a4a7935bd1e995L;
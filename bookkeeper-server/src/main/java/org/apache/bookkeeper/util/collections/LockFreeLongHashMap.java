@@ -0,0 +1,620 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.bookkeeper.util.collections.ConcurrentLongHashMap.hash;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap.EntryProcessor;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap.LongObjectPredicate;
+
+/**
+ * Map from long to an Object, without locks.
+ *
+ * <p>Provides the same methods as {@link ConcurrentLongHashMap}, with these differences:
+ * <ol>
+ * <li>Readers and writers never take a lock: the keys and values of the open hash table are
+ * claimed and updated with CAS, so a writer never blocks the readers or the other writers.
+ * <li>The table is resized incrementally: once a bigger table is allocated, the threads updating
+ * the map copy a chunk of the old table each before their own operation, and the new table
+ * replaces the old one when all the entries are copied. Meanwhile, the entries being copied are
+ * read from the new table.
+ * <li>{@link #computeIfAbsent(long, LongFunction)} may call the provider for a key concurrently in
+ * several threads, in which case only one of the values is kept.
+ * <li>{@link #forEach(EntryProcessor)} is weakly consistent, and {@link #clear()} removes the
+ * entries one at a time.
+ * </ol>
+ *
+ * <p>The key 0 marks the empty slots of the table, so its value is held out of the table.
+ *
+ * @param <V>
+ */
+@SuppressWarnings("unchecked")
+public class LockFreeLongHashMap<V> {
+
+    private static final long EmptyKey = 0;
+    private static final Object DeletedValue = new Object();
+    // value of a slot fully copied to the new table, or killed before being used
+    private static final Prime CopiedValue = new Prime(DeletedValue);
+    // expected value of an unconditional update
+    private static final Object AnyValue = new Object();
+
+    private static final int DefaultExpectedItems = 256;
+    private static final int DefaultConcurrencyLevel = 16;
+
+    private static final float DefaultMapFillFactor = 0.66f;
+    private static final float DefaultMapIdleFactor = 0.15f;
+
+    private static final float DefaultExpandFactor = 2;
+    private static final float DefaultShrinkFactor = 2;
+
+    private static final boolean DefaultAutoShrink = false;
+
+    private static final int MinCapacity = 16;
+    private static final int CopyChunkSize = 1024;
+    private static final int MinReprobes = 10;
+
+    private static final AtomicReferenceFieldUpdater<LockFreeLongHashMap, Table> TABLE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(LockFreeLongHashMap.class, Table.class, "table");
+
+    public static <V> Builder<V> newBuilder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Builder of LockFreeLongHashMap.
+     */
+    public static class Builder<T> {
+        int expectedItems = DefaultExpectedItems;
+        int concurrencyLevel = DefaultConcurrencyLevel;
+        float mapFillFactor = DefaultMapFillFactor;
+        float mapIdleFactor = DefaultMapIdleFactor;
+        float expandFactor = DefaultExpandFactor;
+        float shrinkFactor = DefaultShrinkFactor;
+        boolean autoShrink = DefaultAutoShrink;
+
+        public Builder<T> expectedItems(int expectedItems) {
+            this.expectedItems = expectedItems;
+            return this;
+        }
+
+        /**
+         * Only validated, for compatibility with {@link ConcurrentLongHashMap.Builder}, since the
+         * map is not split into sections.
+         */
+        public Builder<T> concurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        public Builder<T> mapFillFactor(float mapFillFactor) {
+            this.mapFillFactor = mapFillFactor;
+            return this;
+        }
+
+        public Builder<T> mapIdleFactor(float mapIdleFactor) {
+            this.mapIdleFactor = mapIdleFactor;
+            return this;
+        }
+
+        public Builder<T> expandFactor(float expandFactor) {
+            this.expandFactor = expandFactor;
+            return this;
+        }
+
+        public Builder<T> shrinkFactor(float shrinkFactor) {
+            this.shrinkFactor = shrinkFactor;
+            return this;
+        }
+
+        public Builder<T> autoShrink(boolean autoShrink) {
+            this.autoShrink = autoShrink;
+            return this;
+        }
+
+        public LockFreeLongHashMap<T> build() {
+            return new LockFreeLongHashMap<>(expectedItems, concurrencyLevel,
+                    mapFillFactor, mapIdleFactor, autoShrink, expandFactor, shrinkFactor);
+        }
+    }
+
+    private volatile Table table;
+    private final AtomicReference<Object> emptyKeyValue = new AtomicReference<>();
+    private final LongAdder size = new LongAdder();
+
+    private final int initCapacity;
+    private final float mapFillFactor;
+    private final float mapIdleFactor;
+    private final float expandFactor;
+    private final float shrinkFactor;
+    private final boolean autoShrink;
+
+    public LockFreeLongHashMap(int expectedItems, int concurrencyLevel,
+                               float mapFillFactor, float mapIdleFactor,
+                               boolean autoShrink, float expandFactor, float shrinkFactor) {
+        checkArgument(expectedItems > 0);
+        checkArgument(concurrencyLevel > 0);
+        checkArgument(expectedItems >= concurrencyLevel);
+        checkArgument(mapFillFactor > 0 && mapFillFactor < 1);
+        checkArgument(mapIdleFactor > 0 && mapIdleFactor < 1);
+        checkArgument(mapFillFactor > mapIdleFactor);
+        checkArgument(expandFactor > 1);
+        checkArgument(shrinkFactor > 1);
+
+        this.initCapacity = Math.max(MinCapacity, alignToPowerOfTwo((int) (expectedItems / mapFillFactor)));
+        this.mapFillFactor = mapFillFactor;
+        this.mapIdleFactor = mapIdleFactor;
+        this.expandFactor = expandFactor;
+        this.shrinkFactor = shrinkFactor;
+        this.autoShrink = autoShrink;
+        this.table = new Table(initCapacity, mapFillFactor, mapIdleFactor);
+    }
+
+    public long size() {
+        return Math.max(0, size.sum());
+    }
+
+    public long capacity() {
+        return table.capacity;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public V get(long key) {
+        if (key == EmptyKey) {
+            return (V) emptyKeyValue.get();
+        }
+        return (V) get(table, key, hash(key));
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public V put(long key, V value) {
+        checkNotNull(value);
+        return (V) update(key, value, AnyValue);
+    }
+
+    public V putIfAbsent(long key, V value) {
+        checkNotNull(value);
+        return (V) update(key, value, DeletedValue);
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> provider) {
+        checkNotNull(provider);
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = provider.apply(key);
+        V storedValue = putIfAbsent(key, value);
+        return storedValue != null ? storedValue : value;
+    }
+
+    public V remove(long key) {
+        return (V) update(key, DeletedValue, AnyValue);
+    }
+
+    public boolean remove(long key, Object value) {
+        checkNotNull(value);
+        Object storedValue = update(key, DeletedValue, value);
+        return storedValue != null && (storedValue == value || storedValue.equals(value));
+    }
+
+    public int removeIf(LongObjectPredicate<V> predicate) {
+        checkNotNull(predicate);
+
+        AtomicInteger removedCount = new AtomicInteger();
+        forEach((key, value) -> {
+            if (predicate.test(key, value) && remove(key, value)) {
+                removedCount.incrementAndGet();
+            }
+        });
+        return removedCount.get();
+    }
+
+    public void clear() {
+        removeIf((key, value) -> true);
+    }
+
+    public void forEach(EntryProcessor<V> processor) {
+        Object emptyKeyValue = this.emptyKeyValue.get();
+        if (emptyKeyValue != null) {
+            processor.accept(EmptyKey, (V) emptyKeyValue);
+        }
+
+        // Complete the resize in progress, since entries could only be in the new table
+        Table t = table;
+        while (t.next != null) {
+            copyAll(t);
+            t = table;
+        }
+
+        for (int idx = 0; idx < t.capacity; idx++) {
+            long storedKey = t.keys.get(idx);
+            if (storedKey == EmptyKey) {
+                continue;
+            }
+            Object storedValue = t.values.get(idx);
+            if (storedValue instanceof Prime) {
+                // Copied to a new table after the iteration started
+                storedValue = get(storedKey);
+            }
+            if (storedValue != null && storedValue != DeletedValue) {
+                processor.accept(storedKey, (V) storedValue);
+            }
+        }
+    }
+
+    /**
+     * @return a new list of all keys (makes a copy)
+     */
+    public List<Long> keys() {
+        List<Long> keys = Lists.newArrayListWithExpectedSize((int) size());
+        forEach((key, value) -> keys.add(key));
+        return keys;
+    }
+
+    /**
+     * @return a new list of all values (makes a copy)
+     */
+    public List<V> values() {
+        List<V> values = Lists.newArrayListWithExpectedSize((int) size());
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    private Object get(Table t, long key, long keyHash) {
+        while (true) {
+            int bucket = (int) keyHash & t.mask;
+            int reprobes = 0;
+            Table next = null;
+
+            while (true) {
+                long storedKey = t.keys.get(bucket);
+                if (storedKey == EmptyKey) {
+                    // Not found, the key would have claimed this slot before going to a new table
+                    return null;
+                }
+                if (storedKey == key) {
+                    Object storedValue = t.values.get(bucket);
+                    if (!(storedValue instanceof Prime)) {
+                        return storedValue != DeletedValue ? storedValue : null;
+                    }
+                    // The entry is being copied to the new table
+                    next = copySlotAndCheck(t, bucket);
+                    break;
+                }
+                if (++reprobes >= t.reprobeLimit) {
+                    // Not found, unless it was put in the new table because this one was too crowded
+                    next = t.next;
+                    if (next == null) {
+                        return null;
+                    }
+                    break;
+                }
+                bucket = (bucket + 1) & t.mask;
+            }
+
+            t = next;
+        }
+    }
+
+    private Object update(long key, Object value, Object expectedValue) {
+        if (key == EmptyKey) {
+            return updateEmptyKey(value, expectedValue);
+        }
+
+        Table t = table;
+        if (t.next != null) {
+            // Help the resize in progress before adding to it
+            helpCopy(t);
+            t = table;
+        }
+        Object previousValue = putIfMatch(t, key, hash(key), value, expectedValue);
+        return previousValue != DeletedValue ? previousValue : null;
+    }
+
+    private Object updateEmptyKey(Object value, Object expectedValue) {
+        Object newValue = value != DeletedValue ? value : null;
+        while (true) {
+            Object storedValue = emptyKeyValue.get();
+            if (expectedValue == DeletedValue) {
+                if (storedValue != null) {
+                    return storedValue;
+                }
+            } else if (expectedValue != AnyValue
+                    && (storedValue == null || !(storedValue == expectedValue || storedValue.equals(expectedValue)))) {
+                return storedValue;
+            }
+            if (storedValue == newValue) {
+                return storedValue;
+            }
+            if (emptyKeyValue.compareAndSet(storedValue, newValue)) {
+                if (storedValue == null) {
+                    size.increment();
+                } else if (newValue == null) {
+                    size.decrement();
+                }
+                return storedValue;
+            }
+        }
+    }
+
+    /**
+     * Update the value of a key in a table, or in the new tables if it is being resized.
+     *
+     * @param value the new value, or {@code DeletedValue} to remove the key
+     * @param expectedValue {@code AnyValue} to update unconditionally, {@code DeletedValue} to
+     *                      update only if the key is absent, null to update only if the key was
+     *                      never in the table (when copying it from the old table), or the value
+     *                      the key must have
+     * @return the previous value, or the current value if it didn't match
+     */
+    private Object putIfMatch(Table t, long key, long keyHash, Object value, Object expectedValue) {
+        int bucket = (int) keyHash & t.mask;
+        int reprobes = 0;
+
+        // Find the slot of the key, or claim an empty one
+        while (true) {
+            long storedKey = t.keys.get(bucket);
+            if (storedKey == EmptyKey) {
+                if (value == DeletedValue
+                        || (expectedValue != AnyValue && expectedValue != DeletedValue && expectedValue != null)) {
+                    // Nothing to remove or to match
+                    return null;
+                }
+                if (t.keys.compareAndSet(bucket, EmptyKey, key)) {
+                    t.usedSlots.incrementAndGet();
+                    break;
+                }
+                storedKey = t.keys.get(bucket);
+            }
+            if (storedKey == key) {
+                break;
+            }
+            if (++reprobes >= t.reprobeLimit) {
+                // The table is too crowded around this key
+                Table next = t.next;
+                if (next == null) {
+                    if (value == DeletedValue || (expectedValue != AnyValue && expectedValue != DeletedValue
+                            && expectedValue != null)) {
+                        return null;
+                    }
+                    next = resize(t);
+                }
+                return putIfMatch(next, key, keyHash, value, expectedValue);
+            }
+            bucket = (bucket + 1) & t.mask;
+        }
+
+        while (true) {
+            Object storedValue = t.values.get(bucket);
+            Table next = t.next;
+            if (next == null && storedValue == null && t.usedSlots.get() > t.resizeThreshold) {
+                next = resize(t);
+            }
+            if (next != null || storedValue instanceof Prime) {
+                // Move the entry to the new table before updating it there
+                return putIfMatch(copySlotAndCheck(t, bucket), key, keyHash, value, expectedValue);
+            }
+
+            boolean absent = storedValue == null || storedValue == DeletedValue;
+            if (expectedValue == null) {
+                if (storedValue != null) {
+                    return storedValue;
+                }
+            } else if (expectedValue == DeletedValue) {
+                if (!absent) {
+                    return storedValue;
+                }
+            } else if (expectedValue != AnyValue) {
+                if (absent || !(storedValue == expectedValue || storedValue.equals(expectedValue))) {
+                    return storedValue;
+                }
+            }
+            if (absent && value == DeletedValue) {
+                return storedValue;
+            }
+
+            if (t.values.compareAndSet(bucket, storedValue, value)) {
+                if (expectedValue != null) {
+                    if (absent) {
+                        size.increment();
+                    } else if (value == DeletedValue) {
+                        size.decrement();
+                        if (autoShrink && size.sum() < t.shrinkThreshold && t.capacity > initCapacity) {
+                            resize(t);
+                        }
+                    }
+                }
+                return storedValue;
+            }
+        }
+    }
+
+    private Table resize(Table t) {
+        Table next = t.next;
+        if (next != null) {
+            return next;
+        }
+
+        long liveSize = Math.max(0, size.sum());
+        int capacity = t.capacity;
+        int newCapacity;
+        if (liveSize >= t.resizeThreshold / 2) {
+            newCapacity = alignToPowerOfTwo((int) (capacity * expandFactor));
+        } else if (autoShrink && liveSize < t.shrinkThreshold) {
+            // Shrinking must at least ensure initCapacity, so as to avoid frequent shrinking and
+            // expansion near initCapacity
+            newCapacity = Math.max(alignToPowerOfTwo((int) (capacity / shrinkFactor)), initCapacity);
+        } else {
+            // Mostly deleted entries, rehash them away
+            newCapacity = capacity;
+        }
+        while ((int) (newCapacity * mapFillFactor) <= liveSize) {
+            newCapacity *= 2;
+        }
+
+        Table newTable = new Table(newCapacity, mapFillFactor, mapIdleFactor);
+        if (Table.NEXT_UPDATER.compareAndSet(t, null, newTable)) {
+            return newTable;
+        }
+        return t.next;
+    }
+
+    private void helpCopy(Table t) {
+        int capacity = t.capacity;
+        if (t.copyIndex.get() >= capacity) {
+            // All the chunks are claimed
+            return;
+        }
+        int start = t.copyIndex.getAndAdd(CopyChunkSize);
+        int end = Math.min(start + CopyChunkSize, capacity);
+        int copied = 0;
+        for (int idx = start; idx < end; idx++) {
+            if (copySlot(t, idx)) {
+                copied++;
+            }
+        }
+        copyDone(t, copied);
+    }
+
+    private void copyAll(Table t) {
+        int copied = 0;
+        for (int idx = 0; idx < t.capacity; idx++) {
+            if (copySlot(t, idx)) {
+                copied++;
+            }
+        }
+        copyDone(t, copied);
+    }
+
+    private Table copySlotAndCheck(Table t, int idx) {
+        if (copySlot(t, idx)) {
+            copyDone(t, 1);
+        }
+        return t.next;
+    }
+
+    private void copyDone(Table t, int copied) {
+        if (copied > 0) {
+            t.copyDone.addAndGet(copied);
+        }
+        // Promote the new tables whose copy is complete
+        while (t.copyDone.get() == t.capacity && TABLE_UPDATER.compareAndSet(this, t, t.next)) {
+            t = t.next;
+        }
+    }
+
+    /**
+     * Copy a slot of a table being resized to the new table.
+     *
+     * @return whether this call completed the copy of the slot
+     */
+    private boolean copySlot(Table t, int idx) {
+        // Box the value, so that it can't be updated anymore in this table
+        Object storedValue = t.values.get(idx);
+        while (!(storedValue instanceof Prime)) {
+            Prime boxed = storedValue == null || storedValue == DeletedValue
+                    ? CopiedValue : new Prime(storedValue);
+            if (t.values.compareAndSet(idx, storedValue, boxed)) {
+                if (boxed == CopiedValue) {
+                    // Nothing to copy
+                    return true;
+                }
+                storedValue = boxed;
+                break;
+            }
+            storedValue = t.values.get(idx);
+        }
+        if (storedValue == CopiedValue) {
+            return false;
+        }
+
+        // Copy it, unless the new table already has a newer value
+        long key = t.keys.get(idx);
+        putIfMatch(t.next, key, hash(key), ((Prime) storedValue).value, null);
+
+        while (storedValue != CopiedValue) {
+            if (t.values.compareAndSet(idx, storedValue, CopiedValue)) {
+                return true;
+            }
+            storedValue = t.values.get(idx);
+        }
+        return false;
+    }
+
+    private static final class Prime {
+        final Object value;
+
+        Prime(Object value) {
+            this.value = value;
+        }
+    }
+
+    private static final class Table {
+        static final AtomicReferenceFieldUpdater<Table, Table> NEXT_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "next");
+
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<Object> values;
+        final int capacity;
+        final int mask;
+        final int reprobeLimit;
+        final int resizeThreshold;
+        final int shrinkThreshold;
+        // slots with a key, including the deleted ones
+        final AtomicInteger usedSlots = new AtomicInteger();
+
+        // table the entries are being copied to
+        volatile Table next;
+        final AtomicInteger copyIndex = new AtomicInteger();
+        final AtomicInteger copyDone = new AtomicInteger();
+
+        Table(int capacity, float mapFillFactor, float mapIdleFactor) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.reprobeLimit = MinReprobes + (capacity >> 2);
+            this.resizeThreshold = (int) (capacity * mapFillFactor);
+            this.shrinkThreshold = (int) (capacity * mapIdleFactor);
+        }
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+}
@@ -0,0 +1,60 @@
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+import org.junit.Test;
+
+public class CheckpointSourceListTest {
+
+    private static class RecordingCheckpointSource implements CheckpointSource {
+        Map<Long, Long> flushedEntries;
+
+        @Override
+        public Checkpoint newCheckpoint() {
+            return Checkpoint.MIN;
+        }
+
+        @Override
+        public void checkpointComplete(Checkpoint checkpoint, boolean compact) {
+        }
+
+        @Override
+        public void entriesFlushed(Checkpoint checkpoint, ConcurrentLongLongHashMap lastFlushedEntries) {
+            flushedEntries = new HashMap<>();
+            lastFlushedEntries.forEach(flushedEntries::put);
+        }
+    }
+
+    @Test
+    public void entriesFlushedToOwningJournalTest() {
+        List<RecordingCheckpointSource> journals = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            journals.add(new RecordingCheckpointSource());
+        }
+        CheckpointSourceList checkpointSource = new CheckpointSourceList(journals);
+        Checkpoint checkpoint = checkpointSource.newCheckpoint();
+
+        ConcurrentLongLongHashMap lastFlushedEntries = ConcurrentLongLongHashMap.newBuilder().build();
+        lastFlushedEntries.put(3, 10);
+        lastFlushedEntries.put(6, 11);
+        lastFlushedEntries.put(4, 12);
+        checkpointSource.entriesFlushed(checkpoint, lastFlushedEntries);
+
+        Map<Long, Long> first = new HashMap<>();
+        first.put(3L, 10L);
+        first.put(6L, 11L);
+        assertEquals(first, journals.get(0).flushedEntries);
+        Map<Long, Long> second = new HashMap<>();
+        second.put(4L, 12L);
+        assertEquals(second, journals.get(1).flushedEntries);
+        // no ledger of the last journal was flushed
+        assertNull(journals.get(2).flushedEntries);
+    }
+}
@@ -0,0 +1,76 @@
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalPriorityTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private static ByteBuf entry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(64);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeZero(48);
+        return entry;
+    }
+
+    @Test
+    public void highPriorityEntriesAreWrittenFirstTest() throws Exception {
+        File journalDir = tmpDir.newFolder();
+        File ledgerDir = tmpDir.newFolder();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath())
+                .setLedgerDirNames(new String[] { ledgerDir.getPath() })
+                .setMetadataServiceUri(null);
+        conf.setJournalSyncData(false);
+        conf.setJournalRemovePagesFromCache(false);
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        Journal journal = new Journal(0, BookieImpl.getCurrentDirectory(journalDir), conf, ledgerDirsManager);
+
+        List<Long> written = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(6);
+        WriteCallback cb = (rc, ledgerId, entryId, addr, ctx) -> {
+            written.add(ledgerId);
+            latch.countDown();
+        };
+        // queued before the journal thread starts, so that they are all waiting in the queue
+        for (int i = 0; i < 5; i++) {
+            journal.logAddEntry(entry(1, i), false, cb, null);
+        }
+        journal.logAddEntry(entry(2, 0), false, true, cb, null);
+
+        journal.start();
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(Long.valueOf(2), written.get(0));
+
+            // a high priority entry wakes up an idle journal
+            CountDownLatch idleLatch = new CountDownLatch(1);
+            journal.logAddEntry(entry(3, 0), false, true,
+                    (rc, ledgerId, entryId, addr, ctx) -> idleLatch.countDown(), null);
+            assertTrue(idleLatch.await(10, TimeUnit.SECONDS));
+        } finally {
+            journal.shutdown();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalReplayIndexTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private static ConcurrentLongLongHashMap flushed(long... ledgerAndEntryIds) {
+        ConcurrentLongLongHashMap map = ConcurrentLongLongHashMap.newBuilder().build();
+        for (int i = 0; i < ledgerAndEntryIds.length; i += 2) {
+            map.put(ledgerAndEntryIds[i], ledgerAndEntryIds[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void skipPersistedEntriesTest() throws IOException {
+        File journalDir = tmpDir.newFolder();
+        JournalReplayIndex.append(journalDir, new LogMark(5, 1000), flushed(1, 10, 2, 3));
+        JournalReplayIndex.append(journalDir, new LogMark(6, 200), flushed(1, 20));
+
+        JournalReplayIndex index = JournalReplayIndex.load(journalDir, 5);
+        assertTrue(index.isPersisted(5, 500, 1, 5));
+        assertTrue(index.isPersisted(6, 100, 1, 15));
+        // after the checkpoint position
+        assertFalse(index.isPersisted(6, 200, 1, 15));
+        assertFalse(index.isPersisted(5, 1000, 2, 3));
+        // entry not flushed, unknown ledger and special entries
+        assertFalse(index.isPersisted(5, 500, 2, 4));
+        assertFalse(index.isPersisted(5, 500, 3, 0));
+        assertFalse(index.isPersisted(5, 500, 1, -1));
+        assertEquals(2, index.getSkippedEntries());
+
+        // index files before the last log mark are ignored
+        assertFalse(JournalReplayIndex.load(journalDir, 6).isPersisted(5, 500, 2, 1));
+
+        JournalReplayIndex.deleteIndexFilesBefore(journalDir, 6);
+        assertFalse(JournalReplayIndex.getIndexFile(journalDir, 5).exists());
+        assertTrue(JournalReplayIndex.getIndexFile(journalDir, 6).exists());
+    }
+
+    @Test
+    public void tornRecordIsIgnoredTest() throws IOException {
+        File journalDir = tmpDir.newFolder();
+        JournalReplayIndex.append(journalDir, new LogMark(5, 1000), flushed(1, 10));
+        try (FileOutputStream fos = new FileOutputStream(JournalReplayIndex.getIndexFile(journalDir, 5), true)) {
+            fos.write(new byte[] { 0x4A, 0x52, 0x49, 0x58, 0, 0, 0 });
+        }
+
+        JournalReplayIndex index = JournalReplayIndex.load(journalDir, 5);
+        assertTrue(index.isPersisted(5, 10, 1, 10));
+        assertFalse(index.isPersisted(5, 10, 2, 10));
+    }
+}
@@ -0,0 +1,145 @@
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedEntryLogsTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private File writeLog(int ints) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(ints * 4);
+        for (int i = 0; i < ints; i++) {
+            content.putInt(i);
+        }
+        File file = tmpDir.newFile();
+        Files.write(file.toPath(), content.array());
+        return file;
+    }
+
+    private static MappedEntryLogs newMappedEntryLogs(File file) {
+        return new MappedEntryLogs(logId -> {
+            if (!file.exists()) {
+                throw new FileNotFoundException(file.getPath());
+            }
+            return file;
+        });
+    }
+
+    @Test
+    public void mappedReadTest() throws Exception {
+        File file = writeLog(1024);
+        MappedEntryLogs mappedEntryLogs = newMappedEntryLogs(file);
+
+        ByteBuf mapping = mappedEntryLogs.acquire(1);
+        assertEquals(file.length(), mapping.capacity());
+        ByteBuf entry = mapping.retainedSlice(400, 8);
+        mapping.release();
+        assertEquals(100, entry.getInt(0));
+        assertEquals(101, entry.getInt(4));
+
+        // the mapping can't be used to modify the entry log
+        assertTrue(entry.isReadOnly());
+        try {
+            entry.setInt(0, 42);
+            fail("the entries are read-only");
+        } catch (ReadOnlyBufferException e) {
+            // expected
+        }
+        assertEquals(100, ByteBuffer.wrap(Files.readAllBytes(file.toPath())).getInt(400));
+
+        entry.release();
+        mappedEntryLogs.close();
+    }
+
+    @Test
+    public void unmapAfterRemoveTest() throws Exception {
+        File file = writeLog(1024);
+        MappedEntryLogs mappedEntryLogs = newMappedEntryLogs(file);
+
+        ByteBuf mapping = mappedEntryLogs.acquire(1);
+        ByteBuf entry = mapping.retainedSlice(0, 4);
+        mapping.release();
+
+        // the entry log is garbage collected while an entry is still being sent
+        assertTrue(file.delete());
+        mappedEntryLogs.remove(1);
+        assertEquals(0, entry.getInt(0));
+        assertEquals(1, entry.refCnt());
+        try {
+            mappedEntryLogs.acquire(1);
+            fail("the removed entry log is not mapped again");
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+
+        // the file is unmapped with the last entry
+        assertTrue(entry.release());
+        assertEquals(0, entry.refCnt());
+    }
+
+    @Test
+    public void concurrentReadsAndRemoveTest() throws Exception {
+        File file = writeLog(1024);
+        MappedEntryLogs mappedEntryLogs = newMappedEntryLogs(file);
+        ByteBuf held = mappedEntryLogs.acquire(1);
+
+        CountDownLatch started = new CountDownLatch(4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                started.countDown();
+                try {
+                    while (true) {
+                        ByteBuf mapping = mappedEntryLogs.acquire(1);
+                        if (mapping == null) {
+                            throw new IllegalStateException("the entry log is mappable");
+                        }
+                        try {
+                            assertEquals(1023, mapping.getInt(4092));
+                        } finally {
+                            mapping.release();
+                        }
+                    }
+                } catch (FileNotFoundException e) {
+                    // the entry log was removed
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        started.await();
+
+        assertTrue(file.delete());
+        mappedEntryLogs.remove(1);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+
+        // every acquired mapping was released, the one held here is the last reference
+        assertEquals(1, held.refCnt());
+        assertTrue(held.release());
+    }
+}
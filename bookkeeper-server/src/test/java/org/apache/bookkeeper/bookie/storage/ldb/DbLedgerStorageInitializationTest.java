@@ -0,0 +1,96 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.junit.Test;
+
+public class DbLedgerStorageInitializationTest {
+
+    private final List<SingleDirectoryDbLedgerStorage> storages = new ArrayList<>();
+    private final List<EntryLogger> entryLoggers = new ArrayList<>();
+    private final List<Callable<SingleDirectoryDbLedgerStorage>> initializers = new ArrayList<>();
+
+    private void addDirectory(Callable<SingleDirectoryDbLedgerStorage> initializer) {
+        initializers.add(initializer);
+        entryLoggers.add(mock(EntryLogger.class));
+    }
+
+    private void addDirectory() {
+        SingleDirectoryDbLedgerStorage storage = mock(SingleDirectoryDbLedgerStorage.class);
+        storages.add(storage);
+        addDirectory(() -> storage);
+    }
+
+    @Test
+    public void initializeInOrderTest() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            addDirectory();
+        }
+        for (boolean parallel : new boolean[] { false, true }) {
+            assertEquals(storages, DbLedgerStorage.initializeLedgerStorages(initializers, entryLoggers, parallel));
+        }
+    }
+
+    @Test
+    public void sequentialInitializationFailureTest() throws Exception {
+        IOException failure = new IOException("rocksdb lock");
+        addDirectory();
+        addDirectory(() -> {
+            throw failure;
+        });
+        addDirectory(() -> {
+            fail("not initialized after a failure");
+            return null;
+        });
+
+        try {
+            DbLedgerStorage.initializeLedgerStorages(initializers, entryLoggers, false);
+            fail("the second directory fails");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        verify(storages.get(0)).shutdown();
+        verify(entryLoggers.get(0), never()).close();
+        verify(entryLoggers.get(1)).close();
+        verify(entryLoggers.get(2)).close();
+    }
+
+    @Test
+    public void parallelInitializationFailureTest() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        addDirectory();
+        addDirectory(() -> {
+            failed.countDown();
+            throw new IllegalStateException("corrupted index");
+        });
+        // still being opened when the other directory fails
+        SingleDirectoryDbLedgerStorage slowStorage = mock(SingleDirectoryDbLedgerStorage.class);
+        addDirectory(() -> {
+            failed.await();
+            return slowStorage;
+        });
+
+        try {
+            DbLedgerStorage.initializeLedgerStorages(initializers, entryLoggers, true);
+            fail("the second directory fails");
+        } catch (IOException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+        verify(storages.get(0)).shutdown();
+        verify(slowStorage).shutdown();
+        verify(entryLoggers.get(0), never()).close();
+        verify(entryLoggers.get(1)).close();
+        verify(entryLoggers.get(2), never()).close();
+    }
+}
@@ -0,0 +1,277 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorageDataFormats.LedgerData;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DbLedgerStoragePlacementTest {
+
+    private static final byte[] MASTER_KEY = "key".getBytes(UTF_8);
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private ServerConfiguration newConf(File[] ledgerDirs, boolean loadAwarePlacement) {
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        String[] dirNames = new String[ledgerDirs.length];
+        for (int i = 0; i < ledgerDirs.length; i++) {
+            dirNames[i] = ledgerDirs[i].getPath();
+        }
+        conf.setLedgerDirNames(dirNames);
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, 16);
+        conf.setProperty(DbLedgerStorage.READ_AHEAD_CACHE_MAX_SIZE_MB, 4);
+        conf.setProperty(DbLedgerStorage.LOAD_AWARE_LEDGER_PLACEMENT, loadAwarePlacement);
+        return conf;
+    }
+
+    private DbLedgerStorage newStorage(ServerConfiguration conf) throws Exception {
+        return newStorage(conf, new DbLedgerStorage());
+    }
+
+    private DbLedgerStorage newStorage(ServerConfiguration conf, DbLedgerStorage storage) throws Exception {
+        for (File dir : conf.getLedgerDirs()) {
+            BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(dir));
+        }
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        storage.initialize(conf, mock(LedgerManager.class), ledgerDirsManager, ledgerDirsManager,
+                NullStatsLogger.INSTANCE, UnpooledByteBufAllocator.DEFAULT);
+        return storage;
+    }
+
+    private static ByteBuf newEntry(long ledgerId, long entryId, int payloadSize) {
+        ByteBuf entry = Unpooled.buffer(24 + payloadSize);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeLong(entryId - 1);
+        entry.writeZero(payloadSize);
+        return entry;
+    }
+
+    /**
+     * Storage recording the placements persisted in its directories, and optionally blocking them.
+     */
+    private static class PlacementTrackingStorage extends DbLedgerStorage {
+        final List<Long> persistedPlacements = new CopyOnWriteArrayList<>();
+        volatile CountDownLatch persistStarted = null;
+        final CountDownLatch persistReleased = new CountDownLatch(1);
+
+        @Override
+        protected SingleDirectoryDbLedgerStorage newSingleDirectoryDbLedgerStorage(ServerConfiguration conf,
+                LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager,
+                EntryLogger entryLogger, StatsLogger statsLogger, long writeCacheSize, long readCacheSize,
+                int readAheadCacheBatchSize, long readAheadCacheBatchBytesSize) throws IOException {
+            return new SingleDirectoryDbLedgerStorage(conf, ledgerManager, ledgerDirsManager, indexDirsManager,
+                    entryLogger, statsLogger, UnpooledByteBufAllocator.DEFAULT, writeCacheSize, readCacheSize,
+                    readAheadCacheBatchSize, readAheadCacheBatchBytesSize) {
+                @Override
+                void persistLedgerPlacement(long ledgerId) throws IOException {
+                    persistedPlacements.add(ledgerId);
+                    CountDownLatch started = persistStarted;
+                    if (started != null) {
+                        started.countDown();
+                        try {
+                            persistReleased.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException(e);
+                        }
+                    }
+                    super.persistLedgerPlacement(ledgerId);
+                }
+            };
+        }
+    }
+
+    private static void loadFirstDirectory(DbLedgerStorage storage) throws Exception {
+        // load the write cache of the first directory, which holds the even ledgers by hash
+        for (long entryId = 0; entryId < 3; entryId++) {
+            storage.setMasterKey(0, MASTER_KEY);
+            storage.addEntry(newEntry(0, entryId, 1024 * 1024));
+        }
+    }
+
+    private static int directoryOf(DbLedgerStorage storage, long ledgerId) throws IOException {
+        int found = -1;
+        List<SingleDirectoryDbLedgerStorage> storages = storage.getLedgerStorageList();
+        for (int i = 0; i < storages.size(); i++) {
+            if (storages.get(i).ledgerExists(ledgerId)) {
+                assertEquals("ledger " + ledgerId + " is in a single directory", -1, found);
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void createdLedgerIsPersistedTest() throws Exception {
+        File dir = tmpDir.newFolder();
+        ServerConfiguration conf = new ServerConfiguration();
+        LedgerMetadataIndex index = new LedgerMetadataIndex(conf, KeyValueStorageRocksDB.factory,
+                dir.getPath(), NullStatsLogger.INSTANCE);
+        index.createLedger(1);
+        index.setMasterKey(1, MASTER_KEY);
+        index.setMasterKey(2, MASTER_KEY);
+        // crash before the ledger index is flushed
+        index.close();
+
+        index = new LedgerMetadataIndex(conf, KeyValueStorageRocksDB.factory, dir.getPath(),
+                NullStatsLogger.INSTANCE);
+        LedgerData ledgerData = index.get(1);
+        assertTrue(ledgerData.getExists());
+        assertEquals(0, ledgerData.getMasterKey().size());
+        try {
+            index.get(2);
+            fail("the master key of ledger 2 was not flushed");
+        } catch (Bookie.NoLedgerException e) {
+            // expected
+        }
+        // the master key replaces the empty one
+        index.setMasterKey(1, MASTER_KEY);
+        assertArrayEquals(MASTER_KEY, index.get(1).getMasterKey().toByteArray());
+        index.close();
+    }
+
+    @Test
+    public void placedLedgersReachableWhenDisabledTest() throws Exception {
+        File[] ledgerDirs = { tmpDir.newFolder(), tmpDir.newFolder() };
+        DbLedgerStorage storage = newStorage(newConf(ledgerDirs, true));
+        loadFirstDirectory(storage);
+        List<Long> misplaced = new ArrayList<>();
+        for (long ledgerId = 2; ledgerId < 200; ledgerId += 2) {
+            storage.setMasterKey(ledgerId, MASTER_KEY);
+            storage.addEntry(newEntry(ledgerId, 0, 16));
+            if (directoryOf(storage, ledgerId) == 1) {
+                misplaced.add(ledgerId);
+            }
+        }
+        assertFalse("some ledgers are placed in the less loaded directory", misplaced.isEmpty());
+
+        // fencing an unknown ledger doesn't place it
+        try {
+            storage.setFenced(1001);
+            fail("ledger 1001 doesn't exist");
+        } catch (Bookie.NoLedgerException e) {
+            // expected
+        }
+        assertEquals(-1, directoryOf(storage, 1001));
+        storage.flush();
+        storage.shutdown();
+
+        storage = newStorage(newConf(ledgerDirs, false));
+        for (long ledgerId : misplaced) {
+            assertTrue(storage.ledgerExists(ledgerId));
+            assertArrayEquals(MASTER_KEY, storage.readMasterKey(ledgerId));
+            ByteBuf entry = storage.getEntry(ledgerId, 0);
+            assertEquals(ledgerId, entry.getLong(0));
+            entry.release();
+            // the writes still go to the directory holding the ledger
+            storage.addEntry(newEntry(ledgerId, 1, 16));
+            assertEquals(1, directoryOf(storage, ledgerId));
+        }
+        // new ledgers use the hash directory
+        storage.setMasterKey(1000, MASTER_KEY);
+        assertEquals(0, directoryOf(storage, 1000));
+        storage.shutdown();
+    }
+
+    @Test
+    public void onlyMisplacedLedgersPersistedRightAwayTest() throws Exception {
+        File[] ledgerDirs = { tmpDir.newFolder(), tmpDir.newFolder() };
+        PlacementTrackingStorage storage = new PlacementTrackingStorage();
+        newStorage(newConf(ledgerDirs, true), storage);
+        loadFirstDirectory(storage);
+
+        List<Long> misplaced = new ArrayList<>();
+        for (long ledgerId = 2; ledgerId < 200; ledgerId += 2) {
+            storage.setMasterKey(ledgerId, MASTER_KEY);
+            storage.addEntry(newEntry(ledgerId, 0, 16));
+            if (directoryOf(storage, ledgerId) == 1) {
+                misplaced.add(ledgerId);
+            }
+        }
+        assertFalse("some ledgers are placed in the less loaded directory", misplaced.isEmpty());
+        assertTrue("some ledgers are placed by hash", misplaced.size() < 99);
+        // the ledgers placed in the hash directory are persisted with their entries
+        assertEquals(misplaced, storage.persistedPlacements);
+        storage.shutdown();
+    }
+
+    @Test
+    public void lookupsNotBlockedByPersistedPlacementTest() throws Exception {
+        File[] ledgerDirs = { tmpDir.newFolder(), tmpDir.newFolder() };
+        PlacementTrackingStorage storage = new PlacementTrackingStorage();
+        newStorage(newConf(ledgerDirs, true), storage);
+        loadFirstDirectory(storage);
+        for (long ledgerId = 1; ledgerId < 200; ledgerId++) {
+            storage.setMasterKey(ledgerId, MASTER_KEY);
+        }
+
+        // block the persistence of the next misplaced ledger
+        CountDownLatch persistStarted = new CountDownLatch(1);
+        storage.persistStarted = persistStarted;
+        AtomicLong blockedLedgerId = new AtomicLong(-1);
+        Thread writer = new Thread(() -> {
+            try {
+                for (long ledgerId = 1000; persistStarted.getCount() > 0; ledgerId += 2) {
+                    blockedLedgerId.set(ledgerId);
+                    storage.setMasterKey(ledgerId, MASTER_KEY);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        assertTrue(persistStarted.await(10, TimeUnit.SECONDS));
+
+        // the placed ledgers, whichever section of the placements they are in, are still found
+        CompletableFuture<Void> lookups = CompletableFuture.runAsync(() -> {
+            try {
+                for (long ledgerId = 1; ledgerId < 200; ledgerId++) {
+                    assertTrue(storage.ledgerExists(ledgerId));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        lookups.get(10, TimeUnit.SECONDS);
+        assertFalse(storage.ledgerExists(blockedLedgerId.get()));
+
+        storage.persistReleased.countDown();
+        writer.join();
+        assertEquals(1, directoryOf(storage, blockedLedgerId.get()));
+        storage.shutdown();
+    }
+}
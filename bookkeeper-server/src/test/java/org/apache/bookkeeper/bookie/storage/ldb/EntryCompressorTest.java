@@ -0,0 +1,113 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.bookie.storage.ldb.EntryCompressionCodec.Type;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EntryCompressorTest {
+    private static final ByteBufAllocator allocator = UnpooledByteBufAllocator.DEFAULT;
+
+    private static ByteBuf newEntry(long ledgerId, long entryId, String payload) {
+        ByteBuf entry = Unpooled.buffer();
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeBytes(payload.getBytes(StandardCharsets.UTF_8));
+        return entry;
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void compressAndDecompressTest() throws IOException {
+        EntryCompressor compressor = new EntryCompressor(allocator, Type.LZ4, 64);
+        ByteBuf entry = newEntry(1, 2, repeat("{\"key\":\"value\"}", 100));
+
+        ByteBuf stored = compressor.compress(entry);
+        assertTrue(EntryCompressor.isCompressed(stored));
+        assertTrue(stored.readableBytes() < entry.readableBytes());
+        // ledger and entry ids are kept in clear for scanning and compaction
+        assertEquals(1, stored.getLong(0));
+        assertEquals(2, stored.getLong(8));
+
+        ByteBuf decompressed = compressor.decompress(stored);
+        assertEquals(entry, decompressed);
+        decompressed.release();
+        entry.release();
+    }
+
+    @Test
+    public void smallOrIncompressibleEntriesAreStoredAsIsTest() throws IOException {
+        EntryCompressor compressor = new EntryCompressor(allocator, Type.LZ4, 64);
+
+        ByteBuf small = newEntry(1, 0, "Hello, World!");
+        assertSame(small, compressor.compress(small));
+        assertFalse(EntryCompressor.isCompressed(small));
+        assertSame(small, compressor.decompress(small));
+        small.release();
+
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        ByteBuf incompressible = Unpooled.buffer();
+        incompressible.writeLong(1);
+        incompressible.writeLong(1);
+        incompressible.writeBytes(random);
+        assertSame(incompressible, compressor.compress(incompressible));
+        assertFalse(EntryCompressor.isCompressed(incompressible));
+        assertSame(incompressible, compressor.decompress(incompressible));
+        incompressible.release();
+    }
+
+    @Test
+    public void entriesLookingCompressedAreWrappedTest() throws IOException {
+        EntryCompressor lz4 = new EntryCompressor(allocator, Type.LZ4, 64);
+        EntryCompressor none = new EntryCompressor(allocator, Type.NONE, 64);
+
+        // the last add confirmed of the entry matches the marker
+        ByteBuf entry = newEntry(5, 6, "");
+        entry.writeLong(EntryCompressor.COMPRESSED_ENTRY_MARKER | Type.LZ4.code());
+        entry.writeBytes("garbage".getBytes(StandardCharsets.UTF_8));
+        assertTrue(EntryCompressor.isCompressed(entry));
+
+        for (EntryCompressor compressor : new EntryCompressor[] { lz4, none }) {
+            ByteBuf stored = compressor.compress(entry);
+            assertTrue(stored != entry);
+            assertEquals(5, stored.getLong(0));
+            assertEquals(6, stored.getLong(8));
+            ByteBuf decompressed = compressor.decompress(stored);
+            assertEquals(entry, decompressed);
+            decompressed.release();
+        }
+        entry.release();
+    }
+
+    @Test
+    public void decompressWithCompressionDisabledTest() throws IOException {
+        EntryCompressor lz4 = new EntryCompressor(allocator, Type.LZ4, 64);
+        EntryCompressor none = new EntryCompressor(allocator, Type.NONE, 64);
+        ByteBuf entry = newEntry(3, 4, repeat("abcd", 500));
+
+        assertSame(entry, none.compress(entry));
+        ByteBuf decompressed = none.decompress(lz4.compress(entry));
+        assertEquals(entry, decompressed);
+        decompressed.release();
+        entry.release();
+    }
+}
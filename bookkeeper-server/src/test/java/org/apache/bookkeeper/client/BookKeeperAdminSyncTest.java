@@ -0,0 +1,92 @@
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.bookkeeper.client.AsyncCallback.RecoverCallback;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.junit.Test;
+
+public class BookKeeperAdminSyncTest {
+
+    private final Set<BookieId> bookies = Collections.singleton(BookieId.parse("bookie-1:3181"));
+
+    private static void completeLater(Runnable callback) {
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            callback.run();
+        }).start();
+    }
+
+    private BookKeeperAdmin newAdmin(int rc) {
+        BookKeeperAdmin admin = spy(new BookKeeperAdmin(mock(BookKeeper.class)));
+        SortedMap<Long, LedgerMetadata> ledgers = new TreeMap<>();
+        ledgers.put(1L, mock(LedgerMetadata.class));
+        doAnswer(invocation -> {
+            GenericCallback<SortedMap<Long, LedgerMetadata>> callback = invocation.getArgument(1);
+            completeLater(() -> callback.operationComplete(rc, rc == BKException.Code.OK ? ledgers : null));
+            return null;
+        }).when(admin).asyncGetLedgersContainBookies(anySet(), any());
+        doAnswer(invocation -> {
+            RecoverCallback callback = invocation.getArgument(4);
+            completeLater(() -> callback.recoverComplete(rc, null));
+            return null;
+        }).when(admin).asyncRecoverBookieData(anySet(), anyBoolean(), anyBoolean(), anyBoolean(), any(), any());
+        doAnswer(invocation -> {
+            RecoverCallback callback = invocation.getArgument(4);
+            completeLater(() -> callback.recoverComplete(rc, null));
+            return null;
+        }).when(admin).asyncRecoverBookieData(anyLong(), anySet(), anyBoolean(), anyBoolean(), any(), any());
+        return admin;
+    }
+
+    @Test
+    public void waitForCompletionTest() throws Exception {
+        BookKeeperAdmin admin = newAdmin(BKException.Code.OK);
+        SortedMap<Long, LedgerMetadata> ledgers = admin.getLedgersContainBookies(bookies);
+        assertEquals(Collections.singleton(1L), ledgers.keySet());
+        admin.recoverBookieData(bookies, false, false, false);
+        admin.recoverBookieData(1L, bookies, false, false);
+    }
+
+    @Test
+    public void failureIsThrownTest() throws Exception {
+        BookKeeperAdmin admin = newAdmin(BKException.Code.ZKException);
+        try {
+            admin.getLedgersContainBookies(bookies);
+            fail("the ledgers can't be listed");
+        } catch (BKException e) {
+            assertEquals(BKException.Code.ZKException, e.getCode());
+        }
+        try {
+            admin.recoverBookieData(bookies, false, false, false);
+            fail("the bookie can't be recovered");
+        } catch (BKException e) {
+            assertEquals(BKException.Code.ZKException, e.getCode());
+        }
+        try {
+            admin.recoverBookieData(1L, bookies, false, false);
+            fail("the ledger can't be recovered");
+        } catch (BKException e) {
+            assertSame(BKException.ZKException.class, e.getClass());
+        }
+    }
+}
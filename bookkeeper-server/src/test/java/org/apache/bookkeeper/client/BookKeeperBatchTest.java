@@ -0,0 +1,210 @@
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.bookkeeper.client.api.CreateBuilder;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerIdGenerator;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.apache.bookkeeper.zookeeper.ZooKeeperClient;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BookKeeperBatchTest {
+
+    private static final byte[] PASSWORD = "secret".getBytes(UTF_8);
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private ServerCnxnFactory serverFactory;
+    private ZooKeeper zkc;
+    private BookKeeper bkc;
+
+    @Before
+    public void setUp() throws Exception {
+        ZooKeeperServer zks = new ZooKeeperServer(tmpDir.newFolder(), tmpDir.newFolder(), 2000);
+        serverFactory = ServerCnxnFactory.createFactory(new InetSocketAddress("127.0.0.1", 0), 10);
+        serverFactory.startup(zks);
+        String metadataServiceUri = "zk+hierarchical://127.0.0.1:" + serverFactory.getLocalPort() + "/ledgers";
+        ServerConfiguration serverConf = new ServerConfiguration();
+        serverConf.setMetadataServiceUri(metadataServiceUri);
+        assertTrue(BookKeeperAdmin.initNewCluster(serverConf));
+
+        zkc = ZooKeeperClient.newBuilder()
+                .connectString("127.0.0.1:" + serverFactory.getLocalPort())
+                .sessionTimeoutMs(10000)
+                .build();
+        // the ledgers are created without writing to the bookies, which only need to be registered
+        for (int i = 0; i < 3; i++) {
+            zkc.create("/ledgers/available/127.0.0.1:" + (3181 + i), new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.EPHEMERAL);
+        }
+
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setMetadataServiceUri(metadataServiceUri);
+        bkc = new BookKeeper(conf);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bkc.close();
+        zkc.close();
+        serverFactory.shutdown();
+    }
+
+    private static CreateBuilder newCreateOp(BookKeeper bk) {
+        return bk.newCreateLedgerOp()
+                .withEnsembleSize(3)
+                .withWriteQuorumSize(3)
+                .withAckQuorumSize(2)
+                .withPassword(PASSWORD);
+    }
+
+    private void assertNoLedger(long ledgerId) throws Exception {
+        try {
+            bkc.getLedgerManager().readLedgerMetadata(ledgerId).get();
+            fail("ledger " + ledgerId + " is deleted");
+        } catch (ExecutionException e) {
+            assertEquals(BKException.Code.NoSuchLedgerExistsOnMetadataServerException,
+                    BKException.getExceptionCode(e.getCause()));
+        }
+    }
+
+    @Test
+    public void createAndDeleteBatchTest() throws Exception {
+        List<WriteHandle> handles = newCreateOp(bkc).makeBatch(5).execute().get();
+        assertEquals(5, handles.size());
+        List<Long> ledgerIds = new ArrayList<>();
+        for (WriteHandle handle : handles) {
+            ledgerIds.add(handle.getId());
+            assertEquals(3, handle.getLedgerMetadata().getEnsembleSize());
+            assertEquals(handle.getId(), bkc.getLedgerManager().readLedgerMetadata(handle.getId()).get()
+                    .getValue().getLedgerId());
+            handle.close();
+        }
+        assertEquals(5, new HashSet<>(ledgerIds).size());
+
+        bkc.newDeleteLedgerOp().withLedgerIds(ledgerIds).execute().get();
+        for (long ledgerId : ledgerIds) {
+            assertNoLedger(ledgerId);
+        }
+    }
+
+    @Test
+    public void invalidBatchTest() throws Exception {
+        try {
+            newCreateOp(bkc).makeBatch(0).execute().get();
+            fail("a batch creates at least one ledger");
+        } catch (ExecutionException e) {
+            assertEquals(BKException.Code.IncorrectParameterException, BKException.getExceptionCode(e.getCause()));
+        }
+        try {
+            bkc.newDeleteLedgerOp().withLedgerIds(Arrays.asList(1L, -1L)).execute().get();
+            fail("the ledger ids are not negative");
+        } catch (ExecutionException e) {
+            assertEquals(BKException.Code.IncorrectParameterException, BKException.getExceptionCode(e.getCause()));
+        }
+    }
+
+    @Test
+    public void collidingLedgerIdIsRetriedTest() throws Exception {
+        long existingId = newCreateOp(bkc).execute().get().getId();
+
+        BookKeeper bk = spy(bkc);
+        LedgerIdGenerator generator = bkc.getLedgerIdGenerator();
+        LedgerIdGenerator colliding = mock(LedgerIdGenerator.class, delegatesTo(generator));
+        // the range starts with the id of the existing ledger
+        doAnswer(invocation -> {
+            int count = invocation.getArgument(0);
+            GenericCallback<List<Long>> cb = invocation.getArgument(1);
+            generator.generateLedgerIds(count - 1, (rc, ledgerIds) -> {
+                List<Long> withExisting = new ArrayList<>();
+                withExisting.add(existingId);
+                if (ledgerIds != null) {
+                    withExisting.addAll(ledgerIds);
+                }
+                cb.operationComplete(rc, withExisting);
+            });
+            return null;
+        }).when(colliding).generateLedgerIds(anyInt(), any());
+        doReturn(colliding).when(bk).getLedgerIdGenerator();
+
+        List<WriteHandle> handles = newCreateOp(bk).makeBatch(3).execute().get();
+        assertEquals(3, handles.size());
+        Set<Long> ledgerIds = new HashSet<>();
+        for (WriteHandle handle : handles) {
+            ledgerIds.add(handle.getId());
+            bkc.getLedgerManager().readLedgerMetadata(handle.getId()).get();
+        }
+        assertEquals(3, ledgerIds.size());
+        assertFalse(ledgerIds.contains(existingId));
+    }
+
+    @Test
+    public void partialFailureDeletesCreatedLedgersTest() throws Exception {
+        BookKeeper bk = spy(bkc);
+        LedgerManager manager = bkc.getLedgerManager();
+        LedgerManager failing = mock(LedgerManager.class, delegatesTo(manager));
+        List<Long> batchLedgerIds = new ArrayList<>();
+        // the metadata of the first ledger is not written
+        doAnswer(invocation -> {
+            Map<Long, LedgerMetadata> ledgers = new TreeMap<>(invocation.<Map<Long, LedgerMetadata>>getArgument(0));
+            batchLedgerIds.addAll(ledgers.keySet());
+            long failedId = batchLedgerIds.get(0);
+            ledgers.remove(failedId);
+            Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> written =
+                    new TreeMap<>(manager.createLedgersMetadata(ledgers));
+            CompletableFuture<Versioned<LedgerMetadata>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(BKException.create(BKException.Code.ZKException));
+            written.put(failedId, failed);
+            return written;
+        }).when(failing).createLedgersMetadata(any());
+        doReturn(failing).when(bk).getLedgerManager();
+
+        try {
+            newCreateOp(bk).makeBatch(4).execute().get();
+            fail("the metadata of a ledger is not written");
+        } catch (ExecutionException e) {
+            assertEquals(BKException.Code.ZKException, BKException.getExceptionCode(e.getCause()));
+        }
+        assertEquals(4, batchLedgerIds.size());
+        for (long ledgerId : batchLedgerIds) {
+            assertNoLedger(ledgerId);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieLoad;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.Test;
+
+public class BookieLoadScorerTest {
+
+    private static BookieInfo info(long journalQueueLength, long addLatencyP99Micros) {
+        return new BookieInfo(1000L, 1000L,
+                new BookieLoad(journalQueueLength, 10, 100, addLatencyP99Micros, 10, false, false));
+    }
+
+    @Test
+    public void loadFactorsTest() {
+        BookieLoadScorer scorer = new BookieLoadScorer(new ClientConfiguration()
+                .setLoadAwarePlacementSmoothingFactor(0.5)
+                .setLoadAwarePlacementMinWeightRatio(0.2));
+        BookieId idle = BookieId.parse("bookie1:3181");
+        BookieId median = BookieId.parse("bookie2:3181");
+        BookieId hot = BookieId.parse("bookie3:3181");
+        BookieId slow = BookieId.parse("bookie4:3181");
+        BookieId old = BookieId.parse("bookie5:3181");
+        Map<BookieId, BookieInfo> infos = new HashMap<>();
+        infos.put(idle, info(0, 1000));
+        infos.put(median, info(10, 1000));
+        infos.put(hot, info(10000, 1000));
+        infos.put(slow, info(10, 4000));
+        infos.put(old, new BookieInfo(1000L, 1000L));
+
+        Map<BookieId, BookieInfo> scored = scorer.applyLoadFactors(infos);
+        assertEquals(1.0, scored.get(idle).getLoadFactor(), 0.0);
+        assertEquals(1.0, scored.get(median).getLoadFactor(), 0.0);
+        // (4000 + 2000) / (1000 + 2000) = 2, half way from 1 to 1 / 2
+        assertEquals(0.75, scored.get(slow).getLoadFactor(), 0.001);
+        assertEquals(750L, scored.get(slow).getWeight());
+        // the bookies which don't report their load keep their weight
+        assertNull(scored.get(old).getLoad());
+        assertEquals(1000L, scored.get(old).getWeight());
+
+        // the factors converge to the load, down to the minimum
+        for (int i = 0; i < 10; i++) {
+            scored = scorer.applyLoadFactors(infos);
+        }
+        assertEquals(0.5, scored.get(slow).getLoadFactor(), 0.001);
+        assertEquals(0.2, scored.get(hot).getLoadFactor(), 0.0);
+
+        // and recover once the load is gone
+        infos.put(hot, info(10, 1000));
+        scored = scorer.applyLoadFactors(infos);
+        assertTrue(scored.get(hot).getLoadFactor() > 0.2 && scored.get(hot).getLoadFactor() < 1.0);
+    }
+
+    @Test
+    public void configuredFloorsTest() {
+        BookieLoadScorer scorer = new BookieLoadScorer(new ClientConfiguration()
+                .setLoadAwarePlacementSmoothingFactor(1.0)
+                .setLoadAwarePlacementMinWeightRatio(0.0)
+                .setLoadAwarePlacementJournalQueueFloor(0)
+                .setLoadAwarePlacementWriteCacheUsageFloor(0)
+                .setLoadAwarePlacementReadRateFloor(0));
+        BookieId idle = BookieId.parse("bookie1:3181");
+        BookieId median = BookieId.parse("bookie2:3181");
+        BookieId queued = BookieId.parse("bookie3:3181");
+        Map<BookieId, BookieInfo> infos = new HashMap<>();
+        infos.put(idle, new BookieInfo(1000L, 1000L, new BookieLoad(0, 0, 100, 1000, 0, false, false)));
+        infos.put(median, new BookieInfo(1000L, 1000L, new BookieLoad(10, 0, 100, 1000, 0, false, false)));
+        infos.put(queued, new BookieInfo(1000L, 1000L, new BookieLoad(40, 0, 100, 1000, 0, false, false)));
+
+        Map<BookieId, BookieInfo> scored = scorer.applyLoadFactors(infos);
+        // without a floor, 4 times the journal queue of the median bookie gets a quarter of the weight
+        assertEquals(0.25, scored.get(queued).getLoadFactor(), 0.001);
+        assertEquals(1.0, scored.get(median).getLoadFactor(), 0.0);
+        // and the metrics idle on all the bookies don't change the weights
+        assertEquals(1.0, scored.get(idle).getLoadFactor(), 0.0);
+
+        // with the default floor of 100, the same queues are close enough
+        scored = new BookieLoadScorer(new ClientConfiguration()
+                .setLoadAwarePlacementSmoothingFactor(1.0)).applyLoadFactors(infos);
+        assertEquals(110.0 / 140, scored.get(queued).getLoadFactor(), 0.001);
+    }
+}
@@ -0,0 +1,60 @@
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_QUEUE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class LedgerFragmentReplicatorQueueTest {
+
+    private LedgerFragmentReplicator replicator;
+
+    @SuppressWarnings("unchecked")
+    private Gauge<Integer> newQueueSizeGauge(int rateByBytes) {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setReplicationRateByBytes(rateByBytes);
+        replicator = new LedgerFragmentReplicator(mock(BookKeeper.class), statsLogger, conf);
+        ArgumentCaptor<Gauge> gauge = ArgumentCaptor.forClass(Gauge.class);
+        verify(statsLogger).registerGauge(eq(REPLICATION_QUEUE_SIZE), gauge.capture());
+        return gauge.getValue();
+    }
+
+    @Test
+    public void queueSizeTest() throws Exception {
+        Gauge<Integer> queueSize = newQueueSizeGauge(1000);
+        assertEquals(0, queueSize.getSample().intValue());
+
+        // the first second of budget is taken, the next acquires wait for it
+        replicator.replicationThrottle.acquire(1000);
+        Thread[] waiters = new Thread[2];
+        for (int i = 0; i < waiters.length; i++) {
+            waiters[i] = new Thread(() -> replicator.replicationThrottle.acquire(1));
+            waiters[i].start();
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (queueSize.getSample() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(2, queueSize.getSample().intValue());
+
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+        assertEquals(0, queueSize.getSample().intValue());
+    }
+
+    @Test
+    public void noQueueWithoutRateLimitTest() {
+        Gauge<Integer> queueSize = newQueueSizeGauge(0);
+        assertEquals(0, queueSize.getDefaultValue().intValue());
+        assertEquals(0, queueSize.getSample().intValue());
+    }
+}
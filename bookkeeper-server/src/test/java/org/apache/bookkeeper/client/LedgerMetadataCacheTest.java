@@ -0,0 +1,197 @@
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.Test;
+
+public class LedgerMetadataCacheTest {
+
+    private final Map<Long, Versioned<LedgerMetadata>> ledgers = new ConcurrentHashMap<>();
+    private final Map<Long, LedgerMetadataListener> listeners = new ConcurrentHashMap<>();
+
+    private static Versioned<LedgerMetadata> metadata(long ledgerId, long version, boolean closed) {
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withEnsembleSize(1)
+                .withWriteQuorumSize(1)
+                .withAckQuorumSize(1)
+                .newEnsembleEntry(0L, Collections.singletonList(BookieId.parse("bookie1:3181")));
+        if (closed) {
+            builder.withClosedState().withLastEntryId(10L).withLength(100L);
+        }
+        return new Versioned<>(builder.build(), new LongVersion(version));
+    }
+
+    private LedgerManager ledgerManager() {
+        LedgerManager ledgerManager = mock(LedgerManager.class);
+        when(ledgerManager.readLedgerMetadata(anyLong())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(ledgers.get((Long) invocation.getArgument(0))));
+        doAnswer(invocation -> {
+            listeners.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(ledgerManager).registerLedgerMetadataListener(anyLong(), any());
+        doAnswer(invocation -> {
+            listeners.remove((Long) invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(ledgerManager).unregisterLedgerMetadataListener(anyLong(), any());
+        return ledgerManager;
+    }
+
+    @Test
+    public void cacheTest() throws Exception {
+        LedgerManager ledgerManager = ledgerManager();
+        LedgerMetadataCache cache = new LedgerMetadataCache(ledgerManager, 2, Runnable::run,
+                NullStatsLogger.INSTANCE);
+        ledgers.put(1L, metadata(1L, 0, true));
+        ledgers.put(2L, metadata(2L, 0, false));
+        ledgers.put(3L, metadata(3L, 0, true));
+
+        // a closed ledger is read once, and not watched
+        assertSame(ledgers.get(1L), cache.readLedgerMetadata(1L, true).get());
+        assertSame(ledgers.get(1L), cache.readLedgerMetadata(1L, true).get());
+        verify(ledgerManager, times(1)).readLedgerMetadata(1L);
+        assertFalse(cache.isWatched(1L));
+
+        // an open ledger is watched, and only read again when the latest metadata is needed
+        cache.readLedgerMetadata(2L, false).get();
+        cache.readLedgerMetadata(2L, false).get();
+        verify(ledgerManager, times(1)).readLedgerMetadata(2L);
+        cache.readLedgerMetadata(2L, true).get();
+        verify(ledgerManager, times(2)).readLedgerMetadata(2L);
+        assertTrue(cache.isWatched(2L));
+
+        // the watch updates the metadata, until the ledger is closed
+        Versioned<LedgerMetadata> closed = metadata(2L, 1, true);
+        listeners.get(2L).onChanged(2L, metadata(2L, 0, false));
+        listeners.get(2L).onChanged(2L, closed);
+        assertSame(closed, cache.readLedgerMetadata(2L, true).get());
+        assertFalse(cache.isWatched(2L));
+        assertTrue(listeners.isEmpty());
+
+        // the deleted ledgers are removed
+        cache.invalidate(1L);
+        assertEquals(1, cache.size());
+        ledgers.put(4L, metadata(4L, 0, false));
+        cache.readLedgerMetadata(4L, false).get();
+        listeners.get(4L).onChanged(4L, null);
+        assertEquals(1, cache.size());
+        assertFalse(cache.isWatched(4L));
+
+        // the evicted open ledgers are not watched anymore
+        cache.readLedgerMetadata(4L, false).get();
+        cache.readLedgerMetadata(1L, false).get();
+        cache.readLedgerMetadata(3L, false).get();
+        assertEquals(2, cache.size());
+        verify(ledgerManager, times(2)).unregisterLedgerMetadataListener(eq(4L), any());
+    }
+
+    @Test
+    public void evictedWhileRegisteringTest() throws Exception {
+        LedgerManager ledgerManager = ledgerManager();
+        AtomicReference<LedgerMetadataCache> cacheRef = new AtomicReference<>();
+        // the metadata is evicted, and the unregistration run, before the registration completes
+        doAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            cacheRef.get().invalidate(ledgerId);
+            listeners.put(ledgerId, invocation.getArgument(1));
+            return null;
+        }).when(ledgerManager).registerLedgerMetadataListener(anyLong(), any());
+        LedgerMetadataCache cache = new LedgerMetadataCache(ledgerManager, 2, Runnable::run,
+                NullStatsLogger.INSTANCE);
+        cacheRef.set(cache);
+        ledgers.put(1L, metadata(1L, 0, false));
+
+        cache.readLedgerMetadata(1L, false).get();
+        assertEquals(0, cache.size());
+        assertFalse(cache.isWatched(1L));
+        assertTrue(listeners.isEmpty());
+    }
+
+    @Test
+    public void concurrentEvictionsTest() throws Exception {
+        LedgerManager ledgerManager = ledgerManager();
+        // each registered listener, as several listeners of a ledger can be registered
+        Map<LedgerMetadataListener, Long> registered = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            // widen the window between adding the watch and registering its listener
+            Thread.sleep(0, 100_000);
+            registered.put(invocation.getArgument(1), invocation.getArgument(0));
+            return null;
+        }).when(ledgerManager).registerLedgerMetadataListener(anyLong(), any());
+        doAnswer(invocation -> {
+            registered.remove(invocation.getArgument(1), invocation.getArgument(0));
+            return null;
+        }).when(ledgerManager).unregisterLedgerMetadataListener(anyLong(), any());
+        ExecutorService unregisterExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            LedgerMetadataCache cache = new LedgerMetadataCache(ledgerManager, 2, unregisterExecutor,
+                    NullStatsLogger.INSTANCE);
+            int numLedgers = 8;
+            for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+                ledgers.put(ledgerId, metadata(ledgerId, 0, false));
+            }
+            // the open ledgers evict each other from the small cache while being watched
+            List<Future<?>> reads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final int reader = i;
+                reads.add(readers.submit(() -> {
+                    for (int j = 0; j < 2000; j++) {
+                        cache.readLedgerMetadata((reader + j) % numLedgers, false).get();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> read : reads) {
+                read.get(60, TimeUnit.SECONDS);
+            }
+            unregisterExecutor.submit(() -> { }).get();
+
+            // only the cached ledgers are watched, and the listeners of the others are unregistered
+            assertTrue(cache.size() <= 2);
+            int watched = 0;
+            for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+                if (cache.isWatched(ledgerId)) {
+                    watched++;
+                }
+            }
+            for (long ledgerId : registered.values()) {
+                assertTrue("ledger " + ledgerId, cache.isWatched(ledgerId));
+            }
+            assertEquals(watched, registered.size());
+            assertTrue(watched <= cache.size());
+        } finally {
+            readers.shutdownNow();
+            unregisterExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.meta.LedgerIdGenerator;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.junit.Test;
+
+public class PreallocatedLedgerIdGeneratorTest {
+
+    private static class RangeLedgerIdGenerator implements LedgerIdGenerator {
+        final List<GenericCallback<List<Long>>> pending = new ArrayList<>();
+        final AtomicInteger ranges = new AtomicInteger();
+        long nextId = 0;
+        int failures = 0;
+
+        @Override
+        public void generateLedgerId(GenericCallback<Long> cb) {
+            cb.operationComplete(BKException.Code.OK, nextId++);
+        }
+
+        @Override
+        public void generateLedgerIds(int count, GenericCallback<List<Long>> cb) {
+            ranges.incrementAndGet();
+            pending.add(cb);
+        }
+
+        void completeRange(int count) {
+            GenericCallback<List<Long>> cb = pending.remove(0);
+            if (failures > 0) {
+                failures--;
+                cb.operationComplete(BKException.Code.ZKException, null);
+                return;
+            }
+            List<Long> ledgerIds = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ledgerIds.add(nextId++);
+            }
+            cb.operationComplete(BKException.Code.OK, ledgerIds);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void preallocateLedgerIdsTest() {
+        RangeLedgerIdGenerator underlying = new RangeLedgerIdGenerator();
+        PreallocatedLedgerIdGenerator generator = new PreallocatedLedgerIdGenerator(underlying, 4);
+        List<Long> generated = new ArrayList<>();
+        List<Integer> failed = new ArrayList<>();
+        GenericCallback<Long> cb = (rc, ledgerId) -> {
+            if (rc == BKException.Code.OK) {
+                generated.add(ledgerId);
+            } else {
+                failed.add(rc);
+            }
+        };
+
+        // more creations wait than the ids allocated at once
+        for (int i = 0; i < 6; i++) {
+            generator.generateLedgerId(cb);
+        }
+        assertEquals(1, underlying.ranges.get());
+        underlying.completeRange(4);
+        assertEquals(4, generated.size());
+        assertEquals(2, underlying.ranges.get());
+        underlying.completeRange(4);
+        assertEquals(6, generated.size());
+        assertEquals(2, generator.getAvailableLedgerIds());
+
+        // a new range is allocated when half of the ids are used
+        generator.generateLedgerId(cb);
+        assertEquals(3, underlying.ranges.get());
+        generator.generateLedgerId(cb);
+        assertEquals(8, generated.size());
+        assertEquals(3, underlying.ranges.get());
+
+        // the waiting creations fail with the allocation
+        underlying.failures = 1;
+        generator.generateLedgerId(cb);
+        underlying.completeRange(4);
+        assertEquals(1, failed.size());
+        assertEquals(8, generated.size());
+
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 8; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, generated);
+    }
+
+    @Test
+    public void closeFailsWaitersTest() throws Exception {
+        RangeLedgerIdGenerator underlying = new RangeLedgerIdGenerator();
+        PreallocatedLedgerIdGenerator generator = new PreallocatedLedgerIdGenerator(underlying, 4);
+        List<Long> generated = new ArrayList<>();
+        List<Integer> failed = new ArrayList<>();
+        GenericCallback<Long> cb = (rc, ledgerId) -> {
+            if (rc == BKException.Code.OK) {
+                generated.add(ledgerId);
+            } else {
+                failed.add(rc);
+            }
+        };
+
+        generator.generateLedgerId(cb);
+        generator.generateLedgerId(cb);
+        generator.close();
+        assertEquals(2, failed.size());
+        assertEquals(BKException.Code.ClientClosedException, failed.get(0).intValue());
+
+        // the range allocated after close is skipped
+        underlying.completeRange(4);
+        assertEquals(0, generated.size());
+        assertEquals(0, generator.getAvailableLedgerIds());
+
+        generator.generateLedgerId(cb);
+        assertEquals(3, failed.size());
+        assertEquals(BKException.Code.ClientClosedException, failed.get(2).intValue());
+        assertEquals(1, underlying.ranges.get());
+    }
+}
@@ -0,0 +1,139 @@
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.util.HashedWheelTimer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.bookkeeper.client.BKException.BKNotEnoughBookiesException;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.BookieInfoReader.BookieLoad;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieNode;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.net.DNSToSwitchMapping;
+import org.apache.bookkeeper.net.Node;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RackawareEnsemblePlacementPolicyImplTest {
+
+    private final Map<String, String> racks = new HashMap<>();
+    private final List<BookieId> bookies = new ArrayList<>();
+    private HashedWheelTimer timer;
+    private RackawareEnsemblePlacementPolicyImpl policy;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 10; i++) {
+            racks.put("10.0.0." + i, "/rack-" + (i % 5));
+            bookies.add(BookieId.parse("10.0.0." + i + ":3181"));
+        }
+        timer = new HashedWheelTimer();
+        policy = newPolicy(new ClientConfiguration());
+    }
+
+    private RackawareEnsemblePlacementPolicyImpl newPolicy(ClientConfiguration conf) {
+        DNSToSwitchMapping dnsResolver = new DNSToSwitchMapping() {
+            @Override
+            public List<String> resolve(List<String> names) {
+                List<String> rNames = new ArrayList<>(names.size());
+                for (String name : names) {
+                    rNames.add(racks.get(name));
+                }
+                return rNames;
+            }
+
+            @Override
+            public void reloadCachedMappings() {
+            }
+        };
+        RackawareEnsemblePlacementPolicyImpl policy = new RackawareEnsemblePlacementPolicyImpl();
+        policy.initialize(conf, Optional.of(dnsResolver), timer,
+                SettableFeatureProvider.DISABLE_ALL, NullStatsLogger.INSTANCE,
+                BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+        policy.onClusterChanged(new HashSet<>(bookies), Collections.emptySet());
+        return policy;
+    }
+
+    @After
+    public void tearDown() {
+        policy.uninitalize();
+        timer.stop();
+    }
+
+    @Test
+    public void selectFromNetworkLocationExcludesChosenBookiesTest() throws Exception {
+        Set<String> excludeRacks = Collections.singleton("/rack-0");
+        Set<Node> excludeBookies = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            BookieNode chosen = policy.selectFromNetworkLocation(excludeRacks, excludeBookies,
+                    TopologyAwareEnsemblePlacementPolicy.TruePredicate.INSTANCE,
+                    TopologyAwareEnsemblePlacementPolicy.EnsembleForReplacementWithNoConstraints.INSTANCE, false);
+            assertFalse(excludeRacks.contains(chosen.getNetworkLocation()));
+            // the chosen bookies are excluded from the next selections
+            assertTrue(excludeBookies.contains(chosen));
+            assertEquals(i + 1, excludeBookies.size());
+        }
+        try {
+            policy.selectFromNetworkLocation(excludeRacks, excludeBookies,
+                    TopologyAwareEnsemblePlacementPolicy.TruePredicate.INSTANCE,
+                    TopologyAwareEnsemblePlacementPolicy.EnsembleForReplacementWithNoConstraints.INSTANCE, false);
+            fail("all the bookies outside of the excluded rack were chosen");
+        } catch (BKNotEnoughBookiesException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void newEnsembleAvoidsUnhealthyBookiesTest() throws Exception {
+        policy.uninitalize();
+        policy = newPolicy(new ClientConfiguration().setDiskWeightBasedPlacementEnabled(true));
+        Map<BookieId, BookieInfo> bookieInfos = new HashMap<>();
+        for (int i = 0; i < bookies.size(); i++) {
+            // the first bookies are compacting or have a degraded disk
+            bookieInfos.put(bookies.get(i), new BookieInfo(1000L, 1000L,
+                    new BookieLoad(0, 0, 0, 0, 0, i < 2, i >= 2 && i < 4)));
+        }
+        policy.updateBookieInfo(bookieInfos);
+        Set<BookieId> unhealthyBookies = new HashSet<>(bookies.subList(0, 4));
+
+        for (int i = 0; i < 100; i++) {
+            List<BookieId> ensemble = policy.newEnsemble(5, 3, 2, Collections.emptyMap(),
+                    Collections.emptySet()).getResult();
+            assertEquals(5, ensemble.size());
+            for (BookieId bookie : ensemble) {
+                assertFalse(unhealthyBookies.contains(bookie));
+            }
+        }
+        // the unhealthy bookies are used when there are not enough others
+        List<BookieId> ensemble = policy.newEnsemble(8, 3, 2, Collections.emptyMap(),
+                Collections.emptySet()).getResult();
+        assertEquals(8, new HashSet<>(ensemble).size());
+        assertTrue(ensemble.stream().anyMatch(unhealthyBookies::contains));
+
+        // and again once they are healthy
+        for (int i = 0; i < 4; i++) {
+            bookieInfos.put(bookies.get(i), new BookieInfo(1000L, 1000L));
+        }
+        policy.updateBookieInfo(bookieInfos);
+        Set<BookieId> chosen = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            chosen.addAll(policy.newEnsemble(5, 3, 2, Collections.emptyMap(), Collections.emptySet()).getResult());
+        }
+        assertEquals(new HashSet<>(bookies), chosen);
+    }
+}
@@ -0,0 +1,86 @@
+package org.apache.bookkeeper.meta;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.Test;
+
+public class LedgerMetadataSerDeTest {
+
+    private static LedgerMetadata metadata(int formatVersion, int ensembleChanges, String customValue) {
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                .withId(1L)
+                .withMetadataFormatVersion(formatVersion)
+                .withEnsembleSize(3)
+                .withWriteQuorumSize(3)
+                .withAckQuorumSize(2)
+                .withDigestType(DigestType.CRC32C)
+                .withPassword("secret".getBytes(UTF_8))
+                .withCreationTime(12345L)
+                .storingCreationTime(true);
+        for (int i = 0; i < ensembleChanges; i++) {
+            List<BookieId> ensemble = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                ensemble.add(BookieId.parse("bookie-" + ((i + j) % 20) + ".example.com:3181"));
+            }
+            builder.newEnsembleEntry(i * 1000L + (i % 7), ensemble);
+        }
+        Map<String, byte[]> customMetadata = new HashMap<>();
+        customMetadata.put("application", "test".getBytes(UTF_8));
+        customMetadata.put("payload", customValue.getBytes(UTF_8));
+        builder.withCustomMetadata(customMetadata);
+        return builder.withClosedState().withLastEntryId(ensembleChanges * 1000L).withLength(1L << 40).build();
+    }
+
+    private static void assertMetadataEquals(LedgerMetadata expected, LedgerMetadata actual) {
+        assertEquals(expected.getMetadataFormatVersion(), actual.getMetadataFormatVersion());
+        assertEquals(expected.getAllEnsembles(), actual.getAllEnsembles());
+        assertEquals(expected.getState(), actual.getState());
+        assertEquals(expected.getLastEntryId(), actual.getLastEntryId());
+        assertEquals(expected.getLength(), actual.getLength());
+        assertEquals(expected.getCtime(), actual.getCtime());
+        assertEquals(expected.getAckQuorumSize(), actual.getAckQuorumSize());
+        assertEquals(expected.getDigestType(), actual.getDigestType());
+        assertArrayEquals(expected.getPassword(), actual.getPassword());
+        assertEquals(expected.getCustomMetadata().keySet(), actual.getCustomMetadata().keySet());
+        for (String key : expected.getCustomMetadata().keySet()) {
+            assertArrayEquals(expected.getCustomMetadata().get(key), actual.getCustomMetadata().get(key));
+        }
+    }
+
+    @Test
+    public void compactFormatTest() throws Exception {
+        LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
+        StringBuilder largeValue = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            largeValue.append("value-").append(i % 10);
+        }
+        for (String customValue : new String[] { "small", largeValue.toString() }) {
+            LedgerMetadata v3 = metadata(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_3, 1000, customValue);
+            LedgerMetadata v4 = metadata(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, 1000, customValue);
+            byte[] v3Bytes = serDe.serialize(v3);
+            byte[] v4Bytes = serDe.serialize(v4);
+            assertMetadataEquals(v3, serDe.parseConfig(v3Bytes, 1L, Optional.empty()));
+            assertMetadataEquals(v4, serDe.parseConfig(v4Bytes, 1L, Optional.empty()));
+            assertTrue(v4Bytes.length * 4 < v3Bytes.length);
+        }
+
+        // the updates of a ledger keep its format version
+        LedgerMetadata single = metadata(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4, 1, "small");
+        LedgerMetadata parsed = serDe.parseConfig(serDe.serialize(single), 1L, Optional.empty());
+        assertMetadataEquals(single, parsed);
+        assertEquals(LedgerMetadataSerDe.METADATA_FORMAT_VERSION_4,
+                LedgerMetadataBuilder.from(parsed).build().getMetadataFormatVersion());
+    }
+}
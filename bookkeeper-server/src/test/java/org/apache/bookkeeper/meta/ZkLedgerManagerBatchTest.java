@@ -0,0 +1,275 @@
+package org.apache.bookkeeper.meta;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.util.ExecutorUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.apache.bookkeeper.zookeeper.ZooKeeperClient;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZkLedgerManagerBatchTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private ServerCnxnFactory serverFactory;
+    private ZooKeeper zkc;
+    private HierarchicalLedgerManager manager;
+    private ZkLedgerIdGenerator idGenerator;
+
+    @Before
+    public void setUp() throws Exception {
+        ZooKeeperServer zks = new ZooKeeperServer(tmpDir.newFolder(), tmpDir.newFolder(), 2000);
+        serverFactory = ServerCnxnFactory.createFactory(new InetSocketAddress("127.0.0.1", 0), 10);
+        serverFactory.startup(zks);
+        zkc = ZooKeeperClient.newBuilder()
+                .connectString("127.0.0.1:" + serverFactory.getLocalPort())
+                .sessionTimeoutMs(10000)
+                .build();
+        zkc.create("/ledgers", new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        // the ledgers root is never empty, so the removal of the empty parents stops there
+        zkc.create("/ledgers/available", new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setMetadataServiceUri("zk://127.0.0.1:" + serverFactory.getLocalPort() + "/ledgers");
+        manager = new HierarchicalLedgerManager(conf, zkc);
+        idGenerator = new ZkLedgerIdGenerator(zkc, "/ledgers", "idgen", Ids.OPEN_ACL_UNSAFE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        idGenerator.close();
+        manager.close();
+        zkc.close();
+        serverFactory.shutdown();
+    }
+
+    private static LedgerMetadata metadata(long ledgerId) {
+        List<BookieId> ensemble = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ensemble.add(BookieId.parse("bookie-" + i + ".example.com:3181"));
+        }
+        return LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withEnsembleSize(3)
+                .withWriteQuorumSize(3)
+                .withAckQuorumSize(2)
+                .withDigestType(DigestType.CRC32C)
+                .withPassword("secret".getBytes(UTF_8))
+                .newEnsembleEntry(0L, ensemble)
+                .build();
+    }
+
+    private List<Long> generateLedgerIds(int count) throws Exception {
+        CompletableFuture<List<Long>> future = new CompletableFuture<>();
+        idGenerator.generateLedgerIds(count, (rc, ledgerIds) -> {
+            if (rc == BKException.Code.OK) {
+                future.complete(ledgerIds);
+            } else {
+                future.completeExceptionally(BKException.create(rc));
+            }
+        });
+        return future.get();
+    }
+
+    @Test
+    public void generateLedgerIdsTest() throws Exception {
+        // the first range creates the id generation znode
+        List<Long> first = generateLedgerIds(150);
+        List<Long> second = generateLedgerIds(150);
+        assertEquals(150, first.size());
+        assertEquals(150, second.size());
+        assertEquals(new ArrayList<>(new TreeSet<>(first)), first);
+        assertEquals(new ArrayList<>(new TreeSet<>(second)), second);
+        assertTrue(first.get(first.size() - 1) < second.get(0));
+        // the id generation znodes are deleted
+        while (!zkc.getChildren("/ledgers/idgen", false).isEmpty()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void generateNoLedgerIdsTest() throws Exception {
+        assertTrue(generateLedgerIds(0).isEmpty());
+        assertEquals(1, generateLedgerIds(1).size());
+    }
+
+    @Test
+    public void concurrentRangesAreDisjointTest() throws Exception {
+        List<CompletableFuture<List<Long>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            CompletableFuture<List<Long>> future = new CompletableFuture<>();
+            idGenerator.generateLedgerIds(50, (rc, ledgerIds) -> {
+                if (rc == BKException.Code.OK) {
+                    future.complete(ledgerIds);
+                } else {
+                    future.completeExceptionally(BKException.create(rc));
+                }
+            });
+            futures.add(future);
+        }
+        Set<Long> generated = new HashSet<>();
+        for (CompletableFuture<List<Long>> future : futures) {
+            List<Long> ledgerIds = future.get();
+            assertEquals(50, ledgerIds.size());
+            generated.addAll(ledgerIds);
+        }
+        assertEquals(400, generated.size());
+
+        // the single ids follow the ranges
+        CompletableFuture<Long> single = new CompletableFuture<>();
+        idGenerator.generateLedgerId((rc, ledgerId) -> single.complete(ledgerId));
+        assertTrue(single.get() > Collections.max(generated));
+    }
+
+    @Test
+    public void generateLedgerIdsAfterCloseTest() throws Exception {
+        generateLedgerIds(1);
+        zkc.close();
+        try {
+            generateLedgerIds(10);
+            fail("the zookeeper client is closed");
+        } catch (ExecutionException e) {
+            assertEquals(BKException.Code.ZKException, BKException.getExceptionCode(e.getCause()));
+        }
+    }
+
+    @Test
+    public void processLedgersWithVirtualThreadsTest() throws Exception {
+        Map<Long, LedgerMetadata> ledgers = new HashMap<>();
+        for (long ledgerId = 1; ledgerId <= 20; ledgerId++) {
+            ledgers.put(ledgerId, metadata(ledgerId));
+        }
+        for (CompletableFuture<Versioned<LedgerMetadata>> future : manager.createLedgersMetadata(ledgers).values()) {
+            future.get();
+        }
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setMetadataServiceUri("zk://127.0.0.1:" + serverFactory.getLocalPort() + "/ledgers");
+        conf.setVirtualThreadsEnabled(true);
+        HierarchicalLedgerManager virtualManager = new HierarchicalLedgerManager(conf, zkc);
+        try {
+            Set<Long> processed = ConcurrentHashMap.newKeySet();
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            CountDownLatch schedulerFree = new CountDownLatch(1);
+            CompletableFuture<Integer> done = new CompletableFuture<>();
+            virtualManager.asyncProcessLedgers((ledgerId, cb) -> {
+                threads.add(Thread.currentThread());
+                if (ExecutorUtils.isVirtualThreadSupported() && processed.isEmpty()) {
+                    // a blocked processor doesn't hold the scheduler of the manager
+                    virtualManager.scheduler.execute(schedulerFree::countDown);
+                    try {
+                        assertTrue(schedulerFree.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                processed.add(ledgerId);
+                cb.processResult(BKException.Code.OK, null, null);
+            }, (rc, path, ctx) -> done.complete(rc), null, BKException.Code.OK, BKException.Code.ReadException);
+            assertEquals(BKException.Code.OK, done.get().intValue());
+            assertEquals(ledgers.keySet(), processed);
+            for (Thread thread : threads) {
+                // the option is ignored when virtual threads are not supported
+                assertEquals(ExecutorUtils.isVirtualThreadSupported(),
+                        !thread.getName().startsWith("ZkLedgerManagerScheduler"));
+            }
+        } finally {
+            virtualManager.close();
+        }
+    }
+
+    @Test
+    public void createAndRemoveLedgersTest() throws Exception {
+        Map<Long, LedgerMetadata> ledgers = new HashMap<>();
+        for (long ledgerId = 1; ledgerId <= 150; ledgerId++) {
+            ledgers.put(ledgerId, metadata(ledgerId));
+        }
+        // under another parent znode
+        for (long ledgerId = 20000; ledgerId < 20050; ledgerId++) {
+            ledgers.put(ledgerId, metadata(ledgerId));
+        }
+        Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> written = manager.createLedgersMetadata(ledgers);
+        assertEquals(ledgers.keySet(), written.keySet());
+        Map<Long, Versioned<LedgerMetadata>> created = new HashMap<>();
+        for (Map.Entry<Long, CompletableFuture<Versioned<LedgerMetadata>>> e : written.entrySet()) {
+            created.put(e.getKey(), e.getValue().get());
+        }
+        for (long ledgerId : ledgers.keySet()) {
+            assertEquals(new LongVersion(0), created.get(ledgerId).getVersion());
+            Versioned<LedgerMetadata> read = manager.readLedgerMetadata(ledgerId).get();
+            assertEquals(created.get(ledgerId).getValue().getCToken(), read.getValue().getCToken());
+            assertEquals(created.get(ledgerId).getValue().toSafeString(), read.getValue().toSafeString());
+        }
+
+        Map<Long, LedgerMetadata> existing = new HashMap<>();
+        existing.put(150L, metadata(150L));
+        existing.put(151L, metadata(151L));
+        Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> retried = manager.createLedgersMetadata(existing);
+        try {
+            retried.get(150L).get();
+            fail("ledger 150 already exists");
+        } catch (ExecutionException e) {
+            assertEquals(BKException.Code.LedgerExistException, BKException.getExceptionCode(e.getCause()));
+        }
+        // the other ledgers of the failed multi are still created one by one
+        assertEquals(new LongVersion(0), retried.get(151L).get().getVersion());
+
+        Map<Long, Version> versions = new HashMap<>();
+        for (long ledgerId : ledgers.keySet()) {
+            versions.put(ledgerId, ledgerId % 2 == 0 ? Version.ANY : created.get(ledgerId).getVersion());
+        }
+        versions.put(151L, Version.ANY);
+        // missing ledgers are ignored
+        versions.put(30000L, Version.ANY);
+        manager.removeLedgersMetadata(versions).get();
+        for (long ledgerId : versions.keySet()) {
+            try {
+                manager.readLedgerMetadata(ledgerId).get();
+                fail("ledger " + ledgerId + " is removed");
+            } catch (ExecutionException e) {
+                assertEquals(BKException.Code.NoSuchLedgerExistsOnMetadataServerException,
+                        BKException.getExceptionCode(e.getCause()));
+            }
+        }
+        // the empty parent znodes are removed
+        assertNull(zkc.exists("/ledgers/00/0000", false));
+        assertNull(zkc.exists("/ledgers/00/0002", false));
+        assertNull(zkc.exists("/ledgers/00", false));
+        assertNotNull(zkc.exists("/ledgers", false));
+    }
+}
@@ -0,0 +1,191 @@
+package org.apache.bookkeeper.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.zookeeper.ZooKeeperClient;
+import org.apache.zookeeper.AsyncCallback.MultiCallback;
+import org.apache.zookeeper.AsyncCallback.StringCallback;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZkLedgerUnderreplicationManagerBatchTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private ServerCnxnFactory serverFactory;
+    private ZooKeeper zkc;
+    private ServerConfiguration conf;
+    private ZkLedgerUnderreplicationManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        ZooKeeperServer zks = new ZooKeeperServer(tmpDir.newFolder(), tmpDir.newFolder(), 2000);
+        serverFactory = ServerCnxnFactory.createFactory(new InetSocketAddress("127.0.0.1", 0), 10);
+        serverFactory.startup(zks);
+        zkc = ZooKeeperClient.newBuilder()
+                .connectString("127.0.0.1:" + serverFactory.getLocalPort())
+                .sessionTimeoutMs(10000)
+                .build();
+        zkc.create("/ledgers", new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        conf = new ServerConfiguration();
+        conf.setMetadataServiceUri("zk://127.0.0.1:" + serverFactory.getLocalPort() + "/ledgers");
+        manager = new ZkLedgerUnderreplicationManager(conf, zkc);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.close();
+        zkc.close();
+        serverFactory.shutdown();
+    }
+
+    @Test
+    public void batchMarkAcquireAndListTest() throws Exception {
+        int numLedgers = 2 * ZkLedgerUnderreplicationManager.ZK_BATCH_SIZE + 10;
+        List<Long> ledgerIds = new ArrayList<>();
+        for (long i = 0; i < numLedgers; i++) {
+            // spread over several parent znodes
+            ledgerIds.add(i * 7 + (i % 3 << 20));
+        }
+        manager.markLedgerUnderreplicated(ledgerIds.get(0), "bookie0:3181");
+        manager.markLedgersUnderreplicatedAsync(ledgerIds, Arrays.asList("bookie1:3181")).get();
+
+        // the already marked ledger keeps its missing replicas
+        assertEquals(Arrays.asList("bookie0:3181", "bookie1:3181"),
+                manager.getLedgerUnreplicationInfo(ledgerIds.get(0)).getReplicaList());
+        assertEquals(Arrays.asList("bookie1:3181"),
+                manager.getLedgerUnreplicationInfo(ledgerIds.get(numLedgers - 1)).getReplicaList());
+
+        Set<Long> listed = new HashSet<>();
+        Iterator<UnderreplicatedLedger> iter = manager.listLedgersToRereplicate(null);
+        while (iter.hasNext()) {
+            assertTrue(listed.add(iter.next().getLedgerId()));
+        }
+        assertEquals(new HashSet<>(ledgerIds), listed);
+        assertFalse(manager.listLedgersToRereplicate(replicas -> replicas.contains("bookie2:3181")).hasNext());
+
+        List<Long> acquired = manager.getLedgersToRereplicate(100);
+        assertEquals(100, acquired.size());
+        assertEquals(100, new HashSet<>(acquired).size());
+        for (long ledgerId : acquired) {
+            assertTrue(manager.isLedgerBeingReplicated(ledgerId));
+        }
+        // the locked ledgers are not acquired again
+        List<Long> acquiredAgain = manager.getLedgersToRereplicate(numLedgers);
+        assertEquals(numLedgers - 100, acquiredAgain.size());
+        for (long ledgerId : acquiredAgain) {
+            assertFalse(acquired.contains(ledgerId));
+        }
+
+        manager.markLedgerReplicated(acquired.get(0));
+        manager.releaseUnderreplicatedLedger(acquired.get(1));
+        assertEquals(null, manager.getLedgerUnreplicationInfo(acquired.get(0)));
+        assertEquals(Arrays.asList(acquired.get(1)), manager.getLedgersToRereplicate(10));
+    }
+
+    @Test
+    public void oneMultiPerBatchTest() throws Exception {
+        ZooKeeper spiedZkc = spy(zkc);
+        ZkLedgerUnderreplicationManager spiedManager = new ZkLedgerUnderreplicationManager(conf, spiedZkc);
+        int numLedgers = 2 * ZkLedgerUnderreplicationManager.ZK_BATCH_SIZE + 10;
+        List<Long> ledgerIds = new ArrayList<>();
+        for (long i = 0; i < numLedgers; i++) {
+            // each ledger has a parent znode of its own
+            ledgerIds.add(i * 0x10001L);
+        }
+        spiedManager.markLedgersUnderreplicatedAsync(ledgerIds, Arrays.asList("bookie1:3181")).get();
+
+        // the parent znodes are created in the multi of their batch, which doesn't fall back
+        verify(spiedZkc, times(3)).multi(anyList(), any(MultiCallback.class), any());
+        verify(spiedZkc, never()).create(anyString(), any(byte[].class), anyList(), any(CreateMode.class),
+                any(StringCallback.class), any());
+
+        Set<Long> listed = new HashSet<>();
+        Iterator<UnderreplicatedLedger> iter = manager.listLedgersToRereplicate(null);
+        while (iter.hasNext()) {
+            listed.add(iter.next().getLedgerId());
+        }
+        assertEquals(new HashSet<>(ledgerIds), listed);
+
+        // a batch of ledgers sharing the upper levels of their parents with the marked ones
+        List<Long> neighbours = new ArrayList<>();
+        for (long i = 0; i < 10; i++) {
+            neighbours.add(i * 0x10001L + 1);
+        }
+        spiedManager.markLedgersUnderreplicatedAsync(neighbours, Arrays.asList("bookie1:3181")).get();
+        verify(spiedZkc, times(4)).multi(anyList(), any(MultiCallback.class), any());
+        verify(spiedZkc, never()).create(anyString(), any(byte[].class), anyList(), any(CreateMode.class),
+                any(StringCallback.class), any());
+        for (long ledgerId : neighbours) {
+            assertEquals(Arrays.asList("bookie1:3181"),
+                    manager.getLedgerUnreplicationInfo(ledgerId).getReplicaList());
+        }
+        spiedManager.close();
+    }
+
+    @Test
+    public void perLedgerCallsDontUseSynchronousZooKeeperTest() throws Exception {
+        ZooKeeper spiedZkc = spy(zkc);
+        ZkLedgerUnderreplicationManager spiedManager = new ZkLedgerUnderreplicationManager(conf, spiedZkc);
+        manager.markLedgerUnderreplicated(1L, "bookie1:3181");
+        manager.markLedgerUnderreplicated(2L, "bookie1:3181");
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), new HashSet<>(spiedManager.getLedgersToRereplicate(2)));
+        clearInvocations(spiedZkc);
+
+        assertTrue(spiedManager.isLedgerReplicationEnabled());
+        spiedManager.markLedgerReplicated(1L);
+        spiedManager.releaseUnderreplicatedLedger(2L);
+        // the synchronous calls of the ZooKeeper client pin the virtual threads
+        verify(spiedZkc, never()).exists(anyString(), anyBoolean());
+        verify(spiedZkc, never()).exists(anyString(), any(Watcher.class));
+        verify(spiedZkc, never()).delete(anyString(), anyInt());
+
+        assertNull(manager.getLedgerUnreplicationInfo(1L));
+        assertFalse(manager.isLedgerBeingReplicated(1L));
+        assertFalse(manager.isLedgerBeingReplicated(2L));
+        assertEquals(Arrays.asList("bookie1:3181"), manager.getLedgerUnreplicationInfo(2L).getReplicaList());
+
+        // a ledger marked again while being replicated is kept
+        assertEquals(Arrays.asList(2L), spiedManager.getLedgersToRereplicate(1));
+        manager.markLedgerUnderreplicated(2L, "bookie2:3181");
+        spiedManager.markLedgerReplicated(2L);
+        assertEquals(Arrays.asList("bookie1:3181", "bookie2:3181"),
+                manager.getLedgerUnreplicationInfo(2L).getReplicaList());
+        assertFalse(manager.isLedgerBeingReplicated(2L));
+
+        manager.disableLedgerReplication();
+        assertFalse(spiedManager.isLedgerReplicationEnabled());
+        spiedManager.close();
+    }
+}
@@ -0,0 +1,128 @@
+package org.apache.bookkeeper.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public class NetworkTopologyImplTest {
+
+    private static BookieNode bookie(int id, String rack) {
+        return new BookieNode(BookieId.parse("bookie" + id + ":3181"), rack);
+    }
+
+    @Test
+    public void chooseRandomLeafTest() {
+        NetworkTopologyImpl topology = new NetworkTopologyImpl();
+        for (int i = 0; i < 30; i++) {
+            topology.add(bookie(i, "/rack" + (i % 3)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            Node leaf = topology.chooseRandomLeaf("/rack1", n -> true, 1);
+            assertEquals("/rack1", leaf.getNetworkLocation());
+            leaf = topology.chooseRandomLeaf("~/rack0,/rack2", n -> true, 1000);
+            assertEquals("/rack1", leaf.getNetworkLocation());
+            assertNotNull(topology.chooseRandomLeaf(NodeBase.ROOT, n -> true, 1));
+        }
+        assertNull(topology.chooseRandomLeaf("~/rack0,/rack1,/rack2", n -> true, 100));
+        assertNull(topology.chooseRandomLeaf("/rack3", n -> true, 100));
+        assertNull(topology.chooseRandomLeaf(NodeBase.ROOT, n -> false, 100));
+
+        // all the leaves of a rack are reachable, and removed leaves are not
+        BookieNode removed = bookie(1, "/rack1");
+        topology.remove(removed);
+        Set<Node> chosen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            chosen.add(topology.chooseRandomLeaf("/rack1", n -> true, 1));
+        }
+        assertEquals(9, chosen.size());
+        assertEquals(topology.getLeaves("/rack1"), chosen);
+
+        // a bookie moved to another rack, while still at the old location
+        topology.add(bookie(4, "/rack3"));
+        topology.remove(bookie(4, "/rack1"));
+        Node moved = topology.chooseRandomLeaf("/rack3", n -> true, 1);
+        assertEquals("/rack3", moved.getNetworkLocation());
+        assertTrue(topology.chooseRandomLeaf("~/rack0,/rack1,/rack2", n -> true, 1000) == moved);
+    }
+
+    private static Set<Node> chooseLeaves(NetworkTopology topology, String scope) {
+        Set<Node> chosen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            Node leaf = topology.chooseRandomLeaf(scope, n -> true, 1);
+            if (null != leaf) {
+                chosen.add(leaf);
+            }
+        }
+        return chosen;
+    }
+
+    @Test
+    public void chooseRandomLeafExcludingScopesTest() {
+        NetworkTopologyImpl topology = new NetworkTopologyImpl();
+        String[] racks = { "/region0/rack1", "/region0/rack10", "/region1/rack1", "/region1/rack2" };
+        for (int i = 0; i < 8; i++) {
+            topology.add(bookie(i, racks[i % racks.length]));
+        }
+
+        // a region excludes all its racks
+        Set<Node> chosen = chooseLeaves(topology, "~/region0");
+        assertEquals(4, chosen.size());
+        for (Node leaf : chosen) {
+            assertTrue(leaf.getNetworkLocation().startsWith("/region1/"));
+        }
+        // a rack doesn't exclude the racks whose name it prefixes
+        chosen = chooseLeaves(topology, "~/region0/rack1,/region1/rack1");
+        assertEquals(4, chosen.size());
+        for (Node leaf : chosen) {
+            assertFalse(leaf.getNetworkLocation().endsWith("/rack1"));
+        }
+        assertEquals(topology.getLeaves("/region0/rack10"), chooseLeaves(topology, "~/region0/rack1,/region1"));
+        assertEquals(8, chooseLeaves(topology, "~/region2").size());
+        assertNull(topology.chooseRandomLeaf("~/region0,/region1", n -> true, 100));
+        // the filter applies to the leaves outside of the excluded scopes
+        Node bookie5 = bookie(5, "/region0/rack10");
+        assertEquals(bookie5, topology.chooseRandomLeaf("~/region1",
+                n -> n.getNetworkLocation().endsWith("rack10") && n.getName().startsWith("bookie5"), 1000));
+    }
+
+    @Test
+    public void chooseRandomLeafAfterRemovalsTest() {
+        NetworkTopologyImpl topology = new NetworkTopologyImpl();
+        for (int i = 0; i < 10; i++) {
+            topology.add(bookie(i, "/rack0"));
+        }
+        topology.add(bookie(10, "/rack1"));
+
+        // the first, the last and a middle leaf are swapped with the last ones
+        topology.remove(bookie(0, "/rack0"));
+        topology.remove(bookie(9, "/rack0"));
+        topology.remove(bookie(4, "/rack0"));
+        // removing a leaf twice, or an unknown leaf, doesn't change the leaves
+        topology.remove(bookie(4, "/rack0"));
+        topology.remove(bookie(11, "/rack0"));
+        Set<Node> leaves = topology.getLeaves("/rack0");
+        assertEquals(7, leaves.size());
+        assertEquals(leaves, chooseLeaves(topology, "/rack0"));
+        assertEquals(leaves, chooseLeaves(topology, "~/rack1"));
+        assertEquals(8, chooseLeaves(topology, NodeBase.ROOT).size());
+
+        // the removed leaves are chosen again once added back
+        topology.add(bookie(4, "/rack0"));
+        assertEquals(8, chooseLeaves(topology, "/rack0").size());
+
+        // a location without leaves left has no leaf to choose
+        topology.remove(bookie(10, "/rack1"));
+        assertNull(topology.chooseRandomLeaf("/rack1", n -> true, 100));
+        assertEquals(topology.getLeaves("/rack0"), chooseLeaves(topology, NodeBase.ROOT));
+        assertEquals(topology.getLeaves("/rack0"), chooseLeaves(topology, "~/rack1"));
+        topology.add(bookie(10, "/rack1"));
+        assertEquals(topology.getLeaves("/rack1"), chooseLeaves(topology, "/rack1"));
+    }
+}
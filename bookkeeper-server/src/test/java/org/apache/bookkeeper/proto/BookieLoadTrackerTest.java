@@ -0,0 +1,102 @@
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.proto.BookieLoadTracker.NUM_BUCKETS;
+import static org.apache.bookkeeper.proto.BookieLoadTracker.WINDOW_NANOS;
+import static org.apache.bookkeeper.proto.BookieLoadTracker.bucket;
+import static org.apache.bookkeeper.proto.BookieLoadTracker.bucketUpperBound;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.junit.Test;
+
+public class BookieLoadTrackerTest {
+
+    private final AtomicLong nanos = new AtomicLong(1000L);
+    private final BookieLoadTracker tracker = new BookieLoadTracker(nanos::get);
+
+    @Test
+    public void bucketsTest() {
+        int lastBucket = 0;
+        for (long micros = 0; micros < 1_000_000; micros++) {
+            int bucket = bucket(micros);
+            assertTrue(bucket == lastBucket || bucket == lastBucket + 1);
+            // each value is in the bucket whose range it is in
+            assertTrue(micros <= bucketUpperBound(bucket));
+            assertTrue(bucket == 0 || micros > bucketUpperBound(bucket - 1));
+            // with a precision of a quarter of a power of two
+            assertTrue(bucketUpperBound(bucket) - micros <= micros / 4);
+            lastBucket = bucket;
+        }
+        assertEquals(4, bucket(4));
+        assertEquals(4, bucketUpperBound(4));
+        assertEquals(8, bucket(9));
+        assertEquals(9, bucketUpperBound(8));
+        assertEquals(NUM_BUCKETS - 1, bucket(Long.MAX_VALUE));
+        assertEquals(bucket(Long.MAX_VALUE), bucket(bucketUpperBound(NUM_BUCKETS - 1)));
+    }
+
+    @Test
+    public void addLatencyPercentilesTest() {
+        for (int i = 1; i <= 100; i++) {
+            tracker.recordAddLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        // the values are reported from the last complete window
+        assertEquals(0, tracker.getAddLatencyPercentileMicros(50));
+
+        nanos.addAndGet(WINDOW_NANOS);
+        assertEquals(bucketUpperBound(bucket(50_000)), tracker.getAddLatencyPercentileMicros(50));
+        assertEquals(bucketUpperBound(bucket(99_000)), tracker.getAddLatencyPercentileMicros(99));
+        assertEquals(bucketUpperBound(bucket(100_000)), tracker.getAddLatencyPercentileMicros(100));
+        assertEquals(bucketUpperBound(bucket(1_000)), tracker.getAddLatencyPercentileMicros(0.5));
+        // the latencies recorded in the current window don't change the values
+        tracker.recordAddLatency(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(bucketUpperBound(bucket(100_000)), tracker.getAddLatencyPercentileMicros(100));
+
+        // the next window only has the latest latency
+        nanos.addAndGet(WINDOW_NANOS);
+        assertEquals(bucketUpperBound(bucket(10_000_000)), tracker.getAddLatencyPercentileMicros(50));
+        // and the window without requests reports nothing
+        nanos.addAndGet(WINDOW_NANOS);
+        assertEquals(0, tracker.getAddLatencyPercentileMicros(99));
+    }
+
+    @Test
+    public void readRateTest() {
+        for (int i = 0; i < 50; i++) {
+            tracker.recordRead();
+        }
+        assertEquals(0, tracker.getReadRequestsPerSecond());
+        nanos.addAndGet(WINDOW_NANOS);
+        assertEquals(5, tracker.getReadRequestsPerSecond());
+
+        // a window is closed by the first access after its end, the rate is over its duration
+        for (int i = 0; i < 40; i++) {
+            tracker.recordRead();
+        }
+        nanos.addAndGet(2 * WINDOW_NANOS);
+        assertEquals(2, tracker.getReadRequestsPerSecond());
+        nanos.addAndGet(WINDOW_NANOS);
+        assertEquals(0, tracker.getReadRequestsPerSecond());
+    }
+
+    @Test
+    public void trackedRequestStatsTest() {
+        OpStatsLogger addStats = tracker.trackAddRequests(NullStatsLogger.INSTANCE.getOpStatsLogger("add"));
+        OpStatsLogger readStats = tracker.trackReadRequests(NullStatsLogger.INSTANCE.getOpStatsLogger("read"));
+        addStats.registerSuccessfulEvent(3, TimeUnit.MILLISECONDS);
+        addStats.registerFailedEvent(3, TimeUnit.MILLISECONDS);
+        // the values are not latencies
+        addStats.registerSuccessfulValue(100_000);
+        for (int i = 0; i < 10; i++) {
+            readStats.registerSuccessfulEvent(1, TimeUnit.MILLISECONDS);
+            readStats.registerFailedEvent(1, TimeUnit.MILLISECONDS);
+        }
+        nanos.addAndGet(WINDOW_NANOS);
+        assertEquals(bucketUpperBound(bucket(3_000)), tracker.getAddLatencyPercentileMicros(100));
+        assertEquals(2, tracker.getReadRequestsPerSecond());
+    }
+}
@@ -0,0 +1,284 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyEntriesRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.CopyEntriesResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CopyEntriesProcessorV3Test {
+
+    private static final long LEDGER_ID = 1L;
+    private static final BookieId BOOKIE_0 = BookieId.parse("127.0.0.1:3181");
+    private static final BookieId BOOKIE_1 = BookieId.parse("127.0.0.2:3181");
+    private static final BookieId BOOKIE_2 = BookieId.parse("127.0.0.3:3181");
+    private static final BookieId BOOKIE_3 = BookieId.parse("127.0.0.4:3181");
+
+    private final LinkedBlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    private final List<Long> readEntries = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> addThreads = Collections.synchronizedList(new ArrayList<>());
+    private BookieRequestProcessor requestProcessor;
+    private BookieRequestHandler requestHandler;
+    private Channel channel;
+    private LedgerManager ledgerManager;
+    private BookieClient bookieClient;
+    private OrderedExecutor writeThreadPool;
+    // the bookie missing the entries it is the first bookie of the write set of
+    private BookieId bookieMissingEntries = null;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setCopyEntriesMaxOutstanding(4);
+        writeThreadPool = OrderedExecutor.newBuilder().name("CopyEntriesWriter").numThreads(2).build();
+
+        channel = mock(Channel.class);
+        when(channel.isActive()).thenReturn(true);
+        when(channel.isWritable()).thenReturn(true);
+        when(channel.writeAndFlush(any())).thenAnswer(invocation -> {
+            responses.add(invocation.getArgument(0));
+            return mock(ChannelFuture.class);
+        });
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+        requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+
+        Bookie bookie = mock(Bookie.class);
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            WriteCallback cb = invocation.getArgument(1);
+            addThreads.add(Thread.currentThread().getName());
+            long entryId = entry.getLong(8);
+            entry.release();
+            cb.writeComplete(BookieProtocol.EOK, LEDGER_ID, entryId, null, null);
+            return null;
+        }).when(bookie).recoveryAddEntry(any(ByteBuf.class), any(WriteCallback.class), any(), any(byte[].class));
+
+        bookieClient = mock(BookieClient.class);
+        doAnswer(invocation -> {
+            BookieId bookieId = invocation.getArgument(0);
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            if (bookieId.equals(bookieMissingEntries) && entryId % 3 == 0) {
+                cb.readEntryComplete(BKException.Code.NoSuchEntryException, LEDGER_ID, entryId, null, null);
+                return null;
+            }
+            readEntries.add(entryId);
+            ByteBuf entry = Unpooled.buffer(24);
+            entry.writeLong(LEDGER_ID).writeLong(entryId).writeLong(entryId - 1);
+            cb.readEntryComplete(BKException.Code.OK, LEDGER_ID, entryId, entry, null);
+            entry.release();
+            return null;
+        }).when(bookieClient).readEntry(any(BookieId.class), anyLong(), anyLong(), any(ReadEntryCallback.class),
+                any(), anyInt());
+
+        ledgerManager = mock(LedgerManager.class);
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(LEDGER_ID)
+                .withEnsembleSize(3)
+                .withWriteQuorumSize(2)
+                .withAckQuorumSize(2)
+                .newEnsembleEntry(0L, Arrays.asList(BOOKIE_0, BOOKIE_1, BOOKIE_2))
+                .newEnsembleEntry(100L, Arrays.asList(BOOKIE_0, BOOKIE_3, BOOKIE_2))
+                .withClosedState()
+                .withLastEntryId(149L)
+                .withLength(1000L)
+                .build();
+        when(ledgerManager.readLedgerMetadata(LEDGER_ID))
+                .thenReturn(CompletableFuture.completedFuture(new Versioned<>(metadata, new LongVersion(1))));
+
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getServerCfg()).thenReturn(conf);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getPeerBookieClient()).thenReturn(bookieClient);
+        when(requestProcessor.getLedgerManager()).thenReturn(ledgerManager);
+        when(requestProcessor.getWriteThreadPool()).thenReturn(writeThreadPool);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+    }
+
+    @After
+    public void tearDown() {
+        writeThreadPool.shutdownNow();
+    }
+
+    private static Request copyRequest(long firstEntryId, long lastEntryId, List<String> ensemble,
+                                       long timeoutMs) {
+        BKPacketHeader.Builder header = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.COPY_ENTRIES)
+                .setTxnId(1)
+                .setTimeoutMs(timeoutMs);
+        CopyEntriesRequest.Builder copyEntries = CopyEntriesRequest.newBuilder()
+                .setLedgerId(LEDGER_ID)
+                .setMasterKey(ByteString.copyFromUtf8("key"))
+                .setFirstEntryId(firstEntryId)
+                .setLastEntryId(lastEntryId)
+                .addAllEnsemble(ensemble)
+                .setWriteQuorumSize(2);
+        return Request.newBuilder().setHeader(header).setCopyEntriesRequest(copyEntries).build();
+    }
+
+    private CopyEntriesResponse copy(Request request) throws Exception {
+        new CopyEntriesProcessorV3(request, requestHandler, requestProcessor).run();
+        Response response = responses.poll(10, TimeUnit.SECONDS);
+        assertEquals(response.getStatus(), response.getCopyEntriesResponse().getStatus());
+        return response.getCopyEntriesResponse();
+    }
+
+    @Test
+    public void requestResponseRoundTripTest() throws Exception {
+        BookieProtoEncoding.RequestEnDecoderV3 requestEnDecoder =
+                new BookieProtoEncoding.RequestEnDecoderV3(ExtensionRegistry.getEmptyRegistry());
+        BookieProtoEncoding.ResponseEnDecoderV3 responseEnDecoder =
+                new BookieProtoEncoding.ResponseEnDecoderV3(ExtensionRegistry.getEmptyRegistry());
+
+        // the bookie 2 is replaced, and the bookie 0 lost some entries
+        bookieMissingEntries = BOOKIE_0;
+        Request request = copyRequest(0, 99, Arrays.asList(BOOKIE_0.toString(), BOOKIE_1.toString(), ""), 60000);
+        ByteBuf requestFrame = (ByteBuf) requestEnDecoder.encode(request, ByteBufAllocator.DEFAULT);
+        // skip the frame size
+        requestFrame.skipBytes(4);
+        Request decodedRequest = (Request) requestEnDecoder.decode(requestFrame);
+        requestFrame.release();
+        assertEquals(request, decodedRequest);
+
+        new CopyEntriesProcessorV3(decodedRequest, requestHandler, requestProcessor).run();
+        Response response = responses.poll(10, TimeUnit.SECONDS);
+        ByteBuf responseFrame = (ByteBuf) responseEnDecoder.encode(response, ByteBufAllocator.DEFAULT);
+        responseFrame.skipBytes(4);
+        Response decodedResponse = (Response) responseEnDecoder.decode(responseFrame);
+        responseFrame.release();
+
+        assertEquals(StatusCode.EOK, decodedResponse.getStatus());
+        assertEquals(OperationType.COPY_ENTRIES, decodedResponse.getHeader().getOperation());
+        assertEquals(1, decodedResponse.getHeader().getTxnId());
+        CopyEntriesResponse copyEntriesResponse = decodedResponse.getCopyEntriesResponse();
+        assertEquals(StatusCode.EOK, copyEntriesResponse.getStatus());
+        assertEquals(LEDGER_ID, copyEntriesResponse.getLedgerId());
+        assertEquals(100, copyEntriesResponse.getEntriesCopied());
+        assertEquals(100 * 24, copyEntriesResponse.getBytesCopied());
+        assertFalse(copyEntriesResponse.hasFailedEntryId());
+
+        // the entries missing from the bookie 0 were read from the next bookie of their write set
+        assertEquals(100, readEntries.size());
+        verify(bookieClient).readEntry(eq(BOOKIE_0), eq(LEDGER_ID), eq(3L), any(ReadEntryCallback.class),
+                any(), anyInt());
+        verify(bookieClient).readEntry(eq(BOOKIE_1), eq(LEDGER_ID), eq(3L), any(ReadEntryCallback.class),
+                any(), anyInt());
+        verify(bookieClient, never()).readEntry(eq(BOOKIE_2), anyLong(), anyLong(), any(ReadEntryCallback.class),
+                any(), anyInt());
+    }
+
+    @Test
+    public void entriesAddedByWriteThreadsTest() throws Exception {
+        Thread reader = Thread.currentThread();
+        CopyEntriesResponse response = copy(copyRequest(100, 149,
+                Arrays.asList(BOOKIE_0.toString(), "", BOOKIE_2.toString()), 60000));
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEquals(50, response.getEntriesCopied());
+        assertEquals(50, addThreads.size());
+        for (String thread : addThreads) {
+            assertNotEquals(reader.getName(), thread);
+            assertTrue(thread, thread.startsWith("CopyEntriesWriter"));
+        }
+    }
+
+    @Test
+    public void ensembleNotMatchingMetadataTest() throws Exception {
+        // a bookie which is not in the ensemble of the entries
+        assertEquals(StatusCode.EBADREQ, copy(copyRequest(0, 99,
+                Arrays.asList(BOOKIE_0.toString(), BOOKIE_3.toString(), ""), 60000)).getStatus());
+        // entries of two ensembles
+        assertEquals(StatusCode.EBADREQ, copy(copyRequest(50, 149,
+                Arrays.asList(BOOKIE_0.toString(), BOOKIE_1.toString(), ""), 60000)).getStatus());
+        // entries after the last entry of the closed ledger
+        assertEquals(StatusCode.EBADREQ, copy(copyRequest(100, 150,
+                Arrays.asList(BOOKIE_0.toString(), BOOKIE_3.toString(), ""), 60000)).getStatus());
+        // a smaller ensemble
+        assertEquals(StatusCode.EBADREQ, copy(copyRequest(0, 99,
+                Arrays.asList(BOOKIE_0.toString(), BOOKIE_1.toString()), 60000)).getStatus());
+        assertTrue(readEntries.isEmpty());
+
+        when(ledgerManager.readLedgerMetadata(LEDGER_ID))
+                .thenReturn(FutureUtils.exception(new BKException.BKNoSuchLedgerExistsOnMetadataServerException()));
+        assertEquals(StatusCode.ENOLEDGER, copy(copyRequest(0, 99,
+                Arrays.asList(BOOKIE_0.toString(), BOOKIE_1.toString(), ""), 60000)).getStatus());
+
+        when(requestProcessor.getLedgerManager()).thenReturn(null);
+        assertEquals(StatusCode.EBADREQ, copy(copyRequest(0, 99,
+                Arrays.asList(BOOKIE_0.toString(), BOOKIE_1.toString(), ""), 60000)).getStatus());
+        assertTrue(readEntries.isEmpty());
+    }
+
+    @Test
+    public void copyStopsAfterTimeoutTest() throws Exception {
+        Request request = copyRequest(0, 99, Arrays.asList(BOOKIE_0.toString(), BOOKIE_1.toString(), ""), 1);
+        CopyEntriesProcessorV3 processor = new CopyEntriesProcessorV3(request, requestHandler, requestProcessor);
+        Thread.sleep(10);
+        processor.run();
+        Response response = responses.poll(10, TimeUnit.SECONDS);
+        assertEquals(StatusCode.EIO, response.getStatus());
+        assertEquals(0, response.getCopyEntriesResponse().getEntriesCopied());
+        assertTrue(readEntries.isEmpty());
+    }
+
+    @Test
+    public void copyStopsWhenClientIsGoneTest() throws Exception {
+        when(channel.isActive()).thenReturn(false);
+        new CopyEntriesProcessorV3(copyRequest(0, 99,
+                Arrays.asList(BOOKIE_0.toString(), BOOKIE_1.toString(), ""), 60000),
+                requestHandler, requestProcessor).run();
+        assertTrue(readEntries.isEmpty());
+    }
+}
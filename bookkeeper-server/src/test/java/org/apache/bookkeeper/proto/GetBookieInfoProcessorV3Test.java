@@ -0,0 +1,117 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
+import org.apache.bookkeeper.bookie.LedgerStorage;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GetBookieInfoProcessorV3Test {
+
+    private final LinkedBlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    private BookieRequestProcessor requestProcessor;
+    private BookieRequestHandler requestHandler;
+    private LedgerStorage ledgerStorage;
+
+    @Before
+    public void setUp() throws Exception {
+        Channel channel = mock(Channel.class);
+        when(channel.isActive()).thenReturn(true);
+        when(channel.isWritable()).thenReturn(true);
+        when(channel.writeAndFlush(any())).thenAnswer(invocation -> {
+            responses.add(invocation.getArgument(0));
+            return mock(ChannelFuture.class);
+        });
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+        requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+
+        ledgerStorage = mock(LedgerStorage.class);
+        when(ledgerStorage.getWriteCacheUsage()).thenReturn(0.254);
+        when(ledgerStorage.getGarbageCollectionStatus()).thenReturn(Arrays.asList(
+                GarbageCollectionStatus.builder().build(),
+                GarbageCollectionStatus.builder().build()));
+        Bookie bookie = mock(Bookie.class);
+        when(bookie.getLedgerStorage()).thenReturn(ledgerStorage);
+        when(bookie.getTotalFreeSpace()).thenReturn(1000L);
+        when(bookie.getTotalDiskSpace()).thenReturn(2000L);
+        when(bookie.getJournalQueueLength()).thenReturn(42);
+        when(bookie.isDiskDegraded()).thenReturn(true);
+
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+    }
+
+    private GetBookieInfoResponse getBookieInfo(long requested) throws Exception {
+        BKPacketHeader.Builder header = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.GET_BOOKIE_INFO)
+                .setTxnId(1);
+        Request request = Request.newBuilder().setHeader(header)
+                .setGetBookieInfoRequest(GetBookieInfoRequest.newBuilder().setRequested(requested))
+                .build();
+        new GetBookieInfoProcessorV3(request, requestHandler, requestProcessor).run();
+        Response response = responses.poll(10, TimeUnit.SECONDS);
+        assertEquals(StatusCode.EOK, response.getStatus());
+        return response.getGetBookieInfoResponse();
+    }
+
+    @Test
+    public void loadIsReportedWhenRequestedTest() throws Exception {
+        GetBookieInfoResponse response = getBookieInfo(GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE
+                | GetBookieInfoRequest.Flags.LOAD_VALUE);
+        assertEquals(1000L, response.getFreeDiskSpace());
+        assertFalse(response.hasTotalDiskCapacity());
+        assertEquals(42L, response.getJournalQueueLength());
+        assertEquals(25, response.getWriteCacheUsagePercent());
+        // no add or read request in the last window
+        assertEquals(0L, response.getAddLatencyP99Micros());
+        assertEquals(0L, response.getReadRequestsPerSecond());
+        assertFalse(response.getCompacting());
+        assertTrue(response.getDiskDegraded());
+
+        // any of the ledger storage directories compacting
+        when(ledgerStorage.getGarbageCollectionStatus()).thenReturn(Arrays.asList(
+                GarbageCollectionStatus.builder().build(),
+                GarbageCollectionStatus.builder().minorCompacting(true).build()));
+        assertTrue(getBookieInfo(GetBookieInfoRequest.Flags.LOAD_VALUE).getCompacting());
+    }
+
+    @Test
+    public void loadIsNotReportedByDefaultTest() throws Exception {
+        GetBookieInfoResponse response = getBookieInfo(GetBookieInfoRequest.Flags.FREE_DISK_SPACE_VALUE
+                | GetBookieInfoRequest.Flags.TOTAL_DISK_CAPACITY_VALUE);
+        assertEquals(1000L, response.getFreeDiskSpace());
+        assertEquals(2000L, response.getTotalDiskCapacity());
+        assertFalse(response.hasJournalQueueLength());
+        assertFalse(response.hasWriteCacheUsagePercent());
+        assertFalse(response.hasAddLatencyP99Micros());
+        assertFalse(response.hasCompacting());
+        assertFalse(response.hasDiskDegraded());
+    }
+}
@@ -0,0 +1,116 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgersRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgersResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GetListOfEntriesOfLedgersProcessorV3Test {
+
+    private final LinkedBlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    private BookieRequestProcessor requestProcessor;
+    private BookieRequestHandler requestHandler;
+    private Bookie bookie;
+
+    @Before
+    public void setUp() throws Exception {
+        Channel channel = mock(Channel.class);
+        when(channel.isActive()).thenReturn(true);
+        when(channel.isWritable()).thenReturn(true);
+        when(channel.writeAndFlush(any())).thenAnswer(invocation -> {
+            responses.add(invocation.getArgument(0));
+            return mock(ChannelFuture.class);
+        });
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(channel);
+        requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+
+        bookie = mock(Bookie.class);
+        when(bookie.getListOfEntriesOfLedger(1L)).thenAnswer(invocation -> Arrays.stream(new long[] { 0, 1, 2 })
+                .iterator());
+        when(bookie.getListOfEntriesOfLedger(2L)).thenThrow(new Bookie.NoLedgerException(2L));
+        when(bookie.getListOfEntriesOfLedger(3L)).thenAnswer(invocation -> Arrays.stream(new long[] { 5 })
+                .iterator());
+        when(bookie.getListOfEntriesOfLedger(4L)).thenThrow(new IOException("failed"));
+
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getMaxLedgersPerListOfEntriesRequest()).thenReturn(3);
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+    }
+
+    private GetListOfEntriesOfLedgersResponse list(List<Long> ledgerIds) throws Exception {
+        BKPacketHeader.Builder header = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.GET_LIST_OF_ENTRIES_OF_LEDGERS)
+                .setTxnId(1);
+        Request request = Request.newBuilder().setHeader(header)
+                .setGetListOfEntriesOfLedgersRequest(GetListOfEntriesOfLedgersRequest.newBuilder()
+                        .addAllLedgerId(ledgerIds))
+                .build();
+        new GetListOfEntriesOfLedgersProcessorV3(request, requestHandler, requestProcessor).run();
+        Response response = responses.poll(10, TimeUnit.SECONDS);
+        assertEquals(response.getStatus(), response.getGetListOfEntriesOfLedgersResponse().getStatus());
+        return response.getGetListOfEntriesOfLedgersResponse();
+    }
+
+    @Test
+    public void listEntriesOfLedgersTest() throws Exception {
+        GetListOfEntriesOfLedgersResponse response = list(Arrays.asList(1L, 2L, 3L));
+        assertEquals(StatusCode.EOK, response.getStatus());
+        // the ledger 2 is not stored by the bookie
+        assertEquals(2, response.getLedgersCount());
+        GetListOfEntriesOfLedgerResponse ledger1 = response.getLedgers(0);
+        assertEquals(1L, ledger1.getLedgerId());
+        AvailabilityOfEntriesOfLedger entries = new AvailabilityOfEntriesOfLedger(
+                Unpooled.wrappedBuffer(ledger1.getAvailabilityOfEntriesOfLedger().asReadOnlyByteBuffer()));
+        assertEquals(3, entries.getTotalNumOfAvailableEntries());
+        assertTrue(entries.isEntryAvailable(2));
+        assertEquals(3L, response.getLedgers(1).getLedgerId());
+    }
+
+    @Test
+    public void failedLedgerFailsTheRequestTest() throws Exception {
+        GetListOfEntriesOfLedgersResponse response = list(Arrays.asList(1L, 4L));
+        assertEquals(StatusCode.EIO, response.getStatus());
+        assertEquals(0, response.getLedgersCount());
+    }
+
+    @Test
+    public void tooManyLedgersTest() throws Exception {
+        GetListOfEntriesOfLedgersResponse response = list(Arrays.asList(1L, 2L, 3L, 5L));
+        assertEquals(StatusCode.EBADREQ, response.getStatus());
+        assertEquals(0, response.getLedgersCount());
+        verify(bookie, never()).getListOfEntriesOfLedger(anyLong());
+    }
+}
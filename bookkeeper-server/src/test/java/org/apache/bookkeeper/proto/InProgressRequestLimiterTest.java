@@ -0,0 +1,129 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class InProgressRequestLimiterTest {
+
+    private final AtomicInteger suspended = new AtomicInteger();
+    private final List<Long> resumeDelays = new ArrayList<>();
+
+    private InProgressRequestLimiter newLimiter(String requestType, int maxInProgress) {
+        return new InProgressRequestLimiter(requestType, maxInProgress, suspended::incrementAndGet,
+                resumeDelays::add);
+    }
+
+    @Test
+    public void suspendAndResumeTest() {
+        InProgressRequestLimiter limiter = newLimiter("add", 2);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        limiter.onRequestStart(channel);
+        limiter.onRequestStart(channel);
+        assertTrue(channel.config().isAutoRead());
+
+        limiter.onRequestStart(channel);
+        assertFalse(channel.config().isAutoRead());
+        // a channel is suspended once
+        limiter.onRequestStart(channel);
+        assertEquals(1, suspended.get());
+
+        limiter.onRequestFinish();
+        limiter.onRequestFinish();
+        assertFalse(channel.config().isAutoRead());
+        limiter.onRequestFinish();
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(1, resumeDelays.size());
+    }
+
+    @Test
+    public void resumeRoundRobinTest() {
+        InProgressRequestLimiter limiter = newLimiter("read", 1);
+        EmbeddedChannel first = new EmbeddedChannel();
+        EmbeddedChannel second = new EmbeddedChannel();
+        EmbeddedChannel idle = new EmbeddedChannel();
+        limiter.onRequestStart(first);
+        limiter.onRequestStart(first);
+        limiter.onRequestStart(second);
+        assertFalse(first.config().isAutoRead());
+        assertFalse(second.config().isAutoRead());
+        // the channels not sending requests are not held up
+        assertTrue(idle.config().isAutoRead());
+
+        limiter.onRequestFinish();
+        limiter.onRequestFinish();
+        assertFalse(first.config().isAutoRead());
+        limiter.onRequestFinish();
+        assertTrue(first.config().isAutoRead());
+        assertFalse(second.config().isAutoRead());
+
+        limiter.onRequestStart(first);
+        limiter.onRequestFinish();
+        assertTrue(second.config().isAutoRead());
+    }
+
+    @Test
+    public void suspendedByBothLimitersTest() {
+        InProgressRequestLimiter addsLimiter = newLimiter("add", 1);
+        InProgressRequestLimiter readsLimiter = newLimiter("read", 1);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        addsLimiter.onRequestStart(channel);
+        addsLimiter.onRequestStart(channel);
+        readsLimiter.onRequestStart(channel);
+        readsLimiter.onRequestStart(channel);
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(2, suspended.get());
+
+        // the reads still exceed their limit
+        addsLimiter.onRequestFinish();
+        addsLimiter.onRequestFinish();
+        assertFalse(channel.config().isAutoRead());
+
+        readsLimiter.onRequestFinish();
+        readsLimiter.onRequestFinish();
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void freeSlotGoesToAChannelReadingAgainTest() {
+        InProgressRequestLimiter addsLimiter = newLimiter("add", 1);
+        InProgressRequestLimiter readsLimiter = newLimiter("read", 1);
+        EmbeddedChannel both = new EmbeddedChannel();
+        EmbeddedChannel addsOnly = new EmbeddedChannel();
+        readsLimiter.onRequestStart(both);
+        readsLimiter.onRequestStart(both);
+        addsLimiter.onRequestStart(both);
+        addsLimiter.onRequestStart(both);
+        addsLimiter.onRequestStart(addsOnly);
+
+        addsLimiter.onRequestFinish();
+        addsLimiter.onRequestFinish();
+        addsLimiter.onRequestFinish();
+        // the channel still suspended by the reads limiter doesn't take the slot
+        assertFalse(both.config().isAutoRead());
+        assertTrue(addsOnly.config().isAutoRead());
+    }
+
+    @Test
+    public void suspensionReasonsTest() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelReadSuspension.suspend(channel, "a");
+        ChannelReadSuspension.suspend(channel, "b");
+        ChannelReadSuspension.suspend(channel, "b");
+        assertFalse(ChannelReadSuspension.resume(channel, "a"));
+        assertFalse(channel.config().isAutoRead());
+        assertTrue(ChannelReadSuspension.resume(channel, "b"));
+        assertTrue(channel.config().isAutoRead());
+
+        // a closed channel doesn't read again
+        ChannelReadSuspension.suspend(channel, "a");
+        channel.close();
+        assertFalse(ChannelReadSuspension.resume(channel, "a"));
+    }
+}
@@ -0,0 +1,81 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.junit.Test;
+
+public class RequestExpirationTest {
+
+    private static final byte[] MASTER_KEY = new byte[0];
+
+    private static class ProcessorV3 extends PacketProcessorBaseV3 {
+        ProcessorV3(Request request) {
+            super(request, mock(BookieRequestHandler.class), mock(BookieRequestProcessor.class));
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private static class ProcessorV2 extends PacketProcessorBase<BookieProtocol.Request> {
+        ProcessorV2(BookieProtocol.Request request) {
+            BookieRequestProcessor requestProcessor = mock(BookieRequestProcessor.class);
+            when(requestProcessor.getV2RequestTimeoutNanos()).thenReturn(TimeUnit.MILLISECONDS.toNanos(1));
+            init(request, mock(BookieRequestHandler.class), requestProcessor);
+        }
+
+        @Override
+        protected void processPacket() {
+        }
+    }
+
+    private static Request readRequest(int priority, ReadRequest.Flag flag) {
+        BKPacketHeader.Builder header = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.READ_ENTRY)
+                .setTxnId(1)
+                .setPriority(priority)
+                .setTimeoutMs(1);
+        ReadRequest.Builder read = ReadRequest.newBuilder().setLedgerId(1).setEntryId(0);
+        if (flag != null) {
+            read.setFlag(flag).setMasterKey(ByteString.EMPTY);
+        }
+        return Request.newBuilder().setHeader(header).setReadRequest(read).build();
+    }
+
+    @Test
+    public void v3RequestExpirationTest() throws Exception {
+        ProcessorV3 read = new ProcessorV3(readRequest(0, null));
+        ProcessorV3 highPriorityRead = new ProcessorV3(readRequest(1, null));
+        ProcessorV3 fenceRead = new ProcessorV3(readRequest(0, ReadRequest.Flag.FENCE_LEDGER));
+        Thread.sleep(10);
+        assertTrue(read.isExpired());
+        assertFalse(highPriorityRead.isExpired());
+        assertFalse(fenceRead.isExpired());
+    }
+
+    @Test
+    public void v2RequestExpirationTest() throws Exception {
+        byte version = BookieProtocol.CURRENT_PROTOCOL_VERSION;
+        ProcessorV2 read = new ProcessorV2(BookieProtocol.ReadRequest.create(version, 1, 0, (short) 0, null));
+        ProcessorV2 highPriorityRead = new ProcessorV2(BookieProtocol.ReadRequest.create(version, 1, 0,
+                BookieProtocol.FLAG_HIGH_PRIORITY, null));
+        ProcessorV2 fenceRead = new ProcessorV2(BookieProtocol.ReadRequest.create(version, 1, 0,
+                BookieProtocol.FLAG_DO_FENCING, MASTER_KEY));
+        Thread.sleep(10);
+        assertTrue(read.isExpired());
+        assertFalse(highPriorityRead.isExpired());
+        assertFalse(fenceRead.isExpired());
+    }
+}
@@ -0,0 +1,217 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.proto.TenantRequestScheduler.RequestClass;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TenantRequestSchedulerTest {
+
+    private final List<Runnable> executorTasks = new ArrayList<>();
+    private final List<TimerTask> timerTasks = new ArrayList<>();
+    private final List<String> processed = new ArrayList<>();
+    private final List<String> rejected = new ArrayList<>();
+    private final AtomicReference<String> failure = new AtomicReference<>();
+    private final Map<String, Double> weights = new HashMap<>();
+    private final Map<String, Long> byteRateLimits = new HashMap<>();
+    private OrderedExecutor executor;
+    private Timer timer;
+    private TenantRequestScheduler scheduler;
+    private boolean executorFull = false;
+
+    @Before
+    public void setUp() {
+        executor = mock(OrderedExecutor.class);
+        doAnswer(invocation -> {
+            if (Thread.holdsLock(scheduler)) {
+                failure.set("the requests are handed to the thread pool under the scheduler lock");
+            }
+            if (executorFull) {
+                throw new RejectedExecutionException("full");
+            }
+            executorTasks.add(invocation.getArgument(1));
+            return null;
+        }).when(executor).executeOrdered(anyLong(), any(Runnable.class));
+        timer = mock(Timer.class);
+        when(timer.newTimeout(any(TimerTask.class), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            timerTasks.add(invocation.getArgument(0));
+            return mock(Timeout.class);
+        });
+    }
+
+    private TenantRequestScheduler newScheduler(int maxOutstandingRequests, int maxQueuedRequests) {
+        scheduler = new TenantRequestScheduler(executor, timer, maxOutstandingRequests, maxQueuedRequests,
+                4, 0, weights, byteRateLimits, NullStatsLogger.INSTANCE);
+        return scheduler;
+    }
+
+    private void submit(String tenant, RequestClass requestClass, long ledgerId, long cost, String name) {
+        scheduler.submit(tenant, requestClass, ledgerId, cost, () -> processed.add(name), () -> rejected.add(name));
+    }
+
+    private void runNextTask() {
+        executorTasks.remove(0).run();
+    }
+
+    @Test
+    public void weightedFairShareTest() {
+        weights.put("a", 2.0);
+        newScheduler(1, 100);
+        for (int i = 1; i <= 6; i++) {
+            submit("a", RequestClass.WRITE, 1, 100, "a" + i);
+        }
+        for (int i = 1; i <= 6; i++) {
+            submit("b", RequestClass.WRITE, 2, 100, "b" + i);
+        }
+        // a single request is released at once
+        assertEquals(1, executorTasks.size());
+        while (!executorTasks.isEmpty()) {
+            runNextTask();
+            assertTrue(executorTasks.size() <= 1);
+        }
+        assertEquals(12, processed.size());
+        assertNull(failure.get());
+
+        // the tenant with twice the weight gets twice the share
+        List<String> first = processed.subList(0, 9);
+        assertEquals(6, first.stream().filter(name -> name.startsWith("a")).count());
+        assertEquals(3, first.stream().filter(name -> name.startsWith("b")).count());
+        // the requests of a tenant keep their order
+        List<String> tenantA = new ArrayList<>();
+        processed.stream().filter(name -> name.startsWith("a")).forEach(tenantA::add);
+        assertEquals(6, tenantA.size());
+        List<String> sorted = new ArrayList<>(tenantA);
+        Collections.sort(sorted);
+        assertEquals(sorted, tenantA);
+    }
+
+    @Test
+    public void tailingReadsOvertakeCatchUpReadsTest() {
+        newScheduler(1, 100);
+        submit("a", RequestClass.CATCHUP_READ, 1, 100, "first");
+        for (int i = 0; i < 4; i++) {
+            submit("a", RequestClass.CATCHUP_READ, 1, 100, "catchup" + i);
+        }
+        for (int i = 0; i < 4; i++) {
+            submit("a", RequestClass.TAILING_READ, 2, 100, "tailing" + i);
+        }
+        while (!executorTasks.isEmpty()) {
+            runNextTask();
+        }
+        assertEquals(9, processed.size());
+        // the tailing reads have four times the weight of the catch-up reads
+        assertEquals("tailing3", processed.get(4));
+        assertEquals("catchup3", processed.get(8));
+    }
+
+    @Test
+    public void tooManyQueuedRequestsTest() {
+        newScheduler(1, 2);
+        for (int i = 0; i < 4; i++) {
+            submit("a", RequestClass.WRITE, 1, 10, "a" + i);
+        }
+        assertEquals(Collections.singletonList("a3"), rejected);
+        // the queues of the other tenants are not full
+        submit("b", RequestClass.WRITE, 2, 10, "b0");
+        assertEquals(1, rejected.size());
+        while (!executorTasks.isEmpty()) {
+            runNextTask();
+        }
+        assertEquals(4, processed.size());
+    }
+
+    @Test
+    public void rejectedByThreadPoolTest() {
+        newScheduler(2, 100);
+        executorFull = true;
+        submit("a", RequestClass.WRITE, 1, 10, "a0");
+        submit("a", RequestClass.WRITE, 1, 10, "a1");
+        assertEquals(2, rejected.size());
+        // the slots of the rejected requests are released
+        executorFull = false;
+        submit("a", RequestClass.WRITE, 1, 10, "a2");
+        submit("a", RequestClass.WRITE, 1, 10, "a3");
+        assertEquals(2, executorTasks.size());
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void requestsKeepTheirOrderTest() throws Exception {
+        newScheduler(10000, 10000);
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String tenant = "tenant" + t;
+            submitters.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    submit(tenant, RequestClass.WRITE, i % 8, 10, tenant + ":" + i);
+                }
+            }));
+        }
+        for (Thread submitter : submitters) {
+            submitter.start();
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        assertNull(failure.get());
+        assertTrue(rejected.isEmpty());
+        assertEquals(4000, executorTasks.size());
+
+        // the requests reach the thread pool in the order they were submitted
+        while (!executorTasks.isEmpty()) {
+            runNextTask();
+        }
+        Map<String, Integer> lastRequests = new HashMap<>();
+        for (String name : processed) {
+            String[] parts = name.split(":");
+            int request = Integer.parseInt(parts[1]);
+            assertEquals(lastRequests.getOrDefault(parts[0], -1) + 1, request);
+            lastRequests.put(parts[0], request);
+        }
+    }
+
+    @Test
+    public void byteRateLimitTest() throws Exception {
+        byteRateLimits.put("a", 1_000_000L);
+        newScheduler(1, 100);
+        // one millisecond over the quota
+        submit("a", RequestClass.WRITE, 1, 1_001_000, "a0");
+        submit("a", RequestClass.WRITE, 1, 10, "a1");
+        runNextTask();
+        assertEquals(Collections.singletonList("a0"), processed);
+        assertTrue(executorTasks.isEmpty());
+        assertEquals(1, timerTasks.size());
+
+        // the other tenants are not held
+        submit("b", RequestClass.WRITE, 2, 10, "b0");
+        runNextTask();
+        assertEquals("b0", processed.get(1));
+
+        Thread.sleep(10);
+        timerTasks.remove(0).run(mock(Timeout.class));
+        assertEquals(1, executorTasks.size());
+        runNextTask();
+        assertEquals("a1", processed.get(2));
+    }
+}
@@ -0,0 +1,83 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.group.ChannelGroup;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+public class WriteLacOrderingTest {
+
+    @Test
+    public void writeLacRunsOnTheThreadOfItsLedgerTest() throws Exception {
+        int numLedgers = 8;
+        Map<Long, Thread> lacThreads = new ConcurrentHashMap<>();
+        CountDownLatch lacsWritten = new CountDownLatch(numLedgers);
+        Bookie bookie = mock(Bookie.class);
+        doAnswer(invocation -> {
+            long ledgerId = invocation.<ByteBuf>getArgument(0).getLong(0);
+            lacThreads.put(ledgerId, Thread.currentThread());
+            lacsWritten.countDown();
+            return null;
+        }).when(bookie).setExplicitLac(any(), any(), any(), any());
+
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(mock(Channel.class));
+        BookieRequestHandler requestHandler = mock(BookieRequestHandler.class);
+        when(requestHandler.ctx()).thenReturn(ctx);
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setNumAddWorkerThreads(4);
+        BookieRequestProcessor processor = new BookieRequestProcessor(conf, bookie, NullStatsLogger.INSTANCE,
+                null, UnpooledByteBufAllocator.DEFAULT, mock(ChannelGroup.class));
+        try {
+            for (long ledgerId = 1; ledgerId <= numLedgers; ledgerId++) {
+                BKPacketHeader.Builder header = BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.WRITE_LAC)
+                        .setTxnId(ledgerId);
+                WriteLacRequest.Builder writeLac = WriteLacRequest.newBuilder()
+                        .setLedgerId(ledgerId)
+                        .setLac(0)
+                        .setMasterKey(ByteString.EMPTY)
+                        .setBody(ByteString.copyFrom(ByteBuffer.allocate(Long.BYTES).putLong(0, ledgerId)));
+                processor.processRequest(Request.newBuilder().setHeader(header).setWriteLacRequest(writeLac).build(),
+                        requestHandler);
+            }
+            assertTrue(lacsWritten.await(10, TimeUnit.SECONDS));
+
+            // the write LAC requests run on the same add worker thread as the adds of their ledger
+            for (long ledgerId = 1; ledgerId <= numLedgers; ledgerId++) {
+                CompletableFuture<Thread> addThread = new CompletableFuture<>();
+                processor.getWriteThreadPool().executeOrdered(ledgerId,
+                        () -> addThread.complete(Thread.currentThread()));
+                assertEquals(addThread.get(10, TimeUnit.SECONDS), lacThreads.get(ledgerId));
+            }
+        } finally {
+            processor.close();
+        }
+    }
+}
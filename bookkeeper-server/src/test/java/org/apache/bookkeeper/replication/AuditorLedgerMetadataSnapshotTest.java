@@ -0,0 +1,223 @@
+package org.apache.bookkeeper.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.LedgerMetadataListener;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.Test;
+
+public class AuditorLedgerMetadataSnapshotTest {
+
+    private final Map<Long, Versioned<LedgerMetadata>> ledgers = new HashMap<>();
+    // the ledgers whose metadata is read, if the reads complete later
+    private List<Long> pendingReads = null;
+
+    private static Versioned<LedgerMetadata> metadata(long ledgerId, long version, String... bookies) {
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withId(ledgerId)
+                .withEnsembleSize(bookies.length)
+                .withWriteQuorumSize(bookies.length)
+                .withAckQuorumSize(bookies.length)
+                .newEnsembleEntry(0L, Arrays.stream(bookies).map(BookieId::parse)
+                        .collect(Collectors.toList()))
+                .build();
+        return new Versioned<>(metadata, new LongVersion(version));
+    }
+
+    private LedgerManager ledgerManager() {
+        LedgerManager ledgerManager = mock(LedgerManager.class);
+        when(ledgerManager.getLedgerRanges(anyLong())).thenAnswer(invocation -> {
+            Iterator<Long> ids = new HashSet<>(ledgers.keySet()).iterator();
+            return new LedgerManager.LedgerRangeIterator() {
+                @Override
+                public boolean hasNext() {
+                    return ids.hasNext();
+                }
+
+                @Override
+                public LedgerManager.LedgerRange next() {
+                    return new LedgerManager.LedgerRange(Collections.singleton(ids.next()));
+                }
+            };
+        });
+        doAnswer(invocation -> {
+            long ledgerId = invocation.getArgument(0);
+            LedgerMetadataListener listener = invocation.getArgument(1);
+            if (null != pendingReads) {
+                pendingReads.add(ledgerId);
+            } else {
+                listener.onChanged(ledgerId, ledgers.get(ledgerId));
+            }
+            return null;
+        }).when(ledgerManager).registerLedgerMetadataListener(anyLong(), any());
+        return ledgerManager;
+    }
+
+    @Test
+    public void changedLedgersTest() throws Exception {
+        ledgers.put(1L, metadata(1L, 0, "bookie1:3181", "bookie2:3181"));
+        ledgers.put(2L, metadata(2L, 0, "bookie2:3181", "bookie3:3181"));
+        AuditorLedgerMetadataSnapshot snapshot =
+                new AuditorLedgerMetadataSnapshot(new ServerConfiguration(), ledgerManager());
+        AuditorLedgerMetadataSnapshot.ChangeTracker tracker = snapshot.newChangeTracker(0, false);
+
+        // all the ledgers are new on the first run
+        Set<Long> ledgersToCheck = tracker.takeLedgersToCheck();
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), ledgersToCheck);
+        tracker.checkCompleted(ledgersToCheck, true);
+        assertTrue(tracker.takeLedgersToCheck().isEmpty());
+
+        // a new ledger, and a new version of an existing one
+        ledgers.put(3L, metadata(3L, 0, "bookie4:3181"));
+        snapshot.onChanged(1L, metadata(1L, 1, "bookie1:3181", "bookie4:3181"));
+        // a stale version is ignored
+        snapshot.onChanged(2L, metadata(2L, 0, "bookie2:3181", "bookie3:3181"));
+        ledgersToCheck = tracker.takeLedgersToCheck();
+        assertEquals(new HashSet<>(Arrays.asList(1L, 3L)), ledgersToCheck);
+
+        // the ledgers of a failed check are checked again
+        tracker.checkCompleted(ledgersToCheck, false);
+        assertEquals(ledgersToCheck, tracker.takeLedgersToCheck());
+
+        // the ledgers stored on the bookies whose availability changed
+        snapshot.bookiesChanged(Collections.singleton("bookie3:3181"));
+        assertEquals(Collections.singleton(2L), tracker.takeLedgersToCheck());
+
+        // a deleted ledger
+        ledgers.remove(3L);
+        snapshot.onChanged(3L, null);
+        assertFalse(snapshot.containsLedger(3L));
+        assertNull(snapshot.getLedgerMetadata(3L));
+        assertTrue(tracker.takeLedgersToCheck().isEmpty());
+        assertEquals(2, snapshot.size());
+    }
+
+    @Test
+    public void fullCheckTest() throws Exception {
+        ledgers.put(1L, metadata(1L, 0, "bookie1:3181"));
+        AuditorLedgerMetadataSnapshot snapshot =
+                new AuditorLedgerMetadataSnapshot(new ServerConfiguration(), ledgerManager());
+        AuditorLedgerMetadataSnapshot.ChangeTracker tracker = snapshot.newChangeTracker(1, false);
+
+        Thread.sleep(1100);
+        // the full check is due, until it succeeds
+        assertNull(tracker.takeLedgersToCheck());
+        tracker.checkCompleted(null, false);
+        assertNull(tracker.takeLedgersToCheck());
+        tracker.checkCompleted(null, true);
+        snapshot.close();
+    }
+
+    @Test
+    public void boundedLoadsTest() throws Exception {
+        for (long ledgerId = 1; ledgerId <= 5; ledgerId++) {
+            ledgers.put(ledgerId, metadata(ledgerId, 0, "bookie1:3181"));
+        }
+        pendingReads = new ArrayList<>();
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAuditorMaxNumberOfConcurrentOpenLedgerOperations(2);
+        conf.setAuditorAcquireConcurrentOpenLedgerOperationsTimeoutMSec(60000);
+        LedgerManager ledgerManager = ledgerManager();
+        AuditorLedgerMetadataSnapshot snapshot = new AuditorLedgerMetadataSnapshot(conf, ledgerManager);
+
+        // the refresh doesn't wait for the metadata reads
+        snapshot.refresh();
+        assertEquals(5, snapshot.size());
+        assertEquals(2, pendingReads.size());
+
+        // a completed read starts the next one
+        long ledgerId = pendingReads.remove(0);
+        snapshot.onChanged(ledgerId, ledgers.get(ledgerId));
+        assertEquals(2, pendingReads.size());
+        assertEquals(ledgers.get(ledgerId), snapshot.getLedgerMetadata(ledgerId));
+        // the later metadata changes don't start more reads
+        snapshot.onChanged(ledgerId, metadata(ledgerId, 1, "bookie2:3181"));
+        assertEquals(2, pendingReads.size());
+
+        snapshot.close();
+        for (long id = 1; id <= 5; id++) {
+            verify(ledgerManager).unregisterLedgerMetadataListener(eq(id), eq(snapshot));
+        }
+        // the reads completing after the close don't start more reads
+        ledgerId = pendingReads.remove(0);
+        snapshot.onChanged(ledgerId, ledgers.get(ledgerId));
+        assertEquals(1, pendingReads.size());
+        assertNull(snapshot.getLedgerMetadata(ledgerId));
+    }
+
+    @Test
+    public void timedOutLoadsTest() throws Exception {
+        for (long ledgerId = 1; ledgerId <= 5; ledgerId++) {
+            ledgers.put(ledgerId, metadata(ledgerId, 0, "bookie1:3181"));
+        }
+        pendingReads = new ArrayList<>();
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAuditorMaxNumberOfConcurrentOpenLedgerOperations(2);
+        conf.setAuditorAcquireConcurrentOpenLedgerOperationsTimeoutMSec(1000);
+        AuditorLedgerMetadataSnapshot snapshot = new AuditorLedgerMetadataSnapshot(conf, ledgerManager());
+        snapshot.refresh();
+        assertEquals(2, pendingReads.size());
+
+        // the reads which didn't complete give their slots to the next ledgers
+        Thread.sleep(1100);
+        snapshot.refresh();
+        assertEquals(4, pendingReads.size());
+        // a read completing after its timeout doesn't free another slot
+        snapshot.onChanged(pendingReads.get(0), ledgers.get(pendingReads.get(0)));
+        assertEquals(4, pendingReads.size());
+        snapshot.close();
+    }
+
+    @Test
+    public void topologyChangesTest() throws Exception {
+        ledgers.put(1L, metadata(1L, 0, "bookie1:3181", "bookie2:3181"));
+        ledgers.put(2L, metadata(2L, 0, "bookie3:3181"));
+        AuditorLedgerMetadataSnapshot snapshot =
+                new AuditorLedgerMetadataSnapshot(new ServerConfiguration(), ledgerManager());
+        AuditorLedgerMetadataSnapshot.ChangeTracker placementTracker = snapshot.newChangeTracker(0, true);
+        AuditorLedgerMetadataSnapshot.ChangeTracker ledgersTracker = snapshot.newChangeTracker(0, false);
+        placementTracker.checkCompleted(placementTracker.takeLedgersToCheck(), true);
+        ledgersTracker.checkCompleted(ledgersTracker.takeLedgersToCheck(), true);
+
+        // a bookie moved to another rack
+        snapshot.topologyChanged(Collections.singleton(BookieId.parse("bookie2:3181")), false);
+        assertEquals(Collections.singleton(1L), placementTracker.takeLedgersToCheck());
+        assertTrue(ledgersTracker.takeLedgersToCheck().isEmpty());
+
+        // a rack was added, all the ledgers are checked until the check succeeds
+        snapshot.topologyChanged(Collections.emptyList(), true);
+        assertNull(placementTracker.takeLedgersToCheck());
+        placementTracker.checkCompleted(null, false);
+        assertNull(placementTracker.takeLedgersToCheck());
+        placementTracker.checkCompleted(null, true);
+        assertTrue(placementTracker.takeLedgersToCheck().isEmpty());
+        assertTrue(ledgersTracker.takeLedgersToCheck().isEmpty());
+        snapshot.close();
+    }
+}
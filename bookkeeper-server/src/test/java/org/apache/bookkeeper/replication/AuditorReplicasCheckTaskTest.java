@@ -0,0 +1,241 @@
+package org.apache.bookkeeper.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeperAdmin;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRange;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRangeIterator;
+import org.apache.bookkeeper.meta.LedgerUnderreplicationManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AuditorReplicasCheckTaskTest {
+
+    private static final BookieId BOOKIE_0 = BookieId.parse("bookie0:3181");
+    private static final BookieId BOOKIE_1 = BookieId.parse("bookie1:3181");
+    // the ledger missing an entry on the bookie 1
+    private static final long LEDGER_MISSING_ENTRY = 7L;
+
+    private final Map<BookieId, List<Integer>> batchedRequests = new ConcurrentHashMap<>();
+    private final Map<BookieId, AtomicInteger> singleRequests = new ConcurrentHashMap<>();
+    private final Map<BookieId, List<Integer>> batchFailures = new HashMap<>();
+    private final AtomicInteger outstandingLedgers = new AtomicInteger();
+    private final AtomicInteger maxOutstandingLedgers = new AtomicInteger();
+    private ScheduledExecutorService executor;
+    private BookKeeperAdmin admin;
+    private AuditorStats auditorStats;
+
+    private static AvailabilityOfEntriesOfLedger entriesOf(BookieId bookie, long ledgerId) {
+        if (bookie.equals(BOOKIE_1) && ledgerId == LEDGER_MISSING_ENTRY) {
+            return new AvailabilityOfEntriesOfLedger(new long[] { 0 });
+        }
+        return new AvailabilityOfEntriesOfLedger(new long[] { 0, 1 });
+    }
+
+    private <T> CompletableFuture<T> completeLater(int numLedgers, T result, Throwable exception) {
+        int outstanding = outstandingLedgers.addAndGet(numLedgers);
+        maxOutstandingLedgers.accumulateAndGet(outstanding, Math::max);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.schedule(() -> {
+            outstandingLedgers.addAndGet(-numLedgers);
+            if (exception != null) {
+                future.completeExceptionally(exception);
+            } else {
+                future.complete(result);
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        admin = mock(BookKeeperAdmin.class);
+        when(admin.asyncGetListOfEntriesOfLedgers(any(BookieId.class), anyList())).thenAnswer(invocation -> {
+            BookieId bookie = invocation.getArgument(0);
+            List<Long> ledgerIds = invocation.getArgument(1);
+            List<Integer> requests = batchedRequests.computeIfAbsent(bookie, k -> new ArrayList<>());
+            synchronized (requests) {
+                requests.add(ledgerIds.size());
+                List<Integer> failures = batchFailures.getOrDefault(bookie, new ArrayList<>());
+                if (!failures.isEmpty()) {
+                    return completeLater(ledgerIds.size(), null, BKException.create(failures.remove(0)));
+                }
+            }
+            Map<Long, AvailabilityOfEntriesOfLedger> ledgers = new HashMap<>();
+            for (long ledgerId : ledgerIds) {
+                ledgers.put(ledgerId, entriesOf(bookie, ledgerId));
+            }
+            return completeLater(ledgerIds.size(), ledgers, null);
+        });
+        when(admin.asyncGetListOfEntriesOfLedger(any(BookieId.class), anyLong())).thenAnswer(invocation -> {
+            BookieId bookie = invocation.getArgument(0);
+            long ledgerId = invocation.getArgument(1);
+            singleRequests.computeIfAbsent(bookie, k -> new AtomicInteger()).incrementAndGet();
+            return completeLater(1, entriesOf(bookie, ledgerId), null);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void runReplicasCheck(ServerConfiguration conf, int numLedgers) throws Exception {
+        Set<Long> ledgerIds = new HashSet<>();
+        for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+            ledgerIds.add(ledgerId);
+        }
+        LedgerRangeIterator ledgerRangeIterator = mock(LedgerRangeIterator.class);
+        when(ledgerRangeIterator.hasNext()).thenReturn(true, false);
+        when(ledgerRangeIterator.next()).thenReturn(new LedgerRange(ledgerIds));
+        LedgerManager ledgerManager = mock(LedgerManager.class);
+        when(ledgerManager.getLedgerRanges(anyLong())).thenReturn(ledgerRangeIterator);
+        when(ledgerManager.readLedgerMetadata(anyLong())).thenAnswer(invocation -> {
+            LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                    .withId(invocation.getArgument(0))
+                    .withEnsembleSize(2)
+                    .withWriteQuorumSize(2)
+                    .withAckQuorumSize(1)
+                    .newEnsembleEntry(0L, Arrays.asList(BOOKIE_0, BOOKIE_1))
+                    .withClosedState()
+                    .withLastEntryId(1L)
+                    .withLength(100L)
+                    .build();
+            return CompletableFuture.completedFuture(new Versioned<>(metadata, new LongVersion(1)));
+        });
+        LedgerUnderreplicationManager ledgerUnderreplicationManager = mock(LedgerUnderreplicationManager.class);
+        when(ledgerUnderreplicationManager.isLedgerReplicationEnabled()).thenReturn(true);
+
+        auditorStats = new AuditorStats(NullStatsLogger.INSTANCE);
+        new AuditorReplicasCheckTask(conf, auditorStats, admin, ledgerManager, ledgerUnderreplicationManager,
+                null, (hasTask, exception) -> {}).runTask();
+    }
+
+    private static int sum(List<Integer> sizes) {
+        return sizes.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Test
+    public void sampleSizeTest() {
+        // 1 - 0.999 ^ 4603 >= 0.99
+        assertEquals(4603, AuditorReplicasCheckTask.replicasCheckSampleSize(0.99, 0.001));
+        assertEquals(459, AuditorReplicasCheckTask.replicasCheckSampleSize(0.99, 0.01));
+        assertEquals(1, AuditorReplicasCheckTask.replicasCheckSampleSize(0.5, 0.5));
+        assertEquals(1, AuditorReplicasCheckTask.replicasCheckSampleSize(0.99, 1));
+        assertEquals(Integer.MAX_VALUE, AuditorReplicasCheckTask.replicasCheckSampleSize(1, 0.001));
+        assertEquals(Integer.MAX_VALUE, AuditorReplicasCheckTask.replicasCheckSampleSize(0.99, 0));
+
+        int sampleSize = AuditorReplicasCheckTask.replicasCheckSampleSize(0.95, 0.0001);
+        assertTrue(1 - Math.pow(1 - 0.0001, sampleSize) >= 0.95);
+        assertTrue(1 - Math.pow(1 - 0.0001, sampleSize - 1) < 0.95);
+    }
+
+    @Test
+    public void sampleLedgersTest() throws Exception {
+        List<Long> ledgers = new ArrayList<>();
+        for (long ledgerId = 0; ledgerId < 1000; ledgerId++) {
+            ledgers.add(ledgerId);
+        }
+        AuditorReplicasCheckTask task = new AuditorReplicasCheckTask(new ServerConfiguration(),
+                new AuditorStats(NullStatsLogger.INSTANCE), admin, mock(LedgerManager.class),
+                mock(LedgerUnderreplicationManager.class), null, (hasTask, exception) -> {});
+
+        int[] sampledCounts = new int[10];
+        for (int run = 0; run < 200; run++) {
+            LedgerRangeIterator ledgerRangeIterator = mock(LedgerRangeIterator.class);
+            when(ledgerRangeIterator.hasNext()).thenReturn(true, true, false);
+            when(ledgerRangeIterator.next()).thenReturn(new LedgerRange(new HashSet<>(ledgers.subList(0, 500))),
+                    new LedgerRange(new HashSet<>(ledgers.subList(500, 1000))));
+            List<Long> sample = task.sampleLedgers(ledgerRangeIterator, 50);
+            assertEquals(50, sample.size());
+            assertEquals(50, new HashSet<>(sample).size());
+            for (int i = 1; i < sample.size(); i++) {
+                assertTrue(sample.get(i - 1) < sample.get(i));
+            }
+            for (long ledgerId : sample) {
+                sampledCounts[(int) (ledgerId / 100)]++;
+            }
+        }
+        // the ledgers of the first and of the last ranges are sampled as often, 1000 times on average
+        for (int sampledCount : sampledCounts) {
+            assertTrue("sampled " + sampledCount + " times", sampledCount > 700 && sampledCount < 1300);
+        }
+
+        // all the ledgers are checked if there are fewer than the sample size
+        LedgerRangeIterator ledgerRangeIterator = mock(LedgerRangeIterator.class);
+        when(ledgerRangeIterator.hasNext()).thenReturn(true, false);
+        when(ledgerRangeIterator.next()).thenReturn(new LedgerRange(new HashSet<>(ledgers.subList(0, 10))));
+        assertEquals(ledgers.subList(0, 10), task.sampleLedgers(ledgerRangeIterator, 50));
+    }
+
+    @Test
+    public void batchedRequestsTest() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAuditorReplicasCheckBatchSize(3);
+        conf.setAuditorReplicasCheckMaxOutstandingLedgers(4);
+        runReplicasCheck(conf, 10);
+
+        for (BookieId bookie : Arrays.asList(BOOKIE_0, BOOKIE_1)) {
+            // the last ledger is sent once the metadata of all the ledgers is read
+            assertEquals(Arrays.asList(3, 3, 3, 1), batchedRequests.get(bookie));
+        }
+        assertTrue(singleRequests.isEmpty());
+        // a single full batch is listed at once
+        assertTrue(maxOutstandingLedgers.get() <= 4);
+        assertEquals(1, auditorStats.getNumLedgersHavingLessThanWQReplicasOfAnEntryGuageValue().get());
+        assertEquals(0, auditorStats.getNumLedgersHavingNoReplicaOfAnEntryGuageValue().get());
+    }
+
+    @Test
+    public void rejectedAndFailedBatchesTest() throws Exception {
+        // the bookie 0 doesn't support the batched requests, a request of the bookie 1 fails
+        batchFailures.put(BOOKIE_0, new ArrayList<>(Arrays.asList(BKException.Code.IllegalOpException)));
+        batchFailures.put(BOOKIE_1, new ArrayList<>(Arrays.asList(BKException.Code.BookieHandleNotAvailableException)));
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAuditorReplicasCheckBatchSize(3);
+        conf.setAuditorReplicasCheckMaxOutstandingLedgers(4);
+        runReplicasCheck(conf, 30);
+
+        // the bookie 0 is listed one ledger at a time once it rejected a batch
+        assertEquals(1, batchedRequests.get(BOOKIE_0).size());
+        assertEquals(30, singleRequests.get(BOOKIE_0).get());
+        // the ledgers of the failed batch are listed one at a time, and the bookie 1 gets batches
+        assertEquals(3, singleRequests.get(BOOKIE_1).get());
+        List<Integer> bookie1Requests = batchedRequests.get(BOOKIE_1);
+        assertEquals(30, sum(bookie1Requests));
+        assertTrue(bookie1Requests.size() < 30);
+        assertEquals(1, auditorStats.getNumLedgersHavingLessThanWQReplicasOfAnEntryGuageValue().get());
+        assertTrue(maxOutstandingLedgers.get() <= 4);
+    }
+}
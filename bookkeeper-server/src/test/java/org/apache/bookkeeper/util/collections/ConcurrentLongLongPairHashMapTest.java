@@ -0,0 +1,45 @@
+package org.apache.bookkeeper.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.junit.Test;
+
+public class ConcurrentLongLongPairHashMapTest {
+
+    @Test
+    public void offHeapTablesTest() {
+        UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(true);
+        ConcurrentLongLongPairHashMap map = ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .offHeap(allocator)
+                .build();
+        assertEquals(map.sizeInBytes(), allocator.metric().usedDirectMemory());
+
+        int n = 10_000;
+        for (long i = 0; i < n; i++) {
+            assertTrue(map.put(i, i + 1, i + 2, i + 3));
+        }
+        assertEquals(n, map.size());
+        // the tables replaced by the expansions have been released
+        assertEquals(map.sizeInBytes(), allocator.metric().usedDirectMemory());
+        for (long i = 0; i < n; i++) {
+            assertEquals(new LongPair(i + 2, i + 3), map.get(i, i + 1));
+        }
+        assertNull(map.get(n, n + 1));
+
+        for (long i = 0; i < n; i++) {
+            assertTrue(map.remove(i, i + 1));
+        }
+        assertTrue(map.isEmpty());
+        assertEquals(map.sizeInBytes(), allocator.metric().usedDirectMemory());
+
+        map.close();
+        assertEquals(0, allocator.metric().usedDirectMemory());
+    }
+}
@@ -0,0 +1,144 @@
+package org.apache.bookkeeper.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class LockFreeLongHashMapTest {
+
+    @Test
+    public void simpleInsertionsTest() {
+        LockFreeLongHashMap<String> map = LockFreeLongHashMap.<String>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "one"));
+        assertFalse(map.isEmpty());
+        assertNull(map.put(2, "two"));
+        assertNull(map.put(0, "zero"));
+        assertEquals(3, map.size());
+
+        assertEquals("one", map.get(1));
+        assertEquals("zero", map.get(0));
+        assertNull(map.get(3));
+
+        assertEquals("two", map.put(2, "dos"));
+        assertEquals("dos", map.putIfAbsent(2, "deux"));
+        assertNull(map.putIfAbsent(3, "three"));
+        assertEquals("zero", map.putIfAbsent(0, "zéro"));
+        assertEquals(4, map.size());
+
+        assertFalse(map.remove(1, "uno"));
+        assertTrue(map.remove(1, "one"));
+        assertNull(map.remove(1));
+        assertEquals("zero", map.remove(0));
+        assertNull(map.get(0));
+        assertEquals(2, map.size());
+
+        assertEquals("four", map.computeIfAbsent(4, key -> "four"));
+        assertEquals("four", map.computeIfAbsent(4, key -> "quatre"));
+
+        List<Long> keys = map.keys();
+        Collections.sort(keys);
+        assertEquals(3, keys.size());
+        assertEquals(Long.valueOf(2), keys.get(0));
+        assertEquals(Long.valueOf(4), keys.get(2));
+
+        assertEquals(1, map.removeIf((key, value) -> key == 2));
+        assertEquals(2, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(3));
+    }
+
+    @Test
+    public void expandAndShrinkTest() {
+        LockFreeLongHashMap<Long> map = LockFreeLongHashMap.<Long>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .build();
+        long initCapacity = map.capacity();
+
+        int n = 10_000;
+        for (long i = 0; i < n; i++) {
+            map.put(i, i);
+        }
+        assertEquals(n, map.size());
+        assertTrue(map.capacity() > initCapacity);
+        for (long i = 0; i < n; i++) {
+            assertEquals(Long.valueOf(i), map.get(i));
+        }
+
+        for (long i = 0; i < n; i++) {
+            assertEquals(Long.valueOf(i), map.remove(i));
+        }
+        // complete the resize in progress
+        map.forEach((key, value) -> {});
+        assertTrue(map.isEmpty());
+        assertEquals(initCapacity, map.capacity());
+    }
+
+    @Test
+    public void concurrentUpdatesTest() throws Exception {
+        LockFreeLongHashMap<Long> map = LockFreeLongHashMap.<Long>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+        int numThreads = 8;
+        int keysPerThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            // a reader checking the entries which are never removed, while the map is resized
+            map.put(-1, -1L);
+            Future<?> reader = executor.submit(() -> {
+                while (!done.get()) {
+                    assertEquals(Long.valueOf(-1), map.get(-1));
+                }
+            });
+
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final long base = (long) t * keysPerThread;
+                writers.add(executor.submit(() -> {
+                    Random random = new Random(base);
+                    for (long i = base; i < base + keysPerThread; i++) {
+                        assertNull(map.put(i, i));
+                        if (random.nextInt(4) == 0) {
+                            assertEquals(Long.valueOf(i), map.remove(i));
+                            assertNull(map.putIfAbsent(i, i));
+                        }
+                        assertEquals(Long.valueOf(i), map.get(i));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            done.set(true);
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(numThreads * keysPerThread + 1, map.size());
+        assertEquals(numThreads * keysPerThread + 1, map.keys().size());
+        for (long i = 0; i < numThreads * keysPerThread; i++) {
+            assertEquals(Long.valueOf(i), map.get(i));
+        }
+    }
+}
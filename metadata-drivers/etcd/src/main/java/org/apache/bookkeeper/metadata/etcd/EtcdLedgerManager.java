@@ -18,6 +18,7 @@
  */
 package org.apache.bookkeeper.metadata.etcd;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import io.etcd.jetcd.ByteSequence;
 import io.etcd.jetcd.Client;
@@ -33,9 +34,12 @@ import io.etcd.jetcd.options.GetOption;
 import io.etcd.jetcd.options.PutOption;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,6 +48,7 @@ import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.meta.LedgerMetadataSerDe;
 import org.apache.bookkeeper.metadata.etcd.helpers.KeyIterator;
@@ -63,6 +68,10 @@ import org.apache.zookeeper.AsyncCallback.VoidCallback;
 @Slf4j
 class EtcdLedgerManager implements LedgerManager {
 
+    // number of ledgers created or removed by each transaction of the batch operations,
+    // below the default limit of operations per transaction of etcd
+    static final int ETCD_BATCH_SIZE = 100;
+
     private final LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
 
     private final String scope;
@@ -144,6 +153,67 @@ class EtcdLedgerManager implements LedgerManager {
         return promise;
     }
 
+    @Override
+    public Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> createLedgersMetadata(
+            Map<Long, LedgerMetadata> ledgers) {
+        Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> promises = new TreeMap<>();
+        for (long ledgerId : ledgers.keySet()) {
+            promises.put(ledgerId, new CompletableFuture<>());
+        }
+        for (List<Long> batch : Lists.partition(new ArrayList<>(promises.keySet()), ETCD_BATCH_SIZE)) {
+            createLedgerBatchMetadata(batch, ledgers, promises);
+        }
+        return promises;
+    }
+
+    private void createLedgerBatchMetadata(List<Long> ledgerIds, Map<Long, LedgerMetadata> ledgers,
+                                           Map<Long, CompletableFuture<Versioned<LedgerMetadata>>> promises) {
+        Cmp[] cmps = new Cmp[ledgerIds.size()];
+        io.etcd.jetcd.op.Op[] puts = new io.etcd.jetcd.op.Op[ledgerIds.size()];
+        for (int i = 0; i < ledgerIds.size(); i++) {
+            long ledgerId = ledgerIds.get(i);
+            ByteSequence ledgerKeyBs = ByteSequence.from(
+                EtcdUtils.getLedgerKey(scope, ledgerId), StandardCharsets.UTF_8);
+            final ByteSequence valueBs;
+            try {
+                valueBs = ByteSequence.from(serDe.serialize(ledgers.get(ledgerId)));
+            } catch (IOException ioe) {
+                // none of the ledgers of the batch is created
+                for (long batchLedgerId : ledgerIds) {
+                    promises.get(batchLedgerId).completeExceptionally(
+                        new BKException.BKMetadataSerializationException(ioe));
+                }
+                return;
+            }
+            cmps[i] = new Cmp(ledgerKeyBs, Cmp.Op.EQUAL, CmpTarget.createRevision(0L));
+            puts[i] = io.etcd.jetcd.op.Op.put(ledgerKeyBs, valueBs, PutOption.DEFAULT);
+        }
+        kvClient.txn()
+            .If(cmps)
+            .Then(puts)
+            .commit()
+            .thenAccept(resp -> {
+                if (resp.isSucceeded()) {
+                    LongVersion version = new LongVersion(resp.getHeader().getRevision());
+                    for (long ledgerId : ledgerIds) {
+                        promises.get(ledgerId).complete(new Versioned<>(ledgers.get(ledgerId), version));
+                    }
+                } else {
+                    // some ledgers already exist, so create them one by one to fail the existing ones
+                    for (long ledgerId : ledgerIds) {
+                        FutureUtils.proxyTo(createLedgerMetadata(ledgerId, ledgers.get(ledgerId)),
+                                            promises.get(ledgerId));
+                    }
+                }
+            })
+            .exceptionally(cause -> {
+                    for (long ledgerId : ledgerIds) {
+                        promises.get(ledgerId).completeExceptionally(new BKException.MetaStoreException());
+                    }
+                    return null;
+                });
+    }
+
     @Override
     public CompletableFuture<Void> removeLedgerMetadata(long ledgerId, Version version) {
         CompletableFuture<Void> promise = new CompletableFuture<>();
@@ -209,6 +279,64 @@ class EtcdLedgerManager implements LedgerManager {
         return promise;
     }
 
+    @Override
+    public CompletableFuture<Void> removeLedgersMetadata(Map<Long, Version> ledgers) {
+        for (Map.Entry<Long, Version> e : ledgers.entrySet()) {
+            Version version = e.getValue();
+            if (Version.NEW == version
+                || (Version.ANY != version && !(version instanceof LongVersion))) {
+                log.error("Request to delete ledger {} metadata with invalid version {}", e.getKey(), version);
+                return FutureUtils.exception(new BKException.BKMetadataVersionException());
+            }
+        }
+        return FutureUtils.processList(
+            Lists.partition(new ArrayList<>(new TreeMap<>(ledgers).keySet()), ETCD_BATCH_SIZE),
+            batch -> removeLedgerBatchMetadata(batch, ledgers),
+            null
+        ).thenApply(ignored -> null);
+    }
+
+    private CompletableFuture<Void> removeLedgerBatchMetadata(List<Long> ledgerIds, Map<Long, Version> ledgers) {
+        Cmp[] cmps = new Cmp[ledgerIds.size()];
+        io.etcd.jetcd.op.Op[] deletes = new io.etcd.jetcd.op.Op[ledgerIds.size()];
+        for (int i = 0; i < ledgerIds.size(); i++) {
+            long ledgerId = ledgerIds.get(i);
+            Version version = ledgers.get(ledgerId);
+            ByteSequence ledgerKeyBs = ByteSequence.from(
+                EtcdUtils.getLedgerKey(scope, ledgerId), StandardCharsets.UTF_8);
+            if (Version.ANY == version) {
+                cmps[i] = new Cmp(ledgerKeyBs, Cmp.Op.GREATER, CmpTarget.createRevision(0L));
+            } else {
+                cmps[i] = new Cmp(ledgerKeyBs, Cmp.Op.EQUAL,
+                    CmpTarget.modRevision(((LongVersion) version).getLongVersion()));
+            }
+            deletes[i] = io.etcd.jetcd.op.Op.delete(ledgerKeyBs, DeleteOption.DEFAULT);
+        }
+        CompletableFuture<Void> promise = new CompletableFuture<>();
+        kvClient.txn()
+            .If(cmps)
+            .Then(deletes)
+            .commit()
+            .thenAccept(txnResp -> {
+                if (txnResp.isSucceeded()) {
+                    promise.complete(null);
+                } else {
+                    // some ledgers don't exist or have a different version, so remove them one by one
+                    // to fail with the error of each ledger
+                    List<CompletableFuture<Void>> removeFutures = new ArrayList<>(ledgerIds.size());
+                    for (long ledgerId : ledgerIds) {
+                        removeFutures.add(removeLedgerMetadata(ledgerId, ledgers.get(ledgerId)));
+                    }
+                    FutureUtils.proxyTo(FutureUtils.collect(removeFutures).thenApply(ignored -> null), promise);
+                }
+            })
+            .exceptionally(cause -> {
+                    promise.completeExceptionally(new BKException.MetaStoreException());
+                    return null;
+                });
+        return promise;
+    }
+
     @Override
     public CompletableFuture<Versioned<LedgerMetadata>> readLedgerMetadata(long ledgerId) {
         CompletableFuture<Versioned<LedgerMetadata>> promise = new CompletableFuture<>();
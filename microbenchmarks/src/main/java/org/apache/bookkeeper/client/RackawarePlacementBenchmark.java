@@ -0,0 +1,145 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.client;
+
+import io.netty.util.HashedWheelTimer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException.BKNotEnoughBookiesException;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.net.DNSToSwitchMapping;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the ensemble selection of {@link RackawareEnsemblePlacementPolicy} on a large
+ * cluster spread over many racks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class RackawarePlacementBenchmark {
+
+    /**
+     * State holding the placement policy, aware of all the bookies.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+
+        @Param({ "5000" })
+        private int numBookies;
+
+        @Param({ "200" })
+        private int numRacks;
+
+        // bookies excluded from each selection, as the bookies of the ensemble being replaced
+        @Param({ "0", "500" })
+        private int numExcludedBookies;
+
+        private HashedWheelTimer timer;
+        private RackawareEnsemblePlacementPolicy policy;
+        private List<BookieId> bookies;
+        private Set<BookieId> excludedBookies;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Map<String, String> racks = new HashMap<>();
+            bookies = new ArrayList<>(numBookies);
+            for (int i = 0; i < numBookies; i++) {
+                String host = "10.0." + (i / 250) + "." + (i % 250);
+                racks.put(host, "/rack-" + (i % numRacks));
+                bookies.add(BookieId.parse(host + ":3181"));
+            }
+            DNSToSwitchMapping dnsResolver = new DNSToSwitchMapping() {
+                @Override
+                public List<String> resolve(List<String> names) {
+                    List<String> rNames = new ArrayList<>(names.size());
+                    for (String name : names) {
+                        rNames.add(racks.get(name));
+                    }
+                    return rNames;
+                }
+
+                @Override
+                public void reloadCachedMappings() {
+                }
+            };
+
+            timer = new HashedWheelTimer();
+            policy = new RackawareEnsemblePlacementPolicy();
+            policy.initialize(new ClientConfiguration(), Optional.of(dnsResolver), timer,
+                    SettableFeatureProvider.DISABLE_ALL, NullStatsLogger.INSTANCE,
+                    BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER);
+            policy.onClusterChanged(new HashSet<>(bookies), Collections.emptySet());
+
+            excludedBookies = new HashSet<>(bookies.subList(0, numExcludedBookies));
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            policy.uninitalize();
+            timer.stop();
+        }
+    }
+
+    @Benchmark
+    public List<BookieId> newEnsemble(TestState s) throws BKNotEnoughBookiesException {
+        return s.policy.newEnsemble(5, 3, 2, Collections.emptyMap(),
+                new HashSet<>(s.excludedBookies)).getResult();
+    }
+
+    @Benchmark
+    public BookieId replaceBookie(TestState s) throws BKNotEnoughBookiesException {
+        List<BookieId> ensemble = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++) {
+            ensemble.add(s.bookies.get(s.numExcludedBookies + i));
+        }
+        int replaced = ThreadLocalRandom.current().nextInt(ensemble.size());
+        return s.policy.replaceBookie(5, 3, 2, Collections.emptyMap(), ensemble,
+                ensemble.get(replaced), new HashSet<>(s.excludedBookies)).getResult();
+    }
+}
@@ -80,4 +80,49 @@ public class OrderedExecutorBenchmark {
         s.executor.submit(() -> {
         }).get();
     }
+
+    /**
+     * State holder of the test with one thread of the executor kept busy by ordered tasks.
+     */
+    @State(Scope.Benchmark)
+    public static class SkewedTestState {
+        @Param({"false", "true"})
+        private boolean workStealing;
+
+        private OrderedExecutor executor;
+        private volatile boolean running;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            executor = OrderedExecutor.newBuilder()
+                    .numThreads(4)
+                    .enableWorkStealing(workStealing)
+                    .build();
+            running = true;
+            executor.executeOrdered(0, new Runnable() {
+                @Override
+                public void run() {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1);
+                    while (System.nanoTime() < deadline) {
+                        // keep the thread busy
+                    }
+                    if (running) {
+                        executor.executeOrdered(0, this);
+                    }
+                }
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            running = false;
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void submitAndWaitWithBusyThread(SkewedTestState s) throws Exception {
+        s.executor.submit(() -> {
+        }).get();
+    }
 }
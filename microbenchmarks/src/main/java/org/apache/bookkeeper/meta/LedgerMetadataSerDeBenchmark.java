@@ -0,0 +1,115 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.meta;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the serialization and parsing of the ledger metadata by {@link LedgerMetadataSerDe},
+ * for synthetic ledgers with many ensemble changes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class LedgerMetadataSerDeBenchmark {
+
+    /**
+     * State holding the metadata of the ledger, and its serialized form.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+
+        @Param({ "3", "4" })
+        private int formatVersion;
+
+        @Param({ "1000" })
+        private int ensembleChanges;
+
+        @Param({ "100" })
+        private int numBookies;
+
+        private final LedgerMetadataSerDe serDe = new LedgerMetadataSerDe();
+        private LedgerMetadata metadata;
+        private byte[] serialized;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            LedgerMetadataBuilder builder = LedgerMetadataBuilder.create()
+                    .withId(1L)
+                    .withMetadataFormatVersion(formatVersion)
+                    .withEnsembleSize(3)
+                    .withWriteQuorumSize(3)
+                    .withAckQuorumSize(2)
+                    .withDigestType(DigestType.CRC32C)
+                    .withPassword(new byte[0])
+                    .withCustomMetadata(Collections.singletonMap("application", "benchmark".getBytes(UTF_8)));
+            long firstEntryId = 0;
+            for (int i = 0; i < ensembleChanges; i++) {
+                List<BookieId> ensemble = new ArrayList<>(3);
+                for (int j = 0; j < 3; j++) {
+                    ensemble.add(BookieId.parse("bookie-" + ((i * 7 + j) % numBookies)
+                            + ".bookkeeper.example.com:3181"));
+                }
+                builder.newEnsembleEntry(firstEntryId, ensemble);
+                firstEntryId += 1 + i * 37 % 10000;
+            }
+            metadata = builder.withClosedState().withLastEntryId(firstEntryId).withLength(firstEntryId * 1024)
+                    .build();
+            serialized = serDe.serialize(metadata);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(TestState s) throws IOException {
+        return s.serDe.serialize(s.metadata);
+    }
+
+    @Benchmark
+    public LedgerMetadata parse(TestState s) throws IOException {
+        return s.serDe.parseConfig(s.serialized, 1L, Optional.empty());
+    }
+}
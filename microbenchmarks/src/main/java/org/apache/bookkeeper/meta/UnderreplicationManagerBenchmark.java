@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.meta;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.zookeeper.ZooKeeperClient;
+import org.apache.commons.io.FileUtils;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark the underreplication queue operations of {@link ZkLedgerUnderreplicationManager}
+ * against an in-process ZooKeeper server holding many underreplicated ledgers, as after the
+ * loss of a rack.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class UnderreplicationManagerBenchmark {
+
+    private static final List<String> MISSING_REPLICAS = Collections.singletonList("bookie-0:3181");
+
+    /**
+     * State holding the ZooKeeper server and the marked ledgers.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+
+        @Param({ "500000" })
+        private int numLedgers;
+
+        // number of ledgers marked or acquired by a call, 1 for the per-ledger operations
+        @Param({ "1", "100" })
+        private int batchSize;
+
+        private File dataDir;
+        private ServerCnxnFactory serverFactory;
+        private ZooKeeper zkc;
+        private ZkLedgerUnderreplicationManager manager;
+        private long nextLedgerId;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dataDir = Files.createTempDirectory("underreplication-benchmark").toFile();
+            ZooKeeperServer zks = new ZooKeeperServer(dataDir, dataDir, 2000);
+            serverFactory = ServerCnxnFactory.createFactory(new InetSocketAddress("127.0.0.1", 0), 100);
+            serverFactory.startup(zks);
+            String connectString = "127.0.0.1:" + serverFactory.getLocalPort();
+            zkc = ZooKeeperClient.newBuilder()
+                    .connectString(connectString)
+                    .sessionTimeoutMs(30000)
+                    .build();
+            zkc.create("/ledgers", new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setMetadataServiceUri("zk://" + connectString + "/ledgers");
+            manager = new ZkLedgerUnderreplicationManager(conf, zkc);
+
+            List<Long> ledgerIds = new ArrayList<>(numLedgers);
+            for (long i = 0; i < numLedgers; i++) {
+                ledgerIds.add(i);
+            }
+            manager.markLedgersUnderreplicatedAsync(ledgerIds, MISSING_REPLICAS).get();
+            nextLedgerId = numLedgers;
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            manager.close();
+            zkc.close();
+            serverFactory.shutdown();
+            FileUtils.deleteDirectory(dataDir);
+        }
+    }
+
+    @Benchmark
+    public void markLedgers(TestState s) throws Exception {
+        if (s.batchSize == 1) {
+            s.manager.markLedgerUnderreplicatedAsync(s.nextLedgerId++, MISSING_REPLICAS).get();
+            return;
+        }
+        List<Long> ledgerIds = new ArrayList<>(s.batchSize);
+        for (int i = 0; i < s.batchSize; i++) {
+            ledgerIds.add(s.nextLedgerId++);
+        }
+        s.manager.markLedgersUnderreplicatedAsync(ledgerIds, MISSING_REPLICAS).get();
+    }
+
+    @Benchmark
+    public void acquireAndReleaseLedgers(TestState s, Blackhole bh) throws Exception {
+        if (s.batchSize == 1) {
+            long ledgerId = s.manager.getLedgerToRereplicate();
+            bh.consume(ledgerId);
+            s.manager.releaseUnderreplicatedLedger(ledgerId);
+            return;
+        }
+        for (long ledgerId : s.manager.getLedgersToRereplicate(s.batchSize)) {
+            bh.consume(ledgerId);
+            s.manager.releaseUnderreplicatedLedger(ledgerId);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void listLedgers(TestState s, Blackhole bh) {
+        Iterator<UnderreplicatedLedger> iter = s.manager.listLedgersToRereplicate(null);
+        while (iter.hasNext()) {
+            bh.consume(iter.next());
+        }
+    }
+}
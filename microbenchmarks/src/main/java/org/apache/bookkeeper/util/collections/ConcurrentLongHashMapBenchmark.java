@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.util.collections;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the concurrent maps from long to an Object, with mixes of get, put and
+ * remove on a shared map, from 1 to 64 threads.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ConcurrentLongHashMapBenchmark {
+
+    private static final Long VALUE = 1L;
+
+    /**
+     * The operations of a map under test.
+     */
+    interface LongMap {
+        Object get(long key);
+
+        Object put(long key, Long value);
+
+        Object remove(long key);
+    }
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"ConcurrentLongHashMap", "LockFreeLongHashMap", "ConcurrentHashMap"})
+        private String mapType;
+
+        // percentage of the operations which are gets, the others are half puts, half removes
+        @Param({"100", "90", "50"})
+        private int readPercent;
+
+        @Param({"1000", "1000000"})
+        private int keySpace;
+
+        private LongMap map;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            switch (mapType) {
+            case "ConcurrentLongHashMap": {
+                ConcurrentLongHashMap<Long> m = ConcurrentLongHashMap.<Long>newBuilder().build();
+                map = new LongMap() {
+                    @Override
+                    public Object get(long key) {
+                        return m.get(key);
+                    }
+
+                    @Override
+                    public Object put(long key, Long value) {
+                        return m.put(key, value);
+                    }
+
+                    @Override
+                    public Object remove(long key) {
+                        return m.remove(key);
+                    }
+                };
+                break;
+            }
+            case "LockFreeLongHashMap": {
+                LockFreeLongHashMap<Long> m = LockFreeLongHashMap.<Long>newBuilder().build();
+                map = new LongMap() {
+                    @Override
+                    public Object get(long key) {
+                        return m.get(key);
+                    }
+
+                    @Override
+                    public Object put(long key, Long value) {
+                        return m.put(key, value);
+                    }
+
+                    @Override
+                    public Object remove(long key) {
+                        return m.remove(key);
+                    }
+                };
+                break;
+            }
+            case "ConcurrentHashMap": {
+                ConcurrentHashMap<Long, Long> m = new ConcurrentHashMap<>();
+                map = new LongMap() {
+                    @Override
+                    public Object get(long key) {
+                        return m.get(key);
+                    }
+
+                    @Override
+                    public Object put(long key, Long value) {
+                        return m.put(key, value);
+                    }
+
+                    @Override
+                    public Object remove(long key) {
+                        return m.remove(key);
+                    }
+                };
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown map type " + mapType);
+            }
+
+            // Half of the keys are in the map, so the puts and removes keep it about the same size
+            for (long key = 0; key < keySpace; key += 2) {
+                map.put(key, VALUE);
+            }
+        }
+    }
+
+    private static Object operation(TestState s) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long key = random.nextInt(s.keySpace);
+        int op = random.nextInt(100);
+        if (op < s.readPercent) {
+            return s.map.get(key);
+        } else if ((op & 1) == 0) {
+            return s.map.put(key, VALUE);
+        } else {
+            return s.map.remove(key);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads1(TestState s) {
+        return operation(s);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads4(TestState s) {
+        return operation(s);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16(TestState s) {
+        return operation(s);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object threads64(TestState s) {
+        return operation(s);
+    }
+}